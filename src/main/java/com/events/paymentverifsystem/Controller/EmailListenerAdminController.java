@@ -1,6 +1,8 @@
 package com.events.paymentverifsystem.Controller;
 import com.events.paymentverifsystem.Utilities.Email.EmailReceiverService;
-import com.events.paymentverifsystem.Utilities.Redis.RedisPaymentStore;
+import com.events.paymentverifsystem.Utilities.Email.ListenerStateStore;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentStore;
+import com.events.paymentverifsystem.Utilities.Redis.RedisCircuitBreaker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +12,7 @@ import org.springframework.data.redis.core.*;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.*;
@@ -21,39 +24,50 @@ import java.util.*;
  *
  * - GET /api/admin/email-listener/health
  * - GET /api/admin/email-listener/processed
+ * - GET /api/admin/active
+ * - GET /api/admin/consumed
  *
  * The processed endpoint returns:
  *  - processed key
  *  - processed key value (messageId)
  *  - type
- *  - attached payment data (if a matching attendance:payments:* hash contains messageId)
+ *  - attached payment data (looked up through the messageId -> paymentId index)
+ *
+ * Listings read the indexes RedisPaymentStore maintains at claim time, so their cost depends on
+ * the limit, not on the size of the keyspace. A custom processed pattern SCANs Redis and is only
+ * available with payments.store: redis.
  */
 @RestController
 @RequestMapping("/api/admin")
 public class EmailListenerAdminController {
 
     private final EmailReceiverService emailReceiverService;
-    private final RedisPaymentStore redisPaymentStore;
+    private final PaymentStore paymentStore;
+    private final RedisCircuitBreaker redisBreaker;
+    private final ListenerStateStore stateStore;
 
     @Autowired
-    public EmailListenerAdminController(RedisTemplate<String, Object> redisTemplate,
+    public EmailListenerAdminController(@Nullable RedisTemplate<String, Object> redisTemplate,
                                         EmailReceiverService emailReceiverService,
-                                        RedisPaymentStore redisPaymentStore) {
+                                        PaymentStore paymentStore,
+                                        RedisCircuitBreaker redisBreaker,
+                                        ListenerStateStore stateStore) {
         this.redisTemplate = redisTemplate;
         this.emailReceiverService = emailReceiverService;
-        this.redisPaymentStore = redisPaymentStore;
+        this.paymentStore = paymentStore;
+        this.redisBreaker = redisBreaker;
+        this.stateStore = stateStore;
     }
 
     private static final Logger log = LoggerFactory.getLogger(EmailListenerAdminController.class);
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisTemplate<String, Object> redisTemplate; // null with payments.store: memory
     private final StringRedisSerializer stringSerializer = new StringRedisSerializer();
 
-    private static final String HEARTBEAT_KEY = "email-listener:heartbeat";
     private static final Duration DEFAULT_MAX_HEARTBEAT_AGE = Duration.ofSeconds(90);
 
-    // Safety limit for scanning business keys (attendance:payments:*). Increase only if you know your dataset size.
-    private static final int BUSINESS_SCAN_LIMIT = 5_000;
+    // the default pattern is answered from index:processed instead of a SCAN
+    private static final String DEFAULT_PROCESSED_PATTERN = "processed:message:*";
 
 
 
@@ -63,31 +77,36 @@ public class EmailListenerAdminController {
     public ResponseEntity<Map<String, Object>> health(@RequestParam(value = "maxAgeSeconds", required = false) Long maxAgeSeconds) {
         Duration maxAge = (maxAgeSeconds == null) ? DEFAULT_MAX_HEARTBEAT_AGE : Duration.ofSeconds(maxAgeSeconds);
         Map<String, Object> resp = new HashMap<>();
-        resp.put("key", HEARTBEAT_KEY);
+        resp.put("key", stateStore.heartbeatLocation());
 
         // Add detailed health info
         Map<String, Object> dependencyHealth = emailReceiverService.getHealthStatus();
         resp.put("dependencies", dependencyHealth);
+        resp.put("redisCircuit", redisBreaker.getStats());
 
-        try {
-            Object rawObj = redisTemplate.opsForValue().get(HEARTBEAT_KEY);
-            String raw = rawObj == null ? null : rawObj.toString();
-            resp.put("lastHeartbeat", raw);
-
-            if (raw == null) {
-                resp.put("status", "DOWN");
-                resp.put("reason", "No heartbeat key found in Redis");
-                return ResponseEntity.status(200).body(resp);
-            }
+        // don't wait out the Redis timeout for the heartbeat while the breaker already knows it's down
+        if (redisBreaker.getState() == RedisCircuitBreaker.State.OPEN) {
+            resp.put("status", "DEGRADED");
+            resp.put("reason", "Redis circuit open");
+            return ResponseEntity.status(200).body(resp);
+        }
 
+        try {
             Instant last;
             try {
-                last = Instant.parse(raw);
+                last = stateStore.lastHeartbeat();
             } catch (DateTimeParseException e) {
                 resp.put("status", "DOWN");
                 resp.put("reason", "Invalid timestamp stored in heartbeat");
                 return ResponseEntity.status(200).body(resp);
             }
+            resp.put("lastHeartbeat", last == null ? null : last.toString());
+
+            if (last == null) {
+                resp.put("status", "DOWN");
+                resp.put("reason", "No heartbeat found in " + stateStore.heartbeatLocation());
+                return ResponseEntity.status(200).body(resp);
+            }
 
             Duration age = Duration.between(last, Instant.now());
             resp.put("ageSeconds", age.getSeconds());
@@ -101,9 +120,9 @@ public class EmailListenerAdminController {
             }
 
         } catch (Exception e) {
-            log.error("Failed to read heartbeat from Redis", e);
+            log.error("Failed to read heartbeat from {}", stateStore.heartbeatLocation(), e);
             resp.put("status", "DOWN");
-            resp.put("reason", "Redis read error: " + e.getMessage());
+            resp.put("reason", "Heartbeat read error: " + e.getMessage());
             return ResponseEntity.status(200).body(resp);
         }
     }
@@ -118,18 +137,8 @@ public class EmailListenerAdminController {
         resp.put("limit", limit);
 
         try {
-            // Scan attendance:payments:* keys
-            List<String> keys = redisPaymentStore.scanKeys("attendance:payments:*", limit);
-            List<Map<String, Object>> active = new ArrayList<>();
-            for (String k : keys) {
-                Map<Object, Object> hash = redisTemplate.opsForHash().entries(k);
-                if (hash != null && "received".equals(hash.get("status"))) {
-                    Map<String, Object> payment = new LinkedHashMap<>();
-                    hash.forEach((kk, vv) -> payment.put(kk.toString(), vv));
-                    payment.put("_redisKey", k);
-                    active.add(payment);
-                }
-            }
+            // index range read + one pipelined fetch of the records
+            List<Map<String, Object>> active = paymentStore.recentPayments(limit);
             resp.put("found", active.size());
             resp.put("payments", active);
             return ResponseEntity.ok(resp);
@@ -139,6 +148,23 @@ public class EmailListenerAdminController {
         }
     }
 
+    @GetMapping("/consumed")
+    public ResponseEntity<Map<String, Object>> listConsumedPayments(
+            @RequestParam(value = "limit", defaultValue = "100") int limit
+    ) {
+        Map<String, Object> resp = new LinkedHashMap<>();
+        resp.put("limit", limit);
+        try {
+            List<Map<String, Object>> consumed = paymentStore.recentConsumed(limit);
+            resp.put("found", consumed.size());
+            resp.put("payments", consumed);
+            return ResponseEntity.ok(resp);
+        } catch (Exception e) {
+            resp.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(resp);
+        }
+    }
+
     // ---------------- Processed listing with attached payment data ----------------
 
     /**
@@ -171,14 +197,36 @@ public class EmailListenerAdminController {
         resp.put("limit", limit);
 
         try {
-            // 1) scan processed keys
+            if (DEFAULT_PROCESSED_PATTERN.equals(pattern)) {
+                // newest claims from the index; every entry is a string key holding its messageId
+                List<String> messageIds = paymentStore.recentMessageIds(limit);
+                List<Map<String, Object>> payments = paymentStore.paymentsForMessages(messageIds);
+                resp.put("found", messageIds.size());
+                List<Object> entries = new ArrayList<>(messageIds.size());
+                for (int i = 0; i < messageIds.size(); i++) {
+                    Map<String, Object> kv = new LinkedHashMap<>();
+                    kv.put("key", paymentStore.processedKeyFor(messageIds.get(i)));
+                    kv.put("type", DataType.STRING.code());
+                    kv.put("value", messageIds.get(i));
+                    kv.put("payment", payments.get(i)); // may be null
+                    entries.add(kv);
+                }
+                resp.put("entries", entries);
+                return ResponseEntity.ok(resp);
+            }
+
+            if (redisTemplate == null) {
+                resp.put("status", "error");
+                resp.put("message", "Custom patterns need payments.store=redis; use the default pattern");
+                return ResponseEntity.badRequest().body(resp);
+            }
+
+            // custom pattern: SCAN is unavoidable, but payments come from the index in one pipelined pass
             List<String> processedKeys = scanKeys(pattern, limit);
             resp.put("found", processedKeys.size());
 
-            // 2) build a map messageId -> paymentData by scanning attendance:payments:*
-            Map<String, Map<String, Object>> messageIdToPayment = buildMessageIdToPaymentMap(BUSINESS_SCAN_LIMIT);
-
-            List<Object> entries = new ArrayList<>(processedKeys.size());
+            List<Map<String, Object>> entries = new ArrayList<>(processedKeys.size());
+            List<String> messageIds = new ArrayList<>(processedKeys.size());
             for (String k : processedKeys) {
                 Map<String, Object> kv = new LinkedHashMap<>();
                 kv.put("key", k);
@@ -202,18 +250,18 @@ public class EmailListenerAdminController {
                     kv.put("info", fetchOverviewForComplexType(k, type));
                 }
 
-                String messageId = value == null ? null : value.toString();
-
-                // attach payment info (if we found one in the business scan)
-                Map<String, Object> payment = null;
-                if (messageId != null) {
-                    payment = messageIdToPayment.get(messageId);
-                }
-                kv.put("payment", payment); // may be null
-
+                messageIds.add(value == null ? null : value.toString());
                 entries.add(kv);
             }
 
+            // attach payment info by messageId (null where there is none)
+            List<String> lookup = new ArrayList<>();
+            for (String mid : messageIds) if (mid != null) lookup.add(mid);
+            Iterator<Map<String, Object>> payments = paymentStore.paymentsForMessages(lookup).iterator();
+            for (int i = 0; i < entries.size(); i++) {
+                entries.get(i).put("payment", messageIds.get(i) == null ? null : payments.next());
+            }
+
             resp.put("entries", entries);
             return ResponseEntity.ok(resp);
 
@@ -254,55 +302,6 @@ public class EmailListenerAdminController {
         });
     }
 
-    /**
-     * Build a map from messageId -> paymentData by scanning attendance:payments:* hashes.
-     *
-     * We limit the number of business keys scanned to `businessScanLimit` to avoid high
-     * latency on very large datasets. If you expect many business keys, increase the limit
-     * or implement a dedicated index mapping (recommended).
-     */
-    private Map<String, Map<String, Object>> buildMessageIdToPaymentMap(int businessScanLimit) {
-        Map<String, Map<String, Object>> out = new HashMap<>();
-
-        // scan attendance:payments:* keys
-        List<String> businessKeys = scanKeys("attendance:payments:*", businessScanLimit);
-        for (String bkey : businessKeys) {
-            try {
-                DataType dt = redisTemplate.type(bkey);
-                if (dt == DataType.HASH) {
-                    Map<Object, Object> raw = redisTemplate.opsForHash().entries(bkey);
-                    if (raw == null || raw.isEmpty()) continue;
-
-                    // Convert hash fields to Map<String,Object>
-                    Map<String, Object> paymentMap = new LinkedHashMap<>();
-                    raw.forEach((k, v) -> {
-                        String ks = k == null ? null : k.toString();
-                        Object vs = v;
-                        paymentMap.put(ks, vs);
-                    });
-
-                    // Expect 'messageId' field in business hash (as saved by the Lua script)
-                    Object midObj = raw.get("messageId");
-                    if (midObj != null) {
-                        String mid = midObj.toString();
-                        out.put(mid, paymentMap);
-                    } else {
-                        // optionally index by paymentId if present
-                        Object pidObj = raw.get("paymentId");
-                        if (pidObj != null) {
-                            String pid = pidObj.toString();
-                            paymentMap.put("_businessKey", bkey);
-                            out.put("paymentId:" + pid, paymentMap); // alternate lookup
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                log.warn("Failed to read business key {}", bkey, e);
-            }
-        }
-        return out;
-    }
-
     /**
      * Provide a small overview for non-string/hash types (list/set/zset).
      */
@@ -1,7 +1,9 @@
 package com.events.paymentverifsystem.Controller;
 
+import com.events.paymentverifsystem.Utilities.Payment.PaymentFieldParser;
 import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
-import com.events.paymentverifsystem.Utilities.Redis.RedisPaymentStore;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentStore;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentStoreUnavailableException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -10,71 +12,137 @@ import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.validation.Validator;
 import javax.validation.Valid;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 @RestController
 @RequestMapping("/api/payments")
 public class PaymentVerificationController {
     private static final Logger log = LoggerFactory.getLogger(PaymentVerificationController.class);
 
-    private final RedisPaymentStore redisPaymentStore;
+    // one desk's attendee list; bigger lists go in several calls
+    private static final int MAX_BATCH_ITEMS = 500;
 
-    public PaymentVerificationController(RedisPaymentStore redisPaymentStore) {
-        this.redisPaymentStore = redisPaymentStore;
+    private final PaymentStore paymentStore;
+    private final Validator validator; // same constraints @Valid applies to /verify
+
+    public PaymentVerificationController(PaymentStore paymentStore, Validator validator) {
+        this.paymentStore = paymentStore;
+        this.validator = validator;
     }
 
     /**
      * Verify and consume a pending payment by email + amount.
      * On success: returns 200 with the PaymentInfo that was consumed.
      * On not found: returns 404.
+     * Redis down or its circuit open: returns 503 at once, so the client can retry instead of being told
+     * the payment doesn't exist.
+     *
+     * Async: the request thread is released while Redis answers, the response is written on completion.
      */
     @PostMapping("/verify")
-    public ResponseEntity<VerifyResponse> verifyAndConsume(@Valid @RequestBody VerifyRequest req) {
+    public CompletionStage<ResponseEntity<VerifyResponse>> verifyAndConsume(@Valid @RequestBody VerifyRequest req) {
         String email = req.getEmail().trim().toLowerCase(Locale.ROOT);
-        String amountNormalized = normalizeAmount(req.getAmount());
+        long amountMinor = req.resolveAmountMinor();
 
-        log.info("Verification request received for email={} amount={}", email, amountNormalized);
+        log.info("Verification request received for email={} amountMinor={}", email, amountMinor);
 
-        PaymentInfo info = redisPaymentStore.consumeByEmailAndAmount(email, amountNormalized);
-        if (info == null) {
-            log.info("No matching payment found for email={} amount={}", email, amountNormalized);
-            VerifyResponse resp = new VerifyResponse(false, "Payment not found", null);
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(resp);
-        }
+        return paymentStore.consumeByEmailAndAmountAsync(email, amountMinor).handle((info, err) -> {
+            if (err != null) {
+                Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+                if (!(cause instanceof PaymentStoreUnavailableException)) throw new CompletionException(cause);
+                log.warn("Payment store unavailable for email={} amountMinor={}: {}", email, amountMinor, cause.getMessage());
+                VerifyResponse resp = new VerifyResponse(false, "Payment verification temporarily unavailable, please retry", null);
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "5").body(resp);
+            }
+            if (info == null) {
+                log.info("No matching payment found for email={} amountMinor={}", email, amountMinor);
+                VerifyResponse resp = new VerifyResponse(false, "Payment not found", null);
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(resp);
+            }
 
-        // success
-        log.info("Payment consumed for email={} paymentId={}", email, info.getPaymentId());
-        VerifyResponse resp = new VerifyResponse(true, "Payment verified", info);
+            // success
+            log.info("Payment consumed for email={} paymentId={}", email, info.getPaymentId());
+            VerifyResponse resp = new VerifyResponse(true, "Payment verified", info);
 
-        return ResponseEntity.ok(resp);
+            return ResponseEntity.ok(resp);
+        });
     }
 
+    /**
+     * Batch form of /verify for check-in desks reconciling a whole list in one call:
+     * {"items": [{"email": ..., "amount": ...}, ...]}, up to 500 items.
+     *
+     * 200 once the batch was attempted, with one result per item in request order: VERIFIED (payment attached),
+     * NOT_FOUND, INVALID (fails the same checks as /verify, not looked up) or UNAVAILABLE (Redis didn't answer for it,
+     * retry that item), and the counts per status on top. 400 for an empty or oversized list, 503 when Redis
+     * can't be asked at all. The same email + amount twice in one batch is consumed once; the other copy is NOT_FOUND.
+     */
+    @PostMapping("/verify/batch")
+    public CompletionStage<ResponseEntity<VerifyBatchResponse>> verifyAndConsumeBatch(@RequestBody VerifyBatchRequest req) {
+        List<VerifyRequest> items = req.getItems() == null ? List.of() : req.getItems();
+        if (items.isEmpty() || items.size() > MAX_BATCH_ITEMS) {
+            VerifyBatchResponse resp = VerifyBatchResponse.rejected("items must hold 1 to " + MAX_BATCH_ITEMS + " entries");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(resp));
+        }
 
-    private String normalizeAmount(String raw) {
-        if (raw == null) return "";
-        String cleaned = raw.replaceAll("[^0-9.]", "").trim();
-        if (cleaned.isEmpty()) return "";
-        try {
-            // Ensure two decimals
-            if (!cleaned.contains(".")) {
-                return cleaned + ".00";
-            } else {
-                String[] parts = cleaned.split("\\.", 2);
-                String intPart = parts[0].isEmpty() ? "0" : parts[0];
-                String frac = parts.length > 1 ? parts[1] : "";
-                if (frac.length() == 0) frac = "00";
-                if (frac.length() == 1) frac = frac + "0";
-                if (frac.length() > 2) frac = frac.substring(0, 2); // cut extra precision
-                return intPart + "." + frac;
+        VerifyBatchResponse.Item[] results = new VerifyBatchResponse.Item[items.size()];
+        List<Integer> lookup = new ArrayList<>(items.size());
+        List<String> emails = new ArrayList<>(items.size());
+        List<Long> amounts = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            VerifyRequest item = items.get(i);
+            String email = item == null || item.getEmail() == null ? "" : item.getEmail().trim().toLowerCase(Locale.ROOT);
+            long amountMinor = item == null ? PaymentFieldParser.NO_AMOUNT : item.resolveAmountMinor();
+            if (item == null || !validator.validate(item).isEmpty()) {
+                results[i] = new VerifyBatchResponse.Item(i, email.isEmpty() ? null : email,
+                        amountMinor == PaymentFieldParser.NO_AMOUNT ? null : amountMinor, VerifyBatchResponse.Status.INVALID, null);
+                continue;
             }
-        } catch (Exception e) {
-            return cleaned;
+            results[i] = new VerifyBatchResponse.Item(i, email, amountMinor, null, null);
+            lookup.add(i);
+            emails.add(email);
+            amounts.add(amountMinor);
         }
-    }
 
+        log.info("Batch verification request received: {} item(s), {} to look up", items.size(), lookup.size());
+
+        return paymentStore.consumeByEmailsAndAmountsAsync(emails, amounts).handle((found, err) -> {
+            if (err != null) {
+                Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+                if (!(cause instanceof PaymentStoreUnavailableException)) throw new CompletionException(cause);
+                log.warn("Payment store unavailable for a batch of {}: {}", lookup.size(), cause.getMessage());
+                VerifyBatchResponse resp = VerifyBatchResponse.rejected("Payment verification temporarily unavailable, please retry");
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "5").body(resp);
+            }
+            for (int k = 0; k < lookup.size(); k++) {
+                VerifyBatchResponse.Item item = results[lookup.get(k)];
+                Optional<PaymentInfo> r = found.get(k);
+                if (r == null) {
+                    item.setStatus(VerifyBatchResponse.Status.UNAVAILABLE);
+                } else if (r.isPresent()) {
+                    item.setStatus(VerifyBatchResponse.Status.VERIFIED);
+                    item.setPayment(r.get());
+                } else {
+                    item.setStatus(VerifyBatchResponse.Status.NOT_FOUND);
+                }
+            }
+            VerifyBatchResponse resp = VerifyBatchResponse.of(Arrays.asList(results));
+            log.info("Batch verification: {} verified, {} not found, {} invalid, {} unavailable",
+                    resp.getVerified(), resp.getNotFound(), resp.getInvalid(), resp.getUnavailable());
+            return ResponseEntity.ok(resp);
+        });
+    }
 
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(MethodArgumentNotValidException.class)
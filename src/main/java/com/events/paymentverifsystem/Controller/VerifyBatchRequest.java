@@ -0,0 +1,21 @@
+package com.events.paymentverifsystem.Controller;
+
+import java.util.List;
+
+/**
+ * Body of POST /api/payments/verify/batch: {"items": [{"email": ..., "amount": ... | "amountMinor": ...}, ...]}.
+ * Items are checked one by one, so a bad entry doesn't reject the rest.
+ */
+public class VerifyBatchRequest {
+
+    private List<VerifyRequest> items;
+
+    public VerifyBatchRequest() {}
+
+    public VerifyBatchRequest(List<VerifyRequest> items) {
+        this.items = items;
+    }
+
+    public List<VerifyRequest> getItems() { return items; }
+    public void setItems(List<VerifyRequest> items) { this.items = items; }
+}
@@ -0,0 +1,87 @@
+package com.events.paymentverifsystem.Controller;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+
+import java.util.List;
+
+/**
+ * Per-item results of a batch verification, in request order, with the counts per status on top.
+ */
+public class VerifyBatchResponse {
+
+    public enum Status {
+        VERIFIED,     // consumed, payment attached
+        NOT_FOUND,    // no pending payment for this email + amount
+        INVALID,      // missing email or amount, not looked up
+        UNAVAILABLE   // Redis didn't answer for this item; retry it
+    }
+
+    private int requested;
+    private int verified;
+    private int notFound;
+    private int invalid;
+    private int unavailable;
+    private String message;
+    private List<Item> results;
+
+    public VerifyBatchResponse() {}
+
+    public static VerifyBatchResponse of(List<Item> results) {
+        VerifyBatchResponse r = new VerifyBatchResponse();
+        r.results = results;
+        r.requested = results.size();
+        for (Item item : results) {
+            switch (item.getStatus()) {
+                case VERIFIED -> r.verified++;
+                case NOT_FOUND -> r.notFound++;
+                case INVALID -> r.invalid++;
+                case UNAVAILABLE -> r.unavailable++;
+            }
+        }
+        r.message = r.unavailable > 0 ? "Partially processed, retry the UNAVAILABLE items"
+                : r.verified == r.requested ? "All payments verified" : "Processed";
+        return r;
+    }
+
+    // nothing was looked up
+    public static VerifyBatchResponse rejected(String message) {
+        VerifyBatchResponse r = new VerifyBatchResponse();
+        r.message = message;
+        r.results = List.of();
+        return r;
+    }
+
+    public int getRequested() { return requested; }
+    public int getVerified() { return verified; }
+    public int getNotFound() { return notFound; }
+    public int getInvalid() { return invalid; }
+    public int getUnavailable() { return unavailable; }
+    public String getMessage() { return message; }
+    public List<Item> getResults() { return results; }
+
+    public static class Item {
+        private final int index;
+        private final String email;
+        private final Long amountMinor;
+        private Status status;
+        private PaymentInfo payment;
+
+        public Item(int index, String email, Long amountMinor, Status status, PaymentInfo payment) {
+            this.index = index;
+            this.email = email;
+            this.amountMinor = amountMinor;
+            this.status = status;
+            this.payment = payment;
+        }
+
+        public int getIndex() { return index; }
+        public String getEmail() { return email; }
+        public Long getAmountMinor() { return amountMinor; }
+
+        public Status getStatus() { return status; }
+        public void setStatus(Status status) { this.status = status; }
+
+        public PaymentInfo getPayment() { return payment; }
+        public void setPayment(PaymentInfo payment) { this.payment = payment; }
+    }
+}
@@ -1,5 +1,7 @@
 package com.events.paymentverifsystem.Controller;
 
+import com.events.paymentverifsystem.Utilities.Payment.PaymentFieldParser;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 
@@ -9,8 +11,12 @@ public class VerifyRequest {
     @Email(message = "invalid email format")
     private String email;
 
-    @NotBlank(message = "amount is required")
+    /**
+     * Either amount ("1499.50", "1,499.5", also accepted as a JSON number) or amountMinor (149950 paise).
+     * amountMinor wins if both are sent.
+     */
     private String amount;
+    private Long amountMinor;
 
     public VerifyRequest() {}
 
@@ -24,4 +30,20 @@ public class VerifyRequest {
 
     public String getAmount() { return amount; }
     public void setAmount(String amount) { this.amount = amount; }
+
+    public Long getAmountMinor() { return amountMinor; }
+    public void setAmountMinor(Long amountMinor) { this.amountMinor = amountMinor; }
+
+    /**
+     * Requested amount in paise, PaymentFieldParser.NO_AMOUNT if missing or unparseable.
+     */
+    public long resolveAmountMinor() {
+        if (amountMinor != null) return amountMinor >= 0 ? amountMinor : PaymentFieldParser.NO_AMOUNT;
+        return PaymentFieldParser.parseAmountMinor(amount);
+    }
+
+    @AssertTrue(message = "amount is required")
+    public boolean isAmountValid() {
+        return resolveAmountMinor() != PaymentFieldParser.NO_AMOUNT;
+    }
 }
@@ -2,8 +2,10 @@ package com.events.paymentverifsystem;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
 
-@SpringBootApplication
+// RedisConfig builds the Redis beans, and only when payments.store is redis
+@SpringBootApplication(exclude = RedisAutoConfiguration.class)
 public class PaymentVerifSystemApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,166 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentStore;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drops resent / forwarded receipts under new Message-IDs, at two points:
+ *
+ *   body stage     duplicateBodies(): the digest of the fetched text part (ContentFingerprint.ofBody). A resend
+ *                  with the same text is moved to Processed without being parsed.
+ *   persist stage  duplicates(): the parsed payment id (ContentFingerprint.ofPayment), which also catches
+ *                  forwards, whose text differs, before the Redis claim.
+ *
+ * Both only read: a small local LRU (fingerprint -> owning Message-ID), then one pipelined GET for the rest.
+ * register() records ownership of both fingerprints (SET NX, shared across instances) once a claim has
+ * succeeded or is held by the journal, so a body digest only ever points at a message whose parse gave a
+ * claimed payment: the same text parses to the same payment id. A message that fails before that owns
+ * nothing, so its resends still go through. A message is only a duplicate if a fingerprint is owned by a
+ * different Message-ID, so a retry of the same message after a crash still goes through.
+ */
+@Component
+public class ContentDedupeIndex {
+
+    private final PaymentStore paymentStore;
+    private final boolean enabled;
+    private final int ttlSeconds;
+    private final Map<String, String> local;
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder bodiesChecked = new LongAdder();
+    private final LongAdder bodyDuplicates = new LongAdder();
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder registered = new LongAdder();
+
+    public ContentDedupeIndex(PaymentStore paymentStore, EmailProcessedStoreProperties props) {
+        this.paymentStore = paymentStore;
+        this.enabled = props.isContentDedupe();
+        this.ttlSeconds = (int) props.getContentTtlSeconds();
+        int capacity = Math.max(16, props.getContentLocalEntries());
+        this.local = new LinkedHashMap<>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Index-aligned with msgs: true if a message with the same text was already claimed under another
+     * Message-ID. Skipping the parse for those is the point; the rest still get duplicates() after parsing.
+     */
+    public List<Boolean> duplicateBodies(List<FetchedMessage> msgs) {
+        List<String> fps = new ArrayList<>(msgs.size());
+        List<String> ids = new ArrayList<>(msgs.size());
+        for (FetchedMessage fm : msgs) {
+            fps.add(enabled ? fm.bodyFingerprint() : null);
+            ids.add(fm.getMessageId());
+        }
+        List<Boolean> out = ownedElsewhere(fps, ids, bodiesChecked);
+        for (Boolean dup : out) if (dup) bodyDuplicates.increment();
+        return out;
+    }
+
+    /**
+     * Index-aligned with infos: true if the payment was already claimed under another Message-ID.
+     */
+    public List<Boolean> duplicates(List<PaymentInfo> infos) {
+        List<String> fps = new ArrayList<>(infos.size());
+        List<String> ids = new ArrayList<>(infos.size());
+        for (PaymentInfo info : infos) {
+            fps.add(ContentFingerprint.ofPayment(info.getPaymentId()));
+            ids.add(info.getMessageId());
+        }
+        List<Boolean> out = ownedElsewhere(fps, ids, checked);
+        for (Boolean dup : out) if (dup) duplicates.increment();
+        return out;
+    }
+
+    // true where fps[i] is owned by a Message-ID other than ids[i]; null fingerprints are never duplicates
+    private List<Boolean> ownedElsewhere(List<String> fps, List<String> ids, LongAdder checkedCounter) {
+        List<Boolean> out = new ArrayList<>(fps.size());
+        for (int i = 0; i < fps.size(); i++) out.add(false);
+        if (!enabled || fps.isEmpty()) return out;
+
+        List<Integer> remoteIdx = new ArrayList<>();
+        List<String> remoteFps = new ArrayList<>();
+        synchronized (local) {
+            for (int i = 0; i < fps.size(); i++) {
+                String fp = fps.get(i);
+                if (fp == null) continue;
+                checkedCounter.increment();
+                String owner = local.get(fp);
+                if (owner != null) {
+                    localHits.increment();
+                    out.set(i, !owner.equals(ids.get(i)));
+                    continue;
+                }
+                remoteIdx.add(i);
+                remoteFps.add(fp);
+            }
+        }
+        if (!remoteFps.isEmpty()) {
+            List<String> owners = paymentStore.contentOwners(remoteFps);
+            synchronized (local) {
+                for (int k = 0; k < remoteFps.size(); k++) {
+                    String owner = owners.get(k);
+                    if (owner == null) continue;
+                    local.put(remoteFps.get(k), owner);
+                    out.set(remoteIdx.get(k), !owner.equals(ids.get(remoteIdx.get(k))));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Records these claimed payments, and the text they were parsed from (bodyFingerprints, index-aligned,
+     * entries may be null), as owned by their Message-IDs; the first owner of a fingerprint wins.
+     */
+    public void register(List<PaymentInfo> claimed, List<String> bodyFingerprints) {
+        if (!enabled || claimed.isEmpty()) return;
+        List<String> fps = new ArrayList<>(claimed.size() * 2);
+        List<String> ids = new ArrayList<>(claimed.size() * 2);
+        for (int i = 0; i < claimed.size(); i++) {
+            PaymentInfo info = claimed.get(i);
+            String fp = ContentFingerprint.ofPayment(info.getPaymentId());
+            if (fp == null) continue;
+            fps.add(fp);
+            ids.add(info.getMessageId());
+            String body = bodyFingerprints.get(i);
+            if (body != null) {
+                fps.add(body);
+                ids.add(info.getMessageId());
+            }
+        }
+        if (fps.isEmpty()) return;
+        List<String> owners = paymentStore.claimContent(fps, ids, ttlSeconds);
+        synchronized (local) {
+            for (int k = 0; k < fps.size(); k++) local.put(fps.get(k), owners.get(k));
+        }
+        registered.add(fps.size());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("enabled", enabled);
+        s.put("checked", checked.sum());
+        s.put("duplicates", duplicates.sum());
+        s.put("bodiesChecked", bodiesChecked.sum());
+        s.put("bodyDuplicates", bodyDuplicates.sum());
+        s.put("localHits", localHits.sum());
+        s.put("registered", registered.sum());
+        synchronized (local) {
+            s.put("localEntries", local.size());
+        }
+        return s;
+    }
+}
@@ -0,0 +1,84 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+
+/**
+ * Cheap identities for messages.
+ *
+ *   ofPayment(id)  - "pid:pay_XXXX" for a parsed gateway payment id: resends and forwards of the same
+ *                    receipt share it.
+ *   ofBody(text)   - "body:" + digest of the fetched text part with whitespace runs collapsed: a resend of
+ *                    the same receipt shares it before anything is parsed, a forward (quoted, re-wrapped)
+ *                    usually doesn't and is left to ofPayment.
+ *   headerDigest() - stable stand-in for a missing Message-ID, from envelope fields only.
+ */
+final class ContentFingerprint {
+
+    private static final int DIGEST_BYTES = 16;
+
+    private ContentFingerprint() {}
+
+    static String ofPayment(String paymentId) {
+        return paymentId == null || paymentId.isBlank() ? null : "pid:" + paymentId;
+    }
+
+    static String ofBody(String text) {
+        if (text == null || text.isBlank()) return null;
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || c == '\u00A0') {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) sb.append(' ');
+            space = false;
+            sb.append(c);
+        }
+        return "body:" + hex(sha256().digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * From, Subject, Date, INTERNALDATE and size: the same for every fetch of the same stored message,
+     * unlike the hashCode/time-based id used before.
+     */
+    static String headerDigest(Message message) {
+        StringBuilder sb = new StringBuilder(128);
+        try {
+            Address[] from = message.getFrom();
+            if (from != null && from.length > 0) sb.append(from[0]);
+        } catch (Exception ignored) {}
+        sb.append('|');
+        try { sb.append(message.getSubject()); } catch (Exception ignored) {}
+        sb.append('|');
+        try { sb.append(millis(message.getSentDate())); } catch (Exception ignored) {}
+        sb.append('|');
+        try { sb.append(millis(message.getReceivedDate())); } catch (Exception ignored) {}
+        sb.append('|');
+        try { sb.append(message.getSize()); } catch (Exception ignored) {}
+        return hex(sha256().digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static long millis(Date d) {
+        return d == null ? 0 : d.getTime();
+    }
+
+    private static String hex(byte[] digest) {
+        return HexFormat.of().formatHex(digest, 0, DIGEST_BYTES);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package com.events.paymentverifsystem.Utilities.Email;
 
 
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,25 +9,20 @@ import javax.mail.BodyPart;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Multipart;
-import javax.mail.internet.InternetAddress;
 import java.io.IOException;
-import java.time.*;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.time.temporal.TemporalAccessor;
+import java.time.Instant;
 import java.util.Arrays;
-import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentFieldParser;
 import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
 public final class EmailParser {
     private static final Logger log = LoggerFactory.getLogger(EmailParser.class);
 
-    private static final Pattern PAYMENT_ID_PATTERN = Pattern.compile("(pay_[A-Za-z0-9_\\-]+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern AMOUNT_PATTERN = Pattern.compile("₹\\s*([0-9,]+(?:\\.[0-9]{1,2})?)|Rs\\.?\\s*([0-9,]+(?:\\.[0-9]{1,2})?)", Pattern.CASE_INSENSITIVE);
     private static final Pattern PAID_ON_PATTERN = Pattern.compile("(\\d{1,2}(?:st|nd|rd|th)?\\s+\\w{3,}\\,?\\s+\\d{4})", Pattern.CASE_INSENSITIVE);
     private static final Pattern EMAIL_PATTERN = Pattern.compile("([A-Za-z0-9._%+\\-]+@[A-Za-z0-9.\\-]+\\.[A-Za-z]{2,})");
-    private static final Pattern PHONE_PATTERN = Pattern.compile("(?:\\+?91[\\-\\s]?)?(\\d{10})");
+    private static final Pattern UPI = Pattern.compile("upi", Pattern.CASE_INSENSITIVE | Pattern.LITERAL);
+    private static final Pattern CARD = Pattern.compile("card", Pattern.CASE_INSENSITIVE | Pattern.LITERAL);
 
     private EmailParser() {}
 
@@ -38,34 +31,59 @@ public final class EmailParser {
      * Returns null if parser couldn't find paymentId and amount.
      */
     public static PaymentInfo parse(Message message) {
+        return parse(FetchedMessage.from(-1, message));
+    }
+
+    /**
+     * Same as parse(Message) but works on an already fetched copy, so no IMAP access happens here.
+     */
+    public static PaymentInfo parse(FetchedMessage message) {
+        return parse(new ParseContext(message), null);
+    }
+
+    /**
+     * DOM: jsoup document per message. STREAMING: one HtmlStreamScanner pass, with the DOM path only
+     * when that pass misses paymentId or amount (see ExtractionTemplateRegistry).
+     */
+    public enum Mode { DOM, STREAMING }
+
+    /**
+     * Template fields first (see ExtractionTemplateRegistry), generic extraction for whatever the template
+     * didn't find. template may be null. Sets ctx.templateComplete.
+     */
+    static PaymentInfo parse(ParseContext ctx, ExtractionTemplate template) {
         try {
-            String subject = safeGetSubject(message);
-            String messageId = safeGetMessageId(message);
-            String rawBody = extractText(message);
-            Document doc = Jsoup.parse(rawBody);
-
-            String merchantName = extractMerchant(doc);
-            String paymentId = extractPaymentId(doc, subject, rawBody);
-            String amount = extractAmount(doc, subject, rawBody);
-            Instant paidOn = extractPaidOn(doc, message, rawBody);
-            String payerEmail = extractPayerEmail(doc, rawBody, message);
-            String phone = extractPhone(doc, rawBody);
-            String method = extractMethod(doc, rawBody);
-
-            if (paymentId == null && amount == null) {
+            String messageId = ctx.messageId;
+            ExtractionTemplate.Fields tf = template == null ? new ExtractionTemplate.Fields() : template.extract(ctx);
+
+            String merchantName = tf.merchant != null ? tf.merchant : extractMerchant(ctx);
+            String paymentId = tf.paymentId != null ? tf.paymentId : extractPaymentId(ctx);
+            long amount = tf.amount != null ? PaymentFieldParser.parseAmountMinor(tf.amount) : PaymentFieldParser.NO_AMOUNT;
+            if (amount == PaymentFieldParser.NO_AMOUNT) amount = extractAmount(ctx);
+            long paidOnMillis = tf.paidOn != null ? PaymentFieldParser.parseGatewayDateTime(tf.paidOn, 0) : PaymentFieldParser.NO_DATE;
+            Instant paidOn = paidOnMillis != PaymentFieldParser.NO_DATE ? Instant.ofEpochMilli(paidOnMillis) : extractPaidOn(ctx);
+            String payerEmail = templateEmail(tf.email);
+            if (payerEmail == null) payerEmail = extractPayerEmail(ctx);
+            String phone = templatePhone(tf.phone);
+            if (phone == null) phone = ctx.phone();
+            String method = PaymentFieldParser.normalizeMethod(tf.method != null ? tf.method : extractMethod(ctx));
+
+            ctx.templateComplete = template != null && tf.paymentId != null && tf.amount != null && tf.paidOn != null
+                    && tf.email != null && tf.phone != null && tf.method != null && tf.merchant != null;
+
+            if (paymentId == null && amount == PaymentFieldParser.NO_AMOUNT) {
                 log.debug("Parser couldn't find paymentId or amount for message {}", messageId);
                 return null;
             }
 
-            if (amount != null) amount = normalizeAmount(amount);
-            return new PaymentInfo(paymentId, amount, paidOn, payerEmail, phone, method, merchantName, subject, messageId);
+            return new PaymentInfo(paymentId, amount, paidOn, payerEmail, phone, method, merchantName, ctx.subject, messageId);
         } catch (Exception e) {
             log.warn("Error parsing email", e);
             return null;
         }
     }
 
-    private static String safeGetSubject(Message m) {
+    static String safeGetSubject(Message m) {
         try { return m.getSubject(); } catch (MessagingException e) { return ""; }
     }
 
@@ -80,10 +98,11 @@ public final class EmailParser {
                 if (mid != null && !mid.isBlank()) return mid;
             }
         } catch (Exception ignored) {}
-        return "synth-" + Math.abs(message.hashCode()) + "-" + System.currentTimeMillis();
+        // stable across fetches, so messages without a Message-ID still dedupe
+        return "synth-" + ContentFingerprint.headerDigest(message);
     }
 
-    private static String extractText(Message message) {
+    static String extractText(Message message) {
         try {
             Object content = message.getContent();
             if (content instanceof String) return (String) content;
@@ -101,131 +120,99 @@ public final class EmailParser {
         return "";
     }
 
-    private static String extractMerchant(Document doc) {
-        Element e = doc.selectFirst("h2, .branding-content, .header h2, .title-content, .content-element");
-        return e != null ? e.text().trim() : null;
+    private static String templateEmail(String value) {
+        if (value == null) return null;
+        Matcher m = EMAIL_PATTERN.matcher(value);
+        return m.find() ? m.group(1).toLowerCase() : null;
     }
 
-    private static String extractPaymentId(Document doc, String subject, String raw) {
-        String text = (doc.text() + " " + subject + " " + raw);
-        Matcher m = PAYMENT_ID_PATTERN.matcher(text);
-        if (m.find()) return m.group(1);
-        // fallback: look in structured rows for label "Payment Id"
-        Element info = doc.selectFirst(".information-row, .merchant-highlight, .card");
-        if (info != null) {
-            Matcher m2 = PAYMENT_ID_PATTERN.matcher(info.text());
-            if (m2.find()) return m2.group(1);
+    // "+91 98765 43210" -> "9876543210" (last ten digits, like the generic phone pattern)
+    private static String templatePhone(String value) {
+        if (value == null) return null;
+        char[] digits = new char[10];
+        int n = 0;
+        for (int i = value.length() - 1; i >= 0 && n < 10; i--) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') digits[9 - n++] = c;
         }
-        return null;
+        return n == 10 ? new String(digits) : null;
     }
 
-    private static String extractAmount(Document doc, String subject, String raw) {
-        String text = (doc.text() + " " + subject + " " + raw);
-        Matcher m = AMOUNT_PATTERN.matcher(text);
-        if (m.find()) {
-            String g1 = m.group(1);
-            String g2 = m.group(2);
-            return g1 != null && !g1.isBlank() ? g1 : g2;
+    private static String extractMerchant(ParseContext ctx) {
+        if (ctx.streamed != null) return ctx.streamed.first(HtmlStreamScanner.MERCHANT);
+        Element e = ctx.doc().selectFirst("h2, .branding-content, .header h2, .title-content, .content-element");
+        return e != null ? e.text().trim() : null;
+    }
+
+    private static String extractPaymentId(ParseContext ctx) {
+        // found by the combined scan; structured rows are part of the visible text, so no second pass needed
+        return ctx.paymentId();
+    }
+
+    private static long extractAmount(ParseContext ctx) {
+        long scanned = ctx.amountMinor();
+        if (scanned != PaymentFieldParser.NO_AMOUNT) return scanned;
+        String rupee;
+        if (ctx.streamed != null) {
+            rupee = ctx.streamed.first(HtmlStreamScanner.AMOUNT);
+        } else {
+            Element el = ctx.doc().selectFirst(".amount, .rupees, .symbol");
+            rupee = el == null ? null : el.text();
         }
-        Element rupee = doc.selectFirst(".amount, .rupees, .symbol");
-        if (rupee != null) return rupee.text().replaceAll("[^0-9.,]", "");
-        return null;
+        return rupee == null ? PaymentFieldParser.NO_AMOUNT : PaymentFieldParser.parseAmountMinor(rupee);
     }
 
-    private static Instant extractPaidOn(Document doc, Message message, String raw) {
+    private static Instant extractPaidOn(ParseContext ctx) {
         String marker = "Paid On";
-        String textSource = doc.text();
+        String textSource = ctx.visibleText();
 
         // First try: look for "Paid On" in HTML text
         int startIndex = textSource.indexOf(marker);
         if (startIndex != -1) {
-            String afterMarker = textSource.substring(startIndex + marker.length()).trim();
-            Instant parsed = tryParsePaidOn(afterMarker);
-            if (parsed != null) return parsed;
+            long parsed = PaymentFieldParser.parseGatewayDateTime(textSource, startIndex + marker.length());
+            if (parsed != PaymentFieldParser.NO_DATE) return Instant.ofEpochMilli(parsed);
         }
 
         // Second try: look for ISO date in whole raw text
-        Matcher iso = Pattern.compile("(\\d{4}-\\d{2}-\\d{2}[T\\s]\\d{2}:\\d{2}(?::\\d{2})?(?:Z|[+-]\\d{2}:?\\d{2})?)")
-                .matcher(textSource);
-        if (iso.find()) {
-            try {
-                return Instant.parse(iso.group(1).replace(' ', 'T'));
-            } catch (Exception ignored) {}
-        }
+        long iso = PaymentFieldParser.findIsoInstant(textSource);
+        if (iso != PaymentFieldParser.NO_DATE) return Instant.ofEpochMilli(iso);
 
         // Fallback: email sent date
-        try {
-            java.util.Date sent = message.getSentDate();
-            if (sent != null) return sent.toInstant();
-        } catch (MessagingException ignored) {}
+        if (ctx.sentDate != null) return ctx.sentDate.toInstant();
 
         // Last fallback: now
         return Instant.now();
     }
 
-    // helper to try multiple patterns
-    private static Instant tryParsePaidOn(String dateStr) {
-        DateTimeFormatter[] formatters = {
-                DateTimeFormatter.ofPattern("d MMM, yyyy hh:mm:ss a 'UTC'XXX", Locale.ENGLISH),
-                DateTimeFormatter.ofPattern("d MMM, yyyy hh:mm a 'UTC'XXX", Locale.ENGLISH),
-                DateTimeFormatter.ofPattern("d MMM, yyyy", Locale.ENGLISH)
-        };
-        for (DateTimeFormatter fmt : formatters) {
-            try {
-                TemporalAccessor ta = fmt.parse(dateStr);
-                if (ta instanceof LocalDateTime) {
-                    return ((LocalDateTime) ta).atZone(ZoneId.of("UTC")).toInstant();
-                }
-                if (ta instanceof LocalDate) {
-                    return ((LocalDate) ta).atStartOfDay(ZoneId.of("UTC")).toInstant();
-                }
-            } catch (DateTimeParseException ignored) {}
+    private static String extractPayerEmail(ParseContext ctx) {
+        String emailText;
+        if (ctx.streamed != null) {
+            emailText = ctx.streamed.emailValue();
+        } else {
+            Element emailEl = ctx.doc().selectFirst(".information-row:contains(Email) .value, .card:contains(Email) .value");
+            emailText = emailEl == null ? null : emailEl.text();
         }
-        return null;
-    }
-
-
-
-    private static String extractPayerEmail(Document doc, String raw, Message message) {
-        Element emailEl = doc.selectFirst(".information-row:contains(Email) .value, .card:contains(Email) .value");
-        if (emailEl != null) {
-            Matcher m = EMAIL_PATTERN.matcher(emailEl.text());
+        if (emailText != null) {
+            Matcher m = EMAIL_PATTERN.matcher(emailText);
             if (m.find()) return m.group(1).toLowerCase();
         }
-        Matcher m = EMAIL_PATTERN.matcher(raw);
+        Matcher m = EMAIL_PATTERN.matcher(ctx.raw);
         if (m.find()) return m.group(1).toLowerCase();
-        try {
-            javax.mail.Address[] froms = message.getFrom();
-            if (froms != null && froms.length > 0) {
-                String addr = ((InternetAddress) froms[0]).getAddress();
-                if (addr != null && !addr.isBlank()) return addr.toLowerCase();
-            }
-        } catch (Exception ignored) {}
+        if (ctx.fromAddress != null && !ctx.fromAddress.isBlank()) return ctx.fromAddress.toLowerCase();
         return null;
     }
 
-    private static String extractPhone(Document doc, String raw) {
-        Matcher m = PHONE_PATTERN.matcher(doc.text());
-        if (m.find()) return m.group(1);
-        m = PHONE_PATTERN.matcher(raw);
-        if (m.find()) return m.group(1);
-        return null;
-    }
-
-    private static String extractMethod(Document doc, String raw) {
-        Element methodEl = doc.selectFirst(".information-row:contains(Method) .value, .information-row:contains(UPI)");
-        if (methodEl != null) return methodEl.text();
-        String t = (doc.text() + " " + raw).toLowerCase();
-        if (t.contains("upi")) return "UPI";
-        if (t.contains("card")) return "CARD";
+    private static String extractMethod(ParseContext ctx) {
+        if (ctx.streamed != null) {
+            String streamed = ctx.streamed.methodValue();
+            if (streamed != null) return streamed;
+        } else {
+            Element methodEl = ctx.doc().selectFirst(".information-row:contains(Method) .value, .information-row:contains(UPI)");
+            if (methodEl != null) return methodEl.text();
+        }
+        // case-insensitive search instead of lowercasing a copy of text + raw
+        if (UPI.matcher(ctx.visibleText()).find() || UPI.matcher(ctx.raw).find()) return "UPI";
+        if (CARD.matcher(ctx.visibleText()).find() || CARD.matcher(ctx.raw).find()) return "CARD";
         return null;
     }
-
-    private static String normalizeAmount(String raw) {
-        if (raw == null) return null;
-        String cleaned = raw.replaceAll("[^0-9.]", "");
-        if (cleaned.isBlank()) return null;
-        if (!cleaned.contains(".")) cleaned = cleaned + ".00";
-        return cleaned;
-    }
 }
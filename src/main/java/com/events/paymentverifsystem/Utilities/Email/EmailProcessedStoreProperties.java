@@ -9,6 +9,17 @@ public class EmailProcessedStoreProperties {
 
     private long processedMessageTtlSeconds = 24 * 3600;
 
+    // content fingerprint index (ContentDedupeIndex): resent/forwarded receipts under new Message-IDs
+    private boolean contentDedupe = true;
+    private long contentTtlSeconds = 24 * 3600;
+    private int contentLocalEntries = 10_000;
+
+    // in-process front for the processed check (ProcessedMessageCache)
+    private boolean localCache = true;
+    private long cacheBloomEntries = 100_000;
+    private double cacheBloomFpp = 0.01;
+    private int cacheLruEntries = 50_000;
+
     public long getProcessedMessageTtlSeconds() {
         return processedMessageTtlSeconds;
     }
@@ -16,4 +27,25 @@ public class EmailProcessedStoreProperties {
     public void setProcessedMessageTtlSeconds(long processedMessageTtlSeconds) {
         this.processedMessageTtlSeconds = processedMessageTtlSeconds;
     }
+
+    public boolean isContentDedupe() { return contentDedupe; }
+    public void setContentDedupe(boolean contentDedupe) { this.contentDedupe = contentDedupe; }
+
+    public long getContentTtlSeconds() { return contentTtlSeconds; }
+    public void setContentTtlSeconds(long contentTtlSeconds) { this.contentTtlSeconds = contentTtlSeconds; }
+
+    public int getContentLocalEntries() { return contentLocalEntries; }
+    public void setContentLocalEntries(int contentLocalEntries) { this.contentLocalEntries = contentLocalEntries; }
+
+    public boolean isLocalCache() { return localCache; }
+    public void setLocalCache(boolean localCache) { this.localCache = localCache; }
+
+    public long getCacheBloomEntries() { return cacheBloomEntries; }
+    public void setCacheBloomEntries(long cacheBloomEntries) { this.cacheBloomEntries = cacheBloomEntries; }
+
+    public double getCacheBloomFpp() { return cacheBloomFpp; }
+    public void setCacheBloomFpp(double cacheBloomFpp) { this.cacheBloomFpp = cacheBloomFpp; }
+
+    public int getCacheLruEntries() { return cacheLruEntries; }
+    public void setCacheLruEntries(int cacheLruEntries) { this.cacheLruEntries = cacheLruEntries; }
 }
@@ -39,6 +39,59 @@ public class EmailProperties {
     private int idleReconnectBackoffSeconds = 2;
     private int idleReconnectMaxBackoffSeconds = 100;
 
+    /*
+    sweepIncremental: Only ask the server for UIDs newer than the checkpoint in the ListenerStateStore (default true).
+                      When false, every sweep walks the whole INBOX (legacy behaviour).
+    sweepIntervalMinutes: Delay between sweeps (default 15).
+    sweepLookbackMinutes: Received-date window used when no valid checkpoint exists (default 60).
+     */
+    private boolean sweepIncremental = true;
+    private int sweepIntervalMinutes = 15;
+    private int sweepLookbackMinutes = 60;
+
+    /*
+    moverBatchSize: Queued moves per destination folder that trigger an immediate flush (default 50).
+    moverFlushMillis: Maximum time a handled message waits before its UID MOVE is issued (default 500 ms).
+     */
+    private int moverBatchSize = 50;
+    private long moverFlushMillis = 500;
+
+    /*
+    workerConnections: IMAP connections the ingestion pipeline uses to fetch, flag and move messages,
+                       on top of the single IDLE connection (default 6; Gmail allows 15 per account).
+    connectionBorrowTimeoutMillis: How long a worker waits for a free pooled connection (default 30,000 ms).
+     */
+    private int workerConnections = 6;
+    private long connectionBorrowTimeoutMillis = 30_000;
+
+    /*
+    Admission into the ingestion pipeline (IngestionPipeline's header stage) and its I/O stages:
+    ingestVirtualThreads: Run the I/O stages on virtual threads (default true); false uses platform threads.
+    ingestMaxConcurrent: Bodies downloaded at the same time; 0 means workerConnections (default 0).
+    ingestQueueCapacity: Messages that may wait to enter the pipeline before the overflow policy applies (default 1000).
+    ingestOverflowPolicy: BLOCK, DROP or CALLER_RUNS when that queue is full (default BLOCK).
+    ingestBlockTimeoutMillis: How long BLOCK waits for queue space before rejecting (default 5,000 ms).
+     */
+    private boolean ingestVirtualThreads = true;
+    private int ingestMaxConcurrent = 0;
+    private int ingestQueueCapacity = 1000;
+    private PipelineStage.OverflowPolicy ingestOverflowPolicy = PipelineStage.OverflowPolicy.BLOCK;
+    private long ingestBlockTimeoutMillis = 5_000;
+
+    /*
+    bodyFetchMode: PART downloads only the chosen text part via BODYSTRUCTURE + BODY.PEEK[section];
+                   FULL materialises the whole message with getContent() (default PART).
+    bodyMaxBytes: Byte cap for the text part in PART mode (default 256 KiB).
+     */
+    private MessageBodyFetcher.Mode bodyFetchMode = MessageBodyFetcher.Mode.PART;
+    private int bodyMaxBytes = 256 * 1024;
+
+    /*
+    parseMode: STREAMING tokenises the body once without a DOM and only builds one when a receipt-looking
+               mail misses paymentId or amount; DOM always builds the jsoup document (default STREAMING).
+     */
+    private EmailParser.Mode parseMode = EmailParser.Mode.STREAMING;
+
 
     public String getHost() { return host; }
     public void setHost(String host) { this.host = host; }
@@ -72,4 +125,49 @@ public class EmailProperties {
 
     public int getIdleReconnectMaxBackoffSeconds() { return idleReconnectMaxBackoffSeconds; }
     public void setIdleReconnectMaxBackoffSeconds(int idleReconnectMaxBackoffSeconds) { this.idleReconnectMaxBackoffSeconds = idleReconnectMaxBackoffSeconds; }
-}
\ No newline at end of file
+
+    public boolean isSweepIncremental() { return sweepIncremental; }
+    public void setSweepIncremental(boolean sweepIncremental) { this.sweepIncremental = sweepIncremental; }
+
+    public int getSweepIntervalMinutes() { return sweepIntervalMinutes; }
+    public void setSweepIntervalMinutes(int sweepIntervalMinutes) { this.sweepIntervalMinutes = sweepIntervalMinutes; }
+
+    public int getSweepLookbackMinutes() { return sweepLookbackMinutes; }
+    public void setSweepLookbackMinutes(int sweepLookbackMinutes) { this.sweepLookbackMinutes = sweepLookbackMinutes; }
+
+    public int getMoverBatchSize() { return moverBatchSize; }
+    public void setMoverBatchSize(int moverBatchSize) { this.moverBatchSize = moverBatchSize; }
+
+    public long getMoverFlushMillis() { return moverFlushMillis; }
+    public void setMoverFlushMillis(long moverFlushMillis) { this.moverFlushMillis = moverFlushMillis; }
+
+    public int getWorkerConnections() { return workerConnections; }
+    public void setWorkerConnections(int workerConnections) { this.workerConnections = workerConnections; }
+
+    public long getConnectionBorrowTimeoutMillis() { return connectionBorrowTimeoutMillis; }
+    public void setConnectionBorrowTimeoutMillis(long connectionBorrowTimeoutMillis) { this.connectionBorrowTimeoutMillis = connectionBorrowTimeoutMillis; }
+
+    public boolean isIngestVirtualThreads() { return ingestVirtualThreads; }
+    public void setIngestVirtualThreads(boolean ingestVirtualThreads) { this.ingestVirtualThreads = ingestVirtualThreads; }
+
+    public int getIngestMaxConcurrent() { return ingestMaxConcurrent; }
+    public void setIngestMaxConcurrent(int ingestMaxConcurrent) { this.ingestMaxConcurrent = ingestMaxConcurrent; }
+
+    public int getIngestQueueCapacity() { return ingestQueueCapacity; }
+    public void setIngestQueueCapacity(int ingestQueueCapacity) { this.ingestQueueCapacity = ingestQueueCapacity; }
+
+    public PipelineStage.OverflowPolicy getIngestOverflowPolicy() { return ingestOverflowPolicy; }
+    public void setIngestOverflowPolicy(PipelineStage.OverflowPolicy ingestOverflowPolicy) { this.ingestOverflowPolicy = ingestOverflowPolicy; }
+
+    public long getIngestBlockTimeoutMillis() { return ingestBlockTimeoutMillis; }
+    public void setIngestBlockTimeoutMillis(long ingestBlockTimeoutMillis) { this.ingestBlockTimeoutMillis = ingestBlockTimeoutMillis; }
+
+    public MessageBodyFetcher.Mode getBodyFetchMode() { return bodyFetchMode; }
+    public void setBodyFetchMode(MessageBodyFetcher.Mode bodyFetchMode) { this.bodyFetchMode = bodyFetchMode; }
+
+    public int getBodyMaxBytes() { return bodyMaxBytes; }
+    public void setBodyMaxBytes(int bodyMaxBytes) { this.bodyMaxBytes = bodyMaxBytes; }
+
+    public EmailParser.Mode getParseMode() { return parseMode; }
+    public void setParseMode(EmailParser.Mode parseMode) { this.parseMode = parseMode; }
+}
@@ -1,38 +1,39 @@
 package com.events.paymentverifsystem.Utilities.Email;
-import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
-import com.events.paymentverifsystem.Utilities.Redis.RedisPaymentStore;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentStore;
 import com.sun.mail.imap.IMAPFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PreDestroy;
 import javax.mail.*;
 import javax.mail.event.MessageCountAdapter;
 import javax.mail.event.MessageCountEvent;
+import javax.mail.search.ComparisonTerm;
+import javax.mail.search.ReceivedDateTerm;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import static com.events.paymentverifsystem.Utilities.Email.EmailParser.safeGetMessageId;
-
 @Service
 public class EmailReceiverService {
     private static final Logger log = LoggerFactory.getLogger(EmailReceiverService.class);
 
     private final EmailProperties props;
-    private final TokenProvider tokenProvider;
-    private final RedisPaymentStore redisPaymentStore;
-    private final EmailProcessedStoreProperties processedProps;
-    private final Session session;
-    private final RedisTemplate<String, Object> redisTemplate; // used for heartbeat
+    private final ImapConnectionPool connectionPool;
+    private final IngestionPipeline pipeline;
+    private final PaymentStore paymentStore;
+    private final ListenerStateStore stateStore; // sweep checkpoint + heartbeat
+    private final ProcessedMessageCache processedCache;
 
+    // IDLE-only connection; fetches and moves go through connectionPool
     private volatile Store store;
     private volatile IMAPFolder inbox;
 
@@ -40,11 +41,11 @@ public class EmailReceiverService {
     private final ScheduledExecutorService heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "email-heartbeat"));
     private final ScheduledExecutorService sweepScheduler =
             Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "email-sweep"));
-    private final ExecutorService workerPool = Executors.newFixedThreadPool(6, r -> new Thread(r, "email-worker-"));
     private final AtomicBoolean running = new AtomicBoolean(false);
 
     private ScheduledFuture<?> keepAliveFuture;
     private ScheduledFuture<?> heartbeatFuture;
+    private ScheduledFuture<?> sweepFuture;
 
     // single listener instance so we can remove it on close
     private final MessageCountAdapter messageListener = new MessageCountAdapter() {
@@ -52,30 +53,39 @@ public class EmailReceiverService {
         public void messagesAdded(MessageCountEvent event) {
             Message[] msgs = event.getMessages();
             log.info("IDLE: {} new messages", msgs.length);
-            for (Message m : msgs) workerPool.submit(() -> safeHandle(m));
+            try {
+                // one UID FETCH for the whole event; workers re-open the messages by UID on their own connection
+                IMAPFolder folder = (IMAPFolder) event.getSource();
+                FetchProfile fp = new FetchProfile();
+                fp.add(UIDFolder.FetchProfileItem.UID);
+                folder.fetch(msgs, fp);
+                for (Message m : msgs) {
+                    long uid = folder.getUID(m);
+                    if (!pipeline.submit(uid)) {
+                        log.warn("Ingestion queue full, uid={} left in INBOX for the next sweep", uid);
+                    }
+                }
+            } catch (MessagingException e) {
+                log.warn("Failed to resolve UIDs for {} new messages; the next sweep will pick them up", msgs.length, e);
+            }
         }
     };
 
 
 
 
-    // business TTL and processed TTL (configurable)
-    private final Duration businessKeyTtl = Duration.ofMinutes(20);
-    private final int processedKeyTtlSeconds;
-
     public EmailReceiverService(EmailProperties props,
-                                TokenProvider tokenProvider,
-                                RedisPaymentStore redisPaymentStore,
-                                EmailProcessedStoreProperties processedProps,
-                                Session session,
-                                RedisTemplate<String, Object> redisTemplate) {
+                                ImapConnectionPool connectionPool,
+                                IngestionPipeline pipeline,
+                                PaymentStore paymentStore,
+                                ListenerStateStore stateStore,
+                                ProcessedMessageCache processedCache) {
         this.props = props;
-        this.tokenProvider = tokenProvider;
-        this.redisPaymentStore = redisPaymentStore;
-        this.processedProps = processedProps;
-        this.session = session;
-        this.redisTemplate = redisTemplate;
-        this.processedKeyTtlSeconds = (int) processedProps.getProcessedMessageTtlSeconds();
+        this.connectionPool = connectionPool;
+        this.pipeline = pipeline;
+        this.paymentStore = paymentStore;
+        this.stateStore = stateStore;
+        this.processedCache = processedCache;
     }
 
     public void start() {
@@ -84,7 +94,8 @@ public class EmailReceiverService {
             return;
         }
 
-
+        connectionPool.start();
+        pipeline.start();
         Thread t = new Thread(this::mainLoop, "EmailReceiverService-Loop"); //handles incoming emails
         t.setDaemon(true);
         t.start();
@@ -138,31 +149,16 @@ public class EmailReceiverService {
     }
 
     private void connectAndOpenInbox() throws MessagingException {
-        if (session == null) throw new IllegalStateException("Session bean not injected");
-
         if (store != null && store.isConnected() && inbox != null && inbox.isOpen()) return;
 
         log.info("Connecting to IMAP {}:{}", props.getHost(), props.getPort());
-        store = session.getStore(props.getProtocol());
-
-        if (props.isUseOauth2()) {
-            String token = tokenProvider.getAccessToken();
-            if (token == null) {
-                log.warn("OAuth2 requested but token not available; falling back to password auth");
-                store.connect(props.getHost(), props.getPort(), props.getUsername(), props.getPassword());
-            } else {
-                session.getProperties().put("mail.imaps.sasl.enable", "true");
-                session.getProperties().put("mail.imaps.sasl.mechanisms", "XOAUTH2");
-                store.connect(props.getHost(), props.getPort(), props.getUsername(), token);
-            }
-        } else {
-            store.connect(props.getHost(), props.getPort(), props.getUsername(), props.getPassword());
-        }
+        store = connectionPool.connectStore();
 
         Folder f = store.getFolder("INBOX");
         if (f == null || !f.exists()) throw new MessagingException("INBOX not found");
         inbox = (IMAPFolder) f;
-        inbox.open(Folder.READ_WRITE);
+        // IDLE connection only watches for new mail; open read-only so it never competes for flag/move locks
+        inbox.open(Folder.READ_ONLY);
         log.info("INBOX opened");
     }
 
@@ -174,6 +170,7 @@ public class EmailReceiverService {
                     log.debug("Keepalive NOOP");
                     inbox.doCommand(protocol -> { protocol.simpleCommand("NOOP", null); return null; });
                 }
+                connectionPool.keepAlive();
             } catch (Exception e) {
                 log.warn("Keepalive failed", e);
             }
@@ -192,7 +189,7 @@ public class EmailReceiverService {
                 if (keepAliveScheduler.isShutdown()) issues.append("keepAliveScheduler, ");
                 if (heartbeatScheduler.isShutdown()) issues.append("heartbeatScheduler, ");
                 if (sweepScheduler.isShutdown()) issues.append("sweepScheduler, ");
-                if (workerPool.isShutdown()) issues.append("workerPool, ");
+                if (!pipeline.isRunning()) issues.append("pipeline, ");
                 if (inbox == null) issues.append("inbox=null, ");
                 else if (!inbox.isOpen()) issues.append("inbox not open, ");
                 if (store == null) issues.append("store=null, ");
@@ -200,202 +197,149 @@ public class EmailReceiverService {
                 if (!running.get()) issues.append("service not running, ");
 
                 if (issues.length() == 0) {
-                    String hbKey = "email-listener:heartbeat";
-                    String value = Instant.now().toString();
-                    redisTemplate.opsForValue().set(hbKey, value, Duration.ofSeconds(ttlSeconds));
-                    log.debug("Heartbeat written to Redis");
+                    stateStore.writeHeartbeat(Instant.now(), Duration.ofSeconds(ttlSeconds));
+                    log.debug("Heartbeat written to {}", stateStore.heartbeatLocation());
                 } else {
                     log.warn("Heartbeat not written: service not fully running. Issues: {}", issues.toString());
                 }
             } catch (Exception e) {
-                log.warn("Failed to write heartbeat to Redis", e);
+                log.warn("Failed to write heartbeat to {}", stateStore.heartbeatLocation(), e);
             }
         }, 5, 60, TimeUnit.SECONDS);
     }
 
 
 
-    private void safeHandle(Message msg) {
-        try { handleIncoming(msg); } catch (Exception e) { log.error("Failed to handle message", e); }
+    //run a scheduler event to sweep unseen messages every sweepIntervalMinutes
+    private void scheduleSweep() {
+        // mainLoop calls this on every reconnect; only one sweep may ever be scheduled
+        if (sweepFuture != null && !sweepFuture.isDone()) {
+            log.debug("Sweep already scheduled, not scheduling again");
+            return;
+        }
+        log.warn("Scheduling Redis-based unseen message sweep started");
+        int interval = Math.max(1, props.getSweepIntervalMinutes());
+        sweepFuture = sweepScheduler.scheduleAtFixedRate(this::runSweep, 1, interval, TimeUnit.MINUTES);
     }
 
-    private void handleIncoming(Message message) {
-        String messageId = null;
+    private void runSweep() {
+        ImapConnectionPool.PooledConnection conn = null;
         try {
-            // --- get message id early (header-only cheap op if inbox fetched headers) ---
-            messageId = safeGetMessageId(message);
-            if (messageId == null) {
-                // fallback synthetic id
-                messageId = "synth-" + Math.abs(message.hashCode()) + "-" + System.currentTimeMillis();
-            }
-
-            // --- Fast path: check Redis processed flag and skip if present ---
-            try {
-                if (redisPaymentStore.isProcessed(messageId)) {
-                    log.debug("Message already processed in Redis (m-id={}), skipping.", messageId);
-                    // optional: still move to Processed for mailbox cleanliness
-                    moveToFolder(message, "Processed");
-                    // best-effort: mark SEEN but do not rely on it
-                    try { message.setFlag(Flags.Flag.SEEN, true); } catch (Exception ignored) {}
-                    return;
-                }
-            } catch (Exception e) {
-                // If Redis is unavailable, we continue and try to process (fail-open).
-                log.warn("Redis check failed for mid={}, continuing to attempt parse", messageId, e);
-            }
-
-            // parse full message (this is the heavy work) ---
-            PaymentInfo info = EmailParser.parse(message);
-            if (info == null) {
-                log.info("Could not parse payment info; moving to Unprocessed (mid={})", messageId);
-                // Mark processed in Redis to avoid repeated parsing churn (best-effort)
-//                try {
-//                    redisPaymentStore.savePaymentAtomic(
-//                            new PaymentInfo("unknown", "", Instant.now(), "", "", "", "", "", messageId),
-//                            businessKeyTtl(),
-//                            processedKeyTtlSeconds
-//                    );
-//                } catch (Exception e) {
-//                    log.warn("Failed to mark synthetic processed key for unparsed message mid={}", messageId, e);
-//                }
-                moveToFolder(message, "Unprocessed");
-                try { message.setFlag(Flags.Flag.SEEN, true); } catch (Exception ignored) {}
-                return;
-            }
-
-            // Ensure the PaymentInfo contains the messageId we used (parser might give it)
-            if (info.getMessageId() == null || info.getMessageId().isBlank()) {
-                info.setMessageId(messageId);
-            } else {
-                // normalize parser-provided id to our canonical form (avoid CRLF issues)
-                messageId = info.getMessageId();
-            }
-
-            // timestamp check: skip if older than 1 day (business rule)
-            Instant cutoff = Instant.now().minus(1, ChronoUnit.DAYS);
-            if (info.getPaidOn().isBefore(cutoff)) {
-                log.info("Payment {} older than 1 day ({}). mid={}", info.getPaymentId(), info.getPaidOn(), messageId);
-//                try {
-//                    // mark processed so we don't re-parse
-//                    redisPaymentStore.savePaymentAtomic(info, businessKeyTtl(), processedKeyTtlSeconds);
-//                } catch (Exception e) {
-//                    log.warn("Failed to mark processed for old payment mid={}", messageId, e);
-//                }
-                moveToFolder(message, "Processed");
-                try { message.setFlag(Flags.Flag.SEEN, true); } catch (Exception ignored) {}
-                return;
-            }
+            if (!running.get()) return;
+            // sweep on a pooled connection so the IDLE connection is never interrupted
+            conn = connectionPool.borrow();
+            IMAPFolder folder = conn.folder();
 
-            // Attempt atomic claim+write using RedisPaymentStore (it returns true if we claimed)
-            boolean claimed;
-            try {
-                claimed = redisPaymentStore.savePaymentAtomic(info, businessKeyTtl(), processedKeyTtlSeconds);
-            } catch (Exception e) {
-                // fallback behaviour: log and attempt to mark processed non-atomically (fail-open)
-                log.error("Error while saving payment to Redis for mid={}", messageId, e);
-                claimed = false;
-            }
-
-            if (claimed) {
-                log.info("Claimed and saved payment {} (mid={})", info.getPaymentId(), messageId);
-                moveToFolder(message, "Processed");
-                try { message.setFlag(Flags.Flag.SEEN, true); } catch (Exception ignored) {}
-                // TODO: notify downstream (webhook, business queue) if needed
+            if (props.isSweepIncremental()) {
+                incrementalSweep(folder);
             } else {
-                log.info("Payment {} already claimed by another instance (mid={}), moving to Processed", info.getPaymentId(), messageId);
-                moveToFolder(message, "Processed");
-                try { message.setFlag(Flags.Flag.SEEN, true); } catch (Exception ignored) {}
+                log.debug("Running Redis-based unseen sweep (full INBOX, headers only)...");
+                Instant cutoff = Instant.now().minus(props.getSweepLookbackMinutes(), ChronoUnit.MINUTES);
+                sweepCandidates(folder, folder.getMessages(), 0, cutoff);
             }
-
-        } catch (Exception ex) {
-            log.error("Error processing incoming message mid=" + messageId, ex);
-            // On unexpected errors, try to move message to Unprocessed so it won't keep being retried forever
-            try { moveToFolder(message, "Unprocessed"); } catch (Exception ignore) {}
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Error during Redis-based unseen sweep", e);
+        } finally {
+            connectionPool.release(conn);
         }
     }
 
+    /**
+     * Only asks the server for messages newer than the stored UID checkpoint.
+     * If there is no checkpoint or UIDVALIDITY changed, falls back to SEARCH SINCE over the lookback window.
+     */
+    private void incrementalSweep(IMAPFolder folder) throws MessagingException {
+        long uidValidity = folder.getUIDValidity();
+        ListenerStateStore.Checkpoint cp = stateStore.loadCheckpoint(props.getUsername(), folder.getFullName());
+
+        Message[] candidates;
+        long afterUid;
+        Instant cutoff;
+        if (cp != null && cp.uidValidity() == uidValidity) {
+            afterUid = cp.lastUid();
+            cutoff = null;
+            candidates = folder.getMessagesByUID(afterUid + 1, UIDFolder.LASTUID);
+            log.debug("Incremental sweep: UID {}:* returned {} candidates", afterUid + 1, candidates.length);
+        } else {
+            afterUid = 0;
+            cutoff = Instant.now().minus(props.getSweepLookbackMinutes(), ChronoUnit.MINUTES);
+            candidates = folder.search(new ReceivedDateTerm(ComparisonTerm.GE, Date.from(cutoff)));
+            log.info("Sweep checkpoint missing or UIDVALIDITY changed ({} -> {}), searched SINCE {}: {} candidates",
+                    cp == null ? "none" : cp.uidValidity(), uidValidity, cutoff, candidates.length);
+        }
 
-    private Duration businessKeyTtl() { return businessKeyTtl; }
-
-    private void markSeen(Message msg) {
-        try { msg.setFlag(Flags.Flag.SEEN, true); } catch (MessagingException e) { log.warn("Failed to mark SEEN", e); }
+        long next = sweepCandidates(folder, candidates, afterUid, cutoff);
+        stateStore.saveCheckpoint(props.getUsername(), folder.getFullName(), uidValidity, next);
     }
 
-    //run a scheduler event to sweep unseen messages every one hour
-    private void scheduleSweep() {
-        log.warn("Scheduling Redis-based unseen message sweep started");
-        sweepScheduler.scheduleAtFixedRate(() -> {
+    /**
+     * Fetches headers for all candidates in one FETCH, checks them against Redis in one pipeline
+     * and submits the unprocessed ones. Returns the UID the next sweep can start after: the highest
+     * UID examined, or just below the lowest UID handed to workers so it is re-checked if it is still in INBOX.
+     */
+    private long sweepCandidates(IMAPFolder folder, Message[] candidates, long afterUid, Instant cutoff) throws MessagingException {
+        if (candidates == null || candidates.length == 0) return afterUid;
+
+        FetchProfile fp = new FetchProfile();
+        fp.add(FetchProfile.Item.ENVELOPE);
+        fp.add(FetchProfile.Item.FLAGS);
+        fp.add(UIDFolder.FetchProfileItem.UID);
+        fp.add("Message-ID");
+        folder.fetch(candidates, fp);
+
+        long highest = afterUid;
+        List<Long> pendingUids = new ArrayList<>();
+        List<String> pendingIds = new ArrayList<>();
+        for (Message m : candidates) {
             try {
-                if (inbox != null && inbox.isOpen()) {
-                    log.debug("Running Redis-based unseen sweep (headers only)...");
-
-                    Instant cutoff = Instant.now().minus(60, ChronoUnit.MINUTES);
-                    Message[] messages = inbox.getMessages();
-
-                    for (Message m : messages) {
-                        try {
-                            // Skip expunged messages
-                            if (m.isExpunged()) continue;
-
-                            m.getFolder().fetch(new Message[]{m}, new FetchProfile() {{
-                                add(FetchProfile.Item.ENVELOPE);
-                                add("Message-ID");
-                            }});
-
-                            Instant received;
-                            try {
-                                Date rcvd = m.getReceivedDate();
-                                received = (rcvd == null) ? Instant.now() : rcvd.toInstant();
-                            } catch (MessageRemovedException mre) {
-                                log.debug("Message already expunged, skipping: msgNum={}", m.getMessageNumber());
-                                continue; // move to next message
-                            }
-
-                            if (received.isBefore(cutoff)) continue;
-
-                            String[] idHeader = m.getHeader("Message-ID");
-                            if (idHeader == null || idHeader.length == 0) continue;
-
-                            String messageId = idHeader[0];
-                            if (!redisPaymentStore.isProcessed(messageId)) {
-                                log.info("Sweep found unprocessed message mid={}, fetching full message", messageId);
-
-                                try {
-                                    Message fullMessage = inbox.getMessage(m.getMessageNumber());
-                                    workerPool.submit(() -> safeHandle(fullMessage));
-                                } catch (MessageRemovedException mre) {
-                                    log.debug("Message was expunged before full fetch: mid={}", messageId);
-                                }
-                            }
-                        } catch (MessageRemovedException mre) {
-                            log.debug("Message already expunged, skipping: msgNum={}", m.getMessageNumber());
-                        } catch (Exception innerEx) {
-                            log.warn("Error while checking message in sweep", innerEx);
-                        }
-                    }
+                if (m == null || m.isExpunged()) continue;
 
-                }
-            } catch (Exception e) {
-                log.warn("Error during Redis-based unseen sweep", e);
-            }
-        }, 1, 15, TimeUnit.MINUTES); // 15M sweep interval
-    }
+                long uid = folder.getUID(m);
+                // "UID n:*" always returns the last message, even if its UID is below n
+                if (uid <= afterUid) continue;
+                highest = Math.max(highest, uid);
+
+                // already handled and waiting for expunge
+                if (m.isSet(Flags.Flag.DELETED)) continue;
 
+                if (cutoff != null) {
+                    Date rcvd = m.getReceivedDate();
+                    if (rcvd != null && rcvd.toInstant().isBefore(cutoff)) continue;
+                }
 
+                String[] idHeader = m.getHeader("Message-ID");
+                if (idHeader == null || idHeader.length == 0) continue;
 
-    private void moveToFolder(Message msg, String folderName) {
-        try {
-            Folder dest = store.getFolder(folderName);
-            if (!dest.exists()) dest.create(Folder.HOLDS_MESSAGES);
-            if (!dest.isOpen()) dest.open(Folder.READ_WRITE);
-            inbox.copyMessages(new Message[]{msg}, dest);
-            msg.setFlag(Flags.Flag.DELETED, true);
-            log.info("Moved message to folder {}", folderName);
-        } catch (Exception e) {
-            log.error("Failed to move message to {}: {}", folderName, e.getMessage());
+                pendingUids.add(uid);
+                pendingIds.add(idHeader[0]);
+            } catch (MessageRemovedException mre) {
+                log.debug("Message already expunged, skipping: msgNum={}", m.getMessageNumber());
+            } catch (Exception innerEx) {
+                log.warn("Error while checking message in sweep", innerEx);
+            }
         }
+        if (pendingUids.isEmpty()) return highest;
+
+        List<Boolean> processed = processedCache.areProcessed(pendingIds);
+        long lowestSubmitted = Long.MAX_VALUE;
+        for (int i = 0; i < pendingUids.size(); i++) {
+            if (processed.get(i)) continue;
+            long uid = pendingUids.get(i);
+            lowestSubmitted = Math.min(lowestSubmitted, uid);
+            if (!pipeline.submit(uid)) {
+                // checkpoint stays below this UID, so the rest is picked up by the next sweep
+                log.warn("Ingestion queue full, sweep stopping at uid={}", uid);
+                break;
+            }
+            log.info("Sweep found unprocessed message mid={}, handing to worker", pendingIds.get(i));
+        }
+        return lowestSubmitted == Long.MAX_VALUE ? highest : lowestSubmitted - 1;
     }
 
+
+
     private void safeCloseFolder() {
         try {
             if (inbox != null) {
@@ -416,20 +360,16 @@ public class EmailReceiverService {
         safeCloseStore();
         try { if (keepAliveFuture != null) keepAliveFuture.cancel(true); } catch (Exception ignored) {}
         try { if (heartbeatFuture != null) heartbeatFuture.cancel(true); } catch (Exception ignored) {}
+        try { if (sweepFuture != null) sweepFuture.cancel(true); } catch (Exception ignored) {}
         shutdownExecutors();
+        connectionPool.close();
     }
 
     private void shutdownExecutors() {
         try { keepAliveScheduler.shutdownNow(); } catch (Exception ignored) {}
         try { heartbeatScheduler.shutdownNow(); } catch (Exception ignored) {}
         try { sweepScheduler.shutdownNow(); } catch (Exception ignored) {}
-        try {
-            workerPool.shutdown();
-            if (!workerPool.awaitTermination(5, TimeUnit.SECONDS)) workerPool.shutdownNow();
-        } catch (InterruptedException e) {
-            workerPool.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
+        pipeline.shutdown(5_000);
     }
 
     public Map<String, Object> getHealthStatus() {
@@ -437,7 +377,10 @@ public class EmailReceiverService {
         status.put("keepAliveScheduler", !keepAliveScheduler.isShutdown());
         status.put("heartbeatScheduler", !heartbeatScheduler.isShutdown());
         status.put("sweepScheduler", !sweepScheduler.isShutdown());
-        status.put("workerPool", !workerPool.isShutdown());
+        status.put("pipeline", pipeline.isRunning());
+        status.put("ingestion", pipeline.getStats());
+        status.put("connectionPool", connectionPool.getStats());
+        status.put("paymentStore", paymentStore.getStats());
         status.put("inbox", inbox != null && inbox.isOpen());
         status.put("store", store != null && store.isConnected());
         status.put("running", running.get());
@@ -0,0 +1,177 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compiled form of an ExtractionTemplateProperties.Template: selectors parsed once into jsoup Evaluators,
+ * labels lowercased, plus the template's hit/fallback counters and parse time.
+ */
+final class ExtractionTemplate {
+
+    /**
+     * Raw field values found by the template; null = not found, EmailParser falls back for that field.
+     */
+    static final class Fields {
+        String merchant;
+        String amount;
+        String paymentId;
+        String email;
+        String phone;
+        String method;
+        String paidOn;
+    }
+
+    private final String name;
+    private final String marker;
+    private final Evaluator merchant;
+    private final Evaluator amount;
+    private final Evaluator row;
+    private final Evaluator label;
+    private final Evaluator value;
+    private final String paymentIdLabel;
+    private final String emailLabel;
+    private final String phoneLabel;
+    private final String methodLabel;
+    private final String paidOnLabel;
+    private final HtmlStreamScanner scanner; // null if a selector needs the DOM
+
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder complete = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+
+    /**
+     * Throws on an invalid selector; the registry logs and skips that template.
+     */
+    ExtractionTemplate(ExtractionTemplateProperties.Template t) {
+        this.name = t.getName();
+        this.marker = t.getMarker() == null || t.getMarker().isBlank() ? null : t.getMarker();
+        this.merchant = compile(t.getMerchantSelector());
+        this.amount = compile(t.getAmountSelector());
+        this.row = compile(t.getRowSelector());
+        this.label = compile(t.getLabelSelector());
+        this.value = compile(t.getValueSelector());
+        this.paymentIdLabel = lower(t.getPaymentIdLabel());
+        this.emailLabel = lower(t.getEmailLabel());
+        this.phoneLabel = lower(t.getPhoneLabel());
+        this.methodLabel = lower(t.getMethodLabel());
+        this.paidOnLabel = lower(t.getPaidOnLabel());
+        this.scanner = HtmlStreamScanner.withExtra(t.getMerchantSelector(), t.getAmountSelector(),
+                t.getRowSelector(), t.getLabelSelector(), t.getValueSelector());
+    }
+
+    String getName() { return name; }
+
+    /**
+     * Second half of the fingerprint (the domain is matched by the registry).
+     */
+    boolean markerMatches(String raw) {
+        return marker == null || (raw != null && raw.contains(marker));
+    }
+
+    HtmlStreamScanner scanner() { return scanner; }
+
+    Fields extract(ParseContext ctx) {
+        if (ctx.streamed != null && ctx.streamed.scanner == scanner) return extract(ctx.streamed);
+        return extract(ctx.doc());
+    }
+
+    private Fields extract(HtmlStreamScanner.Result r) {
+        int base = HtmlStreamScanner.GENERIC_COUNT;
+        Fields f = new Fields();
+        f.merchant = blankToNull(r.first(base));
+        f.amount = blankToNull(r.first(base + 1));
+        if (row == null || label == null || value == null) return f;
+
+        // first label / value capture inside each row capture, then the same assignment as the DOM path
+        List<HtmlStreamScanner.Capture> caps = r.captures;
+        String[] labels = new String[caps.size()];
+        String[] values = new String[caps.size()];
+        for (HtmlStreamScanner.Capture c : caps) {
+            boolean isLabel = c.is(base + 3), isValue = c.is(base + 4);
+            if (!isLabel && !isValue) continue;
+            for (int k = c.containers.length - 1; k >= 0; k--) {
+                int rowIdx = c.containers[k];
+                if (!caps.get(rowIdx).is(base + 2)) continue;
+                if (isLabel && labels[rowIdx] == null) labels[rowIdx] = c.text.toString();
+                if (isValue && values[rowIdx] == null) values[rowIdx] = c.text.toString();
+                break;
+            }
+        }
+        for (int i = 0; i < caps.size(); i++) {
+            if (caps.get(i).is(base + 2)) assign(f, blankToNull(labels[i]), blankToNull(values[i]));
+        }
+        return f;
+    }
+
+    private Fields extract(Document doc) {
+        Fields f = new Fields();
+        if (merchant != null) f.merchant = text(doc.selectFirst(merchant));
+        if (amount != null) f.amount = text(doc.selectFirst(amount));
+        if (row != null && label != null && value != null) {
+            for (Element r : doc.select(row)) {
+                assign(f, text(r.selectFirst(label)), text(r.selectFirst(value)));
+            }
+        }
+        return f;
+    }
+
+    private void assign(Fields f, String l, String v) {
+        if (l == null || v == null) return;
+        l = l.toLowerCase(Locale.ROOT);
+        if (f.paymentId == null && matches(l, paymentIdLabel)) f.paymentId = v;
+        else if (f.email == null && matches(l, emailLabel)) f.email = v;
+        else if (f.phone == null && matches(l, phoneLabel)) f.phone = v;
+        else if (f.method == null && matches(l, methodLabel)) f.method = v;
+        else if (f.paidOn == null && matches(l, paidOnLabel)) f.paidOn = v;
+    }
+
+    void record(boolean allFromTemplate, long nanos) {
+        matched.increment();
+        if (allFromTemplate) complete.increment(); else fallbacks.increment();
+        parseNanos.add(nanos);
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        long n = matched.sum();
+        s.put("matched", n);
+        s.put("complete", complete.sum());
+        s.put("fallbacks", fallbacks.sum());
+        s.put("hitRate", n == 0 ? 0 : (double) complete.sum() / n);
+        s.put("avgParseMicros", n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(parseNanos.sum() / n));
+        return s;
+    }
+
+    private static boolean matches(String label, String configured) {
+        return configured != null && label.startsWith(configured);
+    }
+
+    private static String blankToNull(String s) {
+        return s == null || s.isBlank() ? null : s.trim();
+    }
+
+    private static String text(Element e) {
+        if (e == null) return null;
+        String t = e.text().trim();
+        return t.isEmpty() ? null : t;
+    }
+
+    private static Evaluator compile(String selector) {
+        return selector == null || selector.isBlank() ? null : QueryParser.parse(selector);
+    }
+
+    private static String lower(String s) {
+        return s == null || s.isBlank() ? null : s.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,110 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-gateway extraction templates (prefix email.templates), compiled by ExtractionTemplateRegistry.
+ *
+ * A template is picked by fingerprint: sender domain (subdomains included) plus, if set, a marker string
+ * that must appear in the raw body. Fields it can't find fall back to the generic EmailParser logic.
+ *
+ * The Razorpay receipt template is built in; setting email.templates.definitions replaces the whole list.
+ */
+@Component
+@ConfigurationProperties(prefix = "email.templates")
+public class ExtractionTemplateProperties {
+
+    private boolean enabled = true;
+    private List<Template> definitions = new ArrayList<>(List.of(razorpay()));
+
+    static Template razorpay() {
+        Template t = new Template();
+        t.setName("razorpay");
+        t.setSenderDomains(new ArrayList<>(List.of("razorpay.com")));
+        t.setMarker("information-row");
+        t.setMerchantSelector(".header h2, .branding-content");
+        t.setAmountSelector(".amount");
+        t.setRowSelector(".information-row");
+        t.setLabelSelector(".label");
+        t.setValueSelector(".value");
+        return t;
+    }
+
+    public static class Template {
+        private String name;
+        private List<String> senderDomains = new ArrayList<>();
+
+        /**
+         * Structural marker, e.g. a class name only this gateway's receipt uses. Empty = domain only.
+         */
+        private String marker;
+
+        /*
+         * Plain CSS selectors (compiled once). Avoid :contains here, that's what the generic path does.
+         */
+        private String merchantSelector;
+        private String amountSelector;
+
+        /*
+         * Label/value rows: each row is visited once and its label text (case-insensitive, startsWith)
+         * decides which field the value belongs to.
+         */
+        private String rowSelector;
+        private String labelSelector;
+        private String valueSelector;
+        private String paymentIdLabel = "Payment Id";
+        private String emailLabel = "Email";
+        private String phoneLabel = "Mobile";
+        private String methodLabel = "Method";
+        private String paidOnLabel = "Paid On";
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        public List<String> getSenderDomains() { return senderDomains; }
+        public void setSenderDomains(List<String> senderDomains) { this.senderDomains = senderDomains; }
+
+        public String getMarker() { return marker; }
+        public void setMarker(String marker) { this.marker = marker; }
+
+        public String getMerchantSelector() { return merchantSelector; }
+        public void setMerchantSelector(String merchantSelector) { this.merchantSelector = merchantSelector; }
+
+        public String getAmountSelector() { return amountSelector; }
+        public void setAmountSelector(String amountSelector) { this.amountSelector = amountSelector; }
+
+        public String getRowSelector() { return rowSelector; }
+        public void setRowSelector(String rowSelector) { this.rowSelector = rowSelector; }
+
+        public String getLabelSelector() { return labelSelector; }
+        public void setLabelSelector(String labelSelector) { this.labelSelector = labelSelector; }
+
+        public String getValueSelector() { return valueSelector; }
+        public void setValueSelector(String valueSelector) { this.valueSelector = valueSelector; }
+
+        public String getPaymentIdLabel() { return paymentIdLabel; }
+        public void setPaymentIdLabel(String paymentIdLabel) { this.paymentIdLabel = paymentIdLabel; }
+
+        public String getEmailLabel() { return emailLabel; }
+        public void setEmailLabel(String emailLabel) { this.emailLabel = emailLabel; }
+
+        public String getPhoneLabel() { return phoneLabel; }
+        public void setPhoneLabel(String phoneLabel) { this.phoneLabel = phoneLabel; }
+
+        public String getMethodLabel() { return methodLabel; }
+        public void setMethodLabel(String methodLabel) { this.methodLabel = methodLabel; }
+
+        public String getPaidOnLabel() { return paidOnLabel; }
+        public void setPaidOnLabel(String paidOnLabel) { this.paidOnLabel = paidOnLabel; }
+    }
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public List<Template> getDefinitions() { return definitions; }
+    public void setDefinitions(List<Template> definitions) { this.definitions = definitions; }
+}
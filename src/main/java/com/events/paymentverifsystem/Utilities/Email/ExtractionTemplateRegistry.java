@@ -0,0 +1,130 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Entry point for parsing in the pipeline: picks a template by fingerprint (sender domain -> candidate
+ * templates, then marker check) and hands it to EmailParser, or parses generically when nothing matches.
+ *
+ * In STREAMING mode the body is first handled by HtmlStreamScanner. The jsoup DOM is only built when the
+ * template uses selectors the scanner can't follow, or when the mail looks like a receipt (a template
+ * matched, or amount/row/card markup was seen) but paymentId or amount is missing. Mail without receipt
+ * markup gets the same answer from the DOM, so a miss there is final.
+ */
+@Component
+public class ExtractionTemplateRegistry {
+    private static final Logger log = LoggerFactory.getLogger(ExtractionTemplateRegistry.class);
+
+    private final boolean enabled;
+    private final boolean streaming;
+    private final List<ExtractionTemplate> templates = new ArrayList<>();
+    private final Map<String, List<ExtractionTemplate>> byDomain = new HashMap<>();
+
+    private final LongAdder genericParses = new LongAdder();
+    private final LongAdder genericNanos = new LongAdder();
+    private final LongAdder streamedParses = new LongAdder();
+    private final LongAdder domFallbacks = new LongAdder();
+
+    public ExtractionTemplateRegistry(ExtractionTemplateProperties props, EmailProperties emailProps) {
+        this.enabled = props.isEnabled();
+        this.streaming = emailProps.getParseMode() == EmailParser.Mode.STREAMING;
+        for (ExtractionTemplateProperties.Template t : props.getDefinitions()) {
+            ExtractionTemplate compiled;
+            try {
+                compiled = new ExtractionTemplate(t);
+            } catch (Exception e) {
+                log.warn("Skipping extraction template {}: {}", t.getName(), e.getMessage());
+                continue;
+            }
+            if (compiled.scanner() == null) {
+                log.info("Extraction template {} uses selectors the streaming scanner can't follow; it will always build a DOM", t.getName());
+            }
+            templates.add(compiled);
+            for (String d : t.getSenderDomains()) {
+                byDomain.computeIfAbsent(d.trim().toLowerCase(Locale.ROOT), k -> new ArrayList<>()).add(compiled);
+            }
+        }
+        log.info("Loaded {} extraction template(s) for {} sender domain(s)", templates.size(), byDomain.size());
+    }
+
+    public PaymentInfo parse(FetchedMessage message) {
+        ExtractionTemplate template = enabled ? match(message) : null;
+        long start = System.nanoTime();
+
+        PaymentInfo info = null;
+        ParseContext ctx = null;
+        HtmlStreamScanner scanner = !streaming ? null : template == null ? HtmlStreamScanner.GENERIC : template.scanner();
+        if (scanner != null) {
+            ctx = ParseContext.streamed(message, scanner);
+            info = EmailParser.parse(ctx, template);
+            boolean complete = info != null && info.getPaymentId() != null && info.hasAmount();
+            if (complete || (template == null && !ctx.streamed.hasReceiptMarkup())) {
+                streamedParses.increment();
+            } else {
+                domFallbacks.increment();
+                ctx = null;
+            }
+        }
+        if (ctx == null) {
+            ctx = new ParseContext(message);
+            info = EmailParser.parse(ctx, template);
+        }
+
+        long nanos = System.nanoTime() - start;
+        if (template != null) {
+            template.record(ctx.templateComplete, nanos);
+        } else {
+            genericParses.increment();
+            genericNanos.add(nanos);
+        }
+        return info;
+    }
+
+    /**
+     * Exact domain first, then each parent domain (mail.razorpay.com -> razorpay.com).
+     */
+    ExtractionTemplate match(FetchedMessage message) {
+        String from = message.getFromAddress();
+        if (from == null || byDomain.isEmpty()) return null;
+        int at = from.lastIndexOf('@');
+        if (at < 0) return null;
+        String domain = from.substring(at + 1).trim().toLowerCase(Locale.ROOT);
+        while (!domain.isEmpty()) {
+            List<ExtractionTemplate> candidates = byDomain.get(domain);
+            if (candidates != null) {
+                for (ExtractionTemplate t : candidates) if (t.markerMatches(message.getBody())) return t;
+            }
+            int dot = domain.indexOf('.');
+            if (dot < 0) break;
+            domain = domain.substring(dot + 1);
+        }
+        return null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("enabled", enabled);
+        s.put("mode", streaming ? EmailParser.Mode.STREAMING : EmailParser.Mode.DOM);
+        s.put("streamed", streamedParses.sum());
+        s.put("domFallbacks", domFallbacks.sum());
+        for (ExtractionTemplate t : templates) s.put(t.getName(), t.getStats());
+        Map<String, Object> g = new LinkedHashMap<>();
+        long n = genericParses.sum();
+        g.put("parses", n);
+        g.put("avgParseMicros", n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(genericNanos.sum() / n));
+        s.put("generic", g);
+        return s;
+    }
+}
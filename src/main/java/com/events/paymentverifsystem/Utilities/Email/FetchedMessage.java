@@ -0,0 +1,69 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.internet.InternetAddress;
+import java.util.Date;
+
+/**
+ * Detached copy of the parts of a message the parser needs, taken while an IMAP connection is held,
+ * so parsing can run later on another thread without touching the mailbox.
+ */
+public class FetchedMessage {
+    private final long uid;
+    private final String messageId;
+    private final String subject;
+    private final Date sentDate;
+    private final String fromAddress;
+    private final String body;
+    private String bodyFingerprint; // computed once, by the body stage; read after the queue hand-off
+
+    public FetchedMessage(long uid, String messageId, String subject, Date sentDate, String fromAddress, String body) {
+        this.uid = uid;
+        this.messageId = messageId;
+        this.subject = subject;
+        this.sentDate = sentDate;
+        this.fromAddress = fromAddress;
+        this.body = body;
+    }
+
+    /**
+     * Reads headers and the text body. This downloads the body if it isn't cached yet.
+     */
+    public static FetchedMessage from(long uid, Message message) {
+        return from(uid, message, EmailParser.extractText(message));
+    }
+
+    /**
+     * Reads headers only; the body was fetched separately (see MessageBodyFetcher).
+     */
+    public static FetchedMessage from(long uid, Message message, String body) {
+        Date sent = null;
+        try { sent = message.getSentDate(); } catch (Exception ignored) {}
+        String from = null;
+        try {
+            Address[] froms = message.getFrom();
+            if (froms != null && froms.length > 0 && froms[0] instanceof InternetAddress) {
+                from = ((InternetAddress) froms[0]).getAddress();
+            }
+        } catch (Exception ignored) {}
+        return new FetchedMessage(uid,
+                EmailParser.safeGetMessageId(message),
+                EmailParser.safeGetSubject(message),
+                sent,
+                from,
+                body);
+    }
+
+    public long getUid() { return uid; }
+    public String getMessageId() { return messageId; }
+    public String getSubject() { return subject; }
+    public Date getSentDate() { return sentDate; }
+    public String getFromAddress() { return fromAddress; }
+    public String getBody() { return body; }
+
+    String bodyFingerprint() {
+        if (bodyFingerprint == null) bodyFingerprint = ContentFingerprint.ofBody(body);
+        return bodyFingerprint;
+    }
+}
@@ -0,0 +1,407 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import org.jsoup.parser.Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Single forward pass over receipt HTML without building a DOM.
+ *
+ * It keeps a stack of open elements (tag + classes only) and collects whitespace-normalised text for
+ * the whole document and for the elements matched by a small set of simple selectors (tag, .class,
+ * tag.class and descendant combinations, comma lists). Those captures are all EmailParser's generic
+ * selectors and the extraction templates need, so a receipt is usually handled without jsoup's tree.
+ * Anything the scanner can't express makes the caller fall back to the DOM path.
+ */
+final class HtmlStreamScanner {
+
+    // generic EmailParser selectors, always at these indexes
+    static final int MERCHANT = 0;
+    static final int AMOUNT = 1;
+    static final int INFO_ROW = 2;
+    static final int CARD = 3;
+    static final int VALUE = 4;
+    static final int GENERIC_COUNT = 5;
+
+    private static final String[] GENERIC_SELECTORS = {
+            "h2, .branding-content, .header h2, .title-content, .content-element",
+            ".amount, .rupees, .symbol",
+            ".information-row",
+            ".card",
+            ".value"
+    };
+
+    static final HtmlStreamScanner GENERIC = new HtmlStreamScanner(GENERIC_SELECTORS);
+
+    private static final Set<String> VOID_TAGS = Set.of(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "source", "track", "wbr");
+    // content runs to the matching end tag; only title and textarea text is part of jsoup's text()
+    private static final Set<String> RAW_TEXT_TAGS = Set.of("script", "style", "title", "textarea");
+    private static final Set<String> TEXT_RAW_TAGS = Set.of("title", "textarea");
+    private static final Set<String> SELF_CLOSING_SIBLINGS = Set.of("p", "li", "td", "th", "tr", "option", "dt", "dd");
+    // jsoup 1.16's block tags (plus br), which text() separates with a space
+    private static final Set<String> BLOCK_TAGS = Set.of(
+            "address", "applet", "article", "aside", "audio", "blockquote", "body", "br", "canvas", "caption",
+            "center", "col", "colgroup", "dd", "del", "details", "dir", "div", "dl", "dt", "fieldset",
+            "figcaption", "figure", "footer", "form", "frame", "frameset", "h1", "h2", "h3", "h4", "h5", "h6",
+            "head", "header", "hgroup", "hr", "html", "ins", "li", "link", "listing", "main", "marquee", "math",
+            "menu", "meta", "nav", "noframes", "noscript", "ol", "p", "plaintext", "pre", "script", "section",
+            "style", "svg", "table", "tbody", "td", "template", "tfoot", "th", "thead", "title", "tr", "ul",
+            "video");
+
+    private final Step[][][] selectors; // selector -> alternatives -> steps (outermost first)
+
+    private HtmlStreamScanner(String[] css) {
+        this.selectors = new Step[css.length][][];
+        for (int i = 0; i < css.length; i++) {
+            if (css[i] == null) continue;
+            selectors[i] = compile(css[i]);
+            if (selectors[i] == null) throw new IllegalArgumentException("Unsupported selector for streaming: " + css[i]);
+        }
+    }
+
+    /**
+     * Generic selectors followed by the given ones (null entries never match). Returns null if any of them
+     * uses syntax the scanner doesn't support, e.g. :contains or attribute selectors.
+     */
+    static HtmlStreamScanner withExtra(String... extra) {
+        String[] all = new String[GENERIC_COUNT + extra.length];
+        System.arraycopy(GENERIC_SELECTORS, 0, all, 0, GENERIC_COUNT);
+        for (int i = 0; i < extra.length; i++) {
+            all[GENERIC_COUNT + i] = extra[i] == null || extra[i].isBlank() ? null : extra[i];
+        }
+        try {
+            return new HtmlStreamScanner(all);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // ---------------- result ----------------
+
+    static final class Capture {
+        final long mask;
+        final int[] containers; // indexes of enclosing captures, outermost first
+        final TextSink text = new TextSink();
+
+        Capture(long mask, int[] containers) {
+            this.mask = mask;
+            this.containers = containers;
+        }
+
+        boolean is(int selector) { return (mask & (1L << selector)) != 0; }
+    }
+
+    static final class Result {
+        final HtmlStreamScanner scanner; // selector indexes are only meaningful for this scanner
+        final String visibleText;
+        final List<Capture> captures;
+
+        Result(HtmlStreamScanner scanner, String visibleText, List<Capture> captures) {
+            this.scanner = scanner;
+            this.visibleText = visibleText;
+            this.captures = captures;
+        }
+
+        String first(int selector) {
+            for (Capture c : captures) if (c.is(selector)) return c.text.toString().trim();
+            return null;
+        }
+
+        // amount or receipt rows were seen, so a miss may be the scanner's fault rather than a non-receipt
+        boolean hasReceiptMarkup() {
+            for (Capture c : captures) if (c.is(AMOUNT) || c.is(INFO_ROW) || c.is(CARD)) return true;
+            return false;
+        }
+
+        // ".information-row:contains(Email) .value, .card:contains(Email) .value"
+        String emailValue() {
+            for (Capture c : captures) {
+                if (!c.is(VALUE)) continue;
+                for (int k : c.containers) {
+                    Capture box = captures.get(k);
+                    if ((box.is(INFO_ROW) || box.is(CARD)) && containsIgnoreCase(box.text.toString(), "email")) {
+                        return c.text.toString();
+                    }
+                }
+            }
+            return null;
+        }
+
+        // ".information-row:contains(Method) .value, .information-row:contains(UPI)"
+        String methodValue() {
+            for (Capture c : captures) {
+                if (c.is(INFO_ROW) && containsIgnoreCase(c.text.toString(), "upi")) return c.text.toString();
+                if (!c.is(VALUE)) continue;
+                for (int k : c.containers) {
+                    Capture box = captures.get(k);
+                    if (box.is(INFO_ROW) && containsIgnoreCase(box.text.toString(), "method")) return c.text.toString();
+                }
+            }
+            return null;
+        }
+    }
+
+    // ---------------- scan ----------------
+
+    private static final class Open {
+        final String tag;
+        final String[] classes;
+        final boolean capture;
+
+        Open(String tag, String[] classes, boolean capture) {
+            this.tag = tag;
+            this.classes = classes;
+            this.capture = capture;
+        }
+    }
+
+    Result scan(String html) {
+        TextSink visible = new TextSink();
+        List<Capture> captures = new ArrayList<>();
+        List<Open> stack = new ArrayList<>();
+        List<Integer> active = new ArrayList<>(); // open captures, innermost last
+        int len = html.length();
+        int i = 0;
+
+        while (i < len) {
+            char c = html.charAt(i);
+            if (c != '<') {
+                int end = html.indexOf('<', i);
+                if (end < 0) end = len;
+                appendText(html, i, end, visible, captures, active);
+                i = end;
+                continue;
+            }
+
+            if (html.startsWith("<!--", i)) {
+                int end = html.indexOf("-->", i + 4);
+                i = end < 0 ? len : end + 3;
+                continue;
+            }
+            if (i + 1 < len && (html.charAt(i + 1) == '!' || html.charAt(i + 1) == '?')) {
+                int end = html.indexOf('>', i);
+                i = end < 0 ? len : end + 1;
+                continue;
+            }
+
+            boolean closing = i + 1 < len && html.charAt(i + 1) == '/';
+            int nameStart = closing ? i + 2 : i + 1;
+            int p = nameStart;
+            while (p < len && isNameChar(html.charAt(p))) p++;
+            if (p == nameStart) {
+                // a stray '<' is text
+                appendText(html, i, i + 1, visible, captures, active);
+                i++;
+                continue;
+            }
+            String tag = html.substring(nameStart, p).toLowerCase();
+
+            if (closing) {
+                int end = html.indexOf('>', p);
+                i = end < 0 ? len : end + 1;
+                if (BLOCK_TAGS.contains(tag)) space(visible, captures, active);
+                closeTo(tag, stack, active);
+                continue;
+            }
+
+            // attributes: only class matters
+            String classAttr = null;
+            boolean selfClosed = false;
+            while (p < len) {
+                char a = html.charAt(p);
+                if (a == '>') { p++; break; }
+                if (a == '/' && p + 1 < len && html.charAt(p + 1) == '>') { selfClosed = true; p += 2; break; }
+                if (!isNameChar(a)) { p++; continue; }
+                int an = p;
+                while (p < len && isNameChar(html.charAt(p))) p++;
+                boolean isClass = p - an == 5 && html.regionMatches(true, an, "class", 0, 5);
+                while (p < len && Character.isWhitespace(html.charAt(p))) p++;
+                if (p >= len || html.charAt(p) != '=') continue;
+                p++;
+                while (p < len && Character.isWhitespace(html.charAt(p))) p++;
+                int vs, ve;
+                if (p < len && (html.charAt(p) == '"' || html.charAt(p) == '\'')) {
+                    char q = html.charAt(p);
+                    vs = p + 1;
+                    ve = html.indexOf(q, vs);
+                    if (ve < 0) ve = len;
+                    p = Math.min(len, ve + 1);
+                } else {
+                    vs = p;
+                    while (p < len && !Character.isWhitespace(html.charAt(p)) && html.charAt(p) != '>') p++;
+                    ve = p;
+                }
+                if (isClass) classAttr = html.substring(vs, ve);
+            }
+            i = p;
+
+            if (BLOCK_TAGS.contains(tag)) space(visible, captures, active);
+            if (RAW_TEXT_TAGS.contains(tag)) {
+                int end = indexOfIgnoreCase(html, "</" + tag, i);
+                if (TEXT_RAW_TAGS.contains(tag)) appendText(html, i, end < 0 ? len : end, visible, captures, active);
+                if (end < 0) { i = len; continue; }
+                int gt = html.indexOf('>', end);
+                i = gt < 0 ? len : gt + 1;
+                if (BLOCK_TAGS.contains(tag)) space(visible, captures, active);
+                continue;
+            }
+            if (VOID_TAGS.contains(tag) || selfClosed) continue;
+            if (SELF_CLOSING_SIBLINGS.contains(tag) && !stack.isEmpty() && stack.get(stack.size() - 1).tag.equals(tag)) {
+                closeTo(tag, stack, active);
+            }
+
+            String[] classes = classAttr == null ? NO_CLASSES : classAttr.trim().split("\\s+");
+            long mask = 0;
+            for (int s = 0; s < selectors.length; s++) {
+                if (selectors[s] != null && matches(selectors[s], tag, classes, stack)) mask |= 1L << s;
+            }
+            if (mask != 0) {
+                int[] containers = new int[active.size()];
+                for (int k = 0; k < containers.length; k++) containers[k] = active.get(k);
+                active.add(captures.size());
+                captures.add(new Capture(mask, containers));
+            }
+            stack.add(new Open(tag, classes, mask != 0));
+        }
+        return new Result(this, visible.toString(), captures);
+    }
+
+    private static final String[] NO_CLASSES = new String[0];
+
+    private static void closeTo(String tag, List<Open> stack, List<Integer> active) {
+        for (int k = stack.size() - 1; k >= 0; k--) {
+            if (!stack.get(k).tag.equals(tag)) continue;
+            while (stack.size() > k) {
+                Open o = stack.remove(stack.size() - 1);
+                if (o.capture) active.remove(active.size() - 1);
+            }
+            return;
+        }
+        // no matching open element: ignore the stray end tag
+    }
+
+    private static void appendText(String html, int from, int to, TextSink visible, List<Capture> captures, List<Integer> active) {
+        CharSequence chunk = html;
+        int amp = html.indexOf('&', from);
+        if (amp >= 0 && amp < to) {
+            chunk = Parser.unescapeEntities(html.substring(from, to), false);
+            from = 0;
+            to = chunk.length();
+        }
+        visible.append(chunk, from, to);
+        for (int k = 0; k < active.size(); k++) captures.get(active.get(k)).text.append(chunk, from, to);
+    }
+
+    private static void space(TextSink visible, List<Capture> captures, List<Integer> active) {
+        visible.space();
+        for (int k = 0; k < active.size(); k++) captures.get(active.get(k)).text.space();
+    }
+
+    // ---------------- selectors ----------------
+
+    private record Step(String tag, String[] classes) {
+        boolean matches(String t, String[] cls) {
+            if (tag != null && !tag.equals(t)) return false;
+            for (String want : classes) {
+                boolean found = false;
+                for (String have : cls) if (have.equals(want)) { found = true; break; }
+                if (!found) return false;
+            }
+            return true;
+        }
+    }
+
+    // element must match the last step; earlier steps must match ancestors, nearest first
+    private static boolean matches(Step[][] alternatives, String tag, String[] classes, List<Open> stack) {
+        for (Step[] steps : alternatives) {
+            if (!steps[steps.length - 1].matches(tag, classes)) continue;
+            int j = steps.length - 2;
+            for (int k = stack.size() - 1; k >= 0 && j >= 0; k--) {
+                Open o = stack.get(k);
+                if (steps[j].matches(o.tag, o.classes)) j--;
+            }
+            if (j < 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * "h2, .header h2, div.card" -> alternatives of descendant steps. null if anything else is used.
+     */
+    private static Step[][] compile(String css) {
+        String[] alts = css.split(",");
+        Step[][] out = new Step[alts.length][];
+        for (int a = 0; a < alts.length; a++) {
+            String alt = alts[a].trim();
+            if (alt.isEmpty()) return null;
+            String[] parts = alt.split("\\s+");
+            Step[] steps = new Step[parts.length];
+            for (int s = 0; s < parts.length; s++) {
+                String part = parts[s];
+                for (int k = 0; k < part.length(); k++) {
+                    char ch = part.charAt(k);
+                    if (ch == ':' || (!isNameChar(ch) && ch != '.')) return null;
+                }
+                String[] pieces = part.split("\\.", -1);
+                String tag = pieces[0].isEmpty() ? null : pieces[0].toLowerCase();
+                String[] classes = new String[pieces.length - 1];
+                for (int k = 1; k < pieces.length; k++) {
+                    if (pieces[k].isEmpty()) return null;
+                    classes[k - 1] = pieces[k];
+                }
+                if (tag == null && classes.length == 0) return null;
+                steps[s] = new Step(tag, classes);
+            }
+            out[a] = steps;
+        }
+        return out;
+    }
+
+    // ---------------- text ----------------
+
+    /**
+     * Collapses whitespace runs (nbsp included) to one space and drops leading/trailing space, like jsoup's text().
+     */
+    static final class TextSink {
+        private final StringBuilder sb = new StringBuilder();
+        private boolean pendingSpace;
+
+        void append(CharSequence s, int from, int to) {
+            for (int k = from; k < to; k++) {
+                char c = s.charAt(k);
+                if (Character.isWhitespace(c) || c == '\u00a0') {
+                    if (sb.length() > 0) pendingSpace = true;
+                } else {
+                    if (pendingSpace) sb.append(' ');
+                    pendingSpace = false;
+                    sb.append(c);
+                }
+            }
+        }
+
+        void space() {
+            if (sb.length() > 0) pendingSpace = true;
+        }
+
+        @Override
+        public String toString() { return sb.toString(); }
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == ':';
+    }
+
+    private static int indexOfIgnoreCase(String s, String needle, int from) {
+        for (int k = from; k + needle.length() <= s.length(); k++) {
+            if (s.regionMatches(true, k, needle, 0, needle.length())) return k;
+        }
+        return -1;
+    }
+
+    static boolean containsIgnoreCase(String s, String needle) {
+        return indexOfIgnoreCase(s, needle, 0) >= 0;
+    }
+}
@@ -0,0 +1,205 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import com.sun.mail.imap.IMAPFolder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.mail.Folder;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Store;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+/**
+ * Pool of IMAP connections used by the ingestion workers (fetch bodies, flag and move by UID).
+ *
+ * The IDLE connection is owned by EmailReceiverService and is never lent out, so IDLE no longer
+ * holds the protocol lock that workers need. Each pooled connection has its own INBOX folder and
+ * its own ImapMover; connections are (re)opened lazily when borrowed. Moves a closing mover couldn't make
+ * are queued on the next mover that opens.
+ */
+@Component
+public class ImapConnectionPool {
+    private static final Logger log = LoggerFactory.getLogger(ImapConnectionPool.class);
+
+    private final EmailProperties props;
+    private final TokenProvider tokenProvider;
+    private final Session session;
+
+    private final BlockingQueue<PooledConnection> available = new LinkedBlockingQueue<>();
+    private final List<PooledConnection> all = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService moverScheduler =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "imap-mover"));
+    private final Queue<ImapMover.Leftover> orphanedMoves = new ConcurrentLinkedQueue<>();
+    private volatile boolean open = false;
+
+    public ImapConnectionPool(EmailProperties props, TokenProvider tokenProvider, Session session) {
+        this.props = props;
+        this.tokenProvider = tokenProvider;
+        this.session = session;
+    }
+
+    public synchronized void start() {
+        if (open) return;
+        int size = Math.max(1, props.getWorkerConnections());
+        for (int i = 0; i < size; i++) {
+            PooledConnection c = new PooledConnection(i);
+            all.add(c);
+            available.add(c);
+        }
+        open = true;
+        log.info("IMAP worker pool started with {} connection(s)", size);
+    }
+
+    /**
+     * Open and authenticate a new Store. Used for both the IDLE connection and pooled connections.
+     */
+    public Store connectStore() throws MessagingException {
+        if (session == null) throw new IllegalStateException("Session bean not injected");
+
+        Store store = session.getStore(props.getProtocol());
+        if (props.isUseOauth2()) {
+            String token = tokenProvider.getAccessToken();
+            if (token == null) {
+                log.warn("OAuth2 requested but token not available; falling back to password auth");
+                store.connect(props.getHost(), props.getPort(), props.getUsername(), props.getPassword());
+            } else {
+                session.getProperties().put("mail.imaps.sasl.enable", "true");
+                session.getProperties().put("mail.imaps.sasl.mechanisms", "XOAUTH2");
+                store.connect(props.getHost(), props.getPort(), props.getUsername(), token);
+            }
+        } else {
+            store.connect(props.getHost(), props.getPort(), props.getUsername(), props.getPassword());
+        }
+        return store;
+    }
+
+    /**
+     * Borrow a connected worker connection. Must be given back with release().
+     */
+    public PooledConnection borrow() throws MessagingException, InterruptedException {
+        if (!open) throw new MessagingException("IMAP worker pool not started");
+        long timeout = props.getConnectionBorrowTimeoutMillis();
+        PooledConnection c = available.poll(timeout, TimeUnit.MILLISECONDS);
+        if (c == null) throw new MessagingException("No IMAP worker connection available within " + timeout + "ms");
+        try {
+            c.ensureOpen();
+        } catch (MessagingException | RuntimeException e) {
+            available.offer(c);
+            throw e;
+        }
+        return c;
+    }
+
+    public void release(PooledConnection c) {
+        if (c != null && open) available.offer(c);
+    }
+
+    /**
+     * NOOP the connections nobody is using right now so the server doesn't drop them.
+     */
+    public void keepAlive() {
+        int n = available.size();
+        for (int i = 0; i < n; i++) {
+            PooledConnection c = available.poll();
+            if (c == null) break;
+            try {
+                if (c.isOpen()) c.folder().doCommand(protocol -> { protocol.simpleCommand("NOOP", null); return null; });
+            } catch (Exception e) {
+                log.warn("Keepalive failed for pooled connection {}", c.id, e);
+                c.closeQuietly();
+            } finally {
+                release(c);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        int connected = 0;
+        int pendingMoves = 0;
+        for (PooledConnection c : all) {
+            if (c.isOpen()) connected++;
+            ImapMover m = c.mover;
+            if (m != null) pendingMoves += m.pendingCount();
+        }
+        s.put("size", all.size());
+        s.put("available", available.size());
+        s.put("connected", connected);
+        for (ImapMover.Leftover l : orphanedMoves) pendingMoves += l.size();
+        s.put("moverPending", pendingMoves);
+        s.put("moverScheduler", !moverScheduler.isShutdown());
+        return s;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        open = false;
+        for (PooledConnection c : all) c.closeQuietly();
+        all.clear();
+        available.clear();
+        moverScheduler.shutdownNow();
+        for (ImapMover.Leftover l; (l = orphanedMoves.poll()) != null; ) {
+            // claimed already, so no sweep will pick these up again
+            l.moves().forEach((folder, uids) ->
+                    log.error("Shut down with {} claimed message(s) not moved to {}, left in INBOX: UIDs {}",
+                            uids.size(), folder, ImapMover.uidSet(uids)));
+        }
+    }
+
+    public final class PooledConnection {
+        private final int id;
+        private volatile Store store;
+        private volatile IMAPFolder folder;
+        private volatile ImapMover mover;
+
+        private PooledConnection(int id) {
+            this.id = id;
+        }
+
+        public IMAPFolder folder() { return folder; }
+
+        public ImapMover mover() { return mover; }
+
+        boolean isOpen() {
+            return store != null && store.isConnected() && folder != null && folder.isOpen();
+        }
+
+        private void ensureOpen() throws MessagingException {
+            if (isOpen()) return;
+            closeQuietly();
+            log.info("Opening pooled IMAP connection {}", id);
+            store = connectStore();
+            Folder f = store.getFolder("INBOX");
+            if (f == null || !f.exists()) throw new MessagingException("INBOX not found");
+            folder = (IMAPFolder) f;
+            folder.open(Folder.READ_WRITE);
+            mover = new ImapMover(store, folder, moverScheduler, props.getMoverBatchSize(), props.getMoverFlushMillis());
+            mover.start();
+            for (ImapMover.Leftover l; (l = orphanedMoves.poll()) != null; ) {
+                log.info("Re-queueing {} move(s) left by a closed connection", l.size());
+                mover.enqueue(l);
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                if (mover != null) {
+                    ImapMover.Leftover left = mover.close();
+                    if (left.size() > 0) {
+                        log.warn("Pooled connection {} closed with {} unmoved message(s), re-queueing on the next connection", id, left.size());
+                        orphanedMoves.add(left);
+                    }
+                }
+            } catch (Exception e) { log.warn("Error closing mover", e); } finally { mover = null; }
+            try { if (folder != null && folder.isOpen()) folder.close(true); } catch (Exception e) { log.warn("Error closing pooled folder", e); } finally { folder = null; }
+            try { if (store != null && store.isConnected()) store.close(); } catch (Exception e) { log.warn("Error closing pooled store", e); } finally { store = null; }
+        }
+    }
+}
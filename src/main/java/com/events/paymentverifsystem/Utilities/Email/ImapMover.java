@@ -0,0 +1,259 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import com.sun.mail.iap.Argument;
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.protocol.BASE64MailboxEncoder;
+import com.sun.mail.imap.protocol.IMAPProtocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.mail.Folder;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Store;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces mailbox moves and SEEN flag updates for one IMAP connection.
+ *
+ * Messages are queued by UID per destination folder and flushed either every flushMillis or as soon as
+ * a destination reaches batchSize. Each flush issues one UID STORE +FLAGS (\Seen) for the messages that
+ * need it and one UID MOVE (RFC 6851) per destination; servers without MOVE get UID COPY + UID STORE \Deleted
+ * (+ UID EXPUNGE when UIDPLUS is available).
+ * Destination folders are checked/created once and cached.
+ *
+ * Queued messages are already claimed, so the sweep won't look at them again: close() drains the queue
+ * synchronously and hands back whatever it still couldn't move, for the pool to queue on another connection.
+ */
+public class ImapMover {
+    private static final Logger log = LoggerFactory.getLogger(ImapMover.class);
+
+    private static final int FINAL_FLUSH_ATTEMPTS = 3;
+
+    private final Store store;
+    private final IMAPFolder source;
+    private final ScheduledExecutorService scheduler;
+    private final int batchSize;
+
+    // destination folder -> UIDs waiting to be moved
+    private final Map<String, List<Long>> pendingMoves = new HashMap<>();
+    private final Set<Long> pendingSeen = new TreeSet<>();
+    private final Object lock = new Object();
+    // one flush at a time, so close() can wait for the scheduled one
+    private final Object flushMonitor = new Object();
+
+    private final Map<String, Folder> destinations = new ConcurrentHashMap<>();
+    private volatile Boolean supportsMove;
+    private final long flushMillis;
+    // both guarded by lock
+    private ScheduledFuture<?> flushFuture;
+    private boolean closed = false;
+
+    public ImapMover(Store store, IMAPFolder source, ScheduledExecutorService scheduler, int batchSize, long flushMillis) {
+        this.store = store;
+        this.source = source;
+        this.scheduler = scheduler;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushMillis = Math.max(10, flushMillis);
+    }
+
+    /**
+     * Starts the periodic flush; until then moves only go out when a destination fills a batch.
+     */
+    public void start() {
+        synchronized (lock) {
+            if (flushFuture == null && !closed) {
+                flushFuture = scheduler.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Queue a message for moving out of the source folder. Never blocks on IMAP.
+     */
+    public void enqueue(Message msg, String folderName, boolean markSeen) throws MessagingException {
+        enqueue(source.getUID(msg), folderName, markSeen);
+    }
+
+    public void enqueue(long uid, String folderName, boolean markSeen) {
+        boolean full;
+        synchronized (lock) {
+            // checked under the lock so nothing is added after close() took the queue
+            if (closed) throw new IllegalStateException("mover closed");
+            List<Long> uids = pendingMoves.computeIfAbsent(folderName, k -> new ArrayList<>());
+            uids.add(uid);
+            if (markSeen) pendingSeen.add(uid);
+            full = uids.size() >= batchSize;
+        }
+        if (full) scheduler.execute(this::flushQuietly);
+    }
+
+    public int pendingCount() {
+        synchronized (lock) {
+            int n = 0;
+            for (List<Long> l : pendingMoves.values()) n += l.size();
+            return n;
+        }
+    }
+
+    private void flushQuietly() {
+        try { flush(); } catch (Exception e) { log.error("Mover flush failed: {}", e.getMessage()); }
+    }
+
+    /**
+     * Moves that were queued but not made; UIDs are valid on any connection to the same mailbox.
+     */
+    public record Leftover(Map<String, List<Long>> moves, Set<Long> seen) {
+        public int size() {
+            int n = 0;
+            for (List<Long> l : moves.values()) n += l.size();
+            return n;
+        }
+    }
+
+    /**
+     * Queue moves another mover gave up on.
+     */
+    public void enqueue(Leftover leftover) {
+        leftover.moves().forEach((folder, uids) -> {
+            for (Long uid : uids) enqueue(uid, folder, leftover.seen().contains(uid));
+        });
+    }
+
+    /**
+     * Drain everything queued so far. Runs on the scheduler thread (or the closing thread).
+     */
+    public void flush() throws MessagingException {
+        synchronized (flushMonitor) {
+            flushLocked();
+        }
+    }
+
+    private void flushLocked() throws MessagingException {
+        Map<String, List<Long>> moves;
+        Set<Long> seen;
+        synchronized (lock) {
+            if (pendingMoves.isEmpty()) return;
+            moves = new HashMap<>(pendingMoves);
+            seen = new TreeSet<>(pendingSeen);
+            pendingMoves.clear();
+            pendingSeen.clear();
+        }
+        if (!source.isOpen()) {
+            requeue(moves, seen);
+            throw new MessagingException("source folder closed, " + seen.size() + " moves re-queued");
+        }
+
+        try {
+            if (!seen.isEmpty()) {
+                String set = uidSet(seen);
+                source.doCommand(p -> { p.simpleCommand("UID STORE " + set + " +FLAGS.SILENT (\\Seen)", null); return null; });
+                seen.clear();
+            }
+            for (Iterator<Map.Entry<String, List<Long>>> it = moves.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, List<Long>> e = it.next();
+                moveBatch(e.getValue(), destination(e.getKey()));
+                log.info("Moved {} message(s) to folder {}", e.getValue().size(), e.getKey());
+                it.remove();
+            }
+        } catch (MessagingException e) {
+            requeue(moves, seen);
+            throw e;
+        }
+    }
+
+    private void moveBatch(List<Long> uids, Folder dest) throws MessagingException {
+        String set = uidSet(uids);
+        Argument mbox = new Argument();
+        mbox.writeString(BASE64MailboxEncoder.encode(dest.getFullName()));
+        source.doCommand(p -> {
+            if (moveSupported(p)) {
+                p.simpleCommand("UID MOVE " + set, mbox);
+            } else {
+                p.simpleCommand("UID COPY " + set, mbox);
+                p.simpleCommand("UID STORE " + set + " +FLAGS.SILENT (\\Deleted)", null);
+                // pooled connections stay open for a long time, so don't wait for close() to expunge
+                if (p.hasCapability("UIDPLUS")) p.simpleCommand("UID EXPUNGE " + set, null);
+            }
+            return null;
+        });
+    }
+
+    private boolean moveSupported(IMAPProtocol p) {
+        Boolean s = supportsMove;
+        if (s == null) {
+            s = p.hasCapability("MOVE");
+            supportsMove = s;
+            log.info("IMAP server MOVE capability: {}", s);
+        }
+        return s;
+    }
+
+    private Folder destination(String name) throws MessagingException {
+        Folder f = destinations.get(name);
+        if (f != null) return f;
+        f = store.getFolder(name);
+        if (!f.exists()) f.create(Folder.HOLDS_MESSAGES);
+        destinations.put(name, f);
+        return f;
+    }
+
+    private void requeue(Map<String, List<Long>> moves, Set<Long> seen) {
+        synchronized (lock) {
+            moves.forEach((k, v) -> pendingMoves.computeIfAbsent(k, x -> new ArrayList<>()).addAll(v));
+            pendingSeen.addAll(seen);
+        }
+    }
+
+    /**
+     * Compact IMAP UID set, e.g. 3:7,9,12:13
+     */
+    static String uidSet(Collection<Long> uids) {
+        long[] sorted = uids.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < sorted.length) {
+            int j = i;
+            while (j + 1 < sorted.length && sorted[j + 1] == sorted[j] + 1) j++;
+            if (sb.length() > 0) sb.append(',');
+            sb.append(sorted[i]);
+            if (j > i) sb.append(':').append(sorted[j]);
+            i = j + 1;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Stop the periodic flush, wait for one in progress and flush what is left. Call before the source folder
+     * is closed. Returns the moves that still failed (empty if none); they are no longer this mover's.
+     */
+    public Leftover close() {
+        synchronized (lock) {
+            if (flushFuture != null) flushFuture.cancel(false);
+            closed = true;
+        }
+        Map<String, List<Long>> moves;
+        Set<Long> seen;
+        synchronized (flushMonitor) {
+            for (int attempt = 1; attempt <= FINAL_FLUSH_ATTEMPTS && pendingCount() > 0; attempt++) {
+                try {
+                    flushLocked();
+                } catch (Exception e) {
+                    log.warn("Final mover flush attempt {} failed: {}", attempt, e.getMessage());
+                }
+            }
+            synchronized (lock) {
+                moves = new HashMap<>(pendingMoves);
+                seen = new TreeSet<>(pendingSeen);
+                pendingMoves.clear();
+                pendingSeen.clear();
+            }
+        }
+        destinations.clear();
+        return new Leftover(moves, seen);
+    }
+}
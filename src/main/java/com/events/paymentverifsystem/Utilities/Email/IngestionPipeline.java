@@ -0,0 +1,417 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import com.events.paymentverifsystem.Utilities.Local.ClaimJournal;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentStore;
+import com.sun.mail.imap.IMAPFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.mail.FetchProfile;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.UIDFolder;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.events.paymentverifsystem.Utilities.Email.EmailParser.safeGetMessageId;
+
+/**
+ * Message ingestion split into stages connected by bounded queues:
+ *
+ *   header  - batch FETCH of ENVELOPE + Message-ID for queued UIDs, sender/subject prefilter
+ *             (non-matching mail goes straight to the skip folder) + one pipelined Redis processed check
+ *   body    - download only the text part (MessageBodyFetcher) on a pooled connection into a detached FetchedMessage;
+ *             resends whose text is already claimed under another Message-ID skip the parse (ContentDedupeIndex)
+ *   parse   - EmailParser (via the template registry) on platform threads sized to the CPU count, no IMAP access
+ *   persist - drop resends of a payment already claimed under another Message-ID (ContentDedupeIndex), then
+ *             Redis claim for a batch of parsed payments, journaled first (ClaimJournal) so a claim Redis can't
+ *             take is replayed later instead of lost
+ *   move    - hand UIDs to a pooled connection's ImapMover (which batches the UID MOVE itself)
+ *
+ * New UIDs are admitted under the email.ingest-* settings (bounded entry queue, overflow policy, virtual threads
+ * for the I/O stages). Every stage has its own concurrency/queue settings (IngestionPipelineProperties) and reports its own
+ * queue depth, wait and batch timings, so the slow stage is visible in the health map.
+ */
+@Component
+public class IngestionPipeline {
+    private static final Logger log = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    private static final String PROCESSED = "Processed";
+    private static final String UNPROCESSED = "Unprocessed";
+
+    // bodyFingerprint: ContentFingerprint.ofBody of the text it was parsed from, may be null
+    record Claim(long uid, PaymentInfo info, String bodyFingerprint) {}
+    record Move(long uid, String folder, boolean markSeen, int attempt) {
+        Move(long uid, String folder, boolean markSeen) {
+            this(uid, folder, markSeen, 1);
+        }
+    }
+
+    private static final int MOVE_ATTEMPTS = 3;
+
+    private final EmailProperties props;
+    private final ImapConnectionPool connectionPool;
+    private final PaymentStore paymentStore;
+    private final MessagePrefilter prefilter;
+    private final MessageBodyFetcher bodyFetcher;
+    private final ExtractionTemplateRegistry templates;
+    private final ContentDedupeIndex contentIndex;
+    private final ProcessedMessageCache processedCache;
+    private final ClaimJournal journal;
+
+    // business TTL and processed TTL (configurable)
+    private final Duration businessKeyTtl = Duration.ofMinutes(20);
+    private final int processedKeyTtlSeconds;
+
+    private final PipelineStage<Long> headerStage;
+    private final PipelineStage<Long> bodyStage;
+    private final PipelineStage<FetchedMessage> parseStage;
+    private final PipelineStage<Claim> persistStage;
+    private final PipelineStage<Move> moveStage;
+    private final List<PipelineStage<?>> stages;
+
+    public IngestionPipeline(IngestionPipelineProperties pipelineProps,
+                             EmailProperties props,
+                             ImapConnectionPool connectionPool,
+                             PaymentStore paymentStore,
+                             MessagePrefilter prefilter,
+                             MessageBodyFetcher bodyFetcher,
+                             ExtractionTemplateRegistry templates,
+                             ContentDedupeIndex contentIndex,
+                             ProcessedMessageCache processedCache,
+                             ClaimJournal journal,
+                             EmailProcessedStoreProperties processedProps) {
+        this.props = props;
+        this.connectionPool = connectionPool;
+        this.paymentStore = paymentStore;
+        this.prefilter = prefilter;
+        this.bodyFetcher = bodyFetcher;
+        this.templates = templates;
+        this.contentIndex = contentIndex;
+        this.processedCache = processedCache;
+        this.journal = journal;
+        this.processedKeyTtlSeconds = (int) processedProps.getProcessedMessageTtlSeconds();
+
+        boolean vt = props.isIngestVirtualThreads();
+        IngestionPipelineProperties.Stage h = pipelineProps.getHeader();
+        IngestionPipelineProperties.Stage b = pipelineProps.getBody();
+        IngestionPipelineProperties.Stage p = pipelineProps.getParse();
+        IngestionPipelineProperties.Stage s = pipelineProps.getPersist();
+        IngestionPipelineProperties.Stage m = pipelineProps.getMove();
+        int headerCapacity = h.getQueueCapacity() > 0 ? h.getQueueCapacity() : props.getIngestQueueCapacity();
+        int bodyConcurrency = b.getConcurrency() > 0 ? b.getConcurrency()
+                : props.getIngestMaxConcurrent() > 0 ? props.getIngestMaxConcurrent() : props.getWorkerConnections();
+        int parseConcurrency = p.getConcurrency() > 0 ? p.getConcurrency() : Runtime.getRuntime().availableProcessors();
+
+        this.headerStage = new PipelineStage<>("header", h.getConcurrency(), headerCapacity, h.getBatchSize(), h.getLingerMillis(), vt, this::fetchHeaders,
+                (uid, e) -> failed(uid, "header"));
+        this.bodyStage = new PipelineStage<>("body", bodyConcurrency, b.getQueueCapacity(), b.getBatchSize(), b.getLingerMillis(), vt, this::fetchBodies,
+                (uid, e) -> failed(uid, "body"));
+        this.parseStage = new PipelineStage<>("parse", parseConcurrency, p.getQueueCapacity(), p.getBatchSize(), p.getLingerMillis(), false, this::parse,
+                (fm, e) -> failed(fm.getUid(), "parse"));
+        this.persistStage = new PipelineStage<>("persist", s.getConcurrency(), s.getQueueCapacity(), s.getBatchSize(), s.getLingerMillis(), vt, this::persist,
+                (c, e) -> failed(c.uid(), "persist"));
+        this.moveStage = new PipelineStage<>("move", m.getConcurrency(), m.getQueueCapacity(), m.getBatchSize(), m.getLingerMillis(), vt, this::move, this::moveFailed);
+        this.stages = List.of(headerStage, bodyStage, parseStage, persistStage, moveStage);
+    }
+
+    public void start() {
+        for (PipelineStage<?> st : stages) st.start();
+        log.info("Ingestion pipeline started");
+    }
+
+    /**
+     * Entry point for IDLE events and the sweep. Returns false if the header stage rejected the UID.
+     */
+    public boolean submit(long uid) {
+        return headerStage.offer(uid, props.getIngestOverflowPolicy(), props.getIngestBlockTimeoutMillis());
+    }
+
+    // ---------------- stages ----------------
+
+    private void fetchHeaders(List<Long> uids) throws Exception {
+        List<Long> found = new ArrayList<>(uids.size());
+        List<String> ids = new ArrayList<>(uids.size());
+        List<Long> skipped = new ArrayList<>();
+
+        ImapConnectionPool.PooledConnection conn = connectionPool.borrow();
+        try {
+            IMAPFolder folder = conn.folder();
+            Message[] msgs = folder.getMessagesByUID(toArray(uids));
+            List<Message> present = new ArrayList<>(msgs.length);
+            for (Message msg : msgs) if (msg != null && !msg.isExpunged()) present.add(msg);
+            if (present.isEmpty()) return;
+
+            FetchProfile fp = new FetchProfile();
+            fp.add(UIDFolder.FetchProfileItem.UID);
+            fp.add(FetchProfile.Item.ENVELOPE);
+            fp.add("Message-ID");
+            Message[] arr = present.toArray(new Message[0]);
+            folder.fetch(arr, fp);
+            for (Message msg : arr) {
+                long uid = folder.getUID(msg);
+                if (!prefilter.accepts(msg)) {
+                    skipped.add(uid);
+                    continue;
+                }
+                found.add(uid);
+                ids.add(safeGetMessageId(msg));
+            }
+        } finally {
+            connectionPool.release(conn);
+        }
+
+        // not payment mail: no body download, no Redis claim, leave it unread for humans
+        for (Long uid : skipped) moveStage.put(new Move(uid, prefilter.getSkipFolder(), false));
+        if (!skipped.isEmpty()) log.info("Prefilter skipped {} message(s) to {}", skipped.size(), prefilter.getSkipFolder());
+
+        // --- Fast path: local cache, then one pipelined Redis check for what it can't answer (fails open) ---
+        List<Boolean> processed = processedCache.areProcessed(ids);
+        for (int i = 0; i < found.size(); i++) {
+            if (processed.get(i)) {
+                log.debug("Message already processed in Redis (m-id={}), skipping.", ids.get(i));
+                // still move to Processed for mailbox cleanliness
+                moveStage.put(new Move(found.get(i), PROCESSED, true));
+            } else {
+                bodyStage.put(found.get(i));
+            }
+        }
+        if (found.size() + skipped.size() < uids.size()) log.debug("{} UID(s) no longer in INBOX, skipped", uids.size() - found.size() - skipped.size());
+    }
+
+    private void fetchBodies(List<Long> uids) throws Exception {
+        List<FetchedMessage> fetched = new ArrayList<>(uids.size());
+        List<Long> failed = new ArrayList<>();
+        List<Long> partFailed = new ArrayList<>();
+
+        ImapConnectionPool.PooledConnection conn = connectionPool.borrow();
+        try {
+            IMAPFolder folder = conn.folder();
+            Message[] msgs = folder.getMessagesByUID(toArray(uids));
+            FetchProfile fp = new FetchProfile();
+            fp.add(FetchProfile.Item.ENVELOPE);
+            List<Message> present = new ArrayList<>(msgs.length);
+            for (Message msg : msgs) if (msg != null && !msg.isExpunged()) present.add(msg);
+            folder.fetch(present.toArray(new Message[0]), fp);
+
+            List<String> bodies = bodyFetcher.fetchText(folder, present);
+            for (int i = 0; i < present.size(); i++) {
+                Message msg = present.get(i);
+                long uid = folder.getUID(msg);
+                if (bodies.get(i) == null) {
+                    partFailed.add(uid);
+                    continue;
+                }
+                try {
+                    fetched.add(FetchedMessage.from(uid, msg, bodies.get(i)));
+                } catch (Exception e) {
+                    log.error("Error fetching message body uid={}", uid, e);
+                    failed.add(uid);
+                }
+            }
+        } finally {
+            connectionPool.release(conn);
+        }
+
+        // a text part that couldn't be fetched fails the batch before anything is handed on: the stage retries
+        // it one message at a time, and a single message that still fails goes to Unprocessed
+        if (!partFailed.isEmpty()) {
+            throw new MessagingException("Text part fetch failed for " + partFailed.size() + " of " + uids.size() + " message(s): " + partFailed);
+        }
+        // resends with text already claimed under another Message-ID: no parse, straight to Processed
+        List<Boolean> dup = contentIndex.duplicateBodies(fetched);
+        for (int i = 0; i < fetched.size(); i++) {
+            FetchedMessage fm = fetched.get(i);
+            if (dup.get(i)) {
+                log.info("Text of mid={} already claimed under another Message-ID, moving to Processed without parsing", fm.getMessageId());
+                moveStage.put(new Move(fm.getUid(), PROCESSED, true));
+            } else {
+                parseStage.put(fm);
+            }
+        }
+        // On unexpected errors, move to Unprocessed so it won't keep being retried forever
+        for (Long uid : failed) moveStage.put(new Move(uid, UNPROCESSED, false));
+    }
+
+    private void parse(List<FetchedMessage> batch) throws InterruptedException {
+        Instant cutoff = Instant.now().minus(1, ChronoUnit.DAYS);
+        for (FetchedMessage fm : batch) {
+            String messageId = fm.getMessageId();
+
+            // parse full message (this is the heavy work) ---
+            PaymentInfo info = templates.parse(fm);
+            if (info == null) {
+                log.info("Could not parse payment info; moving to Unprocessed (mid={})", messageId);
+                moveStage.put(new Move(fm.getUid(), UNPROCESSED, true));
+                continue;
+            }
+
+            // Ensure the PaymentInfo contains the messageId we used (parser might give it)
+            if (info.getMessageId() == null || info.getMessageId().isBlank()) {
+                info.setMessageId(messageId);
+            } else {
+                // normalize parser-provided id to our canonical form (avoid CRLF issues)
+                messageId = info.getMessageId();
+            }
+
+            // timestamp check: skip if older than 1 day (business rule)
+            if (info.getPaidOn().isBefore(cutoff)) {
+                log.info("Payment {} older than 1 day ({}). mid={}", info.getPaymentId(), info.getPaidOn(), messageId);
+                moveStage.put(new Move(fm.getUid(), PROCESSED, true));
+                continue;
+            }
+
+            persistStage.put(new Claim(fm.getUid(), info, fm.bodyFingerprint()));
+        }
+    }
+
+    private void persist(List<Claim> all) throws InterruptedException {
+        // resends / forwards of a payment already claimed under another Message-ID skip the claim
+        List<PaymentInfo> allInfos = new ArrayList<>(all.size());
+        for (Claim c : all) allInfos.add(c.info());
+        List<Boolean> dup = contentIndex.duplicates(allInfos);
+        List<Claim> batch = new ArrayList<>(all.size());
+        List<PaymentInfo> infos = new ArrayList<>(all.size());
+        for (int i = 0; i < all.size(); i++) {
+            Claim c = all.get(i);
+            if (dup.get(i)) {
+                log.info("Payment {} already claimed under another Message-ID (mid={}), moving to Processed",
+                        c.info().getPaymentId(), c.info().getMessageId());
+                moveStage.put(new Move(c.uid(), PROCESSED, true));
+            } else {
+                batch.add(c);
+                infos.add(c.info());
+            }
+        }
+        if (batch.isEmpty()) return;
+
+        // on disk before Redis sees it; null = no journal (disabled or the write failed)
+        long[] seqs = journal.append(infos, businessKeyTtl, processedKeyTtlSeconds);
+
+        // one pipelined round trip for the whole batch; per-item result is true if we claimed it, null if
+        // Redis couldn't say. While the journal is still replaying, Redis is known to be down: don't wait
+        // out its timeout for every batch, the replayer takes these too.
+        List<Boolean> claimed = null;
+        if (seqs == null || !journal.isDegraded()) {
+            try {
+                claimed = paymentStore.savePaymentsAtomic(infos, businessKeyTtl, processedKeyTtlSeconds);
+            } catch (Exception e) {
+                log.error("Error while saving {} payment(s) to Redis", infos.size(), e);
+            }
+        }
+
+        // only claims that went through (or that the journal holds) own their content fingerprint
+        List<PaymentInfo> owned = new ArrayList<>(batch.size());
+        List<String> ownedBodies = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Claim c = batch.get(i);
+            PaymentInfo info = c.info();
+            Boolean won = claimed == null ? null : claimed.get(i);
+            if (Boolean.TRUE.equals(won) || (won == null && seqs != null)) {
+                owned.add(info);
+                ownedBodies.add(c.bodyFingerprint());
+            }
+            if (seqs != null) {
+                if (won != null) journal.complete(seqs[i]);
+                else journal.release(seqs[i]);
+            }
+            if (Boolean.TRUE.equals(won)) {
+                processedCache.markClaimed(info.getMessageId());
+                log.info("Claimed and saved payment {} (mid={})", info.getPaymentId(), info.getMessageId());
+                // TODO: notify downstream (webhook, business queue) if needed
+            } else if (won != null) {
+                log.info("Payment {} already claimed by another instance (mid={}), moving to Processed", info.getPaymentId(), info.getMessageId());
+            } else if (seqs != null) {
+                log.warn("Redis unavailable, payment {} kept in the claim journal for replay (mid={})", info.getPaymentId(), info.getMessageId());
+            } else {
+                // nothing holds this claim: leave the mail in INBOX for the next sweep
+                log.error("Could not claim payment {} and no journal to keep it (mid={}), leaving it in INBOX", info.getPaymentId(), info.getMessageId());
+                continue;
+            }
+            moveStage.put(new Move(c.uid(), PROCESSED, true));
+        }
+        contentIndex.register(owned, ownedBodies);
+    }
+
+    private void move(List<Move> batch) throws Exception {
+        ImapConnectionPool.PooledConnection conn = connectionPool.borrow();
+        try {
+            ImapMover mover = conn.mover();
+            for (Move m : batch) mover.enqueue(m.uid(), m.folder(), m.markSeen());
+        } finally {
+            connectionPool.release(conn);
+        }
+    }
+
+    // a stage gave up on this message: same as any other unexpected error, it goes to Unprocessed for a human.
+    // Waiting for the sweep isn't enough, it never sees mail without a Message-ID.
+    private void failed(long uid, String stage) throws InterruptedException {
+        log.error("Ingestion failed in the {} stage for uid={}, moving to Unprocessed", stage, uid);
+        moveStage.put(new Move(uid, UNPROCESSED, false));
+    }
+
+    // runs on a move worker, so it must not block on its own queue
+    private void moveFailed(Move m, Exception cause) {
+        if (m.attempt() < MOVE_ATTEMPTS
+                && moveStage.offer(new Move(m.uid(), m.folder(), m.markSeen(), m.attempt() + 1), PipelineStage.OverflowPolicy.DROP, 0)) {
+            log.warn("Move of uid={} to {} failed (attempt {}), retrying: {}", m.uid(), m.folder(), m.attempt(), cause.getMessage());
+            return;
+        }
+        log.error("Giving up moving uid={} to {} after {} attempt(s); it stays in INBOX", m.uid(), m.folder(), m.attempt(), cause);
+    }
+
+    private static long[] toArray(List<Long> uids) {
+        long[] out = new long[uids.size()];
+        for (int i = 0; i < out.length; i++) out[i] = uids.get(i);
+        return out;
+    }
+
+    // ---------------- lifecycle / stats ----------------
+
+    public boolean isRunning() {
+        for (PipelineStage<?> st : stages) if (!st.isRunning()) return false;
+        return true;
+    }
+
+    /**
+     * Stop stage by stage so items already in flight can still reach the move stage.
+     */
+    public void shutdown(long timeoutMillis) {
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        try {
+            for (PipelineStage<?> st : stages) {
+                st.shutdown();
+                if (!st.awaitTermination(deadline)) {
+                    log.warn("Pipeline stage {} did not drain in time", st.getName());
+                    st.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (PipelineStage<?> st : stages) st.shutdownNow();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        for (PipelineStage<?> st : stages) s.put(st.getName(), st.getStats());
+        Map<String, Object> pf = new LinkedHashMap<>();
+        pf.put("enabled", prefilter.isEnabled());
+        pf.put("passed", prefilter.getPassedCount());
+        pf.put("skipped", prefilter.getSkippedCount());
+        s.put("prefilter", pf);
+        s.put("bodyFetch", bodyFetcher.getStats());
+        s.put("templates", templates.getStats());
+        s.put("contentDedupe", contentIndex.getStats());
+        s.put("processedCache", processedCache.getStats());
+        s.put("journal", journal.getStats());
+        return s;
+    }
+}
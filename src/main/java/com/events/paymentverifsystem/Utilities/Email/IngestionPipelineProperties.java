@@ -0,0 +1,65 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-stage settings for IngestionPipeline (prefix email.pipeline).
+ *
+ * Admission (overflow policy, entry queue size, thread kind) is configured by the email.ingest-* settings in
+ * EmailProperties. concurrency 0 means: body -> email.ingest-max-concurrent (then email.worker-connections),
+ * parse -> available processors; header queueCapacity 0 means email.ingest-queue-capacity.
+ */
+@Component
+@ConfigurationProperties(prefix = "email.pipeline")
+public class IngestionPipelineProperties {
+
+    private Stage header = new Stage(2, 0, 50, 20);
+    private Stage body = new Stage(0, 200, 5, 0);
+    private Stage parse = new Stage(0, 200, 1, 0);
+    private Stage persist = new Stage(2, 500, 50, 20);
+    private Stage move = new Stage(1, 1000, 100, 20);
+
+    public static class Stage {
+        private int concurrency;
+        private int queueCapacity;
+        private int batchSize;
+        private long lingerMillis;
+
+        public Stage() {}
+
+        public Stage(int concurrency, int queueCapacity, int batchSize, long lingerMillis) {
+            this.concurrency = concurrency;
+            this.queueCapacity = queueCapacity;
+            this.batchSize = batchSize;
+            this.lingerMillis = lingerMillis;
+        }
+
+        public int getConcurrency() { return concurrency; }
+        public void setConcurrency(int concurrency) { this.concurrency = concurrency; }
+
+        public int getQueueCapacity() { return queueCapacity; }
+        public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+
+        public int getBatchSize() { return batchSize; }
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+        public long getLingerMillis() { return lingerMillis; }
+        public void setLingerMillis(long lingerMillis) { this.lingerMillis = lingerMillis; }
+    }
+
+    public Stage getHeader() { return header; }
+    public void setHeader(Stage header) { this.header = header; }
+
+    public Stage getBody() { return body; }
+    public void setBody(Stage body) { this.body = body; }
+
+    public Stage getParse() { return parse; }
+    public void setParse(Stage parse) { this.parse = parse; }
+
+    public Stage getPersist() { return persist; }
+    public void setPersist(Stage persist) { this.persist = persist; }
+
+    public Stage getMove() { return move; }
+    public void setMove(Stage move) { this.move = move; }
+}
@@ -0,0 +1,31 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * The email listener's own state: the incremental sweep checkpoint per mailbox folder and the heartbeat.
+ * Lives next to the payments: RedisListenerStateStore with payments.store: redis, FileListenerStateStore
+ * with payments.store: memory.
+ *
+ * Checkpoint reads answer null when nothing is stored or the backend is unavailable, and writes log and drop
+ * failures: losing a checkpoint only costs one lookback sweep.
+ */
+public interface ListenerStateStore {
+
+    record Checkpoint(long uidValidity, long lastUid) {}
+
+    /** Stored checkpoint (UIDVALIDITY + last examined UID), or null. */
+    Checkpoint loadCheckpoint(String account, String folder);
+
+    void saveCheckpoint(String account, String folder, long uidValidity, long lastUid);
+
+    /** Records that the listener was healthy at {@code at}; forgotten after {@code ttl}. */
+    void writeHeartbeat(Instant at, Duration ttl);
+
+    /** Last heartbeat that has not expired, or null; throws if the backend can't be read. */
+    Instant lastHeartbeat();
+
+    /** Where the heartbeat is kept, for the health endpoint. */
+    String heartbeatLocation();
+}
@@ -0,0 +1,190 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import com.sun.mail.iap.Response;
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.protocol.BODY;
+import com.sun.mail.imap.protocol.BODYSTRUCTURE;
+import com.sun.mail.imap.protocol.FetchResponse;
+import com.sun.mail.imap.protocol.MessageSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeUtility;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Downloads only the text part the parser needs instead of message.getContent().
+ *
+ * One FETCH BODYSTRUCTURE for the whole batch, then per message a BODY.PEEK[section]<0.maxBytes> of the
+ * chosen part (text/html preferred over text/plain, attachments never touched), decoded as a stream.
+ * There is no whole-message fallback in PART mode: mail without a text part gets "" and a failed part fetch
+ * gets null, both counted. FULL mode uses EmailParser.extractText, which downloads the whole message.
+ */
+@Component
+public class MessageBodyFetcher {
+    private static final Logger log = LoggerFactory.getLogger(MessageBodyFetcher.class);
+
+    public enum Mode { PART, FULL }
+
+    private final EmailProperties props;
+
+    private final LongAdder partsFetched = new LongAdder();
+    private final LongAdder noTextPart = new LongAdder();
+    private final LongAdder partFailures = new LongAdder();
+
+    public MessageBodyFetcher(EmailProperties props) {
+        this.props = props;
+    }
+
+    private record TextPart(String section, BODYSTRUCTURE bs) {}
+
+    /**
+     * Returns bodies index-aligned with msgs: "" if the message has no text part, null if its part couldn't be
+     * fetched. Throws if the batch's BODYSTRUCTURE fetch fails.
+     */
+    public List<String> fetchText(IMAPFolder folder, List<Message> msgs) throws MessagingException {
+        List<String> out = new ArrayList<>(msgs.size());
+        if (msgs.isEmpty()) return out;
+
+        if (props.getBodyFetchMode() == Mode.FULL) {
+            for (Message msg : msgs) out.add(EmailParser.extractText(msg));
+            return out;
+        }
+
+        Map<Integer, BODYSTRUCTURE> structures;
+        try {
+            structures = fetchStructures(folder, msgs);
+        } catch (MessagingException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MessagingException("BODYSTRUCTURE fetch failed for " + msgs.size() + " message(s)", e);
+        }
+
+        int maxBytes = Math.max(1024, props.getBodyMaxBytes());
+        for (Message msg : msgs) {
+            String text = null;
+            BODYSTRUCTURE bs = structures.get(msg.getMessageNumber());
+            if (bs == null) {
+                partFailures.increment();
+                log.warn("No BODYSTRUCTURE returned for msgNum={}", msg.getMessageNumber());
+            } else {
+                try {
+                    text = fetchPart(folder, msg.getMessageNumber(), bs, maxBytes);
+                    if (text == null) {
+                        noTextPart.increment();
+                        log.info("msgNum={} has no text part, not downloading the rest", msg.getMessageNumber());
+                        text = "";
+                    } else {
+                        partsFetched.increment();
+                    }
+                } catch (Exception e) {
+                    partFailures.increment();
+                    log.warn("Partial body fetch failed for msgNum={}", msg.getMessageNumber(), e);
+                }
+            }
+            out.add(text);
+        }
+        return out;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("mode", props.getBodyFetchMode().name());
+        s.put("partsFetched", partsFetched.sum());
+        s.put("noTextPart", noTextPart.sum());
+        s.put("partFailures", partFailures.sum());
+        return s;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Integer, BODYSTRUCTURE> fetchStructures(IMAPFolder folder, List<Message> msgs) throws Exception {
+        int[] nums = new int[msgs.size()];
+        for (int i = 0; i < nums.length; i++) nums[i] = msgs.get(i).getMessageNumber();
+
+        return (Map<Integer, BODYSTRUCTURE>) folder.doCommand(p -> {
+            Response[] r = p.fetch(MessageSet.createMessageSets(nums), "BODYSTRUCTURE");
+            Map<Integer, BODYSTRUCTURE> map = new HashMap<>();
+            for (Response resp : r) {
+                if (!(resp instanceof FetchResponse)) continue;
+                FetchResponse fr = (FetchResponse) resp;
+                for (int i = 0; i < fr.getItemCount(); i++) {
+                    if (fr.getItem(i) instanceof BODYSTRUCTURE) map.put(fr.getNumber(), (BODYSTRUCTURE) fr.getItem(i));
+                }
+            }
+            p.notifyResponseHandlers(r);
+            p.handleResult(r[r.length - 1]);
+            return map;
+        });
+    }
+
+    /**
+     * Returns null if the structure has no text part, "" if the part is empty. Throws if the part fetch
+     * returns no body.
+     */
+    private String fetchPart(IMAPFolder folder, int msgno, BODYSTRUCTURE root, int maxBytes) throws Exception {
+        TextPart part = root.isMulti() ? pick(root, "") : (isText(root) ? new TextPart("1", root) : null);
+        if (part == null) return null;
+
+        BODY body = (BODY) folder.doCommand(p -> p.peekBody(msgno, part.section(), 0, maxBytes));
+        // no BODY in the reply is a failed fetch, not a message without text: the caller retries it
+        if (body == null) throw new MessagingException("no BODY[" + part.section() + "] returned for msgNum=" + msgno);
+        if (part.bs().size > maxBytes) {
+            log.debug("Text part {} of msgNum={} truncated at {} of {} bytes", part.section(), msgno, maxBytes, part.bs().size);
+        }
+
+        String encoding = part.bs().encoding == null ? "7bit" : part.bs().encoding;
+        Charset cs = charsetOf(part.bs());
+        StringBuilder sb = new StringBuilder(Math.min(maxBytes, Math.max(0, part.bs().size)));
+        try (InputStream in = MimeUtility.decode(body.getByteArrayInputStream(), encoding);
+             Reader reader = new InputStreamReader(in, cs)) {
+            char[] buf = new char[4096];
+            int n;
+            while ((n = reader.read(buf)) != -1) sb.append(buf, 0, n);
+        } catch (IOException e) {
+            // a part cut at maxBytes can end mid-sequence; keep what was decoded
+            log.debug("Decoding stopped early for msgNum={}: {}", msgno, e.getMessage());
+        }
+        return sb.toString();
+    }
+
+    private static TextPart pick(BODYSTRUCTURE bs, String section) {
+        TextPart plain = null;
+        for (int i = 0; i < bs.bodies.length; i++) {
+            BODYSTRUCTURE child = bs.bodies[i];
+            String s = section.isEmpty() ? String.valueOf(i + 1) : section + "." + (i + 1);
+            TextPart found = child.isMulti() ? pick(child, s) : (isText(child) ? new TextPart(s, child) : null);
+            if (found == null) continue;
+            if ("html".equalsIgnoreCase(found.bs().subtype)) return found;
+            if (plain == null) plain = found;
+        }
+        return plain;
+    }
+
+    private static boolean isText(BODYSTRUCTURE bs) {
+        if (bs.disposition != null && "attachment".equalsIgnoreCase(bs.disposition)) return false;
+        return "text".equalsIgnoreCase(bs.type)
+                && ("html".equalsIgnoreCase(bs.subtype) || "plain".equalsIgnoreCase(bs.subtype));
+    }
+
+    private static Charset charsetOf(BODYSTRUCTURE bs) {
+        try {
+            String cs = bs.cParams == null ? null : bs.cParams.get("charset");
+            if (cs != null) return Charset.forName(MimeUtility.javaCharset(cs));
+        } catch (Exception ignored) {}
+        return StandardCharsets.UTF_8;
+    }
+}
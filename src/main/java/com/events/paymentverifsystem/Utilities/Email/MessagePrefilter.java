@@ -0,0 +1,118 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.internet.InternetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Header-only filter applied in the pipeline's header stage, before any body download or Redis claim.
+ *
+ * Uses only ENVELOPE data (From, Subject). A message passes when its sender matches one of the configured
+ * domains/addresses (if any are configured) AND its subject matches one of the patterns (if any).
+ * With the filter disabled, or with no rules configured, everything passes.
+ */
+@Component
+@ConfigurationProperties(prefix = "email.prefilter")
+public class MessagePrefilter {
+
+    private boolean enabled = false;
+
+    /**
+     * e.g. razorpay.com - also matches subdomains such as mail.razorpay.com
+     */
+    private List<String> senderDomains = new ArrayList<>();
+    private List<String> senderAddresses = new ArrayList<>();
+
+    /**
+     * Case-insensitive regexes, any of which must be found in the subject.
+     */
+    private List<String> subjectPatterns = new ArrayList<>();
+
+    /**
+     * Where non-matching messages are moved.
+     */
+    private String skipFolder = "Skipped";
+
+    private volatile List<Pattern> compiledSubjects;
+    private final LongAdder passed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * Message must already have ENVELOPE fetched, otherwise this triggers a per-message fetch.
+     */
+    public boolean accepts(Message message) {
+        if (!enabled) return true;
+        String from = null;
+        String subject = null;
+        try {
+            Address[] froms = message.getFrom();
+            if (froms != null && froms.length > 0 && froms[0] instanceof InternetAddress) {
+                from = ((InternetAddress) froms[0]).getAddress();
+            }
+        } catch (Exception ignored) {}
+        try { subject = message.getSubject(); } catch (Exception ignored) {}
+
+        boolean ok = senderMatches(from) && subjectMatches(subject);
+        if (ok) passed.increment(); else skipped.increment();
+        return ok;
+    }
+
+    boolean senderMatches(String from) {
+        if (senderDomains.isEmpty() && senderAddresses.isEmpty()) return true;
+        if (from == null) return false;
+        String addr = from.trim().toLowerCase(Locale.ROOT);
+        for (String a : senderAddresses) {
+            if (addr.equals(a.trim().toLowerCase(Locale.ROOT))) return true;
+        }
+        int at = addr.lastIndexOf('@');
+        if (at < 0) return false;
+        String domain = addr.substring(at + 1);
+        for (String d : senderDomains) {
+            String dd = d.trim().toLowerCase(Locale.ROOT);
+            if (domain.equals(dd) || domain.endsWith("." + dd)) return true;
+        }
+        return false;
+    }
+
+    boolean subjectMatches(String subject) {
+        List<Pattern> patterns = compiledSubjects;
+        if (patterns == null) {
+            patterns = new ArrayList<>(subjectPatterns.size());
+            for (String p : subjectPatterns) patterns.add(Pattern.compile(p, Pattern.CASE_INSENSITIVE));
+            compiledSubjects = patterns;
+        }
+        if (patterns.isEmpty()) return true;
+        if (subject == null) return false;
+        for (Pattern p : patterns) if (p.matcher(subject).find()) return true;
+        return false;
+    }
+
+    public long getPassedCount() { return passed.sum(); }
+    public long getSkippedCount() { return skipped.sum(); }
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public List<String> getSenderDomains() { return senderDomains; }
+    public void setSenderDomains(List<String> senderDomains) { this.senderDomains = senderDomains; }
+
+    public List<String> getSenderAddresses() { return senderAddresses; }
+    public void setSenderAddresses(List<String> senderAddresses) { this.senderAddresses = senderAddresses; }
+
+    public List<String> getSubjectPatterns() { return subjectPatterns; }
+    public void setSubjectPatterns(List<String> subjectPatterns) {
+        this.subjectPatterns = subjectPatterns;
+        this.compiledSubjects = null;
+    }
+
+    public String getSkipFolder() { return skipFolder; }
+    public void setSkipFolder(String skipFolder) { this.skipFolder = skipFolder; }
+}
@@ -0,0 +1,111 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentFieldParser;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Per-message state shared by all EmailParser extractors.
+ *
+ * The jsoup document, its visible text and the visible text + subject + raw body string are built once, and
+ * payment id, amount and phone are searched in that one string (lazily, on first access), instead of each
+ * extractor calling doc.text() and running its regex over a freshly concatenated copy. The three patterns stay
+ * separate: folded into one alternation, a match for one field would hide an overlapping match for another
+ * (e.g. the digits of "Rs 9876543210" are also a phone number).
+ *
+ * A streamed context (see HtmlStreamScanner) takes its visible text and selector matches from the scanner;
+ * the jsoup document is then only built if something still asks for doc().
+ */
+final class ParseContext {
+
+    private static final Pattern PAYMENT_ID_PATTERN = Pattern.compile("(pay_[A-Za-z0-9_\\-]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern AMOUNT_PATTERN = Pattern.compile("₹\\s*([0-9,]+(?:\\.[0-9]{1,2})?)|Rs\\.?\\s*([0-9,]+(?:\\.[0-9]{1,2})?)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PHONE_PATTERN = Pattern.compile("(?:\\+?91[\\-\\s]?)?(\\d{10})");
+
+    final HtmlStreamScanner.Result streamed; // null on the DOM path
+    final String messageId;
+    final String subject;
+    final String raw;
+    final Date sentDate;
+    final String fromAddress;
+
+    // results of the combined scan (null if not found); the scan runs on first access, so a template
+    // that already found these fields never pays for it
+    boolean templateComplete; // set by EmailParser: every field came from the template
+
+    private Document doc;
+    private String visibleText;
+    private boolean scanned;
+    private String paymentId;
+    private long amountMinor = PaymentFieldParser.NO_AMOUNT;
+    private String phone;
+
+    ParseContext(FetchedMessage message) {
+        this.messageId = message.getMessageId();
+        this.subject = message.getSubject();
+        this.raw = message.getBody() == null ? "" : message.getBody();
+        this.sentDate = message.getSentDate();
+        this.fromAddress = message.getFromAddress();
+        this.streamed = null;
+    }
+
+    private ParseContext(FetchedMessage message, HtmlStreamScanner scanner) {
+        this.messageId = message.getMessageId();
+        this.subject = message.getSubject();
+        this.raw = message.getBody() == null ? "" : message.getBody();
+        this.sentDate = message.getSentDate();
+        this.fromAddress = message.getFromAddress();
+        this.streamed = scanner.scan(raw);
+        this.visibleText = streamed.visibleText;
+    }
+
+    static ParseContext streamed(FetchedMessage message, HtmlStreamScanner scanner) {
+        return new ParseContext(message, scanner);
+    }
+
+    Document doc() {
+        if (doc == null) doc = Jsoup.parse(raw);
+        return doc;
+    }
+
+    String visibleText() {
+        if (visibleText == null) visibleText = doc().text();
+        return visibleText;
+    }
+
+    String paymentId() { scan(); return paymentId; }
+
+    long amountMinor() { scan(); return amountMinor; }
+
+    String phone() { scan(); return phone; }
+
+    private void scan() {
+        if (scanned) return;
+        scanned = true;
+        String visible = visibleText();
+        String text = visible + " " + subject + " " + raw;
+
+        Matcher m = PAYMENT_ID_PATTERN.matcher(text);
+        if (m.find()) paymentId = m.group(1);
+
+        m = AMOUNT_PATTERN.matcher(text);
+        if (m.find()) {
+            int g = m.start(1) >= 0 ? 1 : 2;
+            amountMinor = PaymentFieldParser.parseAmountMinor(text, m.start(g), m.end(g));
+        }
+
+        // phone: visible text first, then the raw body; the subject was never searched for phones
+        m = PHONE_PATTERN.matcher(text);
+        m.region(0, visible.length());
+        if (m.find()) {
+            phone = m.group(1);
+        } else {
+            m.region(text.length() - raw.length(), text.length());
+            if (m.find()) phone = m.group(1);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One stage of the ingestion pipeline: a bounded queue drained by `concurrency` worker threads.
+ *
+ * Each worker takes up to batchSize items (waiting at most lingerMillis for a batch to fill) and hands
+ * them to the handler in one call. Between stages put() blocks, which is what gives the pipeline its
+ * backpressure; only the first stage applies an OverflowPolicy to new work.
+ *
+ * If the handler throws, the batch is retried one item at a time so one bad item can't sink the rest;
+ * items that still fail go to the FailureHandler instead of being dropped.
+ */
+public class PipelineStage<T> {
+    private static final Logger log = LoggerFactory.getLogger(PipelineStage.class);
+
+    public enum OverflowPolicy {
+        /** wait up to the admission timeout for queue space, then reject */
+        BLOCK,
+        /** reject immediately; the message stays in INBOX and the next sweep picks it up */
+        DROP,
+        /** run the item on the submitting thread */
+        CALLER_RUNS
+    }
+
+    @FunctionalInterface
+    public interface BatchHandler<T> {
+        void handle(List<T> batch) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface FailureHandler<T> {
+        void failed(T item, Exception cause) throws Exception;
+    }
+
+    private record Entry<T>(T item, long enqueuedNanos) {}
+
+    private final String name;
+    private final int concurrency;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final boolean virtualThreads;
+    private final BatchHandler<T> handler;
+    private final FailureHandler<T> onFailure;
+    private final BlockingQueue<Entry<T>> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean stopping = false;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder failedItems = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder totalHandleNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    public PipelineStage(String name, int concurrency, int queueCapacity, int batchSize, long lingerMillis,
+                         boolean virtualThreads, BatchHandler<T> handler, FailureHandler<T> onFailure) {
+        this.name = name;
+        this.concurrency = Math.max(1, concurrency);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMillis = Math.max(0, lingerMillis);
+        this.virtualThreads = virtualThreads;
+        this.handler = handler;
+        this.onFailure = onFailure;
+        this.queue = new ArrayBlockingQueue<>(this.queueCapacity);
+    }
+
+    public synchronized void start() {
+        if (!workers.isEmpty()) return;
+        ThreadFactory factory = virtualThreads
+                ? Thread.ofVirtual().name("ingest-" + name + "-", 0).factory()
+                : Thread.ofPlatform().name("ingest-" + name + "-", 0).daemon(true).factory();
+        for (int i = 0; i < concurrency; i++) {
+            Thread t = factory.newThread(this::workLoop);
+            workers.add(t);
+            t.start();
+        }
+    }
+
+    /**
+     * Admission for new work. Returns false if the item was rejected by the policy.
+     */
+    public boolean offer(T item, OverflowPolicy policy, long timeoutMillis) {
+        if (stopping) {
+            rejected.increment();
+            return false;
+        }
+        Entry<T> e = new Entry<>(item, System.nanoTime());
+        boolean accepted;
+        switch (policy) {
+            case BLOCK -> {
+                try {
+                    accepted = queue.offer(e, timeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    accepted = false;
+                }
+            }
+            case CALLER_RUNS -> {
+                accepted = queue.offer(e);
+                if (!accepted) {
+                    runBatch(List.of(item));
+                    return true;
+                }
+            }
+            default -> accepted = queue.offer(e);
+        }
+        if (!accepted) {
+            rejected.increment();
+            log.warn("Pipeline stage {} full ({}), item rejected by {} policy", name, queueCapacity, policy);
+        }
+        return accepted;
+    }
+
+    /**
+     * Hand-off from the previous stage; blocks while this stage is full.
+     */
+    public void put(T item) throws InterruptedException {
+        queue.put(new Entry<>(item, System.nanoTime()));
+    }
+
+    private void workLoop() {
+        List<Entry<T>> entries = new ArrayList<>(batchSize);
+        while (!stopping || !queue.isEmpty()) {
+            try {
+                Entry<T> first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                entries.add(first);
+                if (batchSize > 1) {
+                    queue.drainTo(entries, batchSize - 1);
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+                    while (entries.size() < batchSize && lingerMillis > 0) {
+                        long left = deadline - System.nanoTime();
+                        if (left <= 0) break;
+                        Entry<T> next = queue.poll(left, TimeUnit.NANOSECONDS);
+                        if (next == null) break;
+                        entries.add(next);
+                        queue.drainTo(entries, batchSize - entries.size());
+                    }
+                }
+            } catch (InterruptedException ie) {
+                break;
+            }
+
+            long now = System.nanoTime();
+            List<T> batch = new ArrayList<>(entries.size());
+            for (Entry<T> e : entries) {
+                long waited = now - e.enqueuedNanos();
+                totalWaitNanos.add(waited);
+                maxWaitNanos.accumulate(waited);
+                batch.add(e.item());
+            }
+            entries.clear();
+            runBatch(batch);
+        }
+    }
+
+    private void runBatch(List<T> batch) {
+        inFlight.addAndGet(batch.size());
+        long start = System.nanoTime();
+        try {
+            handler.handle(batch);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            failedBatches.increment();
+            for (T item : batch) fail(item, ie);
+        } catch (Exception e) {
+            failedBatches.increment();
+            log.error("Pipeline stage {} failed on a batch of {}", name, batch.size(), e);
+            if (batch.size() == 1) {
+                fail(batch.get(0), e);
+            } else {
+                for (T item : batch) retry(item);
+            }
+        } finally {
+            totalHandleNanos.add(System.nanoTime() - start);
+            inFlight.addAndGet(-batch.size());
+            processed.add(batch.size());
+            batches.increment();
+        }
+    }
+
+    private void retry(T item) {
+        if (Thread.currentThread().isInterrupted()) {
+            fail(item, new InterruptedException());
+            return;
+        }
+        try {
+            handler.handle(List.of(item));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            fail(item, ie);
+        } catch (Exception e) {
+            fail(item, e);
+        }
+    }
+
+    private void fail(T item, Exception cause) {
+        failedItems.increment();
+        try {
+            onFailure.failed(item, cause);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            log.error("Pipeline stage {} interrupted while handing off failed item {}", name, item);
+        } catch (Exception e) {
+            log.error("Pipeline stage {} could not hand off failed item {}", name, item, e);
+        }
+    }
+
+    /**
+     * Stop accepting work; workers exit once the queue is drained.
+     */
+    public void shutdown() {
+        stopping = true;
+    }
+
+    public void shutdownNow() {
+        stopping = true;
+        int dropped = queue.size();
+        queue.clear();
+        for (Thread t : workers) t.interrupt();
+        if (dropped > 0) log.warn("Pipeline stage {} stopped with {} queued item(s) dropped", name, dropped);
+    }
+
+    public boolean awaitTermination(long deadlineNanos) throws InterruptedException {
+        for (Thread t : workers) {
+            long left = deadlineNanos - System.nanoTime();
+            if (left <= 0) return false;
+            t.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(left)));
+            if (t.isAlive()) return false;
+        }
+        return true;
+    }
+
+    public boolean isRunning() {
+        return !stopping && !workers.isEmpty();
+    }
+
+    public String getName() { return name; }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        long b = batches.sum();
+        long p = processed.sum();
+        s.put("concurrency", concurrency);
+        s.put("threads", virtualThreads ? "virtual" : "platform");
+        s.put("queueDepth", queue.size());
+        s.put("queueCapacity", queueCapacity);
+        s.put("inFlight", inFlight.get());
+        s.put("processed", p);
+        s.put("batches", b);
+        s.put("failedBatches", failedBatches.sum());
+        s.put("failedItems", failedItems.sum());
+        s.put("rejected", rejected.sum());
+        s.put("avgBatchSize", b == 0 ? 0 : (double) p / b);
+        s.put("avgQueueWaitMillis", p == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum() / p));
+        s.put("maxQueueWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        s.put("avgBatchMillis", b == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalHandleNanos.sum() / b));
+        return s;
+    }
+}
@@ -0,0 +1,171 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentStore;
+import com.events.paymentverifsystem.Utilities.Redis.RedisPaymentStore;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process front for the processed:message check used by the header stage and the sweep.
+ *
+ *   recent LRU  - Message-IDs claimed within the processed TTL: answered "processed" locally
+ *   Bloom       - every id claimed in the window: "definitely not processed" locally
+ *   Redis       - only ids the Bloom filter might contain but the LRU doesn't know
+ *
+ * Filled from index:processed at startup and kept coherent through the processed:events channel, which
+ * SAVE_LUA publishes to on every claim (ours and other instances'). Until the warm-up has finished every
+ * check goes to Redis. A stale "not processed" is harmless: the claim itself is still SET NX.
+ * Off (pass-through) when the PaymentStore isn't shared.
+ */
+@Component
+public class ProcessedMessageCache {
+    private static final Logger log = LoggerFactory.getLogger(ProcessedMessageCache.class);
+
+    private final PaymentStore paymentStore;
+    private final RedisMessageListenerContainer listenerContainer; // null with payments.store: memory
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final ScalableBloomFilter bloom;
+    private final Map<String, Long> recent; // messageId -> claim time
+    private volatile boolean ready;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder lruHits = new LongAdder();
+    private final LongAdder bloomNegatives = new LongAdder();
+    private final LongAdder redisChecks = new LongAdder();
+    private final LongAdder redisPositives = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder warmed = new LongAdder();
+
+    public ProcessedMessageCache(PaymentStore paymentStore,
+                                 @Nullable RedisMessageListenerContainer listenerContainer,
+                                 EmailProcessedStoreProperties props) {
+        this.paymentStore = paymentStore;
+        this.listenerContainer = listenerContainer;
+        // an in-process store already answers locally
+        this.enabled = props.isLocalCache() && paymentStore.isShared() && listenerContainer != null;
+        this.ttlMillis = props.getProcessedMessageTtlSeconds() * 1000L;
+        this.bloom = new ScalableBloomFilter(props.getCacheBloomEntries(), props.getCacheBloomFpp(), ttlMillis);
+        int capacity = Math.max(16, props.getCacheLruEntries());
+        this.recent = new LinkedHashMap<>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        // subscribe before warming so nothing claimed in between is missed
+        listenerContainer.addMessageListener((message, pattern) ->
+                        add(new String(message.getBody(), StandardCharsets.UTF_8), System.currentTimeMillis(), published),
+                new ChannelTopic(RedisPaymentStore.PROCESSED_CHANNEL));
+        Thread t = new Thread(this::warm, "processed-cache-warm");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void warm() {
+        long since = System.currentTimeMillis() - ttlMillis;
+        try {
+            paymentStore.forEachProcessedSince(since, (mid, claimedAt) -> add(mid, claimedAt, warmed));
+            ready = true;
+            log.info("Processed-message cache warmed with {} id(s)", warmed.sum());
+        } catch (Exception e) {
+            log.warn("Could not warm processed-message cache; checks keep going to Redis", e);
+        }
+    }
+
+    /**
+     * Same contract as PaymentStore.areProcessed (index-aligned, fails open).
+     */
+    public List<Boolean> areProcessed(List<String> messageIds) {
+        if (!enabled) return paymentStore.areProcessed(messageIds);
+        List<Boolean> out = new ArrayList<>(messageIds.size());
+        List<Integer> remoteIdx = new ArrayList<>();
+        List<String> remote = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < messageIds.size(); i++) {
+            String mid = messageIds.get(i);
+            checks.increment();
+            Long claimedAt;
+            synchronized (recent) {
+                claimedAt = recent.get(mid);
+            }
+            if (claimedAt != null && now - claimedAt < ttlMillis) {
+                lruHits.increment();
+                out.add(true);
+            } else if (ready && !bloom.mightContain(mid)) {
+                bloomNegatives.increment();
+                out.add(false);
+            } else {
+                out.add(false);
+                remoteIdx.add(i);
+                remote.add(mid);
+            }
+        }
+        if (!remote.isEmpty()) {
+            redisChecks.add(remote.size());
+            List<Boolean> res = paymentStore.areProcessed(remote);
+            for (int k = 0; k < remote.size(); k++) {
+                if (!res.get(k)) continue;
+                redisPositives.increment();
+                out.set(remoteIdx.get(k), true);
+                // claim time unknown; counting from now only makes the local answer last a bit longer than the key
+                add(remote.get(k), now, null);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Local claim: don't wait for the pub/sub echo.
+     */
+    public void markClaimed(String messageId) {
+        if (enabled) add(messageId, System.currentTimeMillis(), null);
+    }
+
+    private void add(String messageId, long claimedAt, LongAdder counter) {
+        if (messageId == null) return;
+        bloom.put(messageId);
+        synchronized (recent) {
+            recent.put(messageId, claimedAt);
+        }
+        if (counter != null) counter.increment();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        long n = checks.sum();
+        s.put("enabled", enabled);
+        s.put("ready", ready);
+        s.put("checks", n);
+        s.put("lruHits", lruHits.sum());
+        s.put("bloomNegatives", bloomNegatives.sum());
+        s.put("redisChecks", redisChecks.sum());
+        s.put("redisPositives", redisPositives.sum());
+        s.put("localAnswerRate", n == 0 ? 0 : (double) (lruHits.sum() + bloomNegatives.sum()) / n);
+        s.put("pubsubReceived", published.sum());
+        s.put("warmed", warmed.sum());
+        s.put("bloomSlices", bloom.slices());
+        s.put("bloomApproxEntries", bloom.approximateElements());
+        synchronized (recent) {
+            s.put("lruEntries", recent.size());
+        }
+        return s;
+    }
+}
@@ -0,0 +1,76 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chain of Guava Bloom filters that grows instead of saturating: when the newest slice reaches its
+ * expected count a new one is added with twice the capacity and half the false-positive rate of the one
+ * before (the first gets half the target), so the combined rate stays under the configured one. A slice
+ * that hasn't been written to for longer than the retention window only holds ids whose Redis keys have
+ * expired, so it is dropped the next time the filter grows.
+ */
+final class ScalableBloomFilter {
+
+    private static final class Slice {
+        final BloomFilter<CharSequence> filter;
+        final long capacity;
+        final AtomicLong count = new AtomicLong();
+        volatile long lastPut = System.currentTimeMillis();
+
+        Slice(long capacity, double fpp) {
+            this.filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), capacity, fpp);
+            this.capacity = capacity;
+        }
+    }
+
+    private final long initialCapacity;
+    private final double fpp;
+    private final long retentionMillis;
+    private final List<Slice> slices = new CopyOnWriteArrayList<>();
+
+    ScalableBloomFilter(long initialCapacity, double fpp, long retentionMillis) {
+        this.initialCapacity = Math.max(1_000, initialCapacity);
+        this.fpp = fpp;
+        this.retentionMillis = retentionMillis;
+        slices.add(new Slice(this.initialCapacity, fpp / 2));
+    }
+
+    boolean mightContain(String id) {
+        for (Slice s : slices) if (s.filter.mightContain(id)) return true;
+        return false;
+    }
+
+    void put(String id) {
+        Slice current = slices.get(slices.size() - 1);
+        if (current.count.get() >= current.capacity) current = grow(current);
+        if (current.filter.put(id)) current.count.incrementAndGet();
+        current.lastPut = System.currentTimeMillis();
+    }
+
+    private synchronized Slice grow(Slice full) {
+        Slice current = slices.get(slices.size() - 1);
+        if (current != full) return current; // another thread already grew it
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        slices.removeIf(s -> s != full && s.lastPut < cutoff);
+        int n = slices.size();
+        Slice next = new Slice(full.capacity * 2, fpp / (2L << n));
+        slices.add(next);
+        return next;
+    }
+
+    int slices() {
+        return slices.size();
+    }
+
+    long approximateElements() {
+        long n = 0;
+        for (Slice s : slices) n += s.filter.approximateElementCount();
+        return n;
+    }
+}
@@ -0,0 +1,592 @@
+package com.events.paymentverifsystem.Utilities.Local;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentStore;
+import com.events.paymentverifsystem.Utilities.Redis.PaymentRecordCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal for payment claims, so a claim the pipeline has taken survives a store outage and a restart.
+ *
+ * The persist stage appends its batch and waits until it is on disk before calling the store. A TRUE or FALSE
+ * from the store completes the entry; null (outcome unknown) hands it to the replayer, which retries it every
+ * replay interval until the store answers. While anything is waiting for replay the journal is degraded and
+ * persist stops calling the store: mail keeps moving at the speed of the disk, and the backlog drains in
+ * replay-batch-sized store calls once Redis is back.
+ *
+ * On disk, segment files claims-[first seq].wal, memory-mapped and append only. A record is
+ *
+ *   int   length of type + seq + payload
+ *   int   CRC32 of type + seq + payload
+ *   byte  type (CLAIM, DONE)
+ *   long  seq
+ *   CLAIM payload: long business TTL millis, int processed TTL seconds, PaymentRecordCodec bytes
+ *   DONE payload:  none
+ *
+ * Appends are group-committed: one flusher thread forces the active segment for everything appended since its
+ * last force, so persist batches arriving together share one fsync. DONE records are never forced on their
+ * own; after a crash a completed claim can come back and is replayed, which the store answers with FALSE.
+ * A zero length or a bad CRC ends a segment (torn tail). A segment is deleted once every claim in it is done
+ * and it is no longer appended to; every start appends to a new one.
+ *
+ * A failed force fails the appends it was covering: they return null and the caller goes to the store
+ * directly, as if there were no journal. The next append tries the disk again.
+ */
+@Component
+public class ClaimJournal implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ClaimJournal.class);
+
+    private static final byte CLAIM = 1;
+    private static final byte DONE = 2;
+    private static final int HEADER = 8; // length + crc
+    private static final byte[] NO_PAYLOAD = new byte[0];
+
+    private final ClaimJournalProperties props;
+    private final PaymentStore paymentStore;
+    private final boolean enabled;
+    private final Path dir;
+
+    // appends, segment roll and retire; segments and active are only touched under it
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private long lastSeq;
+    private volatile long writtenSeq; // last CLAIM in a mapped buffer
+
+    private final Object syncMonitor = new Object();
+    private long durableSeq; // guarded by syncMonitor
+    private long failedSeq; // last seq a failed force was covering; guarded by syncMonitor
+    private volatile boolean running; // between start() and close()
+
+    private final ConcurrentSkipListMap<Long, Entry> pending = new ConcurrentSkipListMap<>();
+    private volatile boolean degraded;
+
+    private Thread flusher;
+    private ScheduledExecutorService replayer;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder replayFailures = new LongAdder();
+    private final LongAdder forces = new LongAdder();
+    private final LongAdder forcedClaims = new LongAdder();
+    private final LongAdder forceNanos = new LongAdder();
+    private final LongAdder writeErrors = new LongAdder();
+    private int recovered;
+
+    public ClaimJournal(ClaimJournalProperties props, PaymentStore paymentStore) {
+        this.props = props;
+        this.paymentStore = paymentStore;
+        this.dir = Paths.get(props.getDir());
+        boolean on = props.isEnabled() && paymentStore.isShared();
+        if (on) {
+            try {
+                recover();
+            } catch (IOException e) {
+                log.error("Claim journal unusable in {}, claims go straight to the store", dir, e);
+                on = false;
+            }
+        }
+        this.enabled = on;
+    }
+
+    /**
+     * Starts the flusher and the replayer; until then append() answers null and replay() does nothing.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled || running) return;
+        running = true;
+        flusher = new Thread(this::flushLoop, "claim-journal-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+        replayer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "claim-journal-replay");
+            t.setDaemon(true);
+            return t;
+        });
+        long every = Math.max(100, props.getReplayIntervalMillis());
+        replayer.scheduleWithFixedDelay(this::replaySafely, every, every, TimeUnit.MILLISECONDS);
+        log.info("Claim journal in {} ({} claim(s) to replay)", dir, recovered);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * True while claims are waiting for the store; callers can skip the store and leave them to the replayer.
+     */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    // ---------------- entries / segments ----------------
+
+    private static final class Entry {
+        final long seq;
+        final Segment segment;
+        final PaymentInfo info;
+        final long businessTtlMillis;
+        final int processedTtlSeconds;
+        // the caller is still waiting on the store for it; the replayer leaves it alone
+        volatile boolean inFlight;
+
+        Entry(long seq, Segment segment, PaymentInfo info, long businessTtlMillis, int processedTtlSeconds, boolean inFlight) {
+            this.seq = seq;
+            this.segment = segment;
+            this.info = info;
+            this.businessTtlMillis = businessTtlMillis;
+            this.processedTtlSeconds = processedTtlSeconds;
+            this.inFlight = inFlight;
+        }
+    }
+
+    // the mapping outlives the channel, so the file is only open while it is mapped
+    private static final class Segment {
+        final long firstSeq;
+        final Path path;
+        final MappedByteBuffer buf;
+        int position;
+        int live; // claims not yet done; guarded by appendLock
+
+        Segment(long firstSeq, Path path, MappedByteBuffer buf) {
+            this.firstSeq = firstSeq;
+            this.path = path;
+            this.buf = buf;
+        }
+
+        static Segment open(Path path, long firstSeq, long size) throws IOException {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new Segment(firstSeq, path, ch.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, ch.size())));
+            }
+        }
+    }
+
+    private static Path segmentPath(Path dir, long firstSeq) {
+        return dir.resolve(String.format("claims-%020d.wal", firstSeq));
+    }
+
+    private static long firstSeqOf(Path p) {
+        String name = p.getFileName().toString();
+        if (!name.startsWith("claims-") || !name.endsWith(".wal")) return -1;
+        try {
+            return Long.parseLong(name.substring(7, name.length() - 4));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // ---------------- append / complete ----------------
+
+    /**
+     * Journals the batch and returns once it is on disk, seqs index-aligned with infos; null if the journal is
+     * off or not running, or the write or its sync failed (the caller then claims in the store directly).
+     */
+    public long[] append(List<PaymentInfo> infos, Duration businessTtl, int processedTtlSeconds) throws InterruptedException {
+        if (!enabled || !running || infos.isEmpty()) return null;
+        byte[][] payloads = new byte[infos.size()][];
+        for (int i = 0; i < payloads.length; i++) {
+            byte[] record = PaymentRecordCodec.encode(infos.get(i), "received");
+            payloads[i] = ByteBuffer.allocate(12 + record.length)
+                    .putLong(businessTtl.toMillis()).putInt(processedTtlSeconds).put(record).array();
+        }
+
+        long[] seqs = new long[infos.size()];
+        appendLock.lock();
+        try {
+            for (int i = 0; i < payloads.length; i++) {
+                long seq = lastSeq + 1;
+                write(CLAIM, seq, payloads[i]);
+                lastSeq = seq;
+                active.live++;
+                pending.put(seq, new Entry(seq, active, infos.get(i), businessTtl.toMillis(), processedTtlSeconds, true));
+                seqs[i] = seq;
+            }
+            writtenSeq = lastSeq;
+        } catch (IOException e) {
+            writeErrors.increment();
+            log.error("Claim journal append failed for {} payment(s)", infos.size(), e);
+            forget(seqs);
+            return null;
+        } finally {
+            appendLock.unlock();
+        }
+        appended.add(seqs.length);
+
+        long target = seqs[seqs.length - 1];
+        boolean failed;
+        synchronized (syncMonitor) {
+            syncMonitor.notifyAll();
+            while (running && durableSeq < target && failedSeq < target) syncMonitor.wait();
+            failed = durableSeq < target && failedSeq >= target;
+        }
+        if (failed) {
+            log.error("Claim journal could not sync {} payment(s), claiming them without it", infos.size());
+            appendLock.lock();
+            try {
+                forget(seqs);
+            } finally {
+                appendLock.unlock();
+            }
+            return null;
+        }
+        return seqs;
+    }
+
+    // under appendLock: claims append() gave up on; the records may still be on disk, and replay after a restart is idempotent
+    private void forget(long[] seqs) {
+        for (long seq : seqs) {
+            Entry entry = seq == 0 ? null : pending.remove(seq);
+            if (entry != null) entry.segment.live--;
+        }
+    }
+
+    /**
+     * The store answered for this claim (either way); it won't be replayed.
+     */
+    public void complete(long seq) {
+        Entry entry = pending.remove(seq);
+        if (entry == null) return;
+        appendLock.lock();
+        try {
+            write(DONE, seq, NO_PAYLOAD);
+        } catch (IOException e) {
+            // without the DONE it comes back after a restart and the store says FALSE
+            writeErrors.increment();
+            log.warn("Claim journal could not mark seq {} done: {}", seq, e.getMessage());
+        } finally {
+            entry.segment.live--;
+            retireIfDone(entry.segment);
+            appendLock.unlock();
+        }
+        completed.increment();
+    }
+
+    /**
+     * The store couldn't say; the replayer owns this claim from now on.
+     */
+    public void release(long seq) {
+        Entry entry = pending.get(seq);
+        if (entry == null) return;
+        entry.inFlight = false;
+        degraded = true;
+        released.increment();
+    }
+
+    // under appendLock; length goes in last so a torn write reads as the end of the segment
+    private void write(byte type, long seq, byte[] payload) throws IOException {
+        int len = 1 + 8 + payload.length;
+        if (HEADER + len > props.getSegmentBytes()) throw new IOException("journal record of " + len + " bytes exceeds the segment size");
+        if (active.position + HEADER + len > active.buf.capacity()) roll();
+
+        byte[] body = ByteBuffer.allocate(len).put(type).putLong(seq).put(payload).array();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        int pos = active.position;
+        active.buf.put(pos + HEADER, body);
+        active.buf.putInt(pos + 4, (int) crc.getValue());
+        active.buf.putInt(pos, len);
+        active.position = pos + HEADER + len;
+    }
+
+    // under appendLock. The flusher only ever forces the active segment, so the old one is forced here; if that
+    // fails it stays active, and the flusher fails the appends still waiting on it.
+    private void roll() throws IOException {
+        Segment old = active;
+        try {
+            force(old.buf);
+        } catch (UncheckedIOException e) {
+            degraded = true;
+            throw e.getCause();
+        }
+        active = Segment.open(segmentPath(dir, lastSeq + 1), lastSeq + 1, props.getSegmentBytes());
+        segments.add(active);
+        retireIfDone(old);
+    }
+
+    // under appendLock
+    private void retireIfDone(Segment seg) {
+        if (seg == active || seg.live > 0 || !segments.remove(seg)) return;
+        try {
+            Files.deleteIfExists(seg.path);
+        } catch (IOException e) {
+            log.warn("Could not delete claim journal segment {}: {}", seg.path, e.getMessage());
+        }
+    }
+
+    // ---------------- group commit ----------------
+
+    // MappedByteBuffer.force; overridden in tests to fail
+    void force(MappedByteBuffer buf) {
+        buf.force();
+    }
+
+    private void flushLoop() {
+        long linger = props.getGroupCommitMillis();
+        while (true) {
+            synchronized (syncMonitor) {
+                try {
+                    while (running && writtenSeq <= Math.max(durableSeq, failedSeq)) syncMonitor.wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (!running && writtenSeq <= Math.max(durableSeq, failedSeq)) return;
+            }
+            if (linger > 0 && running) {
+                try {
+                    Thread.sleep(linger);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            long target;
+            Segment seg;
+            appendLock.lock();
+            try {
+                target = writtenSeq;
+                seg = active;
+            } finally {
+                appendLock.unlock();
+            }
+            long t0 = System.nanoTime();
+            try {
+                force(seg.buf);
+            } catch (RuntimeException e) {
+                writeErrors.increment();
+                degraded = true;
+                log.error("Claim journal fsync failed up to seq {}", target, e);
+                synchronized (syncMonitor) {
+                    failedSeq = target;
+                    syncMonitor.notifyAll();
+                }
+                continue;
+            }
+            forceNanos.add(System.nanoTime() - t0);
+            forces.increment();
+            synchronized (syncMonitor) {
+                forcedClaims.add(target - Math.max(durableSeq, failedSeq));
+                durableSeq = target;
+                syncMonitor.notifyAll();
+            }
+        }
+    }
+
+    // ---------------- replay ----------------
+
+    private void replaySafely() {
+        try {
+            replay();
+        } catch (Exception e) {
+            log.error("Claim journal replay failed", e);
+        }
+    }
+
+    /**
+     * Sends every claim the store hasn't answered to it again, a batch at a time, until the journal is empty or
+     * the store fails again. Returns how many were settled.
+     */
+    public synchronized int replay() {
+        if (!enabled) return 0;
+        int settled = 0;
+        while (running) {
+            // one store call takes one pair of TTLs; the pipeline always uses the same ones
+            List<Entry> batch = new ArrayList<>();
+            for (Entry e : pending.values()) {
+                if (e.inFlight) continue;
+                if (!batch.isEmpty() && (e.businessTtlMillis != batch.get(0).businessTtlMillis
+                        || e.processedTtlSeconds != batch.get(0).processedTtlSeconds)) continue;
+                batch.add(e);
+                if (batch.size() >= props.getReplayBatchSize()) break;
+            }
+            if (batch.isEmpty()) break;
+
+            List<PaymentInfo> infos = new ArrayList<>(batch.size());
+            for (Entry e : batch) infos.add(e.info);
+            List<Boolean> res;
+            try {
+                res = paymentStore.savePaymentsAtomic(infos, Duration.ofMillis(batch.get(0).businessTtlMillis), batch.get(0).processedTtlSeconds);
+            } catch (Exception ex) {
+                res = null;
+            }
+
+            boolean stuck = false;
+            for (int i = 0; i < batch.size(); i++) {
+                Boolean r = res == null ? null : res.get(i);
+                if (r == null) {
+                    stuck = true;
+                    continue;
+                }
+                if (r) log.info("Replayed claim of payment {} (mid={})", batch.get(i).info.getPaymentId(), batch.get(i).info.getMessageId());
+                complete(batch.get(i).seq);
+                replayed.increment();
+                settled++;
+            }
+            if (stuck) {
+                replayFailures.increment();
+                degraded = true;
+                return settled;
+            }
+        }
+        boolean waiting = false;
+        for (Entry e : pending.values()) {
+            if (!e.inFlight) {
+                waiting = true;
+                break;
+            }
+        }
+        if (degraded && !waiting) log.info("Claim journal drained, claims go to the store directly again");
+        degraded = waiting;
+        return settled;
+    }
+
+    // ---------------- recovery ----------------
+
+    private void recover() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> s = Files.list(dir)) {
+            files = s.filter(p -> firstSeqOf(p) >= 0).sorted((a, b) -> Long.compare(firstSeqOf(a), firstSeqOf(b))).toList();
+        }
+
+        Map<Long, Entry> claims = new HashMap<>();
+        List<Long> done = new ArrayList<>();
+        long maxSeq = 0;
+        for (Path p : files) {
+            Segment seg = Segment.open(p, firstSeqOf(p), 0);
+            MappedByteBuffer buf = seg.buf;
+            int pos = 0;
+            while (pos + HEADER <= buf.capacity()) {
+                int len = buf.getInt(pos);
+                if (len < 9 || pos + HEADER + len > buf.capacity()) break;
+                byte[] body = new byte[len];
+                buf.get(pos + HEADER, body);
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                if ((int) crc.getValue() != buf.getInt(pos + 4)) {
+                    log.warn("Claim journal {} has a torn record at offset {}, ignoring the rest", p.getFileName(), pos);
+                    break;
+                }
+                ByteBuffer b = ByteBuffer.wrap(body);
+                byte type = b.get();
+                long seq = b.getLong();
+                maxSeq = Math.max(maxSeq, seq);
+                if (type == CLAIM) {
+                    long businessTtlMillis = b.getLong();
+                    int processedTtlSeconds = b.getInt();
+                    byte[] record = new byte[b.remaining()];
+                    b.get(record);
+                    try {
+                        PaymentInfo info = PaymentRecordCodec.decode(record).info();
+                        claims.put(seq, new Entry(seq, seg, info, businessTtlMillis, processedTtlSeconds, false));
+                        seg.live++;
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Unreadable claim seq {} in {}: {}", seq, p.getFileName(), e.getMessage());
+                    }
+                } else if (type == DONE) {
+                    done.add(seq);
+                }
+                pos += HEADER + len;
+            }
+            seg.position = pos;
+            segments.add(seg);
+        }
+        for (long seq : done) {
+            Entry e = claims.remove(seq);
+            if (e != null) e.segment.live--;
+        }
+        pending.putAll(claims);
+        recovered = claims.size();
+        degraded = !claims.isEmpty();
+
+        lastSeq = maxSeq;
+        writtenSeq = maxSeq;
+        durableSeq = maxSeq;
+        for (Segment seg : new ArrayList<>(segments)) retireIfDone(seg);
+        active = Segment.open(segmentPath(dir, lastSeq + 1), lastSeq + 1, props.getSegmentBytes());
+        segments.add(active);
+    }
+
+    // ---------------- lifecycle / stats ----------------
+
+    @PreDestroy
+    @Override
+    public void close() {
+        if (!enabled || !running) return;
+        if (replayer != null) replayer.shutdownNow();
+        synchronized (syncMonitor) {
+            running = false;
+            syncMonitor.notifyAll();
+        }
+        try {
+            flusher.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        appendLock.lock();
+        try {
+            force(active.buf); // the DONE records
+        } catch (RuntimeException e) {
+            log.warn("Claim journal could not sync on close: {}", e.getMessage());
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("enabled", enabled);
+        if (!enabled) return s;
+        s.put("dir", dir.toString());
+        s.put("degraded", degraded);
+        s.put("pending", pending.size());
+        appendLock.lock();
+        try {
+            s.put("segments", segments.size());
+        } finally {
+            appendLock.unlock();
+        }
+        s.put("recovered", recovered);
+        s.put("appended", appended.sum());
+        s.put("completed", completed.sum());
+        s.put("releasedToReplay", released.sum());
+        s.put("replayed", replayed.sum());
+        s.put("replayFailures", replayFailures.sum());
+        long f = forces.sum();
+        s.put("fsyncs", f);
+        s.put("claimsPerFsync", f == 0 ? 0.0 : (double) forcedClaims.sum() / f);
+        s.put("avgFsyncMicros", f == 0 ? 0 : forceNanos.sum() / f / 1000);
+        s.put("writeErrors", writeErrors.sum());
+        return s;
+    }
+}
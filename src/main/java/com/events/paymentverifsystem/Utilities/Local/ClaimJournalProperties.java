@@ -0,0 +1,44 @@
+package com.events.paymentverifsystem.Utilities.Local;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for ClaimJournal (payments.journal).
+ */
+@Component
+@ConfigurationProperties(prefix = "payments.journal")
+public class ClaimJournalProperties {
+
+    // only used with a shared store; the in-process one can't be unreachable
+    private boolean enabled = true;
+    private String dir = "./data/claims-journal";
+
+    // size of each memory-mapped segment file
+    private int segmentBytes = 16 * 1024 * 1024;
+
+    // extra wait before each fsync so more persist batches share it; 0 = sync as soon as something waits
+    private long groupCommitMillis = 0;
+
+    // how often the replayer retries claims the store couldn't take, and how many per store call
+    private long replayIntervalMillis = 5000;
+    private int replayBatchSize = 200;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public String getDir() { return dir; }
+    public void setDir(String dir) { this.dir = dir; }
+
+    public int getSegmentBytes() { return segmentBytes; }
+    public void setSegmentBytes(int segmentBytes) { this.segmentBytes = segmentBytes; }
+
+    public long getGroupCommitMillis() { return groupCommitMillis; }
+    public void setGroupCommitMillis(long groupCommitMillis) { this.groupCommitMillis = groupCommitMillis; }
+
+    public long getReplayIntervalMillis() { return replayIntervalMillis; }
+    public void setReplayIntervalMillis(long replayIntervalMillis) { this.replayIntervalMillis = replayIntervalMillis; }
+
+    public int getReplayBatchSize() { return replayBatchSize; }
+    public void setReplayBatchSize(int replayBatchSize) { this.replayBatchSize = replayBatchSize; }
+}
@@ -0,0 +1,100 @@
+package com.events.paymentverifsystem.Utilities.Local;
+
+import com.events.paymentverifsystem.Utilities.Email.ListenerStateStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Properties;
+
+/**
+ * Listener state for payments.store: memory, without Redis.
+ *
+ * The checkpoint is a properties file per account and folder under payments.local.state-dir, replaced atomically
+ * on save, so a restart resumes the incremental sweep instead of falling back to the lookback SEARCH. The
+ * heartbeat only matters to this JVM's health endpoint and is kept in memory.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.store", havingValue = "memory")
+public class FileListenerStateStore implements ListenerStateStore {
+    private static final Logger log = LoggerFactory.getLogger(FileListenerStateStore.class);
+
+    private final Path dir;
+
+    private volatile Instant heartbeat;
+    private volatile long heartbeatExpiresAt;
+
+    public FileListenerStateStore(LocalStoreProperties props) {
+        this.dir = Paths.get(props.getStateDir());
+    }
+
+    private Path file(String account, String folder) {
+        String a = account == null || account.isBlank() ? "default" : account.toLowerCase();
+        return dir.resolve("checkpoint-" + URLEncoder.encode(a + ":" + folder, StandardCharsets.UTF_8) + ".properties");
+    }
+
+    @Override
+    public Checkpoint loadCheckpoint(String account, String folder) {
+        Properties p = new Properties();
+        try (Reader r = Files.newBufferedReader(file(account, folder), StandardCharsets.UTF_8)) {
+            p.load(r);
+            String v = p.getProperty("uidValidity");
+            String u = p.getProperty("lastUid");
+            if (v == null || u == null) return null;
+            return new Checkpoint(Long.parseLong(v), Long.parseLong(u));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (Exception e) {
+            log.warn("Failed to load sweep checkpoint for {}", folder, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void saveCheckpoint(String account, String folder, long uidValidity, long lastUid) {
+        Path target = file(account, folder);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Properties p = new Properties();
+        p.setProperty("uidValidity", String.valueOf(uidValidity));
+        p.setProperty("lastUid", String.valueOf(lastUid));
+        try {
+            Files.createDirectories(dir);
+            try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                p.store(w, null);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to save sweep checkpoint for {}", folder, e);
+        }
+    }
+
+    @Override
+    public void writeHeartbeat(Instant at, Duration ttl) {
+        heartbeatExpiresAt = System.currentTimeMillis() + ttl.toMillis();
+        heartbeat = at;
+    }
+
+    @Override
+    public Instant lastHeartbeat() {
+        Instant at = heartbeat;
+        return at == null || System.currentTimeMillis() > heartbeatExpiresAt ? null : at;
+    }
+
+    @Override
+    public String heartbeatLocation() {
+        return "memory";
+    }
+}
@@ -0,0 +1,385 @@
+package com.events.paymentverifsystem.Utilities.Local;
+
+import com.events.paymentverifsystem.Utilities.Email.EmailProcessedStoreProperties;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentStore;
+import com.events.paymentverifsystem.Utilities.Redis.PaymentRecordCodec;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * PaymentStore kept entirely in this JVM (payments.store: memory): no network hop on the claim, the
+ * processed check or /verify. Only for a single instance; nothing is shared or survives a restart.
+ *
+ *   processed   messageId -> claim (payment id, claim time, deadline)
+ *   payments    paymentId -> record (PaymentRecordCodec bytes, on heap or in OffHeapArena)
+ *   verification  email:amount -> paymentId, first payment wins like SET NX
+ *   content     fingerprint -> owning messageId
+ *
+ * The maps are StringKeyMaps; claim-time order for the listings is kept in skip-list sets. TTLs are
+ * checked on every read and reclaimed by a TimerWheel. Consume removes the verification entry first:
+ * whichever caller's remove succeeds owns the payment, so it is handed out once.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.store", havingValue = "memory")
+public class InMemoryPaymentStore implements PaymentStore, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(InMemoryPaymentStore.class);
+
+    private static final String STATUS_RECEIVED = "received";
+    private static final Duration CONSUMED_RETENTION = Duration.ofDays(1);
+    // same defaults RedisPaymentStore applies
+    private static final String DEFAULT_MERCHANT = "SSN/SNU";
+
+    private final StringKeyMap<Claim> processed;
+    private final StringKeyMap<Stored> payments;
+    private final StringKeyMap<Pointer> verification;
+    private final StringKeyMap<Claim> content;
+    private final ConcurrentSkipListSet<Stamp> processedOrder = new ConcurrentSkipListSet<>();
+    private final ConcurrentSkipListSet<Stamp> receivedOrder = new ConcurrentSkipListSet<>();
+    private final ConcurrentSkipListSet<Stamp> consumedOrder = new ConcurrentSkipListSet<>();
+    private final AtomicLong seq = new AtomicLong();
+
+    private final TimerWheel wheel;
+    private final OffHeapArena arena; // null = records on heap
+    private final long markTtlMillis;
+
+    private final LongAdder claims = new LongAdder();
+    private final LongAdder duplicateClaims = new LongAdder();
+    private final LongAdder consumes = new LongAdder();
+    private final LongAdder consumeMisses = new LongAdder();
+
+    public InMemoryPaymentStore(LocalStoreProperties props, EmailProcessedStoreProperties processedProps) {
+        int stripes = props.getStripes();
+        int capacity = props.getInitialCapacity();
+        this.processed = new StringKeyMap<>(stripes, capacity);
+        this.payments = new StringKeyMap<>(stripes, capacity);
+        this.verification = new StringKeyMap<>(stripes, capacity);
+        this.content = new StringKeyMap<>(stripes, capacity);
+        this.wheel = new TimerWheel(props.getTimerTickMillis(), props.getTimerBuckets(), "local-store-expiry");
+        this.arena = props.isOffHeap() ? new OffHeapArena() : null;
+        this.markTtlMillis = processedProps.getProcessedMessageTtlSeconds() * 1000L;
+        log.info("In-process payment store ({} records)", arena == null ? "heap" : "off-heap");
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        wheel.close();
+    }
+
+    // ---------------- entries ----------------
+
+    private record Stamp(long at, long seq, String id) implements Comparable<Stamp> {
+        @Override
+        public int compareTo(Stamp o) {
+            int c = Long.compare(at, o.at);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+
+    // a claimed messageId (paymentId null for markProcessed) or a content fingerprint (paymentId = owner)
+    private record Claim(String paymentId, long deadline, Stamp stamp) {}
+
+    private record Pointer(String paymentId, long deadline) {}
+
+    private static final class Stored {
+        final long deadline;
+        final Stamp stamp;
+        final byte[] heap;
+        final long handle;
+
+        Stored(long deadline, Stamp stamp, byte[] heap, long handle) {
+            this.deadline = deadline;
+            this.stamp = stamp;
+            this.heap = heap;
+            this.handle = handle;
+        }
+    }
+
+    private static boolean expired(Claim c, long now) { return c.deadline() <= now; }
+    private static boolean expired(Pointer p, long now) { return p.deadline() <= now; }
+    private static boolean expired(Stored s, long now) { return s.deadline <= now; }
+
+    private Stamp stamp(long at, String id) {
+        return new Stamp(at, seq.incrementAndGet(), id);
+    }
+
+    private Stored store(PaymentInfo info, long deadline, Stamp stamp) {
+        byte[] record = PaymentRecordCodec.encode(info, STATUS_RECEIVED);
+        if (arena != null) {
+            long handle = arena.allocate(record);
+            if (handle != OffHeapArena.NO_HANDLE) return new Stored(deadline, stamp, null, handle);
+        }
+        return new Stored(deadline, stamp, record, OffHeapArena.NO_HANDLE);
+    }
+
+    private byte[] bytes(Stored s) {
+        return s.heap != null ? s.heap : arena.read(s.handle);
+    }
+
+    // only by whoever removed s from payments, so a slot is freed once
+    private void release(Stored s) {
+        if (s.heap == null) arena.free(s.handle);
+    }
+
+    private static String verificationKey(String email, long amountMinor) {
+        return (email == null ? "" : email.trim().toLowerCase()) + ":" + amountMinor;
+    }
+
+    // ---------------- claim ----------------
+
+    public boolean savePaymentAtomic(PaymentInfo info, Duration businessTtl, int processedTtlSeconds) {
+        try {
+            long now = System.currentTimeMillis();
+            String mid = String.valueOf(info.getMessageId());
+            String pid = String.valueOf(info.getPaymentId());
+            Claim claim = new Claim(pid, now + processedTtlSeconds * 1000L, stamp(now, mid));
+            if (processed.putIfAbsent(mid, claim, c -> expired(c, now)) != null) {
+                duplicateClaims.increment();
+                return false;
+            }
+            processedOrder.add(claim.stamp());
+            wheel.schedule(claim.deadline(), () -> expireClaim(processed, mid, claim, processedOrder));
+
+            // the same payment under another Message-ID (a resent receipt) replaces the stored record, as SAVE_LUA's
+            // SET does; the verification pointer keeps its deadline like the NX verification key
+            long deadline = now + businessTtl.toMillis();
+            Stored stored = store(info, deadline, stamp(now, pid));
+            Stored replaced = payments.put(pid, stored);
+            if (replaced != null) {
+                receivedOrder.remove(replaced.stamp);
+                release(replaced);
+            }
+            receivedOrder.add(stored.stamp);
+            wheel.schedule(deadline, () -> expirePayment(pid, stored));
+
+            String vkey = verificationKey(info.getPayerEmail(), info.getAmountMinor());
+            Pointer pointer = new Pointer(pid, deadline);
+            if (verification.putIfAbsent(vkey, pointer, p -> expired(p, now)) == null) {
+                wheel.schedule(deadline, () -> verification.remove(vkey, pointer));
+            }
+            claims.increment();
+            return true;
+        } catch (Exception e) {
+            log.error("In-process claim failed for mid={}", info.getMessageId(), e);
+            return false;
+        }
+    }
+
+    public List<Boolean> savePaymentsAtomic(List<PaymentInfo> infos, Duration businessTtl, int processedTtlSeconds) {
+        List<Boolean> out = new ArrayList<>(infos.size());
+        for (PaymentInfo info : infos) out.add(savePaymentAtomic(info, businessTtl, processedTtlSeconds));
+        return out;
+    }
+
+    public boolean markProcessed(String messageId) {
+        long now = System.currentTimeMillis();
+        Claim claim = new Claim(null, now + markTtlMillis, stamp(now, messageId));
+        if (processed.putIfAbsent(messageId, claim, c -> expired(c, now)) != null) return false;
+        processedOrder.add(claim.stamp());
+        wheel.schedule(claim.deadline(), () -> expireClaim(processed, messageId, claim, processedOrder));
+        return true;
+    }
+
+    private void expireClaim(StringKeyMap<Claim> map, String key, Claim claim, ConcurrentSkipListSet<Stamp> order) {
+        map.remove(key, claim);
+        if (order != null) order.remove(claim.stamp());
+    }
+
+    private void expirePayment(String pid, Stored stored) {
+        if (payments.remove(pid, stored)) {
+            receivedOrder.remove(stored.stamp);
+            release(stored);
+        }
+    }
+
+    // ---------------- consume ----------------
+
+    public PaymentInfo consumeByEmailAndAmount(String email, long amountMinor) {
+        try {
+            long now = System.currentTimeMillis();
+            Pointer p = verification.remove(verificationKey(email, amountMinor));
+            if (p == null || expired(p, now)) {
+                consumeMisses.increment();
+                return null;
+            }
+            Stored s = payments.remove(p.paymentId());
+            if (s == null) {
+                consumeMisses.increment();
+                return null;
+            }
+            receivedOrder.remove(s.stamp);
+            byte[] record = bytes(s);
+            release(s);
+            if (expired(s, now)) {
+                consumeMisses.increment();
+                return null;
+            }
+            consumedOrder.add(stamp(now, p.paymentId()));
+            consumedOrder.headSet(new Stamp(now - CONSUMED_RETENTION.toMillis(), Long.MIN_VALUE, null)).clear();
+            consumes.increment();
+            PaymentInfo info = PaymentRecordCodec.decode(record).info();
+            if (info.getMerchantName() == null || info.getMerchantName().isEmpty()) info.setMerchantName(DEFAULT_MERCHANT);
+            return info;
+        } catch (Exception e) {
+            log.error("In-process consume failed", e);
+            return null;
+        }
+    }
+
+    // ---------------- processed checks ----------------
+
+    public boolean isProcessed(String messageId) {
+        Claim c = processed.get(messageId);
+        return c != null && !expired(c, System.currentTimeMillis());
+    }
+
+    public List<Boolean> areProcessed(List<String> messageIds) {
+        long now = System.currentTimeMillis();
+        List<Boolean> out = new ArrayList<>(messageIds.size());
+        for (String mid : messageIds) {
+            Claim c = processed.get(mid);
+            out.add(c != null && !expired(c, now));
+        }
+        return out;
+    }
+
+    public List<String> claimContent(List<String> fingerprints, List<String> messageIds, int ttlSeconds) {
+        long now = System.currentTimeMillis();
+        List<String> owners = new ArrayList<>(fingerprints.size());
+        for (int i = 0; i < fingerprints.size(); i++) {
+            String fp = fingerprints.get(i);
+            String mid = messageIds.get(i);
+            Claim claim = new Claim(mid, now + ttlSeconds * 1000L, null);
+            Claim owner = content.putIfAbsent(fp, claim, c -> expired(c, now));
+            if (owner == null) {
+                wheel.schedule(claim.deadline(), () -> expireClaim(content, fp, claim, null));
+                owners.add(mid);
+            } else {
+                owners.add(owner.paymentId());
+            }
+        }
+        return owners;
+    }
+
+    public List<String> contentOwners(List<String> fingerprints) {
+        long now = System.currentTimeMillis();
+        List<String> owners = new ArrayList<>(fingerprints.size());
+        for (String fp : fingerprints) {
+            Claim c = content.get(fp);
+            owners.add(c == null || expired(c, now) ? null : c.paymentId());
+        }
+        return owners;
+    }
+
+    public void forEachProcessedSince(long sinceMillis, BiConsumer<String, Long> consumer) {
+        long now = System.currentTimeMillis();
+        for (Stamp s : processedOrder.tailSet(new Stamp(sinceMillis, Long.MIN_VALUE, null))) {
+            Claim c = processed.get(s.id());
+            if (c != null && c.stamp() == s && !expired(c, now)) consumer.accept(s.id(), s.at());
+        }
+    }
+
+    // ---------------- listings ----------------
+
+    public String processedKeyFor(String messageId) {
+        return "processed:message:" + messageId;
+    }
+
+    public List<String> recentMessageIds(int limit) {
+        long now = System.currentTimeMillis();
+        List<String> out = new ArrayList<>();
+        for (Iterator<Stamp> it = processedOrder.descendingIterator(); it.hasNext() && out.size() < limit; ) {
+            Stamp s = it.next();
+            Claim c = processed.get(s.id());
+            if (c != null && c.stamp() == s && !expired(c, now)) out.add(s.id());
+        }
+        return out;
+    }
+
+    public List<Map<String, Object>> recentPayments(int limit) {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (Iterator<Stamp> it = receivedOrder.descendingIterator(); it.hasNext() && out.size() < limit; ) {
+            String pid = it.next().id();
+            Map<String, Object> rec = read(pid, now);
+            if (rec == null) continue;
+            // key it would have in Redis, so the admin output has the same shape
+            rec.put("_redisKey", "attendance:payments:" + pid);
+            out.add(rec);
+        }
+        return out;
+    }
+
+    public List<Map<String, Object>> recentConsumed(int limit) {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (Iterator<Stamp> it = consumedOrder.descendingIterator(); it.hasNext() && out.size() < limit; ) {
+            Stamp s = it.next();
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("paymentId", s.id());
+            m.put("consumedAt", Instant.ofEpochMilli(s.at()).toString());
+            out.add(m);
+        }
+        return out;
+    }
+
+    public List<Map<String, Object>> paymentsForMessages(List<String> messageIds) {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> out = new ArrayList<>(messageIds.size());
+        for (String mid : messageIds) {
+            Claim c = mid == null ? null : processed.get(mid);
+            out.add(c == null || c.paymentId() == null || expired(c, now) ? null : read(c.paymentId(), now));
+        }
+        return out;
+    }
+
+    // a consume or expiry can free an off-heap slot while we copy it; only trust the bytes if the entry
+    // was still mapped afterwards (removal always happens before the free)
+    private Map<String, Object> read(String pid, long now) {
+        Stored s = payments.get(pid);
+        if (s == null || expired(s, now)) return null;
+        byte[] record = bytes(s);
+        if (s.heap == null && payments.get(pid) != s) return null;
+        try {
+            return PaymentRecordCodec.decode(record).toMap();
+        } catch (IllegalArgumentException e) {
+            log.warn("Unreadable in-process record for {}: {}", pid, e.getMessage());
+            return null;
+        }
+    }
+
+    public boolean isShared() {
+        return false;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("backend", "memory");
+        s.put("processed", processed.size());
+        s.put("payments", payments.size());
+        s.put("verificationKeys", verification.size());
+        s.put("contentFingerprints", content.size());
+        s.put("claims", claims.sum());
+        s.put("duplicateClaims", duplicateClaims.sum());
+        s.put("consumes", consumes.sum());
+        s.put("consumeMisses", consumeMisses.sum());
+        s.put("expiry", wheel.getStats());
+        if (arena != null) s.put("offHeap", arena.getStats());
+        return s;
+    }
+}
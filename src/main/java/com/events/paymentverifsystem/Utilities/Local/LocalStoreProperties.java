@@ -0,0 +1,44 @@
+package com.events.paymentverifsystem.Utilities.Local;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tuning for InMemoryPaymentStore and FileListenerStateStore (payments.store: memory).
+ */
+@Component
+@ConfigurationProperties(prefix = "payments.local")
+public class LocalStoreProperties {
+
+    // lock stripes per map and the capacity each map is sized for up front
+    private int stripes = 64;
+    private int initialCapacity = 4096;
+
+    // TTL expiry granularity and wheel size (one turn = tick * buckets)
+    private long timerTickMillis = 1000;
+    private int timerBuckets = 512;
+
+    // keep encoded records in direct memory instead of on heap
+    private boolean offHeap = false;
+
+    // sweep checkpoints, one small file per account and folder
+    private String stateDir = "./data/listener-state";
+
+    public int getStripes() { return stripes; }
+    public void setStripes(int stripes) { this.stripes = stripes; }
+
+    public int getInitialCapacity() { return initialCapacity; }
+    public void setInitialCapacity(int initialCapacity) { this.initialCapacity = initialCapacity; }
+
+    public long getTimerTickMillis() { return timerTickMillis; }
+    public void setTimerTickMillis(long timerTickMillis) { this.timerTickMillis = timerTickMillis; }
+
+    public int getTimerBuckets() { return timerBuckets; }
+    public void setTimerBuckets(int timerBuckets) { this.timerBuckets = timerBuckets; }
+
+    public boolean isOffHeap() { return offHeap; }
+    public void setOffHeap(boolean offHeap) { this.offHeap = offHeap; }
+
+    public String getStateDir() { return stateDir; }
+    public void setStateDir(String stateDir) { this.stateDir = stateDir; }
+}
@@ -0,0 +1,122 @@
+package com.events.paymentverifsystem.Utilities.Local;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Slab allocator over direct ByteBuffers, for keeping encoded payment records out of the Java heap.
+ *
+ * Records go into fixed-size slots of 64..1024 bytes, carved from 1 MiB direct slabs; freed slots go on a
+ * per-size free list and are reused. A record is addressed by a long handle:
+ *
+ *   slab index (24 bits) | size class (4) | offset in slab (20) | length (16)
+ *
+ * Anything larger than the biggest slot returns NO_HANDLE and the caller keeps it on heap. Slabs are never
+ * given back; the arena only grows to the peak number of live records.
+ */
+final class OffHeapArena {
+
+    static final long NO_HANDLE = -1;
+
+    private static final int SLAB_BYTES = 1 << 20;
+    private static final int[] SLOT_SIZES = {64, 128, 256, 512, 1024};
+
+    private final SizeClass[] classes = new SizeClass[SLOT_SIZES.length];
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder freed = new LongAdder();
+    private final LongAdder tooLarge = new LongAdder();
+    private final LongAdder bytesInUse = new LongAdder();
+
+    OffHeapArena() {
+        for (int i = 0; i < classes.length; i++) classes[i] = new SizeClass(SLOT_SIZES[i]);
+    }
+
+    /**
+     * Copies data into a free slot; NO_HANDLE if it is larger than the biggest slot.
+     */
+    long allocate(byte[] data) {
+        int cls = classFor(data.length);
+        if (cls < 0) {
+            tooLarge.increment();
+            return NO_HANDLE;
+        }
+        long slot = classes[cls].take();
+        int slab = (int) (slot >>> 20);
+        int offset = (int) (slot & 0xFFFFF);
+        slabs[slab].put(offset, data);
+        allocated.increment();
+        bytesInUse.add(SLOT_SIZES[cls]);
+        return ((long) slab << 40) | ((long) cls << 36) | ((long) offset << 16) | data.length;
+    }
+
+    byte[] read(long handle) {
+        byte[] out = new byte[(int) (handle & 0xFFFF)];
+        slabs[(int) (handle >>> 40)].get((int) ((handle >>> 16) & 0xFFFFF), out);
+        return out;
+    }
+
+    void free(long handle) {
+        int cls = (int) ((handle >>> 36) & 0xF);
+        classes[cls].give((handle >>> 40) << 20 | ((handle >>> 16) & 0xFFFFF));
+        freed.increment();
+        bytesInUse.add(-SLOT_SIZES[cls]);
+    }
+
+    private static int classFor(int length) {
+        for (int i = 0; i < SLOT_SIZES.length; i++) if (length <= SLOT_SIZES[i]) return i;
+        return -1;
+    }
+
+    // new slab index, published to readers by the volatile write of the grown array
+    private synchronized int addSlab() {
+        ByteBuffer[] grown = Arrays.copyOf(slabs, slabs.length + 1);
+        grown[slabs.length] = ByteBuffer.allocateDirect(SLAB_BYTES);
+        slabs = grown;
+        return grown.length - 1;
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("slabs", slabs.length);
+        s.put("reservedBytes", (long) slabs.length * SLAB_BYTES);
+        s.put("bytesInUse", bytesInUse.sum());
+        s.put("allocated", allocated.sum());
+        s.put("freed", freed.sum());
+        s.put("onHeapFallbacks", tooLarge.sum());
+        return s;
+    }
+
+    // free list plus a bump pointer into the slab this class is currently carving; slot = slab << 20 | offset
+    private final class SizeClass {
+        private final int slotSize;
+        private long[] free = new long[64];
+        private int freeCount;
+        private int slab = -1;
+        private int next = SLAB_BYTES;
+
+        SizeClass(int slotSize) {
+            this.slotSize = slotSize;
+        }
+
+        synchronized long take() {
+            if (freeCount > 0) return free[--freeCount];
+            if (next + slotSize > SLAB_BYTES) {
+                slab = addSlab();
+                next = 0;
+            }
+            long slot = ((long) slab << 20) | next;
+            next += slotSize;
+            return slot;
+        }
+
+        synchronized void give(long slot) {
+            if (freeCount == free.length) free = Arrays.copyOf(free, freeCount << 1);
+            free[freeCount++] = slot;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.events.paymentverifsystem.Utilities.Local;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+
+/**
+ * Concurrent String -> V map for the in-process store.
+ *
+ * Striped into segments, each an open-addressing table with linear probing over a long[] of spread key
+ * hashes: a probe walks primitive slots and only dereferences the key on a hash match. Reads take an
+ * optimistic StampedLock stamp and fall back to the read lock if a writer got in between; writes lock
+ * their segment only. Deletes shift the following run back instead of leaving tombstones.
+ *
+ * Null keys and values are not allowed.
+ */
+final class StringKeyMap<V> {
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final Segment<V>[] segments;
+    private final int segmentMask;
+
+    @SuppressWarnings("unchecked")
+    StringKeyMap(int stripes, int initialCapacity) {
+        int n = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        int perSegment = Math.max(8, Integer.highestOneBit(Math.max(1, (int) (initialCapacity / LOAD_FACTOR / n))) << 1);
+        segments = (Segment<V>[]) new Segment<?>[n];
+        for (int i = 0; i < n; i++) segments[i] = new Segment<>(perSegment);
+        segmentMask = n - 1;
+    }
+
+    // String caches hashCode(); spread it over 64 bits (murmur3 fmix64). 0 marks an empty slot.
+    static long hash(String key) {
+        long h = key.hashCode() * 0x9E3779B97F4A7C15L ^ key.length();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    private Segment<V> segment(long h) {
+        return segments[(int) (h >>> 32) & segmentMask];
+    }
+
+    V get(String key) {
+        long h = hash(key);
+        return segment(h).get(key, h);
+    }
+
+    /**
+     * Inserts unless a value is present that stale doesn't reject; a stale value is replaced.
+     * Returns the live value that blocked the insert, or null if value went in.
+     */
+    V putIfAbsent(String key, V value, Predicate<? super V> stale) {
+        long h = hash(key);
+        return segment(h).putIfAbsent(key, h, value, stale);
+    }
+
+    V put(String key, V value) {
+        long h = hash(key);
+        return segment(h).put(key, h, value);
+    }
+
+    V remove(String key) {
+        long h = hash(key);
+        return segment(h).remove(key, h, null);
+    }
+
+    /**
+     * Removes only if key still maps to this exact value.
+     */
+    boolean remove(String key, V expected) {
+        long h = hash(key);
+        return segment(h).remove(key, h, expected) != null;
+    }
+
+    int size() {
+        int n = 0;
+        for (Segment<V> s : segments) n += s.size();
+        return n;
+    }
+
+    private static final class Segment<V> {
+        private final StampedLock lock = new StampedLock();
+        private long[] hashes;
+        private String[] keys;
+        private Object[] values;
+        private int size;
+
+        Segment(int capacity) {
+            hashes = new long[capacity];
+            keys = new String[capacity];
+            values = new Object[capacity];
+        }
+
+        int size() {
+            long stamp = lock.tryOptimisticRead();
+            int n = size;
+            if (lock.validate(stamp)) return n;
+            stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        V get(String key, long h) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                V v = find(key, h);
+                if (lock.validate(stamp)) return v;
+            }
+            stamp = lock.readLock();
+            try {
+                return find(key, h);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        // safe under an optimistic stamp: works on one snapshot of the arrays and is bounded by their length
+        @SuppressWarnings("unchecked")
+        private V find(String key, long h) {
+            long[] hs = hashes;
+            String[] ks = keys;
+            Object[] vs = values;
+            int mask = hs.length - 1;
+            if (ks.length != hs.length || vs.length != hs.length) return null;
+            for (int i = (int) h & mask, n = 0; n < hs.length; i = (i + 1) & mask, n++) {
+                long x = hs[i];
+                if (x == 0) return null;
+                if (x == h) {
+                    String k = ks[i];
+                    if (key.equals(k)) return (V) vs[i];
+                }
+            }
+            return null;
+        }
+
+        private int indexOf(String key, long h) {
+            int mask = hashes.length - 1;
+            for (int i = (int) h & mask; ; i = (i + 1) & mask) {
+                long x = hashes[i];
+                if (x == 0) return ~i;
+                if (x == h && key.equals(keys[i])) return i;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        V putIfAbsent(String key, long h, V value, Predicate<? super V> stale) {
+            long stamp = lock.writeLock();
+            try {
+                int i = indexOf(key, h);
+                if (i >= 0) {
+                    V old = (V) values[i];
+                    if (!stale.test(old)) return old;
+                    values[i] = value;
+                    return null;
+                }
+                insert(~i, key, h, value);
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        V put(String key, long h, V value) {
+            long stamp = lock.writeLock();
+            try {
+                int i = indexOf(key, h);
+                if (i >= 0) {
+                    V old = (V) values[i];
+                    values[i] = value;
+                    return old;
+                }
+                insert(~i, key, h, value);
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private void insert(int slot, String key, long h, Object value) {
+            if ((size + 1) > hashes.length * LOAD_FACTOR) {
+                grow();
+                slot = ~indexOf(key, h);
+            }
+            hashes[slot] = h;
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+        }
+
+        private void grow() {
+            long[] oh = hashes;
+            String[] ok = keys;
+            Object[] ov = values;
+            long[] nh = new long[oh.length << 1];
+            String[] nk = new String[nh.length];
+            Object[] nv = new Object[nh.length];
+            int mask = nh.length - 1;
+            for (int j = 0; j < oh.length; j++) {
+                if (oh[j] == 0) continue;
+                int i = (int) oh[j] & mask;
+                while (nh[i] != 0) i = (i + 1) & mask;
+                nh[i] = oh[j];
+                nk[i] = ok[j];
+                nv[i] = ov[j];
+            }
+            hashes = nh;
+            keys = nk;
+            values = nv;
+        }
+
+        @SuppressWarnings("unchecked")
+        V remove(String key, long h, V expected) {
+            long stamp = lock.writeLock();
+            try {
+                int i = indexOf(key, h);
+                if (i < 0) return null;
+                V old = (V) values[i];
+                if (expected != null && old != expected) return null;
+                deleteAt(i);
+                size--;
+                return old;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        // backward-shift delete: pull later entries of the run into the hole when their home slot allows it
+        private void deleteAt(int hole) {
+            int mask = hashes.length - 1;
+            for (int j = (hole + 1) & mask; hashes[j] != 0; j = (j + 1) & mask) {
+                int home = (int) hashes[j] & mask;
+                boolean movable = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+                if (movable) {
+                    hashes[hole] = hashes[j];
+                    keys[hole] = keys[j];
+                    values[hole] = values[j];
+                    hole = j;
+                }
+            }
+            hashes[hole] = 0;
+            keys[hole] = null;
+            values[hole] = null;
+        }
+    }
+}
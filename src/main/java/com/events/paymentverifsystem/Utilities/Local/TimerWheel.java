@@ -0,0 +1,125 @@
+package com.events.paymentverifsystem.Utilities.Local;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hashed timer wheel for TTL expiry: a deadline lands in bucket (deadline / tick) mod size, and one daemon
+ * thread walks the buckets as ticks pass, running whatever is due. Scheduling is O(1) under one bucket lock;
+ * entries due further out than a full turn stay in their bucket until their tick comes round.
+ *
+ * Expiry is at tick granularity and can run late, never early. Readers must still check deadlines themselves;
+ * the wheel only reclaims memory.
+ */
+final class TimerWheel implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(TimerWheel.class);
+
+    private final long tickMillis;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final ScheduledExecutorService ticker;
+    private volatile long doneTick; // every bucket up to this tick has been run
+
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    TimerWheel(long tickMillis, int size, String threadName) {
+        this.tickMillis = Math.max(1, tickMillis);
+        int n = Integer.highestOneBit(Math.max(2, size - 1)) << 1;
+        this.buckets = new Bucket[n];
+        for (int i = 0; i < n; i++) buckets[i] = new Bucket();
+        this.mask = n - 1;
+        this.doneTick = System.currentTimeMillis() / this.tickMillis;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::advance, this.tickMillis, this.tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void schedule(long deadlineMillis, Runnable task) {
+        // already past: run on the next tick
+        long tick = Math.max(deadlineMillis / tickMillis + 1, doneTick + 1);
+        Bucket b = buckets[(int) (tick & mask)];
+        synchronized (b) {
+            b.add(tick, task);
+        }
+        scheduled.increment();
+    }
+
+    private void advance() {
+        long now = System.currentTimeMillis() / tickMillis;
+        long from = doneTick + 1;
+        // after a long stall one full turn covers every bucket
+        if (now - from >= buckets.length) from = now - buckets.length + 1;
+        List<Runnable> due = new ArrayList<>();
+        for (long t = from; t <= now; t++) {
+            Bucket b = buckets[(int) (t & mask)];
+            synchronized (b) {
+                b.drainDue(now, due);
+            }
+        }
+        doneTick = now;
+        for (Runnable r : due) {
+            try {
+                r.run();
+            } catch (Exception e) {
+                log.warn("Expiry task failed", e);
+            }
+        }
+        expired.add(due.size());
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("tickMillis", tickMillis);
+        s.put("buckets", buckets.length);
+        s.put("scheduled", scheduled.sum());
+        s.put("expired", expired.sum());
+        return s;
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    // parallel arrays, unordered; guarded by the bucket's monitor
+    private static final class Bucket {
+        long[] ticks = new long[8];
+        Runnable[] tasks = new Runnable[8];
+        int size;
+
+        void add(long tick, Runnable task) {
+            if (size == ticks.length) {
+                ticks = Arrays.copyOf(ticks, size << 1);
+                tasks = Arrays.copyOf(tasks, size << 1);
+            }
+            ticks[size] = tick;
+            tasks[size++] = task;
+        }
+
+        void drainDue(long now, List<Runnable> due) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (ticks[i] > now) continue;
+                due.add(tasks[i]);
+                // swap-remove
+                size--;
+                ticks[i] = ticks[size];
+                tasks[i] = tasks[size];
+                tasks[size] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.events.paymentverifsystem.Utilities.Payment;
+
+import java.text.ParsePosition;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Amount and date parsing shared by EmailParser and the verify endpoint.
+ *
+ * Everything here scans the input in place into primitives (minor units, epoch millis) - no regex,
+ * no substrings, no formatter built per call. The DateTimeFormatters below are only a fallback for
+ * gateway date layouts the scanner does not know, and they are created once.
+ */
+public final class PaymentFieldParser {
+
+    /** returned by the amount parser when there is no amount */
+    public static final long NO_AMOUNT = -1L;
+    /** returned by the date parsers when nothing could be parsed */
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final String[] MONTHS = {"jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"};
+    private static final int[] MONTH_DAYS = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    // month-first layouts ("Aug 14, 2025 07:21 PM") that the day-first scanner rejects
+    private static final DateTimeFormatter[] FALLBACK_FORMATS = {
+            DateTimeFormatter.ofPattern("MMM d, yyyy hh:mm:ss a 'UTC'XXX", Locale.ENGLISH),
+            DateTimeFormatter.ofPattern("MMM d, yyyy hh:mm a", Locale.ENGLISH),
+            DateTimeFormatter.ofPattern("MMM d, yyyy", Locale.ENGLISH)
+    };
+
+    private static final Set<String> KNOWN_METHODS = Set.of("UPI", "CARD", "NETBANKING", "WALLET", "EMI");
+
+    private PaymentFieldParser() {}
+
+    // ---------- amounts ----------
+
+    /**
+     * "₹ 1,499.5", "Rs.1499", "1499.567", ".50" -> 149950, 149900, 149956, 50 (extra precision is cut, not
+     * rounded). Anything before the first digit is skipped, commas inside the integer part are ignored, and the
+     * scan stops at the first character that can't be part of the amount. A '.' right before the first digit
+     * starts the fraction unless it follows a letter ("Rs.1499"). NO_AMOUNT if there is no digit.
+     */
+    public static long parseAmountMinor(CharSequence s) {
+        return s == null ? NO_AMOUNT : parseAmountMinor(s, 0, s.length());
+    }
+
+    public static long parseAmountMinor(CharSequence s, int from, int to) {
+        int i = from;
+        while (i < to && !isDigit(s.charAt(i))) i++;
+        if (i >= to) return NO_AMOUNT;
+
+        long units = 0;
+        boolean fractionOnly = i > from && s.charAt(i - 1) == '.' && (i - 1 == from || !isLetter(s.charAt(i - 2)));
+        if (fractionOnly) i--;
+        for (; i < to && !fractionOnly; i++) {
+            char c = s.charAt(i);
+            if (isDigit(c)) {
+                if (units > (Long.MAX_VALUE / 100 - 9) / 10) return NO_AMOUNT;
+                units = units * 10 + (c - '0');
+            } else if (c != ',') {
+                break;
+            }
+        }
+
+        int fraction = 0;
+        int fractionDigits = 0;
+        if (i < to && s.charAt(i) == '.') {
+            for (i++; i < to && isDigit(s.charAt(i)); i++) {
+                if (fractionDigits < 2) {
+                    fraction = fraction * 10 + (s.charAt(i) - '0');
+                    fractionDigits++;
+                }
+            }
+        }
+        if (fractionDigits == 1) fraction *= 10;
+        return units * 100 + fraction;
+    }
+
+    /**
+     * 149950 -> "1499.50"
+     */
+    public static String formatAmount(long minor) {
+        if (minor < 0) return "";
+        long units = minor / 100;
+        int cents = (int) (minor % 100);
+        return new StringBuilder(22).append(units).append('.')
+                .append((char) ('0' + cents / 10)).append((char) ('0' + cents % 10))
+                .toString();
+    }
+
+    /**
+     * Canonical "1499.50" form of any amount string; "" if it has no amount.
+     */
+    public static String normalizeAmount(CharSequence s) {
+        return formatAmount(parseAmountMinor(s));
+    }
+
+    // ---------- method ----------
+
+    /**
+     * "UPI", "Method UPI", "MethodUPI", "card", "Net Banking" -> "UPI", "UPI", "UPI", "CARD", "NETBANKING".
+     * A leading "Method" label (what the row-level selectors return) is dropped, and the methods in
+     * PaymentRecordCodec's table get their canonical name. Anything else is kept, trimmed; blank -> null.
+     */
+    public static String normalizeMethod(String s) {
+        if (s == null) return null;
+        String v = s.strip();
+        if (v.regionMatches(true, 0, "Method", 0, 6)) {
+            int i = 6;
+            while (i < v.length() && (Character.isWhitespace(v.charAt(i)) || v.charAt(i) == ':' || v.charAt(i) == '-')) i++;
+            v = v.substring(i);
+        }
+        if (v.isEmpty()) return null;
+        StringBuilder key = new StringBuilder(v.length());
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (isLetter(c)) key.append(Character.toUpperCase(c));
+            else if (!Character.isWhitespace(c) && c != '-' && c != '_') return v;
+        }
+        String k = key.toString();
+        return KNOWN_METHODS.contains(k) ? k : v;
+    }
+
+    // ---------- dates ----------
+
+    /**
+     * Gateway receipt dates starting at {@code from}: "14 Aug, 2025 07:21:05 PM UTC+05:30",
+     * "14th August 2025, 7:21 pm", "14 Aug, 2025" (and month-first ones via the fallback formatters).
+     * Trailing text is ignored. A missing offset means UTC, a missing time means start of day.
+     * Returns epoch millis or NO_DATE.
+     */
+    public static long parseGatewayDate(CharSequence s, int from) {
+        return parseGatewayDate(s, from, false);
+    }
+
+    /**
+     * Like parseGatewayDate, but NO_DATE unless the value has a time of day. For a payment timestamp, where
+     * start of day can be most of a day before the payment.
+     */
+    public static long parseGatewayDateTime(CharSequence s, int from) {
+        return parseGatewayDate(s, from, true);
+    }
+
+    private static long parseGatewayDate(CharSequence s, int from, boolean requireTime) {
+        int len = s.length();
+        int i = skipSpaces(s, from);
+
+        // day, optional ordinal suffix
+        int day = 0, n = 0;
+        while (i < len && n < 2 && isDigit(s.charAt(i))) { day = day * 10 + (s.charAt(i++) - '0'); n++; }
+        if (n == 0 || (i < len && isDigit(s.charAt(i)))) return fallbackDate(s, from, requireTime);
+        if (regionMatches(s, i, "ST") || regionMatches(s, i, "ND") || regionMatches(s, i, "RD") || regionMatches(s, i, "TH")) i += 2;
+        int j = skipSpaces(s, i);
+        if (j == i) return fallbackDate(s, from, requireTime);
+        i = j;
+
+        // month name, 3 letters or more
+        int month = monthAt(s, i);
+        if (month == 0) return fallbackDate(s, from, requireTime);
+        while (i < len && isLetter(s.charAt(i))) i++;
+        if (i < len && s.charAt(i) == ',') i++;
+        i = skipSpaces(s, i);
+
+        // year
+        int year = 0;
+        for (n = 0; n < 4; n++, i++) {
+            if (i >= len || !isDigit(s.charAt(i))) return fallbackDate(s, from, requireTime);
+            year = year * 10 + (s.charAt(i) - '0');
+        }
+        if (day < 1 || day > MONTH_DAYS[month - 1] || (month == 2 && day == 29 && !isLeap(year))) return NO_DATE;
+        long dateMillis = epochDay(year, month, day) * 86_400_000L;
+        long dateOnly = requireTime ? NO_DATE : dateMillis; // result when there is no usable time
+
+        // optional ", h[h]:mm[:ss] AM|PM [UTC|GMT][+hh:mm]"
+        if (i < len && s.charAt(i) == ',') i++;
+        i = skipSpaces(s, i);
+        int hour = 0;
+        for (n = 0; n < 2 && i < len && isDigit(s.charAt(i)); n++, i++) hour = hour * 10 + (s.charAt(i) - '0');
+        if (n == 0 || i >= len || s.charAt(i) != ':') return dateOnly;
+        int minute = twoDigits(s, i + 1);
+        if (minute < 0) return dateOnly;
+        i += 3;
+        int second = 0;
+        if (i + 3 <= len && s.charAt(i) == ':') {
+            second = twoDigits(s, i + 1);
+            if (second < 0) return dateOnly;
+            i += 3;
+        }
+        i = skipSpaces(s, i);
+        if (i + 2 <= len && (s.charAt(i + 1) == 'M' || s.charAt(i + 1) == 'm')) {
+            char ap = s.charAt(i);
+            if (ap == 'P' || ap == 'p') { if (hour < 12) hour += 12; i += 2; }
+            else if (ap == 'A' || ap == 'a') { if (hour == 12) hour = 0; i += 2; }
+        }
+        if (hour > 23 || minute > 59 || second > 59) return dateOnly;
+
+        i = skipSpaces(s, i);
+        if (regionMatches(s, i, "UTC") || regionMatches(s, i, "GMT")) i += 3;
+        int offsetSeconds = offsetAt(s, i);
+        if (offsetSeconds == Integer.MIN_VALUE) offsetSeconds = 0;
+
+        return dateMillis + ((hour * 60L + minute) * 60L + second - offsetSeconds) * 1000L;
+    }
+
+    /**
+     * First "yyyy-MM-dd[T ]HH:mm[:ss][.fff](Z|+hh[:]mm)" timestamp in s, as epoch millis. Like the old
+     * regex + Instant.parse, only the first timestamp-shaped run is considered and one without a zone
+     * gives NO_DATE.
+     */
+    public static long findIsoInstant(CharSequence s) {
+        int len = s.length();
+        for (int i = 0; i + 16 <= len; i++) {
+            if (!isIsoPrefix(s, i)) continue;
+            int year = fourDigits(s, i);
+            int month = twoDigits(s, i + 5);
+            int day = twoDigits(s, i + 8);
+            int hour = twoDigits(s, i + 11);
+            int minute = twoDigits(s, i + 14);
+            int p = i + 16;
+            int second = 0;
+            if (p + 3 <= len && s.charAt(p) == ':' && twoDigits(s, p + 1) >= 0) {
+                second = twoDigits(s, p + 1);
+                p += 3;
+                int millis = 0, digits = 0;
+                if (p < len && s.charAt(p) == '.') {
+                    for (p++; p < len && isDigit(s.charAt(p)); p++) {
+                        if (digits < 3) { millis = millis * 10 + (s.charAt(p) - '0'); digits++; }
+                    }
+                    while (digits > 0 && digits < 3) { millis *= 10; digits++; }
+                }
+                second = second * 1000 + millis;
+            } else {
+                second *= 1000;
+            }
+            int offsetSeconds;
+            if (p < len && (s.charAt(p) == 'Z' || s.charAt(p) == 'z')) offsetSeconds = 0;
+            else offsetSeconds = offsetAt(s, p);
+            if (offsetSeconds == Integer.MIN_VALUE) return NO_DATE;
+            if (month < 1 || month > 12 || day < 1 || day > MONTH_DAYS[month - 1] || hour > 23 || minute > 59 || second >= 60_000) {
+                return NO_DATE;
+            }
+            return epochDay(year, month, day) * 86_400_000L
+                    + ((hour * 60L + minute) * 60L - offsetSeconds) * 1000L + second;
+        }
+        return NO_DATE;
+    }
+
+    // layouts the scanner doesn't handle; prefix parse (trailing text allowed) with the shared formatters
+    private static long fallbackDate(CharSequence s, int from, boolean requireTime) {
+        int start = skipSpaces(s, from);
+        if (start >= s.length() || !isLetter(s.charAt(start))) return NO_DATE;
+        for (DateTimeFormatter fmt : FALLBACK_FORMATS) {
+            try {
+                TemporalAccessor ta = fmt.parse(s, new ParsePosition(start));
+                if (ta.isSupported(ChronoField.OFFSET_SECONDS)) {
+                    return OffsetDateTime.from(ta).toInstant().toEpochMilli();
+                }
+                if (ta.isSupported(ChronoField.HOUR_OF_DAY)) {
+                    return LocalDateTime.from(ta).toInstant(ZoneOffset.UTC).toEpochMilli();
+                }
+                if (requireTime) return NO_DATE;
+                return LocalDate.from(ta).toEpochDay() * 86_400_000L;
+            } catch (Exception ignored) {}
+        }
+        return NO_DATE;
+    }
+
+    // ---------- scanning helpers ----------
+
+    private static boolean isIsoPrefix(CharSequence s, int i) {
+        return fourDigits(s, i) >= 0 && s.charAt(i + 4) == '-'
+                && twoDigits(s, i + 5) >= 0 && s.charAt(i + 7) == '-'
+                && twoDigits(s, i + 8) >= 0
+                && (s.charAt(i + 10) == 'T' || s.charAt(i + 10) == 't' || Character.isWhitespace(s.charAt(i + 10)))
+                && twoDigits(s, i + 11) >= 0 && s.charAt(i + 13) == ':'
+                && twoDigits(s, i + 14) >= 0;
+    }
+
+    /**
+     * "+05:30", "-0800", "+05" -> offset seconds, Integer.MIN_VALUE if there is none at i.
+     */
+    private static int offsetAt(CharSequence s, int i) {
+        if (i >= s.length()) return Integer.MIN_VALUE;
+        char sign = s.charAt(i);
+        if (sign != '+' && sign != '-') return Integer.MIN_VALUE;
+        int hh = twoDigits(s, i + 1);
+        if (hh < 0 || hh > 18) return Integer.MIN_VALUE;
+        int p = i + 3;
+        if (p < s.length() && s.charAt(p) == ':') p++;
+        int mm = twoDigits(s, p);
+        if (mm < 0) mm = 0;
+        int secs = hh * 3600 + mm * 60;
+        return sign == '-' ? -secs : secs;
+    }
+
+    private static int monthAt(CharSequence s, int i) {
+        if (i + 3 > s.length()) return 0;
+        for (int m = 0; m < 12; m++) {
+            String name = MONTHS[m];
+            if (Character.toLowerCase(s.charAt(i)) == name.charAt(0)
+                    && Character.toLowerCase(s.charAt(i + 1)) == name.charAt(1)
+                    && Character.toLowerCase(s.charAt(i + 2)) == name.charAt(2)) {
+                return m + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean regionMatches(CharSequence s, int i, String word) {
+        if (i + word.length() > s.length()) return false;
+        for (int k = 0; k < word.length(); k++) {
+            if (Character.toUpperCase(s.charAt(i + k)) != word.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    private static int twoDigits(CharSequence s, int i) {
+        if (i + 2 > s.length() || !isDigit(s.charAt(i)) || !isDigit(s.charAt(i + 1))) return -1;
+        return (s.charAt(i) - '0') * 10 + (s.charAt(i + 1) - '0');
+    }
+
+    private static int fourDigits(CharSequence s, int i) {
+        int hi = twoDigits(s, i);
+        int lo = twoDigits(s, i + 2);
+        return hi < 0 || lo < 0 ? -1 : hi * 100 + lo;
+    }
+
+    private static int skipSpaces(CharSequence s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        return i;
+    }
+
+    private static boolean isDigit(char c) { return c >= '0' && c <= '9'; }
+
+    private static boolean isLetter(char c) { return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'); }
+
+    private static boolean isLeap(int y) { return (y & 3) == 0 && (y % 100 != 0 || y % 400 == 0); }
+
+    // days since 1970-01-01 for a proleptic Gregorian date (same result as LocalDate.toEpochDay)
+    private static long epochDay(int y, int m, int d) {
+        if (m <= 2) y--;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (m > 2 ? m - 3 : m + 9) + 2) / 5 + d - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146_097 + doe - 719_468;
+    }
+}
@@ -5,7 +5,7 @@ import java.util.Objects;
 
 public class PaymentInfo {
     private String paymentId;
-    private String amount; // normalized like "1.00"
+    private long amountMinor = PaymentFieldParser.NO_AMOUNT; // paise, 149950 == 1499.50
     private Instant paidOn;
     private String payerEmail;
     private String phone;
@@ -16,10 +16,10 @@ public class PaymentInfo {
 
     public PaymentInfo() {}
 
-    public PaymentInfo(String paymentId, String amount, Instant paidOn, String payerEmail,
+    public PaymentInfo(String paymentId, long amountMinor, Instant paidOn, String payerEmail,
                        String phone, String method, String merchantName, String subject, String messageId) {
         this.paymentId = paymentId;
-        this.amount = amount;
+        this.amountMinor = amountMinor;
         this.paidOn = paidOn;
         this.payerEmail = payerEmail;
         this.phone = phone;
@@ -33,8 +33,15 @@ public class PaymentInfo {
     public String getPaymentId() { return paymentId; }
     public void setPaymentId(String paymentId) { this.paymentId = paymentId; }
 
-    public String getAmount() { return amount; }
-    public void setAmount(String amount) { this.amount = amount; }
+    public long getAmountMinor() { return amountMinor; }
+    public void setAmountMinor(long amountMinor) { this.amountMinor = amountMinor; }
+
+    public boolean hasAmount() { return amountMinor >= 0; }
+
+    /**
+     * Display form ("1499.50") for JSON responses and logs; null if there is no amount.
+     */
+    public String getAmount() { return hasAmount() ? PaymentFieldParser.formatAmount(amountMinor) : null; }
 
     public Instant getPaidOn() { return paidOn; }
     public void setPaidOn(Instant paidOn) { this.paidOn = paidOn; }
@@ -61,7 +68,7 @@ public class PaymentInfo {
     public String toString() {
         return "PaymentInfo{" +
                 "paymentId='" + paymentId + '\'' +
-                ", amount='" + amount + '\'' +
+                ", amount='" + getAmount() + '\'' +
                 ", paidOn=" + paidOn +
                 ", payerEmail='" + payerEmail + '\'' +
                 ", phone='" + phone + '\'' +
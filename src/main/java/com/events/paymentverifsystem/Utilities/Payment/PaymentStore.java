@@ -0,0 +1,126 @@
+package com.events.paymentverifsystem.Utilities.Payment;
+
+import com.events.paymentverifsystem.Utilities.Email.ProcessedMessageStore;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
+
+/**
+ * Where claimed payments live between the email pipeline and /verify.
+ *
+ * RedisPaymentStore is shared by every instance; InMemoryPaymentStore keeps it all in this JVM for a
+ * single-node deployment, tests and benchmarks. Chosen with payments.store (redis, the default, or memory).
+ *
+ * Like the Redis store always has, implementations fail open: errors are logged and answered with
+ * false / null / empty, never thrown to the caller. The exception is consume, where null means "no such
+ * payment": a store that can't answer throws PaymentStoreUnavailableException instead.
+ */
+public interface PaymentStore extends ProcessedMessageStore {
+
+    /**
+     * Claims the message and stores the payment; false if the message (or the payment id) was already claimed.
+     */
+    boolean savePaymentAtomic(PaymentInfo info, Duration businessTtl, int processedTtlSeconds);
+
+    /**
+     * savePaymentAtomic for a batch, index-aligned with infos. An entry is null when the store could not say
+     * whether the claim happened (unreachable, reply lost); retrying it is safe, the claim is idempotent.
+     */
+    List<Boolean> savePaymentsAtomic(List<PaymentInfo> infos, Duration businessTtl, int processedTtlSeconds);
+
+    /**
+     * Finds the payment for this payer and amount and removes it; only one caller ever gets it back.
+     * Throws PaymentStoreUnavailableException (the async form completes with it) if the store can't be asked.
+     */
+    PaymentInfo consumeByEmailAndAmount(String email, long amountMinor);
+
+    /**
+     * isProcessed for a batch, index-aligned; fails open (all false).
+     */
+    List<Boolean> areProcessed(List<String> messageIds);
+
+    /**
+     * Claims content fingerprints for the given Message-IDs; returns, index-aligned, the Message-ID that owns
+     * each one (ours if it was new). Fails open by returning our own ids.
+     */
+    List<String> claimContent(List<String> fingerprints, List<String> messageIds, int ttlSeconds);
+
+    /**
+     * The Message-ID owning each content fingerprint, index-aligned; null where there is none. Fails open (all null).
+     */
+    List<String> contentOwners(List<String> fingerprints);
+
+    /**
+     * Every messageId claimed at or after sinceMillis with its claim time, oldest first.
+     */
+    void forEachProcessedSince(long sinceMillis, BiConsumer<String, Long> consumer);
+
+    // ---------------- listings (admin endpoints) ----------------
+
+    String processedKeyFor(String messageId);
+
+    List<String> recentMessageIds(int limit);
+
+    /**
+     * Received (not yet verified) payments, newest claim first, each with "_redisKey".
+     */
+    List<Map<String, Object>> recentPayments(int limit);
+
+    List<Map<String, Object>> recentConsumed(int limit);
+
+    List<Map<String, Object>> paymentsForMessages(List<String> messageIds);
+
+    /**
+     * True when other instances write to the same store, i.e. claims can show up that this JVM didn't make.
+     */
+    boolean isShared();
+
+    Map<String, Object> getStats();
+
+    // ---------------- async ----------------
+    //
+    // Completed inline unless the backend has a non-blocking client (RedisPaymentStore does).
+
+    default CompletionStage<Boolean> savePaymentAtomicAsync(PaymentInfo info, Duration businessTtl, int processedTtlSeconds) {
+        return CompletableFuture.completedFuture(savePaymentAtomic(info, businessTtl, processedTtlSeconds));
+    }
+
+    default CompletionStage<List<Boolean>> savePaymentsAtomicAsync(List<PaymentInfo> infos, Duration businessTtl, int processedTtlSeconds) {
+        return CompletableFuture.completedFuture(savePaymentsAtomic(infos, businessTtl, processedTtlSeconds));
+    }
+
+    default CompletionStage<PaymentInfo> consumeByEmailAndAmountAsync(String email, long amountMinor) {
+        return CompletableFuture.completedFuture(consumeByEmailAndAmount(email, amountMinor));
+    }
+
+    /**
+     * consumeByEmailAndAmount for a list of payers, index-aligned: the payment, Optional.empty() if there is
+     * none, null if the store couldn't say for that item (it may have been consumed). Completes with
+     * PaymentStoreUnavailableException only when nothing was attempted, so consumed payments are never dropped.
+     */
+    default CompletionStage<List<Optional<PaymentInfo>>> consumeByEmailsAndAmountsAsync(List<String> emails, List<Long> amountsMinor) {
+        List<Optional<PaymentInfo>> out = new ArrayList<>(emails.size());
+        for (int i = 0; i < emails.size(); i++) {
+            try {
+                out.add(Optional.ofNullable(consumeByEmailAndAmount(emails.get(i), amountsMinor.get(i))));
+            } catch (PaymentStoreUnavailableException e) {
+                out.add(null);
+            }
+        }
+        return CompletableFuture.completedFuture(out);
+    }
+
+    default CompletionStage<Boolean> isProcessedAsync(String messageId) {
+        return CompletableFuture.completedFuture(isProcessed(messageId));
+    }
+
+    default CompletionStage<List<Boolean>> areProcessedAsync(List<String> messageIds) {
+        return CompletableFuture.completedFuture(areProcessed(messageIds));
+    }
+}
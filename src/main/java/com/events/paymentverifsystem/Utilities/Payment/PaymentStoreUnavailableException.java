@@ -0,0 +1,17 @@
+package com.events.paymentverifsystem.Utilities.Payment;
+
+/**
+ * The store could not be asked (circuit open) or did not answer. Only consume reports this; everything
+ * else fails open.
+ */
+public class PaymentStoreUnavailableException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public PaymentStoreUnavailableException(String message) {
+        super(message);
+    }
+
+    public PaymentStoreUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
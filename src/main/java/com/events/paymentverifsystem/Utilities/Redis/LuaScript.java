@@ -0,0 +1,124 @@
+package com.events.paymentverifsystem.Utilities.Redis;
+
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Lua script run through EVALSHA.
+ *
+ * The body is prefixed with "-- name vN", so bumping the version (or changing the body) gives a new SHA1.
+ * During a rolling deploy old and new instances each call their own SHA and never pick up the other's
+ * script. SCRIPT LOAD happens once at startup; if Redis answers NOSCRIPT (restart, failover, SCRIPT FLUSH)
+ * the call is retried with EVAL, which also puts the script back in the cache.
+ */
+final class LuaScript {
+
+    private final String name;
+    private final int version;
+    private final byte[] body;
+    private final String sha;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+
+    LuaScript(String name, int version, String source) {
+        this.name = name;
+        this.version = version;
+        this.body = ("-- " + name + " v" + version + "\n" + source).getBytes(StandardCharsets.UTF_8);
+        this.sha = sha1(body);
+    }
+
+    String sha() { return sha; }
+
+    /**
+     * SCRIPT LOAD; returns false if Redis disagrees on the SHA, which would mean every call falls back to EVAL.
+     */
+    boolean load(RedisConnection conn) {
+        String loaded = conn.scriptingCommands().scriptLoad(body);
+        return sha.equals(loaded);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T run(RedisConnection conn, ReturnType type, int numKeys, byte[]... keysAndArgs) {
+        calls.increment();
+        try {
+            return (T) conn.scriptingCommands().evalSha(sha, type, numKeys, keysAndArgs);
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) throw e;
+            reloads.increment();
+            return (T) conn.scriptingCommands().eval(body, type, numKeys, keysAndArgs);
+        }
+    }
+
+    /**
+     * Non-blocking run on Lettuce's async commands; NOSCRIPT is retried with EVAL like run().
+     */
+    <T> CompletionStage<T> runAsync(RedisClusterAsyncCommands<byte[], byte[]> cmds, ScriptOutputType type,
+                                    int numKeys, byte[]... keysAndArgs) {
+        calls.increment();
+        byte[][] keys = Arrays.copyOfRange(keysAndArgs, 0, numKeys);
+        byte[][] args = Arrays.copyOfRange(keysAndArgs, numKeys, keysAndArgs.length);
+        CompletionStage<T> first = cmds.evalsha(sha, type, keys, args);
+        return first.<CompletionStage<T>>handle((res, err) -> {
+                    if (err == null) return CompletableFuture.completedFuture(res);
+                    if (!isNoScript(err)) return CompletableFuture.<T>failedFuture(err);
+                    reloads.increment();
+                    return cmds.<T>eval(body, type, keys, args);
+                })
+                .thenCompose(stage -> stage);
+    }
+
+    /**
+     * EVALSHA for use inside a pipeline: errors (NOSCRIPT included) only show up in the pipeline result,
+     * so the caller checks with isNoScript and calls reloaded() before re-sending.
+     */
+    void queue(RedisConnection conn, ReturnType type, int numKeys, byte[]... keysAndArgs) {
+        calls.increment();
+        conn.scriptingCommands().evalSha(sha, type, numKeys, keysAndArgs);
+    }
+
+    void reloaded() {
+        reloads.increment();
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("version", version);
+        s.put("sha", sha);
+        s.put("calls", calls.sum());
+        s.put("reloads", reloads.sum());
+        return s;
+    }
+
+    String getName() { return name; }
+
+    // the driver wraps the error reply, so look for the NOSCRIPT prefix anywhere in the cause chain
+    static boolean isNoScript(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            String msg = t.getMessage();
+            if (msg != null && msg.contains("NOSCRIPT")) return true;
+            if (t.getCause() == t) break;
+        }
+        return false;
+    }
+
+    private static String sha1(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(bytes));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.events.paymentverifsystem.Utilities.Redis;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binary form of a stored payment (the value of attendance:payments:{id}), replacing the 10-field hash.
+ * InMemoryPaymentStore keeps its records in the same form.
+ *
+ *   byte     version (1)
+ *   byte     status code   (index into STATUSES, or 0xFF followed by the literal as a string)
+ *   byte     method code   (index into METHODS, 0 = none, or 0xFF + literal)
+ *   varlong  amount in paise, zigzag (NO_AMOUNT is -1)
+ *   varlong  paidOn epoch millis, zigzag
+ *   string   paymentId, messageId, payerEmail, phone, merchantName, subject
+ *
+ * Strings are varint length + UTF-8; length 0 reads back as null. Field names and the ISO timestamp are
+ * gone, which is most of the size of a hash entry.
+ */
+public final class PaymentRecordCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final int LITERAL = 0xFF;
+    private static final String[] STATUSES = {"received", "consumed"};
+    // canonical names from PaymentFieldParser.normalizeMethod
+    private static final String[] METHODS = {null, "UPI", "CARD", "NETBANKING", "WALLET", "EMI"};
+
+    private PaymentRecordCodec() {}
+
+    public static byte[] encode(PaymentInfo info, String status) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(96);
+        out.write(VERSION);
+        writeCode(out, STATUSES, status);
+        writeCode(out, METHODS, info.getMethod() == null || info.getMethod().isEmpty() ? null : info.getMethod());
+        writeVarLong(out, zigzag(info.getAmountMinor()));
+        writeVarLong(out, zigzag((info.getPaidOn() == null ? Instant.now() : info.getPaidOn()).toEpochMilli()));
+        writeString(out, info.getPaymentId());
+        writeString(out, info.getMessageId());
+        writeString(out, info.getPayerEmail());
+        writeString(out, info.getPhone());
+        writeString(out, info.getMerchantName());
+        writeString(out, info.getSubject());
+        return out.toByteArray();
+    }
+
+    /**
+     * Decoded record; throws IllegalArgumentException for an unknown version or truncated input.
+     */
+    public static Record decode(byte[] b) {
+        Reader r = new Reader(b);
+        int version = r.u8();
+        if (version != VERSION) throw new IllegalArgumentException("unknown payment record version " + version);
+        String status = r.code(STATUSES);
+        String method = r.code(METHODS);
+        long amount = unzigzag(r.varLong());
+        long paidOn = unzigzag(r.varLong());
+        PaymentInfo info = new PaymentInfo();
+        info.setAmountMinor(amount);
+        info.setPaidOn(Instant.ofEpochMilli(paidOn));
+        info.setMethod(method);
+        info.setPaymentId(r.string());
+        info.setMessageId(r.string());
+        info.setPayerEmail(r.string());
+        info.setPhone(r.string());
+        info.setMerchantName(r.string());
+        info.setSubject(r.string());
+        return new Record(info, status);
+    }
+
+    public record Record(PaymentInfo info, String status) {
+        /**
+         * Same field names and string forms as the old hash, for the admin endpoints.
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("paymentId", info.getPaymentId());
+            m.put("amount", info.hasAmount() ? String.valueOf(info.getAmountMinor()) : "");
+            m.put("paymentTs", info.getPaidOn() == null ? null : info.getPaidOn().toString());
+            m.put("messageId", info.getMessageId());
+            m.put("payerEmail", info.getPayerEmail());
+            m.put("status", status);
+            m.put("method", info.getMethod());
+            m.put("phone", info.getPhone());
+            m.put("merchantName", info.getMerchantName());
+            m.put("subject", info.getSubject());
+            return m;
+        }
+    }
+
+    // ---------------- encoding helpers ----------------
+
+    private static void writeCode(ByteArrayOutputStream out, String[] table, String value) {
+        for (int i = 0; i < table.length; i++) {
+            if (value == null ? table[i] == null : value.equals(table[i])) {
+                out.write(i);
+                return;
+            }
+        }
+        out.write(LITERAL);
+        writeString(out, value);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String s) {
+        if (s == null || s.isEmpty()) {
+            out.write(0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long zigzag(long v) { return (v << 1) ^ (v >> 63); }
+    private static long unzigzag(long v) { return (v >>> 1) ^ -(v & 1); }
+
+    private static final class Reader {
+        private final byte[] b;
+        private int pos;
+
+        Reader(byte[] b) { this.b = b; }
+
+        int u8() {
+            if (pos >= b.length) throw new IllegalArgumentException("truncated payment record");
+            return b[pos++] & 0xFF;
+        }
+
+        long varLong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int x = u8();
+                v |= (long) (x & 0x7F) << shift;
+                if ((x & 0x80) == 0) return v;
+            }
+            throw new IllegalArgumentException("malformed varint in payment record");
+        }
+
+        String string() {
+            int len = (int) varLong();
+            if (len == 0) return null;
+            if (len < 0 || pos + len > b.length) throw new IllegalArgumentException("truncated payment record");
+            String s = new String(b, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+
+        String code(String[] table) {
+            int c = u8();
+            if (c == LITERAL) return string();
+            if (c >= table.length) throw new IllegalArgumentException("unknown code " + c + " in payment record");
+            return table[c];
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.events.paymentverifsystem.Utilities.Redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker for the Redis calls on the hot paths: processed checks (CHECK), claims (CLAIM) and /verify (CONSUME).
+ *
+ *   CLOSED     calls go through. The outcomes of the last window-size calls are kept in a ring; a call that
+ *              throws or runs past its operation's budget counts as failed. With at least minimum-calls in the
+ *              window and failure-rate-percent of them failed, it opens.
+ *   OPEN       calls are refused without touching Redis, for open-millis.
+ *   HALF_OPEN  up to half-open-probes calls go through; when all of them succeed it closes with an empty
+ *              window, the first failure opens it again.
+ *
+ * Every call carries the Permit it was let through with, one per state entered. A call that finishes after the
+ * state changed is not recorded: a call started while CLOSED doesn't count as a HALF_OPEN probe, and a
+ * probe that outlives its HALF_OPEN doesn't land in the fresh window.
+ *
+ * A budget is not a timeout: the call still runs to the Lettuce command timeout (RedisConfig derives it from
+ * the longest budget unless spring.data.redis.timeout is set), and the breaker is what keeps the calls after
+ * it from waiting too. What a refused call means is up to the
+ * caller; RedisPaymentStore fails checks open, reports claims as unknown (ClaimJournal keeps them) and
+ * consumes as unavailable (/verify answers 503).
+ */
+@Component
+public class RedisCircuitBreaker {
+    private static final Logger log = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public enum Op { CHECK, CLAIM, CONSUME }
+
+    private final RedisCircuitBreakerProperties props;
+    private final long[] budgetNanos = new long[Op.values().length];
+    private final long openNanos;
+
+    /**
+     * Handed out by tryAcquire and passed back with the outcome; one instance per state the breaker entered.
+     */
+    public static final class Permit {
+        private final State state;
+
+        private Permit(State state) {
+            this.state = state;
+        }
+
+        public State getState() {
+            return state;
+        }
+    }
+
+    private volatile Permit current = new Permit(State.CLOSED);
+
+    // guarded by this
+    private final boolean[] window;
+    private int windowPos;
+    private int windowCount;
+    private int windowFailures;
+    private long openedAt;
+    private int probesIssued;
+    private int probesSucceeded;
+
+    private final LongAdder[] calls = new LongAdder[Op.values().length];
+    private final LongAdder[] failures = new LongAdder[Op.values().length];
+    private final LongAdder[] slow = new LongAdder[Op.values().length];
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+
+    public RedisCircuitBreaker(RedisCircuitBreakerProperties props) {
+        this.props = props;
+        this.window = new boolean[Math.max(1, props.getWindowSize())];
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(props.getOpenMillis());
+        budgetNanos[Op.CHECK.ordinal()] = TimeUnit.MILLISECONDS.toNanos(props.getCheckBudgetMillis());
+        budgetNanos[Op.CLAIM.ordinal()] = TimeUnit.MILLISECONDS.toNanos(props.getClaimBudgetMillis());
+        budgetNanos[Op.CONSUME.ordinal()] = TimeUnit.MILLISECONDS.toNanos(props.getConsumeBudgetMillis());
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = new LongAdder();
+            failures[i] = new LongAdder();
+            slow[i] = new LongAdder();
+        }
+    }
+
+    public State getState() {
+        return current.state;
+    }
+
+    /**
+     * Whether a call may go to Redis now: null if not, else the permit every onSuccess or onFailure for the
+     * call must be given.
+     */
+    public Permit tryAcquire() {
+        Permit p = current;
+        if (!props.isEnabled() || p.state == State.CLOSED) return p;
+        synchronized (this) {
+            if (current.state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    rejected.increment();
+                    return null;
+                }
+                current = new Permit(State.HALF_OPEN);
+                probesIssued = 0;
+                probesSucceeded = 0;
+                log.info("Redis circuit half-open, letting {} probe call(s) through", props.getHalfOpenProbes());
+            }
+            if (current.state == State.HALF_OPEN) {
+                if (probesIssued < props.getHalfOpenProbes()) {
+                    probesIssued++;
+                    return current;
+                }
+                rejected.increment();
+                return null;
+            }
+            return current;
+        }
+    }
+
+    public void onSuccess(Permit permit, Op op, long elapsedNanos) {
+        calls[op.ordinal()].increment();
+        if (elapsedNanos > budgetNanos[op.ordinal()]) {
+            slow[op.ordinal()].increment();
+            record(permit, false);
+        } else {
+            record(permit, true);
+        }
+    }
+
+    public void onFailure(Permit permit, Op op) {
+        calls[op.ordinal()].increment();
+        failures[op.ordinal()].increment();
+        record(permit, false);
+    }
+
+    private synchronized void record(Permit permit, boolean ok) {
+        // disabled, or the call started in a state the breaker has since left
+        if (!props.isEnabled() || permit != current) return;
+        switch (permit.state) {
+            case HALF_OPEN -> {
+                if (!ok) open("a probe call failed");
+                else if (++probesSucceeded >= props.getHalfOpenProbes()) close();
+            }
+            case CLOSED -> {
+                if (windowCount == window.length) {
+                    if (!window[windowPos]) windowFailures--;
+                } else {
+                    windowCount++;
+                }
+                window[windowPos] = ok;
+                if (!ok) windowFailures++;
+                windowPos = (windowPos + 1) % window.length;
+                if (windowCount >= props.getMinimumCalls() && windowFailures * 100 >= props.getFailureRatePercent() * windowCount) {
+                    open(windowFailures + " of the last " + windowCount + " calls failed or were over budget");
+                }
+            }
+            case OPEN -> {
+                // no permits are handed out while open
+            }
+        }
+    }
+
+    private void open(String why) {
+        current = new Permit(State.OPEN);
+        openedAt = System.nanoTime();
+        opened.increment();
+        log.warn("Redis circuit open for {} ms: {}", props.getOpenMillis(), why);
+    }
+
+    private void close() {
+        current = new Permit(State.CLOSED);
+        windowPos = 0;
+        windowCount = 0;
+        windowFailures = 0;
+        log.info("Redis circuit closed");
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("enabled", props.isEnabled());
+        s.put("state", current.state);
+        synchronized (this) {
+            s.put("windowCalls", windowCount);
+            s.put("windowFailures", windowFailures);
+        }
+        s.put("opened", opened.sum());
+        s.put("rejected", rejected.sum());
+        for (Op op : Op.values()) {
+            Map<String, Object> o = new LinkedHashMap<>();
+            o.put("budgetMillis", TimeUnit.NANOSECONDS.toMillis(budgetNanos[op.ordinal()]));
+            o.put("calls", calls[op.ordinal()].sum());
+            o.put("failures", failures[op.ordinal()].sum());
+            o.put("overBudget", slow[op.ordinal()].sum());
+            s.put(op.name().toLowerCase(), o);
+        }
+        return s;
+    }
+}
@@ -0,0 +1,55 @@
+package com.events.paymentverifsystem.Utilities.Redis;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for RedisCircuitBreaker (payments.redis.breaker).
+ */
+@Component
+@ConfigurationProperties(prefix = "payments.redis.breaker")
+public class RedisCircuitBreakerProperties {
+
+    private boolean enabled = true;
+
+    // opens when at least minimumCalls of the last windowSize calls are recorded and failureRatePercent of them failed
+    private int windowSize = 50;
+    private int minimumCalls = 10;
+    private int failureRatePercent = 50;
+
+    // how long it stays open, then how many trial calls must succeed to close it again
+    private long openMillis = 5000;
+    private int halfOpenProbes = 3;
+
+    // latency budgets: a call slower than this counts as failed; twice the longest is the Redis command timeout
+    private long checkBudgetMillis = 250;
+    private long claimBudgetMillis = 1000;
+    private long consumeBudgetMillis = 500;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getWindowSize() { return windowSize; }
+    public void setWindowSize(int windowSize) { this.windowSize = windowSize; }
+
+    public int getMinimumCalls() { return minimumCalls; }
+    public void setMinimumCalls(int minimumCalls) { this.minimumCalls = minimumCalls; }
+
+    public int getFailureRatePercent() { return failureRatePercent; }
+    public void setFailureRatePercent(int failureRatePercent) { this.failureRatePercent = failureRatePercent; }
+
+    public long getOpenMillis() { return openMillis; }
+    public void setOpenMillis(long openMillis) { this.openMillis = openMillis; }
+
+    public int getHalfOpenProbes() { return halfOpenProbes; }
+    public void setHalfOpenProbes(int halfOpenProbes) { this.halfOpenProbes = halfOpenProbes; }
+
+    public long getCheckBudgetMillis() { return checkBudgetMillis; }
+    public void setCheckBudgetMillis(long checkBudgetMillis) { this.checkBudgetMillis = checkBudgetMillis; }
+
+    public long getClaimBudgetMillis() { return claimBudgetMillis; }
+    public void setClaimBudgetMillis(long claimBudgetMillis) { this.claimBudgetMillis = claimBudgetMillis; }
+
+    public long getConsumeBudgetMillis() { return consumeBudgetMillis; }
+    public void setConsumeBudgetMillis(long consumeBudgetMillis) { this.consumeBudgetMillis = consumeBudgetMillis; }
+}
@@ -1,15 +1,27 @@
 package com.events.paymentverifsystem.Utilities.Redis;
 
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.*;
 import org.springframework.data.redis.connection.lettuce.*;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
 
+/**
+ * Connection factory, template and pub/sub container for payments.store: redis. With payments.store: memory
+ * none of these exist, so nothing connects to Redis and actuator has no Redis health to report.
+ */
 @Configuration
+@ConditionalOnProperty(name = "payments.store", havingValue = "redis", matchIfMissing = true)
 public class RedisConfig {
 
     @Value("${spring.data.redis.host}")
@@ -21,11 +33,62 @@ public class RedisConfig {
     @Value("${spring.data.redis.password}")
     private String password;
 
+    // the factory below is ours, so Boot doesn't apply this; without it Lettuce waits 60 s per command.
+    // Unset = TIMEOUT_BUDGETS times the longest breaker budget, so a stuck call is failed soon after it is
+    // already counted as over budget instead of holding its caller for seconds more.
+    @Value("${spring.data.redis.timeout:#{null}}")
+    private Duration commandTimeout;
+
+    private static final int TIMEOUT_BUDGETS = 2;
+
+    private final RedisCircuitBreakerProperties breakerProps;
+
+    public RedisConfig(RedisCircuitBreakerProperties breakerProps) {
+        this.breakerProps = breakerProps;
+    }
+
+    Duration commandTimeout() {
+        if (commandTimeout != null) return commandTimeout;
+        long budget = Math.max(breakerProps.getClaimBudgetMillis(),
+                Math.max(breakerProps.getCheckBudgetMillis(), breakerProps.getConsumeBudgetMillis()));
+        return Duration.ofMillis(budget * TIMEOUT_BUDGETS);
+    }
+
+    // cluster: comma-separated host:port seeds; sentinel: master name + host:port list. Empty = standalone.
+    @Value("${spring.data.redis.cluster.nodes:}")
+    private List<String> clusterNodes;
+
+    @Value("${spring.data.redis.sentinel.master:}")
+    private String sentinelMaster;
+
+    @Value("${spring.data.redis.sentinel.nodes:}")
+    private List<String> sentinelNodes;
+
     @Bean
     public RedisConnectionFactory redisConnectionFactory() {
+        Duration commandTimeout = commandTimeout();
+        if (clusterNodes != null && !clusterNodes.isEmpty()) {
+            RedisClusterConfiguration cfg = new RedisClusterConfiguration(clusterNodes);
+            cfg.setPassword(RedisPassword.of(password));
+            // follow slot moves and failovers without waiting for a MOVED error on every stale route
+            ClusterTopologyRefreshOptions refresh = ClusterTopologyRefreshOptions.builder()
+                    .enablePeriodicRefresh(Duration.ofSeconds(30))
+                    .enableAllAdaptiveRefreshTriggers()
+                    .build();
+            LettuceClientConfiguration clientConfig = LettuceClientConfiguration.builder()
+                    .commandTimeout(commandTimeout)
+                    .clientOptions(ClusterClientOptions.builder().topologyRefreshOptions(refresh).build())
+                    .build();
+            return new LettuceConnectionFactory(cfg, clientConfig);
+        }
+        if (sentinelMaster != null && !sentinelMaster.isBlank()) {
+            RedisSentinelConfiguration cfg = new RedisSentinelConfiguration(sentinelMaster, new HashSet<>(sentinelNodes));
+            cfg.setPassword(RedisPassword.of(password));
+            return new LettuceConnectionFactory(cfg, LettuceClientConfiguration.builder().commandTimeout(commandTimeout).build());
+        }
         RedisStandaloneConfiguration cfg = new RedisStandaloneConfiguration(host, port);
         cfg.setPassword(RedisPassword.of(password));
-        LettuceClientConfiguration clientConfig = LettuceClientConfiguration.builder().build();
+        LettuceClientConfiguration clientConfig = LettuceClientConfiguration.builder().commandTimeout(commandTimeout).build();
         return new LettuceConnectionFactory(cfg, clientConfig);
     }
     @Bean
@@ -44,5 +107,13 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
+
+    // pub/sub (processed:events for ProcessedMessageCache)
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
 }
 
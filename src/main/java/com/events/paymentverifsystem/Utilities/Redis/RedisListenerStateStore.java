@@ -0,0 +1,79 @@
+package com.events.paymentverifsystem.Utilities.Redis;
+
+import com.events.paymentverifsystem.Utilities.Email.ListenerStateStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Listener state in Redis, shared by every instance.
+ * Checkpoint: a small hash email-listener:checkpoint:{account}:{folder} (uidValidity, lastUid).
+ * Heartbeat: email-listener:heartbeat holding an ISO-8601 instant, with the TTL it was written with.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.store", havingValue = "redis", matchIfMissing = true)
+public class RedisListenerStateStore implements ListenerStateStore {
+    private static final Logger log = LoggerFactory.getLogger(RedisListenerStateStore.class);
+
+    private static final String KEY_PREFIX = "email-listener:checkpoint:";
+    private static final String HEARTBEAT_KEY = "email-listener:heartbeat";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    public RedisListenerStateStore(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    private String key(String account, String folder) {
+        String a = account == null || account.isBlank() ? "default" : account.toLowerCase();
+        return KEY_PREFIX + a + ":" + folder;
+    }
+
+    @Override
+    public Checkpoint loadCheckpoint(String account, String folder) {
+        try {
+            List<Object> vals = redisTemplate.opsForHash().multiGet(key(account, folder), List.of("uidValidity", "lastUid"));
+            if (vals == null || vals.size() < 2 || vals.get(0) == null || vals.get(1) == null) return null;
+            return new Checkpoint(Long.parseLong(vals.get(0).toString()), Long.parseLong(vals.get(1).toString()));
+        } catch (Exception e) {
+            log.warn("Failed to load sweep checkpoint for {}", folder, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void saveCheckpoint(String account, String folder, long uidValidity, long lastUid) {
+        try {
+            Map<String, String> fields = new LinkedHashMap<>();
+            fields.put("uidValidity", String.valueOf(uidValidity));
+            fields.put("lastUid", String.valueOf(lastUid));
+            redisTemplate.opsForHash().putAll(key(account, folder), fields);
+        } catch (Exception e) {
+            log.warn("Failed to save sweep checkpoint for {}", folder, e);
+        }
+    }
+
+    @Override
+    public void writeHeartbeat(Instant at, Duration ttl) {
+        redisTemplate.opsForValue().set(HEARTBEAT_KEY, at.toString(), ttl);
+    }
+
+    @Override
+    public Instant lastHeartbeat() {
+        Object raw = redisTemplate.opsForValue().get(HEARTBEAT_KEY);
+        return raw == null ? null : Instant.parse(raw.toString());
+    }
+
+    @Override
+    public String heartbeatLocation() {
+        return "redis:" + HEARTBEAT_KEY;
+    }
+}
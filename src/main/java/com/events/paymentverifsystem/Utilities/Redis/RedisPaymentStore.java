@@ -1,231 +1,1159 @@
 package com.events.paymentverifsystem.Utilities.Redis;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentFieldParser;
 import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentStore;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentStoreUnavailableException;
+import com.events.paymentverifsystem.Utilities.Redis.RedisCircuitBreaker.Op;
+import com.events.paymentverifsystem.Utilities.Redis.RedisCircuitBreaker.Permit;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.Range;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.RedisStringCommands;
 import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 @Component
-public class RedisPaymentStore {
+@ConditionalOnProperty(name = "payments.store", havingValue = "redis", matchIfMissing = true)
+public class RedisPaymentStore implements PaymentStore {
     private static final Logger log = LoggerFactory.getLogger(RedisPaymentStore.class);
     @Autowired
     private final RedisTemplate<String, Object> redisTemplate;
     private final StringRedisSerializer stringSerializer = new StringRedisSerializer();
 
+    // KEYS: processed, business, verification, message index, received index, processed index
+    // ARGV: processed TTL, business TTL, messageId, paymentId, encoded record (PaymentRecordCodec),
+    //       now (epoch millis), received index cutoff, processed index cutoff
     private static final String SAVE_LUA =
             "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
                     // Store processed key
                     "redis.call('SET', KEYS[1], ARGV[3], 'EX', tonumber(ARGV[1]), 'NX') " +
-                    // Store business/payment hash
-                    "redis.call('HMSET', KEYS[2], " +
-                    "'paymentId', ARGV[4], " +
-                    "'amount', ARGV[5], " +
-                    "'paymentTs', ARGV[6], " +
-                    "'messageId', ARGV[3], " +
-                    "'payerEmail', ARGV[7], " +
-                    "'status', 'received', " +
-                    "'method', ARGV[8], " +
-                    "'phone', ARGV[9], " +
-                    "'merchantName', ARGV[10], " +
-                    "'subject', ARGV[11] " +
-                    ") " +
-                    "redis.call('EXPIRE', KEYS[2], tonumber(ARGV[2])) " +
+                    // Store business/payment record
+                    "redis.call('SET', KEYS[2], ARGV[5], 'EX', tonumber(ARGV[2])) " +
                     // Store verification key
                     "redis.call('SET', KEYS[3], ARGV[4], 'EX', tonumber(ARGV[2]), 'NX') " +
+                    // Indexes for the admin endpoints: messageId -> paymentId, and claim-time ordered sets
+                    // trimmed to the TTL of what they point at
+                    "redis.call('SET', KEYS[4], ARGV[4], 'EX', tonumber(ARGV[1])) " +
+                    "redis.call('ZADD', KEYS[5], ARGV[6], ARGV[4]) " +
+                    "redis.call('ZREMRANGEBYSCORE', KEYS[5], '-inf', '(' .. ARGV[7]) " +
+                    "redis.call('ZADD', KEYS[6], ARGV[6], ARGV[3]) " +
+                    "redis.call('ZREMRANGEBYSCORE', KEYS[6], '-inf', '(' .. ARGV[8]) " +
+                    // tell every instance's ProcessedMessageCache
+                    "redis.call('PUBLISH', 'processed:events', ARGV[3]) " +
                     "return 1";
 
+    // KEYS[1] verification key, KEYS[2] its pre-paise form, KEYS[3] received index, KEYS[4] consumed index,
+    // KEYS[5] tagged verification key; ARGV[1] business key prefix, ARGV[2] now (epoch millis),
+    // ARGV[3] consumed index cutoff, ARGV[4] tagged record prefix.
+    // Resolves the payment id, reads the payment record and deletes both in one call, so a payment can only be consumed once.
+    // Single node only: a miss on the legacy keys tries the tagged ones in the same call.
     private static final String CONSUME_LUA =
+            "local vkey = KEYS[1] " +
+                    "local pid = redis.call('GET', vkey) " +
+                    "if not pid then vkey = KEYS[2] pid = redis.call('GET', vkey) end " +
+                    "local prefix = ARGV[1] " +
+                    "if not pid then vkey = KEYS[5] pid = redis.call('GET', vkey) prefix = ARGV[4] end " +
+                    "if not pid then return nil end " +
+                    // same as sanitize(): whitespace runs -> '_'
+                    "local bkey = prefix .. string.gsub(pid, '%s+', '_') " +
+                    // {record} for the compact form, the 10 field values for hashes written before it
+                    "local vals = nil " +
+                    "if redis.call('TYPE', bkey).ok == 'hash' then " +
+                    "  vals = redis.call('HMGET', bkey, " +
+                    "  'paymentId', 'amount', 'paymentTs', 'messageId', 'payerEmail', 'status', " +
+                    "  'method', 'phone', 'merchantName', 'subject') " +
+                    "  if not vals[1] then vals = nil end " +
+                    "else " +
+                    "  local rec = redis.call('GET', bkey) " +
+                    "  if rec then vals = {rec} end " +
+                    "end " +
+                    "redis.call('DEL', vkey) " +
+                    "redis.call('DEL', bkey) " +
+                    "redis.call('ZREM', KEYS[3], pid, bkey) " +
+                    // verification key outlived its record: drop it, nothing to verify against
+                    "if not vals then return nil end " +
+                    "redis.call('ZADD', KEYS[4], ARGV[2], pid) " +
+                    "redis.call('ZREMRANGEBYSCORE', KEYS[4], '-inf', '(' .. ARGV[3]) " +
+                    "return vals";
+
+    // Tagged layout: every key of one payment carries the hash tag {email:amount}, so both scripts stay on one
+    // cluster slot. KEYS[1] payment marker, KEYS[2] record, KEYS[3] verification key, KEYS[4] (standalone only)
+    // processed:message key; ARGV: processed TTL, business TTL, paymentId, encoded record, messageId.
+    // The message index, the index sets and the PUBLISH live on other slots and follow in a separate pipeline.
+    private static final String SAVE_TAGGED_LUA =
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+                    // a standalone Redis can still claim the Message-ID in the same call, which keeps the claim
+                    // exclusive against instances writing the legacy layout during a migration
+                    "if KEYS[4] then " +
+                    "  if redis.call('EXISTS', KEYS[4]) == 1 then return 0 end " +
+                    "  redis.call('SET', KEYS[4], ARGV[5], 'EX', tonumber(ARGV[1])) " +
+                    "end " +
+                    "redis.call('SET', KEYS[1], ARGV[3], 'EX', tonumber(ARGV[1])) " +
+                    "redis.call('SET', KEYS[2], ARGV[4], 'EX', tonumber(ARGV[2])) " +
+                    "redis.call('SET', KEYS[3], ARGV[3], 'EX', tonumber(ARGV[2]), 'NX') " +
+                    "return 1";
+
+    // KEYS[1] tagged verification key; ARGV[1] the record key prefix for the same tag.
+    // The record key is built in-script from the payment id but shares KEYS[1]'s hash tag, so it is on the same slot.
+    private static final String CONSUME_TAGGED_LUA =
             "local pid = redis.call('GET', KEYS[1]) " +
                     "if not pid then return nil end " +
-                    "local bkey = KEYS[2] " +
-                    "local vals = redis.call('HMGET', bkey, " +
-                    "'paymentId', 'amount', 'paymentTs', 'messageId', 'payerEmail', 'status', " +
-                    "'method', 'phone', 'merchantName', 'subject' " +
-                    ") " +
+                    "local bkey = ARGV[1] .. string.gsub(pid, '%s+', '_') " +
+                    "local rec = redis.call('GET', bkey) " +
                     "redis.call('DEL', KEYS[1]) " +
+                    "if not rec then return nil end " +
                     "redis.call('DEL', bkey) " +
-                    "return vals";
+                    "return {rec}";
 
+    // bump the version when a script body changes so a rolling deploy never runs a mismatched script
+    private static final LuaScript SAVE_SCRIPT = new LuaScript("save-payment", 4, SAVE_LUA);
+    private static final LuaScript CONSUME_SCRIPT = new LuaScript("consume-payment", 5, CONSUME_LUA);
+    private static final LuaScript SAVE_TAGGED_SCRIPT = new LuaScript("save-payment-tagged", 1, SAVE_TAGGED_LUA);
+    private static final LuaScript CONSUME_TAGGED_SCRIPT = new LuaScript("consume-payment-tagged", 1, CONSUME_TAGGED_LUA);
+    private static final List<LuaScript> SCRIPTS = List.of(SAVE_SCRIPT, CONSUME_SCRIPT, SAVE_TAGGED_SCRIPT, CONSUME_TAGGED_SCRIPT);
+
+    /**
+     * Which key layout new payments are written in. Both are always read.
+     *
+     * LEGACY: processed:message:{mid}, attendance:payments:{pid}, verification:email:..:amount:.. and the
+     *         indexes, all claimed by one script. Only works on a single Redis (keys are on different slots).
+     * TAGGED: the record, verification key and a per-payment marker share the hash tag {email:amount}; claim
+     *         and consume each touch one slot, so it runs on a cluster. The message key, index sets and
+     *         PUBLISH follow the claim in a second pipeline (they are advisory; the marker is what dedupes).
+     *
+     * Migrating a running deployment: roll out this version with LEGACY (it reads tagged keys too), then
+     * switch to TAGGED. Legacy keys are not rewritten; they are consumed or expire with their TTLs, after
+     * which Redis can be moved to a cluster.
+     */
+    public enum KeyLayout { LEGACY, TAGGED }
+
+    private final KeyLayout layout;
+    private final boolean cluster;
+    private final Duration markTtl; // markProcessed
+    private final RedisCircuitBreaker breaker;
 
     public RedisPaymentStore(RedisTemplate<String, Object> redisTemplate) {
+        this(redisTemplate, KeyLayout.LEGACY);
+    }
+
+    // outside Spring (tests, tools): no circuit breaker
+    public RedisPaymentStore(RedisTemplate<String, Object> redisTemplate, KeyLayout layout) {
+        this(redisTemplate, layout, 24 * 3600, unguarded());
+    }
+
+    private static RedisCircuitBreaker unguarded() {
+        RedisCircuitBreakerProperties props = new RedisCircuitBreakerProperties();
+        props.setEnabled(false);
+        return new RedisCircuitBreaker(props);
+    }
+
+    @Autowired
+    public RedisPaymentStore(RedisTemplate<String, Object> redisTemplate,
+                             @Value("${payments.redis.key-layout:LEGACY}") KeyLayout layout,
+                             @Value("${email.processed-store.processed-message-ttl-seconds:86400}") long processedTtlSeconds,
+                             RedisCircuitBreaker breaker) {
         this.redisTemplate = redisTemplate;
+        this.markTtl = Duration.ofSeconds(processedTtlSeconds);
+        this.breaker = breaker;
+        this.cluster = redisTemplate.getConnectionFactory() instanceof LettuceConnectionFactory f && f.isClusterAware();
+        if (cluster && layout == KeyLayout.LEGACY) {
+            log.warn("LEGACY key layout needs a single Redis node; writing TAGGED keys on this cluster");
+            layout = KeyLayout.TAGGED;
+        }
+        this.layout = layout;
+        log.info("Redis payment store: {} key layout{}", this.layout, cluster ? " (cluster)" : "");
+    }
+
+    public KeyLayout getKeyLayout() {
+        return layout;
+    }
+
+    /**
+     * SCRIPT LOAD everything once; failures are fine, the first call reloads through NOSCRIPT -> EVAL.
+     */
+    @PostConstruct
+    public void loadScripts() {
+        for (LuaScript script : SCRIPTS) {
+            try {
+                Boolean ok = redisTemplate.execute((RedisCallback<Boolean>) script::load);
+                if (Boolean.TRUE.equals(ok)) log.info("Loaded Lua script {} ({})", script.getName(), script.sha());
+                else log.warn("SCRIPT LOAD for {} returned an unexpected SHA; calls will fall back to EVAL", script.getName());
+            } catch (Exception e) {
+                log.warn("Could not preload Lua script {}; it will be loaded on first use", script.getName(), e);
+            }
+        }
+    }
+
+    public boolean isShared() {
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("backend", "redis");
+        s.put("keyLayout", layout);
+        s.put("cluster", cluster);
+        s.put("scripts", getScriptStats());
+        s.put("breaker", breaker.getStats());
+        return s;
+    }
+
+    public Map<String, Object> getScriptStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        for (LuaScript script : SCRIPTS) s.put(script.getName(), script.getStats());
+        return s;
     }
 
     private String processedKey(String messageId) {
         return "processed:message:" + sanitize(messageId);
     }
+    private static final String BUSINESS_PREFIX = "attendance:payments:";
+    private static final String STATUS_RECEIVED = "received";
+    private static final String STATUS_CONSUMED = "consumed";
+    private static final String PROCESSED_INDEX = "index:processed";
+    // SAVE_LUA publishes each claimed messageId here
+    public static final String PROCESSED_CHANNEL = "processed:events";
+    // consumed payments have no record left; the index only says which and when
+    private static final Duration CONSUMED_RETENTION = Duration.ofDays(1);
+
     private String businessKey(String paymentId) {
-        return "attendance:payments:" + sanitize(paymentId);
+        return BUSINESS_PREFIX + sanitize(paymentId);
+    }
+    // amount as integer paise: "...:amount:149950"
+    private String verificationKey(String email, long amountMinor) {
+        return "verification:email:" + sanitize(email.toLowerCase()) + ":amount:" + amountMinor;
+    }
+    // keys written before amounts were stored as paise ("...:amount:1499.00"); they expire with the business TTL
+    private String legacyVerificationKey(String email, long amountMinor) {
+        return "verification:email:" + sanitize(email.toLowerCase()) + ":amount:" + PaymentFieldParser.formatAmount(amountMinor);
+    }
+    private String messageIndexKey(String messageId) {
+        return "index:message:" + sanitize(messageId);
+    }
+    private String statusIndexKey(String status) {
+        return "index:payments:status:" + status;
+    }
+    // {email:amount}: the hash tag every key of one payment shares in the TAGGED layout
+    private String tag(String email, long amountMinor) {
+        String e = sanitize(email == null ? "" : email.toLowerCase()).replace('{', '_').replace('}', '_');
+        return "{" + e + ":" + amountMinor + "}";
+    }
+    private String taggedVerificationKey(String email, long amountMinor) {
+        return "verification:" + tag(email, amountMinor);
     }
-    private String verificationKey(String email, String amount) {
-        return "verification:email:" + sanitize(email.toLowerCase()) + ":amount:" + sanitize(amount);
+    private String taggedRecordPrefix(String email, long amountMinor) {
+        return BUSINESS_PREFIX + tag(email, amountMinor) + ":";
+    }
+    private String taggedPaymentMarker(PaymentInfo info) {
+        return "processed:payment:" + tag(info.getPayerEmail(), info.getAmountMinor()) + ":" + sanitize(info.getPaymentId());
+    }
+    // where this store writes the record of a payment; also the member of the received index
+    private String recordKey(PaymentInfo info) {
+        if (layout == KeyLayout.LEGACY) return businessKey(info.getPaymentId());
+        return taggedRecordPrefix(info.getPayerEmail(), info.getAmountMinor()) + sanitize(info.getPaymentId());
+    }
+    // received index / message index entries are a payment id (legacy) or the record key itself (tagged)
+    private String recordKeyFor(String member) {
+        return member.startsWith(BUSINESS_PREFIX) ? member : businessKey(member);
+    }
+    private String contentKey(String fingerprint) {
+        return "processed:content:" + sanitize(fingerprint);
     }
     private String sanitize(String s) {
         if (s == null) return "null";
         return s.replaceAll("[\\r\\n\\s]+", "_");
     }
 
+    /**
+     * One SAVE_LUA call. If it fails the claim may or may not have happened: that is logged and answered
+     * false. Retrying is safe, the script is idempotent; callers that need to tell "unknown" from "lost the
+     * claim" use savePaymentsAtomic, which answers null and is what the ingestion pipeline journals.
+     */
     public boolean savePaymentAtomic(PaymentInfo info, Duration businessTtl, int processedTtlSeconds) {
+        Permit permit = breaker.tryAcquire();
+        if (permit == null) {
+            log.warn("Redis circuit open, payment {} not claimed (mid={})", info.getPaymentId(), info.getMessageId());
+            return false;
+        }
+        long t0 = System.nanoTime();
         try {
-            String pkey = processedKey(info.getMessageId());
-            String bkey = businessKey(info.getPaymentId());
-            String vkey = verificationKey(info.getPayerEmail() == null ? "" : info.getPayerEmail(),
-                    info.getAmount() == null ? "" : info.getAmount());
-
-            byte[] script = SAVE_LUA.getBytes(StandardCharsets.UTF_8);
-            byte[] k1 = stringSerializer.serialize(pkey);
-            byte[] k2 = stringSerializer.serialize(bkey);
-            byte[] k3 = stringSerializer.serialize(vkey);
-
-            byte[][] argv = new byte[11][];
-            argv[0] = stringSerializer.serialize(String.valueOf(processedTtlSeconds));         // processed TTL
-            argv[1] = stringSerializer.serialize(String.valueOf(businessTtl.getSeconds()));   // business TTL
-            argv[2] = stringSerializer.serialize(info.getMessageId());                        // messageId
-            argv[3] = stringSerializer.serialize(info.getPaymentId());                        // paymentId
-            argv[4] = stringSerializer.serialize(info.getAmount() == null ? "" : info.getAmount());
-            argv[5] = stringSerializer.serialize(info.getPaidOn() == null ? Instant.now().toString() : info.getPaidOn().toString());
-            argv[6] = stringSerializer.serialize(info.getPayerEmail() == null ? "" : info.getPayerEmail());
-            argv[7] = stringSerializer.serialize(info.getMethod() == null ? "" : info.getMethod());
-            argv[8] = stringSerializer.serialize(info.getPhone() == null ? "" : info.getPhone());
-            argv[9] = stringSerializer.serialize(info.getMerchantName() == null ? "" : info.getMerchantName());
-            argv[10] = stringSerializer.serialize(info.getSubject() == null ? "" : info.getSubject());
-
-            Object res = redisTemplate.execute((RedisCallback<Object>) conn ->
-                    conn.scriptingCommands().eval(script, ReturnType.INTEGER, 3, k1, k2, k3,
-                            argv[0], argv[1], argv[2], argv[3], argv[4], argv[5], argv[6],
-                            argv[7], argv[8], argv[9], argv[10])
-            );
-
-            if (res instanceof Number) return ((Number) res).intValue() == 1;
+            boolean claimed = claimOnce(info, businessTtl, processedTtlSeconds);
+            breaker.onSuccess(permit, Op.CLAIM, System.nanoTime() - t0);
+            return claimed;
+        } catch (Exception e) {
+            breaker.onFailure(permit, Op.CLAIM);
+            // no non-atomic fallback: writes applied one by one can leave a payment half-stored
+            log.error("SAVE_LUA failed for mid={}, outcome unknown", info.getMessageId(), e);
             return false;
+        }
+    }
+
+    private boolean claimOnce(PaymentInfo info, Duration businessTtl, int processedTtlSeconds) {
+        ScriptCall call = claimCall(info, businessTtl, processedTtlSeconds);
+        Object res = redisTemplate.execute((RedisCallback<Object>) conn ->
+                call.script().run(conn, ReturnType.INTEGER, call.numKeys(), call.keysAndArgs())
+        );
+        boolean claimed = res instanceof Number && ((Number) res).intValue() == 1;
+        if (claimed && layout == KeyLayout.TAGGED) afterClaim(List.of(info), businessTtl, processedTtlSeconds, !cluster);
+        return claimed;
+    }
+
+    // one claim in the configured layout: the script and its KEYS + ARGV
+    private record ScriptCall(LuaScript script, int numKeys, byte[][] keysAndArgs) {}
+
+    private ScriptCall claimCall(PaymentInfo info, Duration businessTtl, int processedTtlSeconds) {
+        if (layout == KeyLayout.LEGACY) {
+            return new ScriptCall(SAVE_SCRIPT, 6, saveKeysAndArgs(info, businessTtl, processedTtlSeconds));
+        }
+        int numKeys = cluster ? 3 : 4;
+        byte[][] a = new byte[numKeys + 5][];
+        int i = 0;
+        a[i++] = stringSerializer.serialize(taggedPaymentMarker(info));
+        a[i++] = stringSerializer.serialize(recordKey(info));
+        a[i++] = stringSerializer.serialize(taggedVerificationKey(info.getPayerEmail(), info.getAmountMinor()));
+        if (!cluster) a[i++] = stringSerializer.serialize(processedKey(info.getMessageId()));
+        a[i++] = stringSerializer.serialize(String.valueOf(processedTtlSeconds));
+        a[i++] = stringSerializer.serialize(String.valueOf(businessTtl.getSeconds()));
+        a[i++] = stringSerializer.serialize(info.getPaymentId());
+        a[i++] = PaymentRecordCodec.encode(info, STATUS_RECEIVED);
+        a[i] = stringSerializer.serialize(info.getMessageId());
+        return new ScriptCall(SAVE_TAGGED_SCRIPT, numKeys, a);
+    }
+
+    private LuaScript claimScript() {
+        return layout == KeyLayout.LEGACY ? SAVE_SCRIPT : SAVE_TAGGED_SCRIPT;
+    }
+
+    /**
+     * What SAVE_LUA does besides the claim, for payments claimed in the tagged layout: processed:message key
+     * (unless the script already set it), message index, index sets with trimming, PUBLISH. One pipeline for
+     * the batch; keys are spread over slots, so this is not atomic with the claim. A failure is logged and
+     * leaves the admin listings and other instances' caches a little behind, nothing else.
+     */
+    private void afterClaim(List<PaymentInfo> claimed, Duration businessTtl, int processedTtlSeconds, boolean messageKeyWritten) {
+        if (claimed.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) conn -> {
+                byte[] received = stringSerializer.serialize(statusIndexKey(STATUS_RECEIVED));
+                byte[] processed = stringSerializer.serialize(PROCESSED_INDEX);
+                Expiration ttl = Expiration.seconds(processedTtlSeconds);
+                for (PaymentInfo info : claimed) {
+                    byte[] mid = stringSerializer.serialize(info.getMessageId());
+                    byte[] bkey = stringSerializer.serialize(recordKey(info));
+                    if (!messageKeyWritten) {
+                        conn.stringCommands().set(stringSerializer.serialize(processedKey(info.getMessageId())), mid,
+                                ttl, RedisStringCommands.SetOption.UPSERT);
+                    }
+                    conn.stringCommands().set(stringSerializer.serialize(messageIndexKey(info.getMessageId())), bkey,
+                            ttl, RedisStringCommands.SetOption.UPSERT);
+                    conn.zSetCommands().zAdd(received, now, bkey);
+                    conn.zSetCommands().zAdd(processed, now, mid);
+                    conn.publish(stringSerializer.serialize(PROCESSED_CHANNEL), mid);
+                }
+                conn.zSetCommands().zRemRangeByScore(received, Double.NEGATIVE_INFINITY, now - businessTtl.toMillis() - 1);
+                conn.zSetCommands().zRemRangeByScore(processed, Double.NEGATIVE_INFINITY, now - processedTtlSeconds * 1000L - 1);
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Index update after claiming {} payment(s) failed", claimed.size(), e);
+        }
+    }
 
+    // after a tagged consume: move the record key from the received to the consumed index
+    private void afterConsume(PaymentInfo info, String recordKey) {
+        long now = System.currentTimeMillis();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) conn -> {
+                byte[] consumed = stringSerializer.serialize(statusIndexKey(STATUS_CONSUMED));
+                conn.zSetCommands().zRem(stringSerializer.serialize(statusIndexKey(STATUS_RECEIVED)), stringSerializer.serialize(recordKey));
+                conn.zSetCommands().zAdd(consumed, now, stringSerializer.serialize(info.getPaymentId()));
+                conn.zSetCommands().zRemRangeByScore(consumed, Double.NEGATIVE_INFINITY, now - CONSUMED_RETENTION.toMillis() - 1);
+                return null;
+            });
         } catch (Exception e) {
-            log.error("SAVE_LUA failed, falling back to non-atomic save", e);
+            log.warn("Index update after consuming {} failed", info.getPaymentId(), e);
+        }
+    }
+
+    /**
+     * Batch form of savePaymentAtomic: all claims go out as one pipeline of EVALSHAs, so a backlog of N
+     * payments costs one round trip instead of N. Result is index-aligned with infos (true = we claimed it).
+     *
+     * If the pipeline reports NOSCRIPT the scripts are loaded again and the failed items re-sent once;
+     * anything still failing is tried once more on its own. There is no non-atomic fallback here: an item
+     * whose script never ran (or whose reply was lost) comes back null, and the caller keeps it in the
+     * ClaimJournal until Redis answers. With the circuit open every item comes back null without a call.
+     */
+    public List<Boolean> savePaymentsAtomic(List<PaymentInfo> infos, Duration businessTtl, int processedTtlSeconds) {
+        List<Boolean> out = new ArrayList<>(infos.size());
+        for (int i = 0; i < infos.size(); i++) out.add(null);
+        if (infos.isEmpty()) return out;
+        Permit permit = breaker.tryAcquire();
+        if (permit == null) return out;
+        long t0 = System.nanoTime();
+        List<Integer> pending = new ArrayList<>(infos.size());
+        for (int i = 0; i < infos.size(); i++) pending.add(i);
+
+        List<PaymentInfo> claimed = new ArrayList<>();
+        boolean unreachable = false;
+        for (int attempt = 0; attempt < 2 && !pending.isEmpty(); attempt++) {
+            List<ScriptCall> calls = new ArrayList<>(pending.size());
+            for (int i : pending) calls.add(claimCall(infos.get(i), businessTtl, processedTtlSeconds));
+
+            List<Object> res;
             try {
-                // fallback naive approach
-                String pkey = processedKey(info.getMessageId());
-                Boolean set = redisTemplate.opsForValue().setIfAbsent(pkey, info.getMessageId(), Duration.ofSeconds(processedTtlSeconds));
-                if (Boolean.TRUE.equals(set)) {
-                    String bkey = businessKey(info.getPaymentId());
-                    redisTemplate.opsForHash().put(bkey, "paymentId", info.getPaymentId());
-                    redisTemplate.opsForHash().put(bkey, "amount", info.getAmount());
-                    redisTemplate.opsForHash().put(bkey, "paymentTs", info.getPaidOn() == null ? Instant.now().toString() : info.getPaidOn().toString());
-                    redisTemplate.opsForHash().put(bkey, "messageId", info.getMessageId());
-                    redisTemplate.opsForHash().put(bkey, "payerEmail", info.getPayerEmail());
-                    redisTemplate.opsForHash().put(bkey, "status", "received");
-                    redisTemplate.opsForHash().put(bkey, "method", info.getMethod());
-                    redisTemplate.opsForHash().put(bkey, "phone", info.getPhone());
-                    redisTemplate.opsForHash().put(bkey, "merchantName", info.getMerchantName());
-                    redisTemplate.opsForHash().put(bkey, "subject", info.getSubject());
-                    redisTemplate.expire(bkey, businessTtl);
-                    redisTemplate.opsForValue().set(verificationKey(info.getPayerEmail(), info.getAmount()), info.getPaymentId(), businessTtl);
-                    return true;
+                res = redisTemplate.executePipelined((RedisCallback<Object>) conn -> {
+                    for (ScriptCall c : calls) c.script().queue(conn, ReturnType.INTEGER, c.numKeys(), c.keysAndArgs());
+                    return null;
+                });
+            } catch (RedisPipelineException e) {
+                res = e.getPipelineResult();
+            } catch (Exception e) {
+                // the connection itself failed: retrying item by item would only wait out the same timeout N times
+                log.error("Pipelined SAVE_LUA failed for {} payment(s), outcome unknown", pending.size(), e);
+                unreachable = true;
+                break;
+            }
+
+            List<Integer> retry = new ArrayList<>();
+            boolean noScript = false;
+            for (int k = 0; k < pending.size(); k++) {
+                Object r = k < res.size() ? res.get(k) : null;
+                if (r instanceof Number) {
+                    boolean won = ((Number) r).intValue() == 1;
+                    out.set(pending.get(k), won);
+                    if (won) claimed.add(infos.get(pending.get(k)));
                 } else {
-                    return false;
+                    if (r instanceof Throwable && LuaScript.isNoScript((Throwable) r)) noScript = true;
+                    retry.add(pending.get(k));
                 }
-            } catch (Exception ex) {
-                log.error("Non-atomic fallback failed", ex);
-                return false;
+            }
+            pending = retry;
+            if (!noScript) break;
+            claimScript().reloaded();
+            loadScripts();
+        }
+        if (unreachable) {
+            breaker.onFailure(permit, Op.CLAIM);
+            if (layout == KeyLayout.TAGGED) afterClaim(claimed, businessTtl, processedTtlSeconds, !cluster);
+            return out;
+        }
+        breaker.onSuccess(permit, Op.CLAIM, System.nanoTime() - t0);
+        if (layout == KeyLayout.TAGGED) afterClaim(claimed, businessTtl, processedTtlSeconds, !cluster);
+
+        for (int i : pending) {
+            try {
+                out.set(i, claimOnce(infos.get(i), businessTtl, processedTtlSeconds));
+            } catch (Exception e) {
+                log.error("SAVE_LUA failed for mid={}, outcome unknown", infos.get(i).getMessageId(), e);
             }
         }
+        return out;
+    }
+
+    // the 6 KEYS then the 8 ARGV of SAVE_LUA
+    private byte[][] saveKeysAndArgs(PaymentInfo info, Duration businessTtl, int processedTtlSeconds) {
+        long now = System.currentTimeMillis();
+        byte[][] a = new byte[14][];
+        a[0] = stringSerializer.serialize(processedKey(info.getMessageId()));
+        a[1] = stringSerializer.serialize(businessKey(info.getPaymentId()));
+        a[2] = stringSerializer.serialize(verificationKey(info.getPayerEmail() == null ? "" : info.getPayerEmail(), info.getAmountMinor()));
+        a[3] = stringSerializer.serialize(messageIndexKey(info.getMessageId()));
+        a[4] = stringSerializer.serialize(statusIndexKey(STATUS_RECEIVED));
+        a[5] = stringSerializer.serialize(PROCESSED_INDEX);
+        a[6] = stringSerializer.serialize(String.valueOf(processedTtlSeconds));         // processed TTL
+        a[7] = stringSerializer.serialize(String.valueOf(businessTtl.getSeconds()));   // business TTL
+        a[8] = stringSerializer.serialize(info.getMessageId());                        // messageId
+        a[9] = stringSerializer.serialize(info.getPaymentId());                        // paymentId
+        a[10] = PaymentRecordCodec.encode(info, STATUS_RECEIVED);
+        a[11] = stringSerializer.serialize(String.valueOf(now));
+        a[12] = stringSerializer.serialize(String.valueOf(now - businessTtl.toMillis()));
+        a[13] = stringSerializer.serialize(String.valueOf(now - processedTtlSeconds * 1000L));
+        return a;
     }
 
-    public PaymentInfo consumeByEmailAndAmount(String email, String amount) {
+    // shown when the stored record has no merchant name (the old consume path always returned this)
+    private static final String DEFAULT_MERCHANT = "SSN/SNU";
+
+    /**
+     * Looks up the verification key, reads the payment record and deletes both in one script call, so two
+     * concurrent verifies for the same payment can't both get it back. On a single node that one call tries
+     * the legacy keys and then the tagged ones; a cluster only has tagged keys.
+     *
+     * Unlike the other calls this one doesn't fail open: "no such payment" would be a lie while Redis is down,
+     * so an open circuit or a failed call throws PaymentStoreUnavailableException.
+     */
+    public PaymentInfo consumeByEmailAndAmount(String email, long amountMinor) {
+        Permit permit = breaker.tryAcquire();
+        if (permit == null) throw new PaymentStoreUnavailableException("Redis circuit open");
+        long t0 = System.nanoTime();
         try {
-            String vkey = verificationKey(email, amount);
-            String paymentId = (String) redisTemplate.opsForValue().get(vkey);
-            if (paymentId == null) return null;
-
-            String bkey = businessKey(paymentId);
-            byte[] script = CONSUME_LUA.getBytes(StandardCharsets.UTF_8);
-            byte[] k1 = stringSerializer.serialize(vkey);
-            byte[] k2 = stringSerializer.serialize(bkey);
-
-            Object res = redisTemplate.execute((RedisCallback<Object>) conn ->
-                    conn.scriptingCommands().eval(script, ReturnType.MULTI, 2, k1, k2)
-            );
-
-            if (res instanceof java.util.List) {
-                java.util.List<?> list = (java.util.List<?>) res;
-                String pid = asString(list, 0);
-                String amt = asString(list, 1);
-                String paymentTs = asString(list, 2);
-                String mid = asString(list, 3);
-                String payerEmail = asString(list, 4);
-                String status = asString(list, 5);
-                String method = asString(list, 6);
-                String phone = asString(list, 7);
-                String merchantName = asString(list, 9);
-                String subject = asString(list, 8);
-
-                Instant paidOn;
-                try {
-                    paidOn = Instant.parse(paymentTs);
-                } catch (Exception ignored) {
-                    paidOn = Instant.now();
-                }
+            PaymentInfo info = cluster ? consumeTagged(email, amountMinor) : consumeAnyLayout(email, amountMinor);
+            breaker.onSuccess(permit, Op.CONSUME, System.nanoTime() - t0);
+            return info;
+        } catch (Exception e) {
+            breaker.onFailure(permit, Op.CONSUME);
+            log.error("consumeByEmailAndAmount failed", e);
+            throw new PaymentStoreUnavailableException("consume failed", e);
+        }
+    }
 
-                return new PaymentInfo(
-                        pid, amt, paidOn, payerEmail, phone, method, "SSN/SNU", merchantName, mid
-                );
-            }
+    private PaymentInfo consumeTagged(String email, long amountMinor) {
+        byte[] vkey = stringSerializer.serialize(taggedVerificationKey(email, amountMinor));
+        String prefix = taggedRecordPrefix(email, amountMinor);
+        Object res = redisTemplate.execute((RedisCallback<Object>) conn ->
+                CONSUME_TAGGED_SCRIPT.run(conn, ReturnType.MULTI, 1, vkey, stringSerializer.serialize(prefix))
+        );
+        if (!(res instanceof List<?> list) || list.isEmpty() || list.get(0) == null) return null;
+        PaymentInfo info = withDefaultMerchant(PaymentRecordCodec.decode((byte[]) list.get(0)).info());
+        afterConsume(info, prefix + sanitize(info.getPaymentId()));
+        return info;
+    }
+
+    // CONSUME_LUA: paise verification key, then the decimal form, then the tagged key; hash or compact record
+    private PaymentInfo consumeAnyLayout(String email, long amountMinor) {
+        byte[][] keysAndArgs = consumeKeysAndArgs(email, amountMinor);
+        Object res = redisTemplate.execute((RedisCallback<Object>) conn ->
+                CONSUME_SCRIPT.run(conn, ReturnType.MULTI, 5, keysAndArgs)
+        );
+        if (!(res instanceof List<?> list) || list.isEmpty() || list.get(0) == null) return null;
+        if (list.size() == 1) return withDefaultMerchant(PaymentRecordCodec.decode((byte[]) list.get(0)).info());
+        return toPaymentInfo(list);
+    }
 
+    // the 5 KEYS then the 4 ARGV of CONSUME_LUA
+    private byte[][] consumeKeysAndArgs(String email, long amountMinor) {
+        long now = System.currentTimeMillis();
+        return new byte[][]{
+                stringSerializer.serialize(verificationKey(email, amountMinor)),
+                stringSerializer.serialize(legacyVerificationKey(email, amountMinor)),
+                stringSerializer.serialize(statusIndexKey(STATUS_RECEIVED)),
+                stringSerializer.serialize(statusIndexKey(STATUS_CONSUMED)),
+                stringSerializer.serialize(taggedVerificationKey(email, amountMinor)),
+                stringSerializer.serialize(BUSINESS_PREFIX),
+                stringSerializer.serialize(String.valueOf(now)),
+                stringSerializer.serialize(String.valueOf(now - CONSUMED_RETENTION.toMillis())),
+                stringSerializer.serialize(taggedRecordPrefix(email, amountMinor))
+        };
+    }
 
-            Map<Object, Object> hash = redisTemplate.opsForHash().entries(bkey);
-            if (hash == null || hash.isEmpty()) {
-                redisTemplate.delete(vkey);
-                return null;
+    /**
+     * A stored payment in either form (compact record or pre-codec hash) as a field map with the hash's
+     * field names, for the admin endpoints. Null if the key is missing or not a payment.
+     */
+    public Map<String, Object> readPayment(String key) {
+        return redisTemplate.execute((RedisCallback<Map<String, Object>>) conn -> {
+            byte[] k = stringSerializer.serialize(key);
+            DataType type = conn.keyCommands().type(k);
+            if (type == DataType.HASH) {
+                Map<byte[], byte[]> raw = conn.hashCommands().hGetAll(k);
+                if (raw == null || raw.isEmpty()) return null;
+                Map<String, Object> m = new LinkedHashMap<>();
+                raw.forEach((f, v) -> m.put(stringSerializer.deserialize(f), stringSerializer.deserialize(v)));
+                return m;
             }
-            String pid = (String) hash.get("paymentId");
-            String amt = (String) hash.get("amount");
-            String paymentTs = (String) hash.get("paymentTs");
-            String mid = (String) hash.get("messageId");
-            String payerEmail = (String) hash.get("payerEmail");
-            String method = (String) hash.get("method");
-            String phone = (String) hash.get("phone");
-            String merchantName = (String) hash.get("merchantName");
-            String subject = (String) hash.get("subject");
-
-            redisTemplate.delete(vkey);
-            redisTemplate.delete(bkey);
-
-            Instant paidOn;
+            if (type != DataType.STRING) return null;
+            byte[] value = conn.stringCommands().get(k);
+            if (value == null) return null;
             try {
-                paidOn = Instant.parse(paymentTs);
-            } catch (Exception ignored) {
-                paidOn = Instant.now();
+                return PaymentRecordCodec.decode(value).toMap();
+            } catch (IllegalArgumentException e) {
+                log.warn("Unreadable payment record at {}: {}", key, e.getMessage());
+                return null;
             }
+        });
+    }
 
-            return new PaymentInfo(
-                    pid, amt, paidOn, payerEmail, method, phone, merchantName, subject, mid
-            );
-        } catch (Exception e) {
-            log.error("consumeByEmailAndAmount failed", e);
+    // ---------------- index reads (admin endpoints) ----------------
+
+    public String processedKeyFor(String messageId) {
+        return processedKey(messageId);
+    }
+
+    /**
+     * Most recently claimed Message-IDs, newest first, from index:processed (no keyspace scan).
+     */
+    public List<String> recentMessageIds(int limit) {
+        return newestMembers(PROCESSED_INDEX, limit);
+    }
+
+    /**
+     * Every messageId in index:processed claimed at or after sinceMillis, with its claim time, read in
+     * pages of 5,000 oldest first. Used to warm ProcessedMessageCache.
+     */
+    public void forEachProcessedSince(long sinceMillis, BiConsumer<String, Long> consumer) {
+        final int page = 5_000;
+        for (long offset = 0; ; offset += page) {
+            Set<ZSetOperations.TypedTuple<Object>> tuples = redisTemplate.opsForZSet()
+                    .rangeByScoreWithScores(PROCESSED_INDEX, sinceMillis, Double.POSITIVE_INFINITY, offset, page);
+            if (tuples == null || tuples.isEmpty()) return;
+            for (ZSetOperations.TypedTuple<Object> t : tuples) {
+                if (t.getValue() != null && t.getScore() != null) consumer.accept(t.getValue().toString(), t.getScore().longValue());
+            }
+            if (tuples.size() < page) return;
+        }
+    }
+
+    /**
+     * Received (not yet verified) payments, newest claim first, each with "_redisKey". One ZREVRANGE plus
+     * one pipelined read of the records; entries whose record already expired are left out.
+     */
+    public List<Map<String, Object>> recentPayments(int limit) {
+        List<String> keys = new ArrayList<>();
+        for (String m : newestMembers(statusIndexKey(STATUS_RECEIVED), limit)) keys.add(recordKeyFor(m));
+        List<Map<String, Object>> records = readPayments(keys);
+        List<Map<String, Object>> out = new ArrayList<>(records.size());
+        for (int i = 0; i < keys.size(); i++) {
+            Map<String, Object> rec = records.get(i);
+            if (rec == null) continue;
+            rec.put("_redisKey", keys.get(i));
+            out.add(rec);
+        }
+        return out;
+    }
+
+    /**
+     * Recently verified payment ids with their consume time, newest first.
+     */
+    public List<Map<String, Object>> recentConsumed(int limit) {
+        Set<ZSetOperations.TypedTuple<Object>> tuples = limit <= 0 ? null
+                : redisTemplate.opsForZSet().reverseRangeWithScores(statusIndexKey(STATUS_CONSUMED), 0, limit - 1);
+        List<Map<String, Object>> out = new ArrayList<>();
+        if (tuples == null) return out;
+        for (ZSetOperations.TypedTuple<Object> t : tuples) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("paymentId", t.getValue());
+            m.put("consumedAt", t.getScore() == null ? null : Instant.ofEpochMilli(t.getScore().longValue()).toString());
+            out.add(m);
+        }
+        return out;
+    }
+
+    /**
+     * Payment data for each Message-ID (index-aligned, null if none): one pipelined GET of the
+     * messageId -> paymentId (or record key) index, then one pipelined read of the records.
+     */
+    public List<Map<String, Object>> paymentsForMessages(List<String> messageIds) {
+        List<Map<String, Object>> out = new ArrayList<>(messageIds.size());
+        if (messageIds.isEmpty()) return out;
+        List<Object> pids = redisTemplate.executePipelined((RedisCallback<Object>) conn -> {
+            for (String mid : messageIds) conn.stringCommands().get(stringSerializer.serialize(messageIndexKey(mid)));
             return null;
+        });
+        List<String> keys = new ArrayList<>(messageIds.size());
+        for (Object pid : pids) keys.add(pid == null ? null : recordKeyFor(pid.toString()));
+        return readPayments(keys);
+    }
+
+    /**
+     * Pipelined readPayment: one GET per key in a single round trip; keys that are still pre-codec hashes
+     * answer WRONGTYPE and are read individually. Index-aligned, null for missing (or null) keys.
+     */
+    public List<Map<String, Object>> readPayments(List<String> keys) {
+        List<Map<String, Object>> out = new ArrayList<>(keys.size());
+        if (keys.isEmpty()) return out;
+        List<Object> raw;
+        try {
+            // no result serializer: the records are binary
+            raw = redisTemplate.executePipelined((RedisCallback<Object>) conn -> {
+                for (String k : keys) {
+                    if (k != null) conn.stringCommands().get(stringSerializer.serialize(k));
+                }
+                return null;
+            }, null);
+        } catch (RedisPipelineException e) {
+            raw = e.getPipelineResult();
         }
+        int r = 0;
+        for (String k : keys) {
+            if (k == null) {
+                out.add(null);
+                continue;
+            }
+            Object v = r < raw.size() ? raw.get(r) : null;
+            r++;
+            if (v instanceof byte[] bytes) {
+                try {
+                    out.add(PaymentRecordCodec.decode(bytes).toMap());
+                } catch (IllegalArgumentException e) {
+                    log.warn("Unreadable payment record at {}: {}", k, e.getMessage());
+                    out.add(null);
+                }
+            } else if (v instanceof Throwable) {
+                out.add(readPayment(k));
+            } else {
+                out.add(null);
+            }
+        }
+        return out;
+    }
+
+    private List<String> newestMembers(String key, int limit) {
+        List<String> out = new ArrayList<>();
+        if (limit <= 0) return out;
+        Set<Object> members = redisTemplate.opsForZSet().reverseRange(key, 0, limit - 1);
+        if (members != null) for (Object m : members) out.add(m.toString());
+        return out;
+    }
+
+    private static PaymentInfo withDefaultMerchant(PaymentInfo info) {
+        if (info.getMerchantName() == null || info.getMerchantName().isEmpty()) info.setMerchantName(DEFAULT_MERCHANT);
+        return info;
     }
+
+    // HMGET order of CONSUME_LUA (hashes written before PaymentRecordCodec)
+    private PaymentInfo toPaymentInfo(List<?> vals) {
+        String pid = asString(vals, 0);
+        long amt = readAmount(asString(vals, 1));
+        String paymentTs = asString(vals, 2);
+        String mid = asString(vals, 3);
+        String payerEmail = asString(vals, 4);
+        String method = asString(vals, 6);
+        String phone = asString(vals, 7);
+        String merchantName = asString(vals, 8);
+        String subject = asString(vals, 9);
+
+        Instant paidOn;
+        try {
+            paidOn = Instant.parse(paymentTs);
+        } catch (Exception ignored) {
+            paidOn = Instant.now();
+        }
+        return withDefaultMerchant(new PaymentInfo(pid, amt, paidOn, payerEmail, phone, method, merchantName, subject, mid));
+    }
+
     public boolean isProcessed(String messageId) {
+        Permit permit = breaker.tryAcquire();
+        if (permit == null) return false;
+        long t0 = System.nanoTime();
         try {
             String key = processedKey(messageId);
-            return redisTemplate.hasKey(key);
+            boolean processed = redisTemplate.hasKey(key);
+            breaker.onSuccess(permit, Op.CHECK, System.nanoTime() - t0);
+            return processed;
         } catch (Exception e) {
+            breaker.onFailure(permit, Op.CHECK);
             log.warn("Failed to check Redis processed key", e);
             return false;
         }
     }
+
+    /**
+     * Claims a Message-ID without a payment (SET NX EX plus the processed index and the cache channel).
+     */
+    public boolean markProcessed(String messageId) {
+        Permit permit = breaker.tryAcquire();
+        if (permit == null) return false;
+        long t0 = System.nanoTime();
+        try {
+            Boolean set = redisTemplate.opsForValue().setIfAbsent(processedKey(messageId), messageId, markTtl);
+            if (Boolean.TRUE.equals(set)) {
+                redisTemplate.opsForZSet().add(PROCESSED_INDEX, messageId, System.currentTimeMillis());
+                redisTemplate.convertAndSend(PROCESSED_CHANNEL, messageId);
+            }
+            breaker.onSuccess(permit, Op.CLAIM, System.nanoTime() - t0);
+            return Boolean.TRUE.equals(set);
+        } catch (Exception e) {
+            breaker.onFailure(permit, Op.CLAIM);
+            log.warn("Failed to mark {} processed in Redis", messageId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Pipelined variant of isProcessed: one round trip for the whole list.
+     * Result is index-aligned with messageIds. Fails open (all false) like isProcessed.
+     */
+    public List<Boolean> areProcessed(List<String> messageIds) {
+        if (messageIds.isEmpty()) return new ArrayList<>();
+        Permit permit = breaker.tryAcquire();
+        if (permit == null) return allFalse(messageIds.size());
+        long t0 = System.nanoTime();
+        List<Boolean> out = new ArrayList<>(messageIds.size());
+        try {
+            List<Object> res = redisTemplate.executePipelined((RedisCallback<Object>) conn -> {
+                for (String mid : messageIds) {
+                    conn.keyCommands().exists(stringSerializer.serialize(processedKey(mid)));
+                }
+                return null;
+            });
+            for (Object o : res) {
+                if (o instanceof Boolean) out.add((Boolean) o);
+                else out.add(o instanceof Number && ((Number) o).longValue() > 0);
+            }
+            breaker.onSuccess(permit, Op.CHECK, System.nanoTime() - t0);
+        } catch (Exception e) {
+            breaker.onFailure(permit, Op.CHECK);
+            log.warn("Failed to batch-check Redis processed keys", e);
+            return allFalse(messageIds.size());
+        }
+        return out;
+    }
+
+    private static List<Boolean> allFalse(int n) {
+        List<Boolean> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(false);
+        return out;
+    }
+
+    /**
+     * Claims content fingerprints for the given Message-IDs (SET NX EX, then GET, one pipeline for the batch).
+     * Returns, index-aligned, the Message-ID that owns each fingerprint: ours if it was new, otherwise the
+     * first claimer's. Fails open by returning our own ids, i.e. nothing is treated as a duplicate.
+     */
+    public List<String> claimContent(List<String> fingerprints, List<String> messageIds, int ttlSeconds) {
+        Permit permit = breaker.tryAcquire();
+        if (permit == null) return new ArrayList<>(messageIds);
+        long t0 = System.nanoTime();
+        try {
+            List<Object> res = redisTemplate.executePipelined((RedisCallback<Object>) conn -> {
+                for (int i = 0; i < fingerprints.size(); i++) {
+                    byte[] key = stringSerializer.serialize(contentKey(fingerprints.get(i)));
+                    conn.stringCommands().set(key, stringSerializer.serialize(messageIds.get(i)),
+                            Expiration.seconds(ttlSeconds), RedisStringCommands.SetOption.SET_IF_ABSENT);
+                    conn.stringCommands().get(key);
+                }
+                return null;
+            });
+            List<String> owners = new ArrayList<>(fingerprints.size());
+            for (int i = 0; i < fingerprints.size(); i++) {
+                Object owner = res.get(2 * i + 1);
+                String o = owner instanceof byte[] ? new String((byte[]) owner, StandardCharsets.UTF_8)
+                        : owner == null ? null : owner.toString();
+                owners.add(o == null ? messageIds.get(i) : o);
+            }
+            breaker.onSuccess(permit, Op.CHECK, System.nanoTime() - t0);
+            return owners;
+        } catch (Exception e) {
+            breaker.onFailure(permit, Op.CHECK);
+            log.warn("Failed to claim content fingerprints in Redis", e);
+            return new ArrayList<>(messageIds);
+        }
+    }
+
+    /**
+     * One pipelined GET per fingerprint. Fails open: all null, i.e. nothing is treated as a duplicate.
+     */
+    public List<String> contentOwners(List<String> fingerprints) {
+        List<String> none = new ArrayList<>(Collections.nCopies(fingerprints.size(), (String) null));
+        Permit permit = breaker.tryAcquire();
+        if (permit == null) return none;
+        long t0 = System.nanoTime();
+        try {
+            List<Object> res = redisTemplate.executePipelined((RedisCallback<Object>) conn -> {
+                for (String fp : fingerprints) conn.stringCommands().get(stringSerializer.serialize(contentKey(fp)));
+                return null;
+            });
+            List<String> owners = new ArrayList<>(fingerprints.size());
+            for (Object owner : res) {
+                owners.add(owner instanceof byte[] ? new String((byte[]) owner, StandardCharsets.UTF_8)
+                        : owner == null ? null : owner.toString());
+            }
+            breaker.onSuccess(permit, Op.CHECK, System.nanoTime() - t0);
+            return owners;
+        } catch (Exception e) {
+            breaker.onFailure(permit, Op.CHECK);
+            log.warn("Failed to look up content fingerprints in Redis", e);
+            return none;
+        }
+    }
+
+    // ---------------- async API ----------------
+    //
+    // Same operations on Lettuce's native async commands: nothing parks on Redis I/O, and calls issued
+    // back to back share the connection (Lettuce pipelines them). Errors are logged and turned into the
+    // same fail-open / false results as the blocking methods (consume completes exceptionally with
+    // PaymentStoreUnavailableException); there is no non-atomic fallback.
+
+    public CompletionStage<Boolean> savePaymentAtomicAsync(PaymentInfo info, Duration businessTtl, int processedTtlSeconds) {
+        Permit permit = breaker.tryAcquire();
+        if (permit == null) return CompletableFuture.completedFuture(false);
+        long t0 = System.nanoTime();
+        try {
+            RedisClusterAsyncCommands<byte[], byte[]> cmds = async();
+            ScriptCall call = claimCall(info, businessTtl, processedTtlSeconds);
+            CompletionStage<Long> res = call.script().runAsync(cmds, ScriptOutputType.INTEGER, call.numKeys(), call.keysAndArgs());
+            return res.handle((n, err) -> {
+                if (err != null) {
+                    breaker.onFailure(permit, Op.CLAIM);
+                    log.error("Async SAVE_LUA failed for mid={}", info.getMessageId(), err);
+                    return false;
+                }
+                breaker.onSuccess(permit, Op.CLAIM, System.nanoTime() - t0);
+                return n != null && n == 1;
+            }).thenCompose(claimed -> claimed && layout == KeyLayout.TAGGED
+                    ? afterClaimAsync(cmds, info, businessTtl, processedTtlSeconds).thenApply(v -> true)
+                    : CompletableFuture.completedFuture(claimed));
+        } catch (Exception e) {
+            breaker.onFailure(permit, Op.CLAIM);
+            log.error("Async SAVE_LUA failed for mid={}", info.getMessageId(), e);
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    public CompletionStage<List<Boolean>> savePaymentsAtomicAsync(List<PaymentInfo> infos, Duration businessTtl, int processedTtlSeconds) {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(infos.size());
+        for (PaymentInfo info : infos) futures.add(savePaymentAtomicAsync(info, businessTtl, processedTtlSeconds).toCompletableFuture());
+        return allOf(futures);
+    }
+
+    /**
+     * Layout order and failure reporting as in consumeByEmailAndAmount; with the circuit open this completes
+     * exceptionally right away.
+     */
+    public CompletionStage<PaymentInfo> consumeByEmailAndAmountAsync(String email, long amountMinor) {
+        Permit permit = breaker.tryAcquire();
+        if (permit == null) return CompletableFuture.failedFuture(new PaymentStoreUnavailableException("Redis circuit open"));
+        long t0 = System.nanoTime();
+        return consumeOnceAsync(email, amountMinor).handle((info, err) -> {
+            if (err == null) {
+                breaker.onSuccess(permit, Op.CONSUME, System.nanoTime() - t0);
+                return info;
+            }
+            breaker.onFailure(permit, Op.CONSUME);
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            throw cause instanceof PaymentStoreUnavailableException u ? u : new PaymentStoreUnavailableException("consume failed", cause);
+        });
+    }
+
+    /**
+     * Batch /verify. Every consume script goes out on the shared connection before any reply is read, so
+     * Lettuce pipelines them and the whole list costs about one round trip; each item is still its own atomic
+     * script call. One breaker permit
+     * and one outcome for the batch.
+     */
+    public CompletionStage<List<Optional<PaymentInfo>>> consumeByEmailsAndAmountsAsync(List<String> emails, List<Long> amountsMinor) {
+        if (emails.isEmpty()) return CompletableFuture.completedFuture(new ArrayList<>());
+        Permit permit = breaker.tryAcquire();
+        if (permit == null) return CompletableFuture.failedFuture(new PaymentStoreUnavailableException("Redis circuit open"));
+        long t0 = System.nanoTime();
+        AtomicBoolean failed = new AtomicBoolean();
+        List<CompletableFuture<Optional<PaymentInfo>>> futures = new ArrayList<>(emails.size());
+        for (int i = 0; i < emails.size(); i++) {
+            futures.add(consumeOnceAsync(emails.get(i), amountsMinor.get(i)).toCompletableFuture()
+                    .handle((info, err) -> {
+                        if (err == null) return Optional.ofNullable(info);
+                        failed.set(true);
+                        return null;
+                    }));
+        }
+        return allOf(futures).thenApply(out -> {
+            if (failed.get()) breaker.onFailure(permit, Op.CONSUME);
+            else breaker.onSuccess(permit, Op.CONSUME, System.nanoTime() - t0);
+            return out;
+        });
+    }
+
+    private CompletionStage<PaymentInfo> consumeOnceAsync(String email, long amountMinor) {
+        return cluster ? consumeTaggedAsync(email, amountMinor) : consumeAnyLayoutAsync(email, amountMinor);
+    }
+
+    private CompletionStage<PaymentInfo> consumeTaggedAsync(String email, long amountMinor) {
+        try {
+            RedisClusterAsyncCommands<byte[], byte[]> cmds = async();
+            String prefix = taggedRecordPrefix(email, amountMinor);
+            CompletionStage<List<Object>> res = CONSUME_TAGGED_SCRIPT.runAsync(cmds, ScriptOutputType.MULTI, 1,
+                    stringSerializer.serialize(taggedVerificationKey(email, amountMinor)),
+                    stringSerializer.serialize(prefix));
+            return res.handle((list, err) -> {
+                if (err != null) {
+                    log.error("consumeByEmailAndAmountAsync failed", err);
+                    throw new PaymentStoreUnavailableException("consume failed", err);
+                }
+                if (list == null || list.isEmpty() || list.get(0) == null) return null;
+                PaymentInfo info = withDefaultMerchant(PaymentRecordCodec.decode((byte[]) list.get(0)).info());
+                afterConsumeAsync(cmds, info, prefix + sanitize(info.getPaymentId()));
+                return info;
+            });
+        } catch (Exception e) {
+            log.error("consumeByEmailAndAmountAsync failed", e);
+            return CompletableFuture.failedFuture(new PaymentStoreUnavailableException("consume failed", e));
+        }
+    }
+
+    private CompletionStage<PaymentInfo> consumeAnyLayoutAsync(String email, long amountMinor) {
+        try {
+            CompletionStage<List<Object>> res = CONSUME_SCRIPT.runAsync(async(), ScriptOutputType.MULTI, 5,
+                    consumeKeysAndArgs(email, amountMinor));
+            return res.handle((list, err) -> {
+                if (err != null) {
+                    log.error("consumeByEmailAndAmountAsync failed", err);
+                    throw new PaymentStoreUnavailableException("consume failed", err);
+                }
+                if (list == null || list.isEmpty() || list.get(0) == null) return null;
+                if (list.size() == 1) return withDefaultMerchant(PaymentRecordCodec.decode((byte[]) list.get(0)).info());
+                return toPaymentInfo(list);
+            });
+        } catch (Exception e) {
+            log.error("consumeByEmailAndAmountAsync failed", e);
+            return CompletableFuture.failedFuture(new PaymentStoreUnavailableException("consume failed", e));
+        }
+    }
+
+    // afterClaim on the async commands; completes (never exceptionally) once every write is acknowledged
+    private CompletionStage<Void> afterClaimAsync(RedisClusterAsyncCommands<byte[], byte[]> cmds, PaymentInfo info,
+                                                  Duration businessTtl, int processedTtlSeconds) {
+        long now = System.currentTimeMillis();
+        byte[] mid = stringSerializer.serialize(info.getMessageId());
+        byte[] bkey = stringSerializer.serialize(recordKey(info));
+        byte[] received = stringSerializer.serialize(statusIndexKey(STATUS_RECEIVED));
+        byte[] processed = stringSerializer.serialize(PROCESSED_INDEX);
+        SetArgs ttl = SetArgs.Builder.ex(processedTtlSeconds);
+        List<CompletableFuture<?>> writes = new ArrayList<>();
+        if (cluster) writes.add(cmds.set(stringSerializer.serialize(processedKey(info.getMessageId())), mid, ttl).toCompletableFuture());
+        writes.add(cmds.set(stringSerializer.serialize(messageIndexKey(info.getMessageId())), bkey, ttl).toCompletableFuture());
+        writes.add(cmds.zadd(received, (double) now, bkey).toCompletableFuture());
+        writes.add(cmds.zadd(processed, (double) now, mid).toCompletableFuture());
+        writes.add(cmds.publish(stringSerializer.serialize(PROCESSED_CHANNEL), mid).toCompletableFuture());
+        writes.add(cmds.zremrangebyscore(received, Range.create(Double.NEGATIVE_INFINITY, (double) (now - businessTtl.toMillis() - 1))).toCompletableFuture());
+        writes.add(cmds.zremrangebyscore(processed, Range.create(Double.NEGATIVE_INFINITY, (double) (now - processedTtlSeconds * 1000L - 1))).toCompletableFuture());
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).handle((v, err) -> {
+            if (err != null) log.warn("Index update after claiming mid={} failed", info.getMessageId(), err);
+            return null;
+        });
+    }
+
+    // fire and forget: the caller already has its payment
+    private void afterConsumeAsync(RedisClusterAsyncCommands<byte[], byte[]> cmds, PaymentInfo info, String recordKey) {
+        long now = System.currentTimeMillis();
+        byte[] consumed = stringSerializer.serialize(statusIndexKey(STATUS_CONSUMED));
+        CompletableFuture.allOf(
+                cmds.zrem(stringSerializer.serialize(statusIndexKey(STATUS_RECEIVED)), stringSerializer.serialize(recordKey)).toCompletableFuture(),
+                cmds.zadd(consumed, (double) now, stringSerializer.serialize(info.getPaymentId())).toCompletableFuture(),
+                cmds.zremrangebyscore(consumed, Range.create(Double.NEGATIVE_INFINITY, (double) (now - CONSUMED_RETENTION.toMillis() - 1))).toCompletableFuture()
+        ).whenComplete((v, err) -> {
+            if (err != null) log.warn("Index update after consuming {} failed", info.getPaymentId(), err);
+        });
+    }
+
+    public CompletionStage<Boolean> isProcessedAsync(String messageId) {
+        return areProcessedAsync(List.of(messageId)).thenApply(l -> l.get(0));
+    }
+
+    /**
+     * Index-aligned like areProcessed; fails open (all false).
+     */
+    public CompletionStage<List<Boolean>> areProcessedAsync(List<String> messageIds) {
+        if (messageIds.isEmpty()) return CompletableFuture.completedFuture(new ArrayList<>());
+        Permit permit = breaker.tryAcquire();
+        if (permit == null) return CompletableFuture.completedFuture(allFalse(messageIds.size()));
+        long t0 = System.nanoTime();
+        try {
+            RedisClusterAsyncCommands<byte[], byte[]> cmds = async();
+            List<CompletableFuture<Long>> futures = new ArrayList<>(messageIds.size());
+            for (String mid : messageIds) {
+                futures.add(cmds.exists(stringSerializer.serialize(processedKey(mid))).toCompletableFuture());
+            }
+            // one breaker outcome for the batch, like the pipelined areProcessed
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((v, err) -> {
+                if (err != null) {
+                    breaker.onFailure(permit, Op.CHECK);
+                    log.warn("Failed to batch-check Redis processed keys", err);
+                    return allFalse(messageIds.size());
+                }
+                breaker.onSuccess(permit, Op.CHECK, System.nanoTime() - t0);
+                List<Boolean> out = new ArrayList<>(futures.size());
+                for (CompletableFuture<Long> f : futures) {
+                    Long n = f.join();
+                    out.add(n != null && n > 0);
+                }
+                return out;
+            });
+        } catch (Exception e) {
+            breaker.onFailure(permit, Op.CHECK);
+            log.warn("Failed to batch-check Redis processed keys", e);
+            return CompletableFuture.completedFuture(allFalse(messageIds.size()));
+        }
+    }
+
+    /**
+     * SCAN cursor loop without blocking; each page is requested when the previous one arrives.
+     */
+    public CompletionStage<List<String>> scanKeysAsync(String pattern, int limit) {
+        List<String> out = new ArrayList<>();
+        if (limit <= 0) return CompletableFuture.completedFuture(out);
+        try {
+            RedisClusterAsyncCommands<byte[], byte[]> cmds = async();
+            ScanArgs args = ScanArgs.Builder.matches(pattern).limit(Math.min(1000, Math.max(10, limit)));
+            return scanPage(cmds, cmds.scan(args), args, out, limit);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletionStage<List<String>> scanPage(RedisClusterAsyncCommands<byte[], byte[]> cmds,
+                                                   CompletionStage<KeyScanCursor<byte[]>> page,
+                                                   ScanArgs args, List<String> out, int limit) {
+        return page.thenCompose(cursor -> {
+            for (byte[] k : cursor.getKeys()) {
+                if (out.size() >= limit) break;
+                out.add(stringSerializer.deserialize(k));
+            }
+            if (cursor.isFinished() || out.size() >= limit) return CompletableFuture.completedFuture(out);
+            return scanPage(cmds, cmds.scan(cursor, args), args, out, limit);
+        });
+    }
+
+    // shared native connection: closing the Spring wrapper leaves it open
+    @SuppressWarnings("unchecked")
+    private RedisClusterAsyncCommands<byte[], byte[]> async() {
+        RedisConnection conn = redisTemplate.getRequiredConnectionFactory().getConnection();
+        try {
+            Object nativeConn = conn.getNativeConnection();
+            if (!(nativeConn instanceof RedisClusterAsyncCommands)) {
+                throw new UnsupportedOperationException("async API needs a Lettuce connection factory");
+            }
+            return (RedisClusterAsyncCommands<byte[], byte[]>) nativeConn;
+        } finally {
+            conn.close();
+        }
+    }
+
+    private static <T> CompletionStage<List<T>> allOf(List<CompletableFuture<T>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<T> out = new ArrayList<>(futures.size());
+            for (CompletableFuture<T> f : futures) out.add(f.join());
+            return out;
+        });
+    }
+
     public List<String> scanKeys(String pattern, int limit) {
         return redisTemplate.execute((RedisCallback<List<String>>) connection -> {
             List<String> out = new ArrayList<>();
@@ -248,6 +1176,20 @@ public class RedisPaymentStore {
         });
     }
 
+    /**
+     * Hash field "amount": paise ("149950"), or the older decimal form ("1499.00") for entries saved
+     * before the switch - those always contain a dot.
+     */
+    static long readAmount(String stored) {
+        if (stored == null || stored.isEmpty()) return PaymentFieldParser.NO_AMOUNT;
+        if (stored.indexOf('.') >= 0) return PaymentFieldParser.parseAmountMinor(stored);
+        try {
+            return Long.parseLong(stored);
+        } catch (NumberFormatException e) {
+            return PaymentFieldParser.parseAmountMinor(stored);
+        }
+    }
+
     private String asString(java.util.List<?> list, int idx) {
         if (idx >= list.size()) return null;
         Object o = list.get(idx);
@@ -0,0 +1,107 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import com.events.paymentverifsystem.Utilities.Local.InMemoryPaymentStore;
+import com.events.paymentverifsystem.Utilities.Local.LocalStoreProperties;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A payment id (and the text it was parsed from) is only owned once its claim went through; ownership is
+ * per parsed payment id, and per whitespace-normalised text for the pre-parse check.
+ */
+class ContentDedupeIndexTest {
+
+    private static final List<String> NO_BODIES = Arrays.asList((String) null);
+
+    private static InMemoryPaymentStore store() {
+        return new InMemoryPaymentStore(new LocalStoreProperties(), new EmailProcessedStoreProperties());
+    }
+
+    private static ContentDedupeIndex index(InMemoryPaymentStore store) {
+        return new ContentDedupeIndex(store, new EmailProcessedStoreProperties());
+    }
+
+    private static PaymentInfo payment(String paymentId, String messageId) {
+        return new PaymentInfo(paymentId, 500_00, Instant.now(), "payer@example.edu", null, "UPI", null, "Receipt", messageId);
+    }
+
+    @Test
+    void anOwnerThatNeverClaimedDoesNotBlockItsResends() {
+        try (InMemoryPaymentStore store = store()) {
+            ContentDedupeIndex index = index(store);
+            PaymentInfo original = payment("pay_Lost0001", "<original>");
+            PaymentInfo resent = payment("pay_Lost0001", "<resent>");
+
+            // the original is checked but its claim fails: nothing is registered
+            assertEquals(List.of(false), index.duplicates(List.of(original)));
+            assertEquals(List.of(false), index.duplicates(List.of(resent)));
+
+            // the resend's claim goes through and now owns the payment
+            index.register(List.of(resent), NO_BODIES);
+            assertEquals(List.of(true), index.duplicates(List.of(original)));
+            assertEquals(List.of(false), index.duplicates(List.of(resent)));
+        }
+    }
+
+    @Test
+    void ownershipIsSharedThroughTheStore() {
+        try (InMemoryPaymentStore store = store()) {
+            index(store).register(List.of(payment("pay_Shared001", "<a>")), NO_BODIES);
+
+            ContentDedupeIndex other = index(store);
+            assertEquals(List.of(true, false, false), other.duplicates(List.of(
+                    payment("pay_Shared001", "<b>"),
+                    payment("pay_Shared001", "<a>"),
+                    payment("pay_Other0001", "<c>"))));
+        }
+    }
+
+    @Test
+    void theFirstOwnerKeepsThePayment() {
+        try (InMemoryPaymentStore store = store()) {
+            ContentDedupeIndex index = index(store);
+            index.register(List.of(payment("pay_Race00001", "<first>")), NO_BODIES);
+            index.register(List.of(payment("pay_Race00001", "<second>")), NO_BODIES);
+            assertEquals(List.of(false, true), index.duplicates(List.of(
+                    payment("pay_Race00001", "<first>"),
+                    payment("pay_Race00001", "<second>"))));
+        }
+    }
+
+    @Test
+    void disabledIndexNeverReportsDuplicates() {
+        try (InMemoryPaymentStore store = store()) {
+            EmailProcessedStoreProperties props = new EmailProcessedStoreProperties();
+            props.setContentDedupe(false);
+            ContentDedupeIndex index = new ContentDedupeIndex(store, props);
+            index.register(List.of(payment("pay_Off000001", "<a>")), NO_BODIES);
+            assertEquals(List.of(false), index.duplicates(List.of(payment("pay_Off000001", "<b>"))));
+        }
+    }
+
+    @Test
+    void aResendWithTheSameTextIsCaughtBeforeParsing() {
+        try (InMemoryPaymentStore store = store()) {
+            ContentDedupeIndex index = index(store);
+            Date sent = new Date();
+            String html = "<p>Payment   successful</p>\n<p>pay_Body00001</p>";
+            FetchedMessage original = new FetchedMessage(1, "<original>", "Receipt", sent, "noreply@razorpay.com", html);
+            FetchedMessage resent = new FetchedMessage(2, "<resent>", "Receipt", sent, "noreply@razorpay.com",
+                    html.replace("   ", " ").replace("\n", "\r\n  "));
+            FetchedMessage other = new FetchedMessage(3, "<other>", "Receipt", sent, "noreply@razorpay.com",
+                    html.replace("pay_Body00001", "pay_Body00002"));
+
+            // nothing owns the text until the original's claim went through
+            assertEquals(List.of(false, false), index.duplicateBodies(List.of(original, resent)));
+            index.register(List.of(payment("pay_Body00001", "<original>")), List.of(original.bodyFingerprint()));
+            assertEquals(List.of(false, true, false), index.duplicateBodies(List.of(original, resent, other)));
+        }
+    }
+}
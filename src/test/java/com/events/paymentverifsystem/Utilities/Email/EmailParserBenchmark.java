@@ -0,0 +1,245 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentFieldParser;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rough throughput comparison of EmailParser against the previous multi-pass implementation (kept below
+ * as Legacy) on the same inputs, and of the DOM path against the streaming scanner. Not a unit test; run main() from the IDE or with
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...EmailParserBenchmark
+ *
+ * Before timing it checks that all three extract the same fields from every sample.
+ */
+public class EmailParserBenchmark {
+
+    static final String RAZORPAY_HTML = """
+            <html><body>
+            <div class="header"><h2>Tech Fest 2025</h2></div>
+            <div class="card">
+              <div class="amount"><span class="symbol">₹</span>1,499.00</div>
+              <div class="information-row"><span class="label">Payment Id</span><span class="value">pay_Q1w2E3r4T5y6U7</span></div>
+              <div class="information-row"><span class="label">Paid On</span><span class="value">14 Aug, 2025 07:21:05 PM UTC+05:30</span></div>
+              <div class="information-row"><span class="label">Method</span><span class="value">UPI</span></div>
+              <div class="information-row"><span class="label">Email</span><span class="value">Student.One@example.edu</span></div>
+              <div class="information-row"><span class="label">Mobile Number</span><span class="value">+91 9876543210</span></div>
+            </div>
+            %s
+            </body></html>
+            """;
+
+    static final String PLAIN = """
+            Hi,
+            We received Rs. 750 from student.two@example.edu via card.
+            Reference: pay_AbCdEf0123
+            Contact 9123456780 for queries.
+            """;
+
+    static List<FetchedMessage> samples() {
+        StringBuilder footer = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            footer.append("<p class=\"footer\">This is an automatically generated email. Please do not reply. ")
+                    .append("Razorpay Software Private Limited, Bengaluru. Line ").append(i).append("</p>\n");
+        }
+        List<FetchedMessage> out = new ArrayList<>();
+        Date sent = new Date(1_755_000_000_000L);
+        out.add(new FetchedMessage(1, "<a@x>", "Payment successful for Tech Fest", sent, "no-reply@razorpay.com",
+                RAZORPAY_HTML.formatted("")));
+        out.add(new FetchedMessage(2, "<b@x>", "Payment successful for Tech Fest", sent, "no-reply@razorpay.com",
+                RAZORPAY_HTML.formatted(footer)));
+        out.add(new FetchedMessage(3, "<c@x>", "Payment received", sent, "billing@example.com", PLAIN));
+        out.add(new FetchedMessage(4, "<d@x>", "Newsletter", sent, "news@example.com",
+                "<html><body><p>Nothing to see here.</p>" + footer + "</body></html>"));
+        return out;
+    }
+
+    public static void main(String[] args) {
+        List<FetchedMessage> samples = samples();
+        for (FetchedMessage m : samples) {
+            PaymentInfo a = Legacy.parse(m);
+            PaymentInfo b = EmailParser.parse(m);
+            if (!same(a, b)) throw new AssertionError("Parsers disagree on message " + m.getUid() + ": " + a + " vs " + b);
+            PaymentInfo c = streamed(m);
+            if (c != null && !same(b, c)) throw new AssertionError("Streaming disagrees on message " + m.getUid() + ": " + b + " vs " + c);
+        }
+
+        int warmup = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        run("legacy", samples, warmup, 0);
+        run("single-pass", samples, warmup, 1);
+        run("streaming", samples, warmup, 2);
+        long legacy = run("legacy", samples, rounds, 0);
+        long current = run("single-pass", samples, rounds, 1);
+        long streaming = run("streaming", samples, rounds, 2);
+        System.out.printf("speedup: single-pass %.2fx, streaming %.2fx (vs legacy)%n",
+                (double) legacy / current, (double) legacy / streaming);
+    }
+
+    // what ExtractionTemplateRegistry does without a template: stream first, DOM only on a receipt-looking miss
+    private static PaymentInfo streamed(FetchedMessage m) {
+        ParseContext ctx = ParseContext.streamed(m, HtmlStreamScanner.GENERIC);
+        PaymentInfo p = EmailParser.parse(ctx, null);
+        if (p != null && p.getPaymentId() != null && p.hasAmount()) return p;
+        if (!ctx.streamed.hasReceiptMarkup()) return p;
+        return EmailParser.parse(m);
+    }
+
+    private static long run(String label, List<FetchedMessage> samples, int rounds, int impl) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            FetchedMessage m = samples.get(i % samples.size());
+            PaymentInfo p = switch (impl) {
+                case 0 -> Legacy.parse(m);
+                case 1 -> EmailParser.parse(m);
+                default -> streamed(m);
+            };
+            if (p != null) sink += p.hashCode();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-12s %,d parses in %,d ms (%.1f us/op) [%d]%n",
+                label, rounds, elapsed / 1_000_000, elapsed / 1_000.0 / rounds, sink & 1);
+        return elapsed;
+    }
+
+    // paidOn is left out: date parsing moved to PaymentFieldParser (see PaymentFieldParserBenchmark)
+    private static boolean same(PaymentInfo a, PaymentInfo b) {
+        if (a == null || b == null) return a == b;
+        return Objects.equals(a.getPaymentId(), b.getPaymentId())
+                && a.getAmountMinor() == b.getAmountMinor()
+                && Objects.equals(a.getPayerEmail(), b.getPayerEmail())
+                && Objects.equals(a.getPhone(), b.getPhone())
+                && Objects.equals(a.getMethod(), b.getMethod())
+                && Objects.equals(a.getMerchantName(), b.getMerchantName());
+    }
+
+    /**
+     * The extractors as they were before ParseContext: each calls doc.text() and runs its own regex pass.
+     */
+    static final class Legacy {
+        private static final Pattern PAYMENT_ID_PATTERN = Pattern.compile("(pay_[A-Za-z0-9_\\-]+)", Pattern.CASE_INSENSITIVE);
+        private static final Pattern AMOUNT_PATTERN = Pattern.compile("₹\\s*([0-9,]+(?:\\.[0-9]{1,2})?)|Rs\\.?\\s*([0-9,]+(?:\\.[0-9]{1,2})?)", Pattern.CASE_INSENSITIVE);
+        private static final Pattern EMAIL_PATTERN = Pattern.compile("([A-Za-z0-9._%+\\-]+@[A-Za-z0-9.\\-]+\\.[A-Za-z]{2,})");
+        private static final Pattern PHONE_PATTERN = Pattern.compile("(?:\\+?91[\\-\\s]?)?(\\d{10})");
+
+        static PaymentInfo parse(FetchedMessage message) {
+            String subject = message.getSubject();
+            String rawBody = message.getBody() == null ? "" : message.getBody();
+            Document doc = Jsoup.parse(rawBody);
+
+            Element me = doc.selectFirst("h2, .branding-content, .header h2, .title-content, .content-element");
+            String merchantName = me != null ? me.text().trim() : null;
+            String paymentId = extractPaymentId(doc, subject, rawBody);
+            String amount = extractAmount(doc, subject, rawBody);
+            String payerEmail = extractPayerEmail(doc, rawBody, message.getFromAddress());
+            String phone = extractPhone(doc, rawBody);
+            String method = extractMethod(doc, rawBody);
+            Instant paidOn = extractPaidOn(doc, message.getSentDate());
+            if (paymentId == null && amount == null) return null;
+            if (amount != null) {
+                amount = amount.replaceAll("[^0-9.]", "");
+                if (!amount.contains(".")) amount = amount + ".00";
+            }
+            // PaymentInfo carries paise now; convert the legacy string so the fields stay comparable
+            long minor = amount == null ? PaymentFieldParser.NO_AMOUNT : PaymentFieldParser.parseAmountMinor(amount);
+            return new PaymentInfo(paymentId, minor, paidOn, payerEmail, phone, method, merchantName, subject,
+                    message.getMessageId());
+        }
+
+        private static Instant extractPaidOn(Document doc, Date sent) {
+            String textSource = doc.text();
+            int startIndex = textSource.indexOf("Paid On");
+            if (startIndex != -1) {
+                String afterMarker = textSource.substring(startIndex + "Paid On".length()).trim();
+                DateTimeFormatter[] formatters = {
+                        DateTimeFormatter.ofPattern("d MMM, yyyy hh:mm:ss a 'UTC'XXX", Locale.ENGLISH),
+                        DateTimeFormatter.ofPattern("d MMM, yyyy hh:mm a 'UTC'XXX", Locale.ENGLISH),
+                        DateTimeFormatter.ofPattern("d MMM, yyyy", Locale.ENGLISH)
+                };
+                for (DateTimeFormatter fmt : formatters) {
+                    try {
+                        TemporalAccessor ta = fmt.parse(afterMarker);
+                        if (ta instanceof LocalDateTime) return ((LocalDateTime) ta).atZone(ZoneId.of("UTC")).toInstant();
+                        if (ta instanceof LocalDate) return ((LocalDate) ta).atStartOfDay(ZoneId.of("UTC")).toInstant();
+                    } catch (DateTimeParseException ignored) {}
+                }
+            }
+            Matcher iso = Pattern.compile("(\\d{4}-\\d{2}-\\d{2}[T\\s]\\d{2}:\\d{2}(?::\\d{2})?(?:Z|[+-]\\d{2}:?\\d{2})?)")
+                    .matcher(textSource);
+            if (iso.find()) {
+                try {
+                    return Instant.parse(iso.group(1).replace(' ', 'T'));
+                } catch (Exception ignored) {}
+            }
+            return sent != null ? sent.toInstant() : Instant.now();
+        }
+
+        private static String extractPaymentId(Document doc, String subject, String raw) {
+            Matcher m = PAYMENT_ID_PATTERN.matcher(doc.text() + " " + subject + " " + raw);
+            if (m.find()) return m.group(1);
+            Element info = doc.selectFirst(".information-row, .merchant-highlight, .card");
+            if (info != null) {
+                Matcher m2 = PAYMENT_ID_PATTERN.matcher(info.text());
+                if (m2.find()) return m2.group(1);
+            }
+            return null;
+        }
+
+        private static String extractAmount(Document doc, String subject, String raw) {
+            Matcher m = AMOUNT_PATTERN.matcher(doc.text() + " " + subject + " " + raw);
+            if (m.find()) {
+                String g1 = m.group(1);
+                return g1 != null && !g1.isBlank() ? g1 : m.group(2);
+            }
+            Element rupee = doc.selectFirst(".amount, .rupees, .symbol");
+            if (rupee != null) return rupee.text().replaceAll("[^0-9.,]", "");
+            return null;
+        }
+
+        private static String extractPayerEmail(Document doc, String raw, String fromAddress) {
+            Element emailEl = doc.selectFirst(".information-row:contains(Email) .value, .card:contains(Email) .value");
+            if (emailEl != null) {
+                Matcher m = EMAIL_PATTERN.matcher(emailEl.text());
+                if (m.find()) return m.group(1).toLowerCase();
+            }
+            Matcher m = EMAIL_PATTERN.matcher(raw);
+            if (m.find()) return m.group(1).toLowerCase();
+            if (fromAddress != null && !fromAddress.isBlank()) return fromAddress.toLowerCase();
+            return null;
+        }
+
+        private static String extractPhone(Document doc, String raw) {
+            Matcher m = PHONE_PATTERN.matcher(doc.text());
+            if (m.find()) return m.group(1);
+            m = PHONE_PATTERN.matcher(raw);
+            if (m.find()) return m.group(1);
+            return null;
+        }
+
+        private static String extractMethod(Document doc, String raw) {
+            Element methodEl = doc.selectFirst(".information-row:contains(Method) .value, .information-row:contains(UPI)");
+            if (methodEl != null) return methodEl.text();
+            String t = (doc.text() + " " + raw).toLowerCase();
+            if (t.contains("upi")) return "UPI";
+            if (t.contains("card")) return "CARD";
+            return null;
+        }
+    }
+}
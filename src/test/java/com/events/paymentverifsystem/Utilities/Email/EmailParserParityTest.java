@@ -0,0 +1,105 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentFieldParser;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Golden test: EmailParser must extract the same fields as the multi-pass parser it replaced
+ * (EmailParserBenchmark.Legacy) on every sample, including ones where the old patterns' matches overlap.
+ * paidOn only has its own test: the old parser never read "Paid On".
+ */
+class EmailParserParityTest {
+
+    private static final Date SENT = new Date(1_755_000_000_000L);
+
+    static List<FetchedMessage> receipts() {
+        List<FetchedMessage> out = new ArrayList<>(EmailParserBenchmark.samples());
+        String[][] bodies = {
+                // amount and phone overlap: the digits after "Rs" are also a phone number
+                {"Paid", "<p>Received Rs 9876543210 from student.three@example.edu, ref pay_Overlap01</p>"},
+                // payment id only in the subject
+                {"Receipt pay_SubjectOnly9", "<p>Thanks! Amount ₹ 300</p>"},
+                // amount only in the .amount element, no currency sign
+                {"Receipt", "<div class=\"card\"><div class=\"amount\">1,250.50</div><p>pay_NoSign42</p></div>"},
+                // phone only outside the visible text
+                {"Receipt", "<p>pay_TelLink77 paid ₹99</p><a href=\"tel:+919988776655\">Call us</a>"},
+                // +91- prefixed phone, card payment, email only in the raw body
+                {"Receipt", "Paid Rs.450.5 by card, ref pay_Card0001. Call +91-9123456789. Mail: <b>Payer@Example.org</b>"},
+                // forwarded receipt quoting an older one
+                {"Fwd: Receipt", "<p>Fwd: new payment pay_Newest123 of ₹1,000</p><blockquote>earlier pay_Older456 of ₹500</blockquote>"},
+                // currency sign as an entity
+                {"Receipt", "<p>Paid &#8377; 2,000.00 ref pay_Entity555</p>"},
+                // text in <title>
+                {"Receipt", "<html><head><title>pay_InTitle888</title></head><body><p>Rs 20 9000011111</p></body></html>"},
+                // no payment at all
+                {"Hello", "<p>Call me at 9876512345 about the event.</p>"},
+        };
+        int uid = 100;
+        for (String[] b : bodies) {
+            out.add(new FetchedMessage(uid, "<g" + uid + "@x>", b[0], SENT, "someone@example.com", b[1]));
+            uid++;
+        }
+        return out;
+    }
+
+    @Test
+    void sameFieldsAsTheMultiPassParser() {
+        for (FetchedMessage m : receipts()) {
+            PaymentInfo legacy = EmailParserBenchmark.Legacy.parse(m);
+            PaymentInfo current = EmailParser.parse(m);
+            assertSameFields(legacy, current, "uid " + m.getUid());
+        }
+    }
+
+    @Test
+    void overlappingMatchesAreAllFound() {
+        FetchedMessage m = receipts().stream().filter(r -> r.getUid() == 100).findFirst().orElseThrow();
+        PaymentInfo p = EmailParser.parse(m);
+        assertNotNull(p);
+        assertEquals("pay_Overlap01", p.getPaymentId());
+        assertEquals(987654321000L, p.getAmountMinor());
+        assertEquals("9876543210", p.getPhone());
+    }
+
+    @Test
+    void mailWithoutPaymentIdOrAmountIsNotParsed() {
+        FetchedMessage m = receipts().stream().filter(r -> r.getUid() == 108).findFirst().orElseThrow();
+        assertNull(EmailParser.parse(m));
+        assertNull(EmailParserBenchmark.Legacy.parse(m));
+    }
+
+    @Test
+    void paidOnIsTheReceiptTimeWhenItHasOneElseTheSentDate() {
+        FetchedMessage timed = new FetchedMessage(200, "<t@x>", "Receipt", SENT, "someone@example.com",
+                "<p>pay_Timed0001 ₹ 10 Paid On 14 Aug, 2025 07:21:05 PM UTC+05:30</p>");
+        assertEquals(Instant.parse("2025-08-14T13:51:05Z"), EmailParser.parse(timed).getPaidOn());
+
+        FetchedMessage dateOnly = new FetchedMessage(201, "<d@x>", "Receipt", SENT, "someone@example.com",
+                "<p>pay_DateOnly01 ₹ 10 Paid On 14 Aug, 2025</p>");
+        assertEquals(SENT.toInstant(), EmailParser.parse(dateOnly).getPaidOn());
+    }
+
+    static void assertSameFields(PaymentInfo expected, PaymentInfo actual, String what) {
+        if (expected == null || actual == null) {
+            assertEquals(expected, actual, what);
+            return;
+        }
+        assertEquals(expected.getPaymentId(), actual.getPaymentId(), what + " paymentId");
+        assertEquals(expected.getAmountMinor(), actual.getAmountMinor(), what + " amount");
+        assertEquals(expected.getPayerEmail(), actual.getPayerEmail(), what + " email");
+        assertEquals(expected.getPhone(), actual.getPhone(), what + " phone");
+        // the old parser returned the method row as is ("MethodUPI"); it is normalised now
+        assertEquals(PaymentFieldParser.normalizeMethod(expected.getMethod()), actual.getMethod(), what + " method");
+        assertEquals(expected.getMerchantName(), actual.getMerchantName(), what + " merchant");
+    }
+}
@@ -0,0 +1,62 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * The built-in Razorpay template is loaded without any configuration and extracts a full receipt, in both
+ * parse modes.
+ */
+class ExtractionTemplateRegistryTest {
+
+    private static final Date SENT = new Date(1_755_000_000_000L);
+
+    private static ExtractionTemplateRegistry registry(EmailParser.Mode mode) {
+        EmailProperties emailProps = new EmailProperties();
+        emailProps.setParseMode(mode);
+        return new ExtractionTemplateRegistry(new ExtractionTemplateProperties(), emailProps);
+    }
+
+    private static FetchedMessage receipt(String from) {
+        return new FetchedMessage(1, "<a@x>", "Payment successful for Tech Fest", SENT, from,
+                EmailParserBenchmark.RAZORPAY_HTML.formatted(""));
+    }
+
+    @Test
+    void razorpayTemplateIsBuiltIn() {
+        ExtractionTemplateRegistry r = registry(EmailParser.Mode.DOM);
+        ExtractionTemplate t = r.match(receipt("no-reply@mail.razorpay.com"));
+        assertNotNull(t);
+        assertEquals("razorpay", t.getName());
+        assertNull(r.match(receipt("billing@example.com")));
+    }
+
+    @Test
+    void templateExtractsTheReceipt() {
+        for (EmailParser.Mode mode : EmailParser.Mode.values()) {
+            ExtractionTemplateRegistry r = registry(mode);
+            PaymentInfo p = r.parse(receipt("no-reply@razorpay.com"));
+            assertNotNull(p, mode.name());
+            assertEquals("pay_Q1w2E3r4T5y6U7", p.getPaymentId(), mode.name());
+            assertEquals(149900, p.getAmountMinor(), mode.name());
+            assertEquals("student.one@example.edu", p.getPayerEmail(), mode.name());
+            assertEquals("9876543210", p.getPhone(), mode.name());
+            assertEquals("UPI", p.getMethod(), mode.name());
+            assertEquals("Tech Fest 2025", p.getMerchantName(), mode.name());
+            assertEquals(Instant.parse("2025-08-14T13:51:05Z"), p.getPaidOn(), mode.name());
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = (Map<String, Object>) r.getStats().get("razorpay");
+            assertEquals(1L, stats.get("matched"), mode.name());
+            assertEquals(1L, stats.get("complete"), mode.name());
+        }
+    }
+}
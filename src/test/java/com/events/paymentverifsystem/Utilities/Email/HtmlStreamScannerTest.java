@@ -0,0 +1,102 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * STREAMING must see what the DOM path sees: the same visible text as jsoup's doc.text(), the same first
+ * match for the generic selectors, and so the same parse result.
+ */
+class HtmlStreamScannerTest {
+
+    private static final String[] SNIPPETS = {
+            "<html><head><title>pay_InTitle888</title></head><body><p>Rs 20</p></body></html>",
+            "a<title>x &lt; y</title>b",
+            "<b>a</b><textarea>q &amp; r</textarea><b>c</b>",
+            "a<script>var x = '<p>pay_Script01</p>';</script>b<style>.p{}</style>c",
+            "<div>a</div><span>b</span>",
+            "a<br>b<hr>c<ins>d</ins>e",
+            "<ul><li>one<li>two</ul><p>three<p>four",
+            "<table><tr><td>Amount</td><td class=\"amount\">&#8377; 1,000</td></tr></table>",
+            "<!-- pay_Comment01 --><p>x&nbsp;&nbsp;y</p>",
+            "plain text with no tags, Rs. 750 and pay_Plain0001",
+    };
+
+    private static List<String> bodies() {
+        List<String> out = new ArrayList<>();
+        for (FetchedMessage m : EmailParserParityTest.receipts()) out.add(m.getBody());
+        out.addAll(List.of(SNIPPETS));
+        return out;
+    }
+
+    @Test
+    void visibleTextMatchesJsoup() {
+        for (String html : bodies()) {
+            assertEquals(Jsoup.parse(html).text(), HtmlStreamScanner.GENERIC.scan(html).visibleText, html);
+        }
+    }
+
+    @Test
+    void genericCapturesMatchJsoupSelectors() {
+        for (String html : bodies()) {
+            Document doc = Jsoup.parse(html);
+            HtmlStreamScanner.Result r = HtmlStreamScanner.GENERIC.scan(html);
+            assertEquals(text(doc.selectFirst(".amount, .rupees, .symbol")), r.first(HtmlStreamScanner.AMOUNT), html);
+            assertEquals(text(doc.selectFirst("h2, .branding-content, .header h2, .title-content, .content-element")),
+                    r.first(HtmlStreamScanner.MERCHANT), html);
+            assertEquals(text(doc.selectFirst(".information-row:contains(Email) .value, .card:contains(Email) .value")),
+                    r.emailValue() == null ? null : r.emailValue().trim(), html);
+        }
+    }
+
+    @Test
+    void streamingParsesLikeTheDom() {
+        for (FetchedMessage m : EmailParserParityTest.receipts()) {
+            PaymentInfo dom = EmailParser.parse(m);
+            PaymentInfo streamed = EmailParser.parse(ParseContext.streamed(m, HtmlStreamScanner.GENERIC), null);
+            EmailParserParityTest.assertSameFields(dom, streamed, "uid " + m.getUid());
+            if (dom != null) assertEquals(dom.getPaidOn(), streamed.getPaidOn(), "uid " + m.getUid() + " paidOn");
+        }
+        ExtractionTemplateRegistry streaming = registry(EmailParser.Mode.STREAMING);
+        ExtractionTemplateRegistry domOnly = registry(EmailParser.Mode.DOM);
+        for (FetchedMessage m : EmailParserParityTest.receipts()) {
+            EmailParserParityTest.assertSameFields(domOnly.parse(m), streaming.parse(m), "registry uid " + m.getUid());
+        }
+    }
+
+    @Test
+    void onlyReceiptLookingMissesBuildTheDom() {
+        Date sent = new Date(1_755_000_000_000L);
+        ExtractionTemplateRegistry r = registry(EmailParser.Mode.STREAMING);
+
+        r.parse(new FetchedMessage(1, "<a@x>", "Hello", sent, "someone@example.com",
+                "<p>Call me at 9876512345 about the event.</p>"));
+        r.parse(new FetchedMessage(2, "<b@x>", "Newsletter", sent, "news@example.com", "plain text, no tags"));
+        assertEquals(0L, r.getStats().get("domFallbacks"));
+        assertEquals(2L, r.getStats().get("streamed"));
+
+        // an amount but no payment id: worth a second look with the DOM
+        r.parse(new FetchedMessage(3, "<c@x>", "Receipt", sent, "someone@example.com",
+                "<div class=\"amount\">₹ 500</div><p>reference pending</p>"));
+        assertEquals(1L, r.getStats().get("domFallbacks"));
+    }
+
+    private static ExtractionTemplateRegistry registry(EmailParser.Mode mode) {
+        EmailProperties emailProps = new EmailProperties();
+        emailProps.setParseMode(mode);
+        return new ExtractionTemplateRegistry(new ExtractionTemplateProperties(), emailProps);
+    }
+
+    private static String text(Element el) {
+        return el == null ? null : el.text();
+    }
+}
@@ -0,0 +1,50 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A batch that throws is retried item by item; only the item that still fails reaches the failure handler.
+ */
+class PipelineStageTest {
+
+    @Test
+    void aFailingBatchIsRetriedPerItemAndTheBadItemIsHandedOff() throws Exception {
+        int items = 10;
+        Set<Integer> handled = ConcurrentHashMap.newKeySet();
+        Set<Integer> failed = ConcurrentHashMap.newKeySet();
+        CountDownLatch done = new CountDownLatch(items);
+
+        PipelineStage<Integer> stage = new PipelineStage<>("test", 1, 100, items, 200, false,
+                batch -> {
+                    if (batch.contains(7)) throw new IllegalStateException("bad item in batch");
+                    for (Integer i : batch) {
+                        handled.add(i);
+                        done.countDown();
+                    }
+                },
+                (item, cause) -> {
+                    failed.add(item);
+                    done.countDown();
+                });
+        stage.start();
+        try {
+            for (int i = 0; i < items; i++) stage.put(i);
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            stage.shutdown();
+            stage.awaitTermination(System.nanoTime() + TimeUnit.SECONDS.toNanos(5));
+        }
+
+        assertEquals(Set.of(7), failed);
+        assertEquals(items - 1, handled.size());
+        assertEquals(1L, stage.getStats().get("failedItems"));
+    }
+}
@@ -0,0 +1,122 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import com.events.paymentverifsystem.Utilities.Local.InMemoryPaymentStore;
+import com.events.paymentverifsystem.Utilities.Local.LocalStoreProperties;
+import com.events.paymentverifsystem.Utilities.Redis.RedisPaymentStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Claims published on processed:events (by any instance) are answered locally, everything the Bloom filter
+ * rules out never reaches the store, and ids it can't rule out still do.
+ */
+class ProcessedMessageCacheTest {
+
+    // stands in for the shared store: records what reaches it
+    private static final class SharedStore extends InMemoryPaymentStore {
+        final List<String> asked = new ArrayList<>();
+        final List<String> claimedEarlier = new ArrayList<>();
+
+        SharedStore() {
+            super(new LocalStoreProperties(), new EmailProcessedStoreProperties());
+        }
+
+        @Override
+        public boolean isShared() { return true; }
+
+        @Override
+        public synchronized List<Boolean> areProcessed(List<String> messageIds) {
+            asked.addAll(messageIds);
+            return super.areProcessed(messageIds);
+        }
+
+        @Override
+        public void forEachProcessedSince(long sinceMillis, BiConsumer<String, Long> consumer) {
+            for (String mid : claimedEarlier) consumer.accept(mid, System.currentTimeMillis());
+        }
+    }
+
+    // captures the processed:events subscription instead of talking to Redis
+    private static final class Channel extends RedisMessageListenerContainer {
+        MessageListener listener;
+
+        @Override
+        public void addMessageListener(MessageListener listener, Topic topic) {
+            assertEquals(RedisPaymentStore.PROCESSED_CHANNEL, topic.getTopic());
+            this.listener = listener;
+        }
+
+        void publish(String messageId) {
+            listener.onMessage(new DefaultMessage(RedisPaymentStore.PROCESSED_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                    messageId.getBytes(StandardCharsets.UTF_8)), null);
+        }
+    }
+
+    private final SharedStore store = new SharedStore();
+    private final Channel channel = new Channel();
+
+    @AfterEach
+    void close() {
+        store.close();
+    }
+
+    private ProcessedMessageCache started(int lruEntries) throws InterruptedException {
+        EmailProcessedStoreProperties props = new EmailProcessedStoreProperties();
+        props.setCacheLruEntries(lruEntries);
+        ProcessedMessageCache cache = new ProcessedMessageCache(store, channel, props);
+        cache.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Boolean.TRUE.equals(cache.getStats().get("ready")) && System.nanoTime() < deadline) Thread.sleep(5);
+        assertEquals(true, cache.getStats().get("ready"));
+        return cache;
+    }
+
+    @Test
+    void aClaimPublishedByAnotherInstanceIsAnsweredLocally() throws InterruptedException {
+        ProcessedMessageCache cache = started(1_000);
+        assertNotNull(channel.listener);
+
+        assertEquals(List.of(false), cache.areProcessed(List.of("<other@x>")));
+        channel.publish("<other@x>");
+        assertEquals(List.of(true, false), cache.areProcessed(List.of("<other@x>", "<new@x>")));
+
+        // both answers were local: Bloom negatives before the claim, then the LRU
+        assertEquals(List.of(), store.asked);
+        assertEquals(1L, cache.getStats().get("pubsubReceived"));
+    }
+
+    @Test
+    void warmUpLoadsEarlierClaims() throws InterruptedException {
+        store.claimedEarlier.add("<warm@x>");
+        ProcessedMessageCache cache = started(1_000);
+        assertEquals(List.of(true), cache.areProcessed(List.of("<warm@x>")));
+        assertEquals(List.of(), store.asked);
+        assertEquals(1L, cache.getStats().get("warmed"));
+    }
+
+    @Test
+    void idsOnlyTheBloomFilterRemembersAreCheckedInTheStore() throws InterruptedException {
+        ProcessedMessageCache cache = started(16);
+        for (int i = 0; i < 100; i++) channel.publish("<pub-" + i + "@x>");
+
+        // evicted from the LRU, but the Bloom filter can't rule it out: ask the store, which doesn't know it
+        assertEquals(List.of(false), cache.areProcessed(List.of("<pub-0@x>")));
+        assertEquals(List.of("<pub-0@x>"), store.asked);
+        assertTrue(cache.areProcessed(List.of("<pub-99@x>")).get(0));
+        assertEquals(1, store.asked.size());
+    }
+}
@@ -0,0 +1,49 @@
+package com.events.paymentverifsystem.Utilities.Email;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The combined false-positive rate stays under the configured one while the filter grows, nothing put is
+ * ever reported absent, and slices past the retention window are dropped when it grows.
+ */
+class ScalableBloomFilterTest {
+
+    private static final double FPP = 0.01;
+    private static final int PROBES = 200_000;
+
+    @Test
+    void falsePositiveRateStaysUnderTheTargetAsItGrows() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, FPP, Long.MAX_VALUE);
+        int inserted = 0;
+        // 1k, 3k, 7k, 15k, 31k: each step fills one more slice to its capacity
+        for (int slices = 1; slices <= 5; slices++) {
+            int target = 1_000 * ((1 << slices) - 1);
+            for (; inserted < target; inserted++) filter.put("<in-" + inserted + "@x>");
+            assertEquals(slices, filter.slices());
+
+            int falsePositives = 0;
+            for (int i = 0; i < PROBES; i++) if (filter.mightContain("<out-" + i + "@x>")) falsePositives++;
+            double rate = (double) falsePositives / PROBES;
+            assertTrue(rate <= FPP, slices + " slice(s), " + inserted + " ids: false-positive rate " + rate);
+        }
+        for (int i = 0; i < inserted; i++) assertTrue(filter.mightContain("<in-" + i + "@x>"));
+    }
+
+    @Test
+    void slicesPastTheRetentionWindowAreDroppedOnGrowth() throws InterruptedException {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, FPP, 1);
+        for (int i = 0; i < 1_000; i++) filter.put("<old-" + i + "@x>");
+        for (int i = 0; i < 2_000; i++) filter.put("<mid-" + i + "@x>");
+        assertEquals(2, filter.slices());
+
+        Thread.sleep(5);
+        for (int i = 0; i < 3_000; i++) filter.put("<new-" + i + "@x>");
+        // the first slice expired; the one that just filled up is kept alongside the new one
+        assertEquals(2, filter.slices());
+        assertTrue(filter.mightContain("<mid-1999@x>"));
+        assertTrue(filter.mightContain("<new-2999@x>"));
+    }
+}
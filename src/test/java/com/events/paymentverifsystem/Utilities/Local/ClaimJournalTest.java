@@ -0,0 +1,218 @@
+package com.events.paymentverifsystem.Utilities.Local;
+
+import com.events.paymentverifsystem.Utilities.Email.EmailProcessedStoreProperties;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ClaimJournal against an in-process store that can be switched off: claims taken while it is down survive a
+ * restart and reach it exactly once on replay, done segments are deleted, and a failed fsync fails the appends
+ * it was covering.
+ */
+class ClaimJournalTest {
+
+    private static final Duration BUSINESS_TTL = Duration.ofMinutes(20);
+
+    // answers null (outcome unknown) for every claim while down, like RedisPaymentStore without a connection
+    private static final class FlakyStore extends InMemoryPaymentStore {
+        volatile boolean down;
+
+        FlakyStore() {
+            super(new LocalStoreProperties(), new EmailProcessedStoreProperties());
+        }
+
+        @Override
+        public List<Boolean> savePaymentsAtomic(List<PaymentInfo> infos, Duration businessTtl, int processedTtlSeconds) {
+            if (down) return Arrays.asList(new Boolean[infos.size()]);
+            return super.savePaymentsAtomic(infos, businessTtl, processedTtlSeconds);
+        }
+
+        @Override
+        public boolean isShared() {
+            return true;
+        }
+    }
+
+    // fails every force while failForce is set, like a disk that went away
+    private static final class FailingForceJournal extends ClaimJournal {
+        volatile boolean failForce;
+
+        FailingForceJournal(ClaimJournalProperties props, FlakyStore store) {
+            super(props, store);
+        }
+
+        @Override
+        void force(MappedByteBuffer buf) {
+            if (failForce) throw new UncheckedIOException(new IOException("injected fsync failure"));
+            super.force(buf);
+        }
+    }
+
+    private static ClaimJournal journal(Path dir, FlakyStore store, int segmentBytes) {
+        ClaimJournalProperties props = new ClaimJournalProperties();
+        props.setDir(dir.toString());
+        props.setSegmentBytes(segmentBytes);
+        props.setReplayIntervalMillis(60_000); // replay() is driven by the test
+        ClaimJournal journal = new ClaimJournal(props, store);
+        journal.start();
+        return journal;
+    }
+
+    private static List<PaymentInfo> payments(String run, int n) {
+        List<PaymentInfo> infos = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            infos.add(new PaymentInfo("pay_" + run + "_" + i, 100_00 + i, Instant.now(),
+                    run + "+" + i + "@example.edu", null, "UPI", null, "journal", "<" + run + "-" + i + ">"));
+        }
+        return infos;
+    }
+
+    private static long segmentFiles(Path dir) throws Exception {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.count();
+        }
+    }
+
+    @Test
+    void claimsTakenWhileTheStoreIsDownSurviveARestart() throws Exception {
+        Path dir = Files.createTempDirectory("claim-journal");
+        try (FlakyStore store = new FlakyStore()) {
+            List<PaymentInfo> infos = payments("down", 500);
+            store.down = true;
+            try (ClaimJournal journal = journal(dir, store, 1 << 20)) {
+                for (int from = 0; from < infos.size(); from += 50) {
+                    List<PaymentInfo> batch = infos.subList(from, from + 50);
+                    long[] seqs = journal.append(batch, BUSINESS_TTL, 300);
+                    assertNotNull(seqs);
+                    List<Boolean> res = store.savePaymentsAtomic(batch, BUSINESS_TTL, 300);
+                    for (int i = 0; i < seqs.length; i++) {
+                        if (res.get(i) == null) journal.release(seqs[i]);
+                        else journal.complete(seqs[i]);
+                    }
+                }
+                assertTrue(journal.isDegraded());
+                assertEquals(0, journal.replay());
+                assertEquals(500, journal.getStats().get("pending"));
+            }
+
+            // restart: everything comes back, and goes to the store once it is up
+            try (ClaimJournal journal = journal(dir, store, 1 << 20)) {
+                assertEquals(500, journal.getStats().get("recovered"));
+                assertTrue(journal.isDegraded());
+                store.down = false;
+                assertEquals(500, journal.replay());
+                assertFalse(journal.isDegraded());
+                assertEquals(0, journal.getStats().get("pending"));
+                assertEquals(500, store.recentPayments(1_000).size());
+                assertNotNull(store.consumeByEmailAndAmount(infos.get(7).getPayerEmail(), infos.get(7).getAmountMinor()));
+                assertEquals(1, segmentFiles(dir));
+            }
+
+            // the DONE records were kept: nothing left to replay
+            try (ClaimJournal journal = journal(dir, store, 1 << 20)) {
+                assertEquals(0, journal.getStats().get("recovered"));
+                assertFalse(journal.isDegraded());
+            }
+        }
+    }
+
+    @Test
+    void concurrentBatchesShareFsyncsAndDoneSegmentsAreDeleted() throws Exception {
+        Path dir = Files.createTempDirectory("claim-journal");
+        try (FlakyStore store = new FlakyStore();
+             ClaimJournal journal = journal(dir, store, 4096)) {
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    String run = "t" + t;
+                    futures.add(pool.submit(() -> {
+                        List<PaymentInfo> infos = payments(run, 400);
+                        for (int from = 0; from < infos.size(); from += 20) {
+                            List<PaymentInfo> batch = infos.subList(from, from + 20);
+                            long[] seqs = journal.append(batch, BUSINESS_TTL, 300);
+                            List<Boolean> res = store.savePaymentsAtomic(batch, BUSINESS_TTL, 300);
+                            for (int i = 0; i < seqs.length; i++) {
+                                assertTrue(res.get(i));
+                                journal.complete(seqs[i]);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> f : futures) f.get();
+            } finally {
+                pool.shutdownNow();
+            }
+
+            assertEquals(3_200, store.recentPayments(10_000).size());
+            assertEquals(3_200L, journal.getStats().get("appended"));
+            assertEquals(0, journal.getStats().get("pending"));
+            // small segments rolled many times; only the active one is left
+            assertEquals(1, journal.getStats().get("segments"));
+            assertEquals(1, segmentFiles(dir));
+            long fsyncs = (Long) journal.getStats().get("fsyncs");
+            assertTrue(fsyncs > 0 && fsyncs <= 160, "fsyncs=" + fsyncs);
+        }
+    }
+
+    @Test
+    void aFailedFsyncFailsTheAppendsItCoveredAndTheNextOneRetries() throws Exception {
+        Path dir = Files.createTempDirectory("claim-journal");
+        ClaimJournalProperties props = new ClaimJournalProperties();
+        props.setDir(dir.toString());
+        props.setReplayIntervalMillis(60_000);
+        try (FlakyStore store = new FlakyStore();
+             FailingForceJournal journal = new FailingForceJournal(props, store)) {
+            journal.start();
+            journal.failForce = true;
+            assertNull(journal.append(payments("bad", 10), BUSINESS_TTL, 300));
+            assertEquals(0, journal.getStats().get("pending"));
+            assertTrue(journal.isDegraded());
+
+            journal.failForce = false;
+            long[] seqs = journal.append(payments("good", 10), BUSINESS_TTL, 300);
+            assertNotNull(seqs);
+            assertEquals(10, journal.getStats().get("pending"));
+            for (long seq : seqs) journal.complete(seq);
+            assertEquals(0, journal.getStats().get("pending"));
+        }
+    }
+
+    @Test
+    void nothingIsJournaledBeforeStart() throws Exception {
+        Path dir = Files.createTempDirectory("claim-journal");
+        ClaimJournalProperties props = new ClaimJournalProperties();
+        props.setDir(dir.toString());
+        try (FlakyStore store = new FlakyStore();
+             ClaimJournal journal = new ClaimJournal(props, store)) {
+            assertTrue(journal.isEnabled());
+            assertNull(journal.append(payments("early", 3), BUSINESS_TTL, 300));
+            assertEquals(0, journal.replay());
+
+            journal.start();
+            assertNotNull(journal.append(payments("early", 3), BUSINESS_TTL, 300));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.events.paymentverifsystem.Utilities.Local;
+
+import com.events.paymentverifsystem.Utilities.Email.ListenerStateStore;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * FileListenerStateStore: a saved checkpoint is read back by a new instance (a restart), folders don't share
+ * one, and an expired heartbeat reads as none.
+ */
+class FileListenerStateStoreTest {
+
+    private static FileListenerStateStore storeIn(Path dir) {
+        LocalStoreProperties props = new LocalStoreProperties();
+        props.setStateDir(dir.toString());
+        return new FileListenerStateStore(props);
+    }
+
+    @Test
+    void checkpointSurvivesARestart() throws Exception {
+        Path dir = Files.createTempDirectory("listener-state");
+        FileListenerStateStore store = storeIn(dir);
+        assertNull(store.loadCheckpoint("Payments@Example.com", "INBOX"));
+
+        store.saveCheckpoint("Payments@Example.com", "INBOX", 7, 100);
+        store.saveCheckpoint("Payments@Example.com", "INBOX", 7, 140);
+        store.saveCheckpoint("Payments@Example.com", "Archive/2024", 3, 9);
+
+        FileListenerStateStore restarted = storeIn(dir);
+        assertEquals(new ListenerStateStore.Checkpoint(7, 140), restarted.loadCheckpoint("payments@example.com", "INBOX"));
+        assertEquals(new ListenerStateStore.Checkpoint(3, 9), restarted.loadCheckpoint("payments@example.com", "Archive/2024"));
+        assertNull(restarted.loadCheckpoint("other@example.com", "INBOX"));
+    }
+
+    @Test
+    void heartbeatExpiresAfterItsTtl() throws Exception {
+        FileListenerStateStore store = storeIn(Files.createTempDirectory("listener-state"));
+        assertNull(store.lastHeartbeat());
+
+        Instant now = Instant.now();
+        store.writeHeartbeat(now, Duration.ofMinutes(2));
+        assertEquals(now, store.lastHeartbeat());
+
+        store.writeHeartbeat(now, Duration.ofMillis(-1));
+        assertNull(store.lastHeartbeat());
+    }
+}
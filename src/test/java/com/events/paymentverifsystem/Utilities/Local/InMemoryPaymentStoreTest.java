@@ -0,0 +1,191 @@
+package com.events.paymentverifsystem.Utilities.Local;
+
+import com.events.paymentverifsystem.Utilities.Email.EmailProcessedStoreProperties;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The in-process store against the same contract RedisPaymentStoreConcurrencyTest checks on Redis,
+ * on heap and off heap, plus TTL expiry through the timer wheel.
+ */
+class InMemoryPaymentStoreTest {
+
+    private static final int PAYMENTS = 2_000;
+    private static final int CALLERS_PER_PAYMENT = 8;
+
+    private static InMemoryPaymentStore store(boolean offHeap, long tickMillis) {
+        LocalStoreProperties props = new LocalStoreProperties();
+        props.setOffHeap(offHeap);
+        props.setTimerTickMillis(tickMillis);
+        props.setStripes(8);
+        props.setInitialCapacity(16); // force segment growth
+        return new InMemoryPaymentStore(props, new EmailProcessedStoreProperties());
+    }
+
+    private static List<PaymentInfo> payments(String run, int n) {
+        List<PaymentInfo> infos = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            infos.add(new PaymentInfo("pay_" + run + "_" + i, 100_00 + i, Instant.now(),
+                    run + "+" + i + "@example.edu", null, "UPI", i % 2 == 0 ? "Test" : null, "local", "<" + run + "-" + i + ">"));
+        }
+        return infos;
+    }
+
+    @Test
+    void eachPaymentIsConsumedExactlyOnce() throws Exception {
+        exactlyOnce(false);
+    }
+
+    @Test
+    void eachPaymentIsConsumedExactlyOnceOffHeap() throws Exception {
+        exactlyOnce(true);
+    }
+
+    private void exactlyOnce(boolean offHeap) throws Exception {
+        try (InMemoryPaymentStore store = store(offHeap, 1000)) {
+            List<PaymentInfo> infos = payments("once", PAYMENTS);
+            for (Boolean c : store.savePaymentsAtomic(infos, Duration.ofMinutes(5), 300)) assertTrue(c);
+            for (Boolean c : store.savePaymentsAtomic(infos, Duration.ofMinutes(5), 300)) assertFalse(c);
+            assertEquals(PAYMENTS, store.recentPayments(2 * PAYMENTS).size());
+
+            Map<String, AtomicInteger> consumed = new ConcurrentHashMap<>();
+            AtomicInteger misses = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(16);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int r = 0; r < CALLERS_PER_PAYMENT; r++) {
+                    for (PaymentInfo info : infos) {
+                        futures.add(pool.submit(() -> {
+                            start.await();
+                            PaymentInfo got = store.consumeByEmailAndAmount(info.getPayerEmail(), info.getAmountMinor());
+                            if (got == null) {
+                                misses.incrementAndGet();
+                            } else {
+                                assertEquals(info.getMessageId(), got.getMessageId());
+                                consumed.computeIfAbsent(got.getPaymentId(), k -> new AtomicInteger()).incrementAndGet();
+                            }
+                            return null;
+                        }));
+                    }
+                }
+                start.countDown();
+                for (Future<?> f : futures) f.get();
+            } finally {
+                pool.shutdownNow();
+            }
+
+            assertEquals(PAYMENTS, consumed.size());
+            for (Map.Entry<String, AtomicInteger> e : consumed.entrySet()) assertEquals(1, e.getValue().get(), e.getKey());
+            assertEquals(PAYMENTS * (CALLERS_PER_PAYMENT - 1), misses.get());
+            assertEquals(0, store.recentPayments(10).size());
+            assertEquals(10, store.recentConsumed(10).size());
+            // still processed after consume, until the processed TTL
+            for (Boolean p : store.areProcessed(infos.stream().map(PaymentInfo::getMessageId).toList())) assertTrue(p);
+        }
+    }
+
+    @Test
+    void sameMessageIsClaimedOnce() {
+        try (InMemoryPaymentStore store = store(false, 1000)) {
+            PaymentInfo info = payments("dup", 1).get(0);
+            assertTrue(store.savePaymentAtomic(info, Duration.ofMinutes(5), 300));
+            assertFalse(store.savePaymentAtomic(payments("dup", 1).get(0), Duration.ofMinutes(5), 300));
+            PaymentInfo resent = payments("dup", 1).get(0);
+            resent.setMessageId("<dup-resent>");
+            assertTrue(store.savePaymentAtomic(resent, Duration.ofMinutes(5), 300));
+            assertTrue(store.isProcessed("<dup-resent>"));
+
+            assertTrue(store.markProcessed("<marked>"));
+            assertFalse(store.markProcessed("<marked>"));
+            assertEquals(List.of("<a>", "<a>"), store.claimContent(List.of("fp", "fp"), List.of("<a>", "<b>"), 60));
+
+            Map<String, Object> rec = store.paymentsForMessages(List.of(info.getMessageId())).get(0);
+            assertNotNull(rec);
+            assertEquals(info.getPaymentId(), rec.get("paymentId"));
+            assertEquals("received", rec.get("status"));
+            assertEquals(List.of("<marked>", "<dup-resent>", info.getMessageId()), store.recentMessageIds(10));
+        }
+    }
+
+    // same as SAVE_LUA on the legacy layout: a new Message-ID claims, and its record replaces the stored one
+    @Test
+    void aResentPaymentReplacesTheStoredRecord() {
+        for (boolean offHeap : new boolean[]{false, true}) {
+            try (InMemoryPaymentStore store = store(offHeap, 1000)) {
+                PaymentInfo info = payments("resend", 1).get(0);
+                assertTrue(store.savePaymentAtomic(info, Duration.ofMinutes(5), 300));
+                PaymentInfo resent = payments("resend", 1).get(0);
+                resent.setMessageId("<resend-again>");
+                resent.setSubject("Fwd: receipt");
+                assertTrue(store.savePaymentAtomic(resent, Duration.ofMinutes(5), 300));
+
+                for (String mid : List.of(info.getMessageId(), "<resend-again>")) {
+                    Map<String, Object> rec = store.paymentsForMessages(List.of(mid)).get(0);
+                    assertEquals("<resend-again>", rec.get("messageId"), mid);
+                }
+                PaymentInfo got = store.consumeByEmailAndAmount(info.getPayerEmail(), info.getAmountMinor());
+                assertEquals("Fwd: receipt", got.getSubject());
+                assertNull(store.consumeByEmailAndAmount(info.getPayerEmail(), info.getAmountMinor()));
+            }
+        }
+    }
+
+    @Test
+    void batchConsumeReportsEachItem() throws Exception {
+        try (InMemoryPaymentStore store = store(false, 1000)) {
+            List<PaymentInfo> infos = payments("batch", 3);
+            store.savePaymentsAtomic(infos, Duration.ofMinutes(5), 300);
+            PaymentInfo a = infos.get(0);
+            PaymentInfo b = infos.get(2);
+            List<Optional<PaymentInfo>> res = store.consumeByEmailsAndAmountsAsync(
+                    List.of(a.getPayerEmail(), "nobody@example.edu", b.getPayerEmail(), a.getPayerEmail()),
+                    List.of(a.getAmountMinor(), 1L, b.getAmountMinor(), a.getAmountMinor())).toCompletableFuture().get();
+            assertEquals(4, res.size());
+            assertEquals(a.getPaymentId(), res.get(0).get().getPaymentId());
+            assertFalse(res.get(1).isPresent());
+            assertEquals(b.getPaymentId(), res.get(2).get().getPaymentId());
+            // the same payer + amount again in one batch: already consumed
+            assertFalse(res.get(3).isPresent());
+            assertEquals(1, store.recentPayments(10).size());
+        }
+    }
+
+    @Test
+    void entriesExpireWithTheirTtl() throws Exception {
+        try (InMemoryPaymentStore store = store(true, 50)) {
+            List<PaymentInfo> infos = payments("ttl", 100);
+            store.savePaymentsAtomic(infos, Duration.ofMillis(300), 1);
+            assertTrue(store.isProcessed(infos.get(0).getMessageId()));
+
+            Thread.sleep(1_300);
+            assertNull(store.consumeByEmailAndAmount(infos.get(0).getPayerEmail(), infos.get(0).getAmountMinor()));
+            assertFalse(store.isProcessed(infos.get(0).getMessageId()));
+            // the wheel has reclaimed everything, not just hidden it
+            Map<String, Object> stats = store.getStats();
+            assertEquals(0, stats.get("processed"));
+            assertEquals(0, stats.get("payments"));
+            assertEquals(0, stats.get("verificationKeys"));
+            assertTrue(store.savePaymentAtomic(infos.get(0), Duration.ofMinutes(1), 60));
+        }
+    }
+}
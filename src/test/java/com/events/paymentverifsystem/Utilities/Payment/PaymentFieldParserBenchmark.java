@@ -0,0 +1,136 @@
+package com.events.paymentverifsystem.Utilities.Payment;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * JMH comparison of PaymentFieldParser against the code it replaced (formatters built per call,
+ * per-message ISO Pattern, replaceAll-based amount normalisation). Run main() from the IDE, or
+ * {@code java -cp target/test-classes:<test classpath> org.openjdk.jmh.Main PaymentFieldParserBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PaymentFieldParserBenchmark {
+
+    static final String[] AMOUNTS = {"₹ 1,499.00", "Rs 750", "1499.5", "  2,00,000.75 ", "99", ".50"};
+    static final String[] DATE_TEXTS = {
+            "Paid On 14 Aug, 2025 07:21:05 PM UTC+05:30 Method UPI Email student.one@example.edu",
+            "Paid On 2 Sep, 2025 Method Card",
+            "Receipt generated at 2025-08-14T19:21:05+05:30 for order 1234",
+    };
+
+    @Setup
+    public void checkSameAmounts() {
+        for (String a : AMOUNTS) {
+            String legacy = legacyControllerNormalize(a);
+            String current = PaymentFieldParser.normalizeAmount(a);
+            if (!legacy.equals(current)) throw new AssertionError(a + ": " + legacy + " vs " + current);
+        }
+    }
+
+    // each op covers the whole sample set, so scores are per set, not per field
+
+    @Benchmark
+    public void amountLegacy(Blackhole bh) {
+        for (String a : AMOUNTS) bh.consume(legacyControllerNormalize(a));
+    }
+
+    @Benchmark
+    public void amountNew(Blackhole bh) {
+        for (String a : AMOUNTS) bh.consume(PaymentFieldParser.parseAmountMinor(a));
+    }
+
+    @Benchmark
+    public void dateLegacy(Blackhole bh) {
+        for (String t : DATE_TEXTS) bh.consume(legacyPaidOn(t));
+    }
+
+    @Benchmark
+    public void dateNew(Blackhole bh) {
+        for (String t : DATE_TEXTS) bh.consume(newPaidOn(t));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PaymentFieldParserBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static long newPaidOn(String text) {
+        int at = text.indexOf("Paid On");
+        if (at >= 0) {
+            long t = PaymentFieldParser.parseGatewayDateTime(text, at + "Paid On".length());
+            if (t != PaymentFieldParser.NO_DATE) return t;
+        }
+        return PaymentFieldParser.findIsoInstant(text);
+    }
+
+    // ---- previous implementations, copied as they were ----
+
+    private static String legacyControllerNormalize(String raw) {
+        if (raw == null) return "";
+        String cleaned = raw.replaceAll("[^0-9.]", "").trim();
+        if (cleaned.isEmpty()) return "";
+        if (!cleaned.contains(".")) return cleaned + ".00";
+        String[] parts = cleaned.split("\\.", 2);
+        String intPart = parts[0].isEmpty() ? "0" : parts[0];
+        String frac = parts.length > 1 ? parts[1] : "";
+        if (frac.length() == 0) frac = "00";
+        if (frac.length() == 1) frac = frac + "0";
+        if (frac.length() > 2) frac = frac.substring(0, 2);
+        return intPart + "." + frac;
+    }
+
+    private static Instant legacyPaidOn(String textSource) {
+        int startIndex = textSource.indexOf("Paid On");
+        if (startIndex != -1) {
+            String afterMarker = textSource.substring(startIndex + "Paid On".length()).trim();
+            DateTimeFormatter[] formatters = {
+                    DateTimeFormatter.ofPattern("d MMM, yyyy hh:mm:ss a 'UTC'XXX", Locale.ENGLISH),
+                    DateTimeFormatter.ofPattern("d MMM, yyyy hh:mm a 'UTC'XXX", Locale.ENGLISH),
+                    DateTimeFormatter.ofPattern("d MMM, yyyy", Locale.ENGLISH)
+            };
+            for (DateTimeFormatter fmt : formatters) {
+                try {
+                    TemporalAccessor ta = fmt.parse(afterMarker);
+                    if (ta instanceof LocalDateTime) return ((LocalDateTime) ta).atZone(ZoneId.of("UTC")).toInstant();
+                    if (ta instanceof LocalDate) return ((LocalDate) ta).atStartOfDay(ZoneId.of("UTC")).toInstant();
+                } catch (DateTimeParseException ignored) {}
+            }
+        }
+        Matcher iso = Pattern.compile("(\\d{4}-\\d{2}-\\d{2}[T\\s]\\d{2}:\\d{2}(?::\\d{2})?(?:Z|[+-]\\d{2}:?\\d{2})?)")
+                .matcher(textSource);
+        if (iso.find()) {
+            try {
+                return Instant.parse(iso.group(1).replace(' ', 'T'));
+            } catch (Exception ignored) {}
+        }
+        return Instant.EPOCH;
+    }
+}
@@ -0,0 +1,78 @@
+package com.events.paymentverifsystem.Utilities.Payment;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PaymentFieldParserTest {
+
+    private static final long NO_AMOUNT = PaymentFieldParser.NO_AMOUNT;
+    private static final long NO_DATE = PaymentFieldParser.NO_DATE;
+
+    @Test
+    void amountsInMinorUnits() {
+        assertEquals(149900, PaymentFieldParser.parseAmountMinor("₹ 1,499.00"));
+        assertEquals(149950, PaymentFieldParser.parseAmountMinor("₹ 1,499.5"));
+        assertEquals(149956, PaymentFieldParser.parseAmountMinor("1499.567"));
+        assertEquals(75000, PaymentFieldParser.parseAmountMinor("Rs 750"));
+        assertEquals(20000075, PaymentFieldParser.parseAmountMinor("  2,00,000.75 "));
+        assertEquals(NO_AMOUNT, PaymentFieldParser.parseAmountMinor("Rs."));
+        assertEquals(NO_AMOUNT, PaymentFieldParser.parseAmountMinor(null));
+    }
+
+    @Test
+    void aLeadingPointStartsTheFraction() {
+        assertEquals(50, PaymentFieldParser.parseAmountMinor(".50"));
+        assertEquals(50, PaymentFieldParser.parseAmountMinor("₹ .5"));
+        assertEquals(50, PaymentFieldParser.parseAmountMinor("amount: .50", 8, 11));
+        assertEquals("0.50", PaymentFieldParser.normalizeAmount(".50"));
+        // the point of an abbreviation is not a decimal point
+        assertEquals(149900, PaymentFieldParser.parseAmountMinor("Rs.1499"));
+    }
+
+    @Test
+    void methodsGetTheirCanonicalName() {
+        assertEquals("UPI", PaymentFieldParser.normalizeMethod("UPI"));
+        assertEquals("UPI", PaymentFieldParser.normalizeMethod("MethodUPI"));
+        assertEquals("UPI", PaymentFieldParser.normalizeMethod(" Method: upi "));
+        assertEquals("CARD", PaymentFieldParser.normalizeMethod("Card"));
+        assertEquals("NETBANKING", PaymentFieldParser.normalizeMethod("Net Banking"));
+        assertEquals("Pay Later", PaymentFieldParser.normalizeMethod("Pay Later"));
+        assertNull(PaymentFieldParser.normalizeMethod("Method"));
+        assertNull(PaymentFieldParser.normalizeMethod(null));
+    }
+
+    @Test
+    void gatewayDates() {
+        long ist = Instant.parse("2025-08-14T13:51:05Z").toEpochMilli();
+        assertEquals(ist, PaymentFieldParser.parseGatewayDate("14 Aug, 2025 07:21:05 PM UTC+05:30", 0));
+        assertEquals(ist, PaymentFieldParser.parseGatewayDate("Paid On 14 Aug, 2025 07:21:05 PM UTC+05:30 Method UPI", 7));
+        assertEquals(Instant.parse("2025-08-14T19:21:00Z").toEpochMilli(),
+                PaymentFieldParser.parseGatewayDate("14th August 2025, 7:21 pm", 0));
+        assertEquals(Instant.parse("2025-09-02T00:00:00Z").toEpochMilli(),
+                PaymentFieldParser.parseGatewayDate("2 Sep, 2025", 0));
+        assertEquals(NO_DATE, PaymentFieldParser.parseGatewayDate("31 Feb, 2025", 0));
+        assertEquals(NO_DATE, PaymentFieldParser.parseGatewayDate("Method UPI", 0));
+    }
+
+    @Test
+    void aPaymentTimestampNeedsATimeOfDay() {
+        long ist = Instant.parse("2025-08-14T13:51:05Z").toEpochMilli();
+        assertEquals(ist, PaymentFieldParser.parseGatewayDateTime("14 Aug, 2025 07:21:05 PM UTC+05:30", 0));
+        assertEquals(NO_DATE, PaymentFieldParser.parseGatewayDateTime("2 Sep, 2025 Method Card", 0));
+        assertEquals(NO_DATE, PaymentFieldParser.parseGatewayDateTime("2 Sep, 2025, 25:00", 0));
+        assertEquals(NO_DATE, PaymentFieldParser.parseGatewayDateTime("Sep 2, 2025", 0));
+    }
+
+    @Test
+    void isoInstantsAnywhereInTheText() {
+        assertEquals(Instant.parse("2025-08-14T13:51:05Z").toEpochMilli(),
+                PaymentFieldParser.findIsoInstant("generated at 2025-08-14T19:21:05+05:30 for order 1234"));
+        assertEquals(Instant.parse("2025-08-14T19:21:00Z").toEpochMilli(),
+                PaymentFieldParser.findIsoInstant("at 2025-08-14 19:21Z"));
+        assertEquals(NO_DATE, PaymentFieldParser.findIsoInstant("no date here"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.events.paymentverifsystem.Utilities.Redis;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * EVAL of the full consume-style script vs EVALSHA through LuaScript, against a real Redis
+ * (args: host port rounds, default localhost 6379 20000). Prints per-call latency and the request
+ * size in RESP bytes for each; the bench:lua:* keys it touches never exist, so nothing is written.
+ */
+public class LuaScriptBenchmark {
+
+    // same shape and size as RedisPaymentStore.CONSUME_LUA
+    static final String SOURCE =
+            "local pid = redis.call('GET', KEYS[1]) " +
+                    "if not pid then return nil end " +
+                    "local bkey = KEYS[2] " +
+                    "local vals = redis.call('HMGET', bkey, " +
+                    "'paymentId', 'amount', 'paymentTs', 'messageId', 'payerEmail', 'status', " +
+                    "'method', 'phone', 'merchantName', 'subject' " +
+                    ") " +
+                    "redis.call('DEL', KEYS[1]) " +
+                    "redis.call('DEL', bkey) " +
+                    "return vals";
+
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 6379;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        factory.afterPropertiesSet();
+        try (RedisConnection conn = factory.getConnection()) {
+            LuaScript script = new LuaScript("bench-consume", 1, SOURCE);
+            byte[] body = SOURCE.getBytes(StandardCharsets.UTF_8);
+            byte[] k1 = "bench:lua:v".getBytes(StandardCharsets.UTF_8);
+            byte[] k2 = "bench:lua:b".getBytes(StandardCharsets.UTF_8);
+
+            // first call goes through NOSCRIPT -> EVAL unless an earlier run left it cached
+            script.run(conn, ReturnType.MULTI, 2, k1, k2);
+
+            for (int pass = 0; pass < 2; pass++) {
+                int n = pass == 0 ? rounds / 4 : rounds;
+                long eval = time("EVAL", n, () -> conn.scriptingCommands().eval(body, ReturnType.MULTI, 2, k1, k2));
+                long sha = time("EVALSHA", n, () -> script.run(conn, ReturnType.MULTI, 2, k1, k2));
+                if (pass == 1) {
+                    long evalBytes = respSize("EVAL".getBytes(), body, "2".getBytes(), k1, k2);
+                    long shaBytes = respSize("EVALSHA".getBytes(), script.sha().getBytes(), "2".getBytes(), k1, k2);
+                    System.out.printf("latency %.2fx, request %d -> %d bytes/call (%.1f%% less)%n",
+                            (double) eval / sha, evalBytes, shaBytes, 100.0 * (evalBytes - shaBytes) / evalBytes);
+                }
+            }
+            System.out.println(script.getStats());
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    private static long time(String label, int rounds, Runnable op) {
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) op.run();
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-8s %,d calls in %,d ms (%.1f us/call)%n",
+                label, rounds, elapsed / 1_000_000, elapsed / 1_000.0 / rounds);
+        return elapsed;
+    }
+
+    // *N\r\n, then $len\r\n<bytes>\r\n per argument
+    private static long respSize(byte[]... parts) {
+        long size = 3 + String.valueOf(parts.length).length();
+        for (byte[] p : parts) size += 1 + String.valueOf(p.length).length() + 2 + p.length + 2;
+        return size;
+    }
+}
@@ -0,0 +1,93 @@
+package com.events.paymentverifsystem.Utilities.Redis;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memory per payment, old hash vs PaymentRecordCodec. Always prints the payload sizes and checks the
+ * round trip; if a Redis is reachable (args: host port count, default localhost 6379 1000) it also writes
+ * count payments each way under bench:codec:* and prints the average MEMORY USAGE, then deletes them.
+ */
+public class PaymentRecordCodecBenchmark {
+
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 6379;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+
+        PaymentInfo sample = sample(42);
+        byte[] record = PaymentRecordCodec.encode(sample, "received");
+        PaymentRecordCodec.Record back = PaymentRecordCodec.decode(record);
+        if (!back.toMap().equals(hashFields(sample))) throw new AssertionError(back.toMap() + " vs " + hashFields(sample));
+
+        int hashBytes = 0;
+        for (Map.Entry<String, String> e : hashFields(sample).entrySet()) {
+            hashBytes += e.getKey().length() + e.getValue().getBytes(StandardCharsets.UTF_8).length;
+        }
+        System.out.printf("payload: hash fields+values %d bytes, record %d bytes%n", hashBytes, record.length);
+
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        factory.afterPropertiesSet();
+        try (RedisConnection conn = factory.getConnection()) {
+            long hashMem = 0, recordMem = 0;
+            for (int i = 0; i < count; i++) {
+                PaymentInfo info = sample(i);
+                byte[] hk = ("bench:codec:hash:" + i).getBytes(StandardCharsets.UTF_8);
+                byte[] rk = ("bench:codec:rec:" + i).getBytes(StandardCharsets.UTF_8);
+                Map<byte[], byte[]> fields = new LinkedHashMap<>();
+                hashFields(info).forEach((k, v) -> fields.put(k.getBytes(StandardCharsets.UTF_8), v.getBytes(StandardCharsets.UTF_8)));
+                conn.hashCommands().hMSet(hk, fields);
+                conn.stringCommands().set(rk, PaymentRecordCodec.encode(info, "received"));
+                hashMem += memoryUsage(conn, hk);
+                recordMem += memoryUsage(conn, rk);
+                conn.keyCommands().del(hk, rk);
+            }
+            System.out.printf("MEMORY USAGE avg over %d: hash %d bytes, record %d bytes (%.1f%% less)%n",
+                    count, hashMem / count, recordMem / count, 100.0 * (hashMem - recordMem) / hashMem);
+        } catch (Exception e) {
+            System.out.println("No Redis at " + host + ":" + port + ", skipped MEMORY USAGE (" + e.getMessage() + ")");
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    // through EVAL: execute() reads every reply as bytes and can't take MEMORY USAGE's integer
+    private static long memoryUsage(RedisConnection conn, byte[] key) {
+        Long r = conn.scriptingCommands().eval(MEMORY_USAGE, ReturnType.INTEGER, 1, key);
+        return r == null ? 0 : r;
+    }
+
+    private static final byte[] MEMORY_USAGE =
+            "return redis.call('MEMORY', 'USAGE', KEYS[1])".getBytes(StandardCharsets.UTF_8);
+
+    private static PaymentInfo sample(int i) {
+        return new PaymentInfo("pay_Q8xYz" + (100000 + i) + "AbCd", 149_950 + i,
+                Instant.parse("2025-08-14T13:51:05Z").plusSeconds(i), "student" + i + "@example.edu",
+                "+919876543210", "UPI", "SSN Institutions", "Payment successful for SSN Institutions",
+                "<CAF=" + i + "x9Lk2@mail.gmail.com>");
+    }
+
+    // what SAVE_LUA used to HMSET
+    private static Map<String, String> hashFields(PaymentInfo info) {
+        Map<String, String> m = new LinkedHashMap<>();
+        m.put("paymentId", info.getPaymentId());
+        m.put("amount", String.valueOf(info.getAmountMinor()));
+        m.put("paymentTs", info.getPaidOn().toString());
+        m.put("messageId", info.getMessageId());
+        m.put("payerEmail", info.getPayerEmail());
+        m.put("status", "received");
+        m.put("method", info.getMethod());
+        m.put("phone", info.getPhone());
+        m.put("merchantName", info.getMerchantName());
+        m.put("subject", info.getSubject());
+        return m;
+    }
+}
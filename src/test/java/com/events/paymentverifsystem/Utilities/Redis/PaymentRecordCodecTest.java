@@ -0,0 +1,45 @@
+package com.events.paymentverifsystem.Utilities.Redis;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentFieldParser;
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PaymentRecordCodecTest {
+
+    private static PaymentInfo payment(String method) {
+        return new PaymentInfo("pay_Q8xYz100042AbCd", 149_950, Instant.parse("2025-08-14T13:51:05Z"),
+                "student@example.edu", "+919876543210", method, "SSN Institutions", "Payment successful", "<m@x>");
+    }
+
+    @Test
+    void roundTrip() {
+        PaymentInfo info = payment("Pay Later");
+        PaymentRecordCodec.Record back = PaymentRecordCodec.decode(PaymentRecordCodec.encode(info, "received"));
+        assertEquals("received", back.status());
+        assertEquals(info.getPaymentId(), back.info().getPaymentId());
+        assertEquals(info.getAmountMinor(), back.info().getAmountMinor());
+        assertEquals(info.getPaidOn(), back.info().getPaidOn());
+        assertEquals(info.getMessageId(), back.info().getMessageId());
+        assertEquals(info.getPayerEmail(), back.info().getPayerEmail());
+        assertEquals(info.getPhone(), back.info().getPhone());
+        assertEquals(info.getMerchantName(), back.info().getMerchantName());
+        assertEquals(info.getSubject(), back.info().getSubject());
+        assertEquals("Pay Later", back.info().getMethod());
+    }
+
+    @Test
+    void parsedMethodsUseTheInternTable() {
+        // what the row-level selector returns for a Razorpay receipt
+        byte[] record = PaymentRecordCodec.encode(payment(PaymentFieldParser.normalizeMethod("MethodUPI")), "received");
+        assertEquals(1, record[2]); // version, status, method code: METHODS[1] = "UPI"
+        assertEquals("UPI", PaymentRecordCodec.decode(record).info().getMethod());
+
+        byte[] literal = PaymentRecordCodec.encode(payment("MethodUPI"), "received");
+        assertEquals((byte) 0xFF, literal[2]);
+        assertEquals(record.length + "MethodUPI".length() + 1, literal.length);
+    }
+}
@@ -0,0 +1,100 @@
+package com.events.paymentverifsystem.Utilities.Redis;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * What /verify/batch saves a check-in desk: consuming a list of payments one call after the other (what the
+ * desk does against /verify today, minus HTTP) against consumeByEmailsAndAmountsAsync with the list in
+ * batches. Args: host port paymentsPerRun, default localhost 6379 5000.
+ * Writes and consumes its own payments (bench-*@example.edu).
+ */
+public class RedisBatchConsumeBenchmark {
+
+    static final int[] BATCH_SIZES = {10, 50, 200, 500};
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 6379;
+        int n = args.length > 2 ? Integer.parseInt(args[2]) : 5_000;
+
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        factory.afterPropertiesSet();
+        RedisTemplate<String, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(factory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(new StringRedisSerializer());
+        template.afterPropertiesSet();
+        RedisPaymentStore store = new RedisPaymentStore(template);
+
+        try {
+            // warmup
+            sequential(store, seed(store, "warm-s", n / 5));
+            batched(store, seed(store, "warm-b", n / 5), 50);
+
+            System.out.printf("%-12s %14s %10s%n", "mode", "payments/s", "verified");
+            long run = System.currentTimeMillis();
+            report("sequential", sequential(store, seed(store, "seq-" + run, n)), n);
+            for (int b : BATCH_SIZES) {
+                report("batch " + b, batched(store, seed(store, "b" + b + "-" + run, n), b), n);
+            }
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    private record Result(double perSecond, int verified) {}
+
+    private static void report(String mode, Result r, int n) {
+        System.out.printf("%-12s %,14.0f %10s%n", mode, r.perSecond(), r.verified() + "/" + n);
+    }
+
+    private static List<PaymentInfo> seed(RedisPaymentStore store, String run, int n) {
+        List<PaymentInfo> infos = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            infos.add(new PaymentInfo("pay_" + run + "_" + i, 100_00 + i, Instant.now(),
+                    "bench-" + run + "-" + i + "@example.edu", null, "UPI", null, "bench", "<" + run + "-" + i + ">"));
+        }
+        for (int from = 0; from < n; from += 500) {
+            store.savePaymentsAtomic(infos.subList(from, Math.min(n, from + 500)), Duration.ofMinutes(10), 600);
+        }
+        return infos;
+    }
+
+    // one verify at a time, each waiting for its answer
+    private static Result sequential(RedisPaymentStore store, List<PaymentInfo> infos) {
+        int verified = 0;
+        long start = System.nanoTime();
+        for (PaymentInfo info : infos) {
+            if (store.consumeByEmailAndAmountAsync(info.getPayerEmail(), info.getAmountMinor()).toCompletableFuture().join() != null) verified++;
+        }
+        return new Result(infos.size() / ((System.nanoTime() - start) / 1e9), verified);
+    }
+
+    private static Result batched(RedisPaymentStore store, List<PaymentInfo> infos, int batchSize) {
+        int verified = 0;
+        long start = System.nanoTime();
+        for (int from = 0; from < infos.size(); from += batchSize) {
+            List<PaymentInfo> batch = infos.subList(from, Math.min(infos.size(), from + batchSize));
+            List<String> emails = new ArrayList<>(batch.size());
+            List<Long> amounts = new ArrayList<>(batch.size());
+            for (PaymentInfo info : batch) {
+                emails.add(info.getPayerEmail());
+                amounts.add(info.getAmountMinor());
+            }
+            for (Optional<PaymentInfo> r : store.consumeByEmailsAndAmountsAsync(emails, amounts).toCompletableFuture().join()) {
+                if (r != null && r.isPresent()) verified++;
+            }
+        }
+        return new Result(infos.size() / ((System.nanoTime() - start) / 1e9), verified);
+    }
+}
@@ -0,0 +1,106 @@
+package com.events.paymentverifsystem.Utilities.Redis;
+
+import com.events.paymentverifsystem.Utilities.Redis.RedisCircuitBreaker.Op;
+import com.events.paymentverifsystem.Utilities.Redis.RedisCircuitBreaker.Permit;
+import com.events.paymentverifsystem.Utilities.Redis.RedisCircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * State machine of the breaker: failures and over-budget calls open it, it refuses while open, the
+ * half-open probes decide whether it closes or opens again, and calls are only counted in the state they began in.
+ */
+class RedisCircuitBreakerTest {
+
+    private static RedisCircuitBreaker breaker(long openMillis) {
+        RedisCircuitBreakerProperties props = new RedisCircuitBreakerProperties();
+        props.setWindowSize(10);
+        props.setMinimumCalls(4);
+        props.setFailureRatePercent(50);
+        props.setOpenMillis(openMillis);
+        props.setHalfOpenProbes(2);
+        props.setCheckBudgetMillis(100);
+        return new RedisCircuitBreaker(props);
+    }
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    void opensOnFailureRateAndRefusesWhileOpen() {
+        RedisCircuitBreaker b = breaker(60_000);
+        for (int i = 0; i < 6; i++) {
+            Permit p = b.tryAcquire();
+            assertNotNull(p);
+            b.onSuccess(p, Op.CHECK, FAST);
+        }
+        // 4 bad of 10: still closed; the 5th (over budget counts) opens it
+        for (int i = 0; i < 3; i++) b.onFailure(b.tryAcquire(), Op.CLAIM);
+        b.onSuccess(b.tryAcquire(), Op.CHECK, SLOW);
+        assertEquals(State.CLOSED, b.getState());
+        b.onFailure(b.tryAcquire(), Op.CONSUME);
+        assertEquals(State.OPEN, b.getState());
+
+        for (int i = 0; i < 100; i++) assertNull(b.tryAcquire());
+        assertEquals(100L, b.getStats().get("rejected"));
+    }
+
+    @Test
+    void halfOpenProbesCloseOrReopen() throws Exception {
+        RedisCircuitBreaker b = breaker(50);
+        for (int i = 0; i < 4; i++) b.onFailure(b.tryAcquire(), Op.CHECK);
+        assertEquals(State.OPEN, b.getState());
+
+        // failed probe: open again
+        Thread.sleep(80);
+        Permit probe = b.tryAcquire();
+        assertNotNull(probe);
+        assertEquals(State.HALF_OPEN, b.getState());
+        b.onFailure(probe, Op.CHECK);
+        assertEquals(State.OPEN, b.getState());
+
+        // only the configured number of probes go through, and both must succeed
+        Thread.sleep(80);
+        Permit first = b.tryAcquire();
+        Permit second = b.tryAcquire();
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(b.tryAcquire());
+        b.onSuccess(first, Op.CHECK, FAST);
+        assertEquals(State.HALF_OPEN, b.getState());
+        b.onSuccess(second, Op.CHECK, FAST);
+        assertEquals(State.CLOSED, b.getState());
+
+        // fresh window after closing: one failure is not enough
+        b.onFailure(b.tryAcquire(), Op.CHECK);
+        assertEquals(State.CLOSED, b.getState());
+    }
+
+    @Test
+    void callsThatOutliveTheirStateAreNotCounted() throws Exception {
+        RedisCircuitBreaker b = breaker(50);
+        Permit early = b.tryAcquire();
+        assertEquals(State.CLOSED, early.getState());
+        for (int i = 0; i < 4; i++) b.onFailure(b.tryAcquire(), Op.CHECK);
+        Thread.sleep(80);
+        Permit probe = b.tryAcquire();
+        assertEquals(State.HALF_OPEN, probe.getState());
+
+        // started while closed, finished while half-open: not a probe
+        b.onFailure(early, Op.CHECK);
+        assertEquals(State.HALF_OPEN, b.getState());
+        b.onSuccess(probe, Op.CHECK, FAST);
+        b.onSuccess(b.tryAcquire(), Op.CHECK, FAST);
+        assertEquals(State.CLOSED, b.getState());
+
+        // a probe from the last half-open lands after closing: not in the fresh window either
+        for (int i = 0; i < 4; i++) b.onFailure(probe, Op.CHECK);
+        assertEquals(State.CLOSED, b.getState());
+        assertEquals(0, b.getStats().get("windowCalls"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.events.paymentverifsystem.Utilities.Redis;
+
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of isProcessed (blocking, N platform threads) against isProcessedAsync (one caller thread,
+ * N requests in flight) on a real Redis. Args: host port opsPerRun, default localhost 6379 50000.
+ * Reads only; the ids don't exist.
+ */
+public class RedisPaymentStoreAsyncBenchmark {
+
+    static final int[] CONCURRENCY = {1, 4, 16, 64, 256};
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 6379;
+        int ops = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        factory.afterPropertiesSet();
+        RedisTemplate<String, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(factory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(new StringRedisSerializer());
+        template.afterPropertiesSet();
+        RedisPaymentStore store = new RedisPaymentStore(template);
+
+        try {
+            // warmup
+            blocking(store, 4, ops / 5);
+            async(store, 64, ops / 5);
+
+            System.out.printf("%-12s %12s %12s%n", "concurrency", "blocking/s", "async/s");
+            for (int c : CONCURRENCY) {
+                double b = blocking(store, c, ops);
+                double a = async(store, c, ops);
+                System.out.printf("%-12d %,12.0f %,12.0f%n", c, b, a);
+            }
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    // c threads, each blocking on its own call
+    private static double blocking(RedisPaymentStore store, int threads, int ops) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicInteger next = new AtomicInteger();
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> fs = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                fs.add(pool.submit(() -> {
+                    for (int i; (i = next.getAndIncrement()) < ops; ) store.isProcessed("<bench-" + i + ">");
+                }));
+            }
+            for (Future<?> f : fs) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+        return ops / ((System.nanoTime() - start) / 1e9);
+    }
+
+    // one thread, at most `window` calls outstanding
+    private static double async(RedisPaymentStore store, int window, int ops) throws Exception {
+        Semaphore inFlight = new Semaphore(window);
+        CompletableFuture<?>[] all = new CompletableFuture<?>[ops];
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            inFlight.acquire();
+            all[i] = store.isProcessedAsync("<bench-" + i + ">").toCompletableFuture()
+                    .whenComplete((r, e) -> inFlight.release());
+        }
+        CompletableFuture.allOf(all).join();
+        return ops / ((System.nanoTime() - start) / 1e9);
+    }
+}
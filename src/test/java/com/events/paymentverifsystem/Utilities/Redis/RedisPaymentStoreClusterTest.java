@@ -0,0 +1,172 @@
+package com.events.paymentverifsystem.Utilities.Redis;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tagged key layout on a real 3-master cluster: starts redis-server on ports 7101-7103 in a temp dir
+ * (REDIS_SERVER / REDIS_CLI override the binaries), joins them with redis-cli --cluster create and runs the
+ * claim/consume paths through a cluster-aware connection. Skipped when redis-server isn't installed.
+ */
+class RedisPaymentStoreClusterTest {
+
+    private static final int[] PORTS = {7101, 7102, 7103};
+    private static final int PAYMENTS = 100;
+    private static final int CALLERS_PER_PAYMENT = 4;
+
+    private static final List<Process> nodes = new ArrayList<>();
+    private static Path dir;
+    private static LettuceConnectionFactory factory;
+    private static RedisTemplate<String, Object> template;
+
+    @BeforeAll
+    static void startCluster() throws Exception {
+        String server = System.getenv().getOrDefault("REDIS_SERVER", "redis-server");
+        String cli = System.getenv().getOrDefault("REDIS_CLI", "redis-cli");
+        assumeTrue(runs(server, "--version") && runs(cli, "--version"), "redis-server / redis-cli not found");
+
+        dir = Files.createTempDirectory("redis-cluster-test");
+        List<String> create = new ArrayList<>(List.of(cli, "--cluster", "create"));
+        for (int port : PORTS) {
+            Path nodeDir = Files.createDirectories(dir.resolve(String.valueOf(port)));
+            nodes.add(new ProcessBuilder(server, "--port", String.valueOf(port), "--cluster-enabled", "yes",
+                    "--cluster-config-file", "nodes.conf", "--appendonly", "no", "--save", "")
+                    .directory(nodeDir.toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(nodeDir.resolve("out.log").toFile())
+                    .start());
+            create.add("127.0.0.1:" + port);
+        }
+        for (int port : PORTS) waitFor(cli, port, "PONG", "ping");
+        create.addAll(List.of("--cluster-replicas", "0", "--cluster-yes"));
+        Process p = new ProcessBuilder(create).redirectErrorStream(true).redirectOutput(dir.resolve("create.log").toFile()).start();
+        assertTrue(p.waitFor(60, TimeUnit.SECONDS) && p.exitValue() == 0, "cluster create failed, see " + dir.resolve("create.log"));
+        for (int port : PORTS) waitFor(cli, port, "cluster_state:ok", "cluster", "info");
+
+        List<String> seeds = new ArrayList<>();
+        for (int port : PORTS) seeds.add("127.0.0.1:" + port);
+        factory = new LettuceConnectionFactory(new RedisClusterConfiguration(seeds));
+        factory.afterPropertiesSet();
+        template = new RedisTemplate<>();
+        template.setConnectionFactory(factory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setHashKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(new StringRedisSerializer());
+        template.setHashValueSerializer(new StringRedisSerializer());
+        template.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopCluster() throws Exception {
+        if (factory != null) factory.destroy();
+        for (Process p : nodes) p.destroy();
+        for (Process p : nodes) p.waitFor(10, TimeUnit.SECONDS);
+        if (dir != null) {
+            try (var paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Test
+    void claimsAndConsumesAcrossSlots() throws Exception {
+        RedisPaymentStore store = new RedisPaymentStore(template, RedisPaymentStore.KeyLayout.LEGACY);
+        assertEquals(RedisPaymentStore.KeyLayout.TAGGED, store.getKeyLayout());
+        store.loadScripts();
+
+        String run = Long.toString(System.nanoTime(), 36);
+        List<PaymentInfo> infos = new ArrayList<>(PAYMENTS);
+        for (int i = 0; i < PAYMENTS; i++) {
+            infos.add(new PaymentInfo("pay_cluster" + run + "_" + i, 100_00 + i, Instant.now(),
+                    "cluster" + run + "+" + i + "@example.edu", null, "UPI", "Test", "cluster", "<cluster-" + run + "-" + i + ">"));
+        }
+        // half through the batch pipeline, half one by one; a second batch must claim nothing
+        List<Boolean> claimed = new ArrayList<>(store.savePaymentsAtomic(infos.subList(0, PAYMENTS / 2), Duration.ofMinutes(5), 300));
+        for (PaymentInfo info : infos.subList(PAYMENTS / 2, PAYMENTS)) claimed.add(store.savePaymentAtomic(info, Duration.ofMinutes(5), 300));
+        for (Boolean c : claimed) assertEquals(Boolean.TRUE, c);
+        for (Boolean c : store.savePaymentsAtomic(infos, Duration.ofMinutes(5), 300)) assertEquals(Boolean.FALSE, c);
+
+        List<String> mids = infos.stream().map(PaymentInfo::getMessageId).toList();
+        for (Boolean p : store.areProcessed(mids)) assertEquals(Boolean.TRUE, p);
+        assertEquals(PAYMENTS, store.recentPayments(PAYMENTS).size());
+        for (Map<String, Object> m : store.paymentsForMessages(mids)) assertTrue(m != null && m.get("paymentId") != null);
+
+        Map<String, AtomicInteger> consumed = new ConcurrentHashMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int r = 0; r < CALLERS_PER_PAYMENT; r++) {
+                for (PaymentInfo info : infos) {
+                    boolean async = r % 2 == 1;
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        PaymentInfo got = async
+                                ? store.consumeByEmailAndAmountAsync(info.getPayerEmail(), info.getAmountMinor()).toCompletableFuture().get()
+                                : store.consumeByEmailAndAmount(info.getPayerEmail(), info.getAmountMinor());
+                        if (got != null) consumed.computeIfAbsent(got.getPaymentId(), k -> new AtomicInteger()).incrementAndGet();
+                        return null;
+                    }));
+                }
+            }
+            start.countDown();
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(PAYMENTS, consumed.size());
+        for (Map.Entry<String, AtomicInteger> e : consumed.entrySet()) assertEquals(1, e.getValue().get(), e.getKey());
+        assertEquals(PAYMENTS, store.recentConsumed(2 * PAYMENTS).size());
+    }
+
+    private static boolean runs(String... cmd) {
+        try {
+            Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+            p.getInputStream().readAllBytes();
+            return p.waitFor(10, TimeUnit.SECONDS) && p.exitValue() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static void waitFor(String cli, int port, String expected, String... command) throws Exception {
+        List<String> cmd = new ArrayList<>(List.of(cli, "-p", String.valueOf(port)));
+        cmd.addAll(List.of(command));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (System.nanoTime() < deadline) {
+            Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+            String out = new String(p.getInputStream().readAllBytes());
+            if (p.waitFor(5, TimeUnit.SECONDS) && out.contains(expected)) return;
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("node " + port + " never answered " + expected);
+    }
+}
@@ -0,0 +1,146 @@
+package com.events.paymentverifsystem.Utilities.Redis;
+
+import com.events.paymentverifsystem.Utilities.Payment.PaymentInfo;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Parallel verify load against a real Redis (REDIS_HOST / REDIS_PORT, default localhost:6379);
+ * skipped when none is reachable. Every payment must be consumed exactly once.
+ */
+class RedisPaymentStoreConcurrencyTest {
+
+    private static final int PAYMENTS = 200;
+    private static final int CALLERS_PER_PAYMENT = 8;
+
+    private static LettuceConnectionFactory factory;
+    private static RedisTemplate<String, Object> template;
+
+    @BeforeAll
+    static void connect() {
+        String host = System.getenv().getOrDefault("REDIS_HOST", "localhost");
+        int port = Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379"));
+        factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        factory.afterPropertiesSet();
+        boolean up;
+        try (var conn = factory.getConnection()) {
+            up = "PONG".equals(conn.ping());
+        } catch (Exception e) {
+            up = false;
+        }
+        assumeTrue(up, "no Redis at " + host + ":" + port);
+
+        template = new RedisTemplate<>();
+        template.setConnectionFactory(factory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setHashKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(new StringRedisSerializer());
+        template.setHashValueSerializer(new StringRedisSerializer());
+        template.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void close() {
+        if (factory != null) factory.destroy();
+    }
+
+    @Test
+    void eachPaymentIsConsumedExactlyOnce() throws Exception {
+        RedisPaymentStore store = new RedisPaymentStore(template);
+        store.loadScripts();
+
+        String run = Long.toString(System.nanoTime(), 36);
+        List<PaymentInfo> infos = new ArrayList<>(PAYMENTS);
+        for (int i = 0; i < PAYMENTS; i++) {
+            infos.add(new PaymentInfo("pay_stress" + run + "_" + i, 100_00 + i, Instant.now(),
+                    "stress" + run + "+" + i + "@example.edu", null, "UPI", "Test", "stress", "<stress-" + run + "-" + i + ">"));
+        }
+        List<Boolean> claimed = store.savePaymentsAtomic(infos, Duration.ofMinutes(5), 300);
+        for (Boolean c : claimed) assertEquals(Boolean.TRUE, c);
+
+        Map<String, AtomicInteger> consumed = new ConcurrentHashMap<>();
+        AtomicInteger misses = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int r = 0; r < CALLERS_PER_PAYMENT; r++) {
+                for (PaymentInfo info : infos) {
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        PaymentInfo got = store.consumeByEmailAndAmount(info.getPayerEmail(), info.getAmountMinor());
+                        if (got == null) misses.incrementAndGet();
+                        else consumed.computeIfAbsent(got.getPaymentId(), k -> new AtomicInteger()).incrementAndGet();
+                        return null;
+                    }));
+                }
+            }
+            start.countDown();
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(PAYMENTS, consumed.size());
+        for (Map.Entry<String, AtomicInteger> e : consumed.entrySet()) {
+            assertEquals(1, e.getValue().get(), e.getKey());
+        }
+        assertEquals(PAYMENTS * (CALLERS_PER_PAYMENT - 1), misses.get());
+
+        for (PaymentInfo info : infos) template.delete("processed:message:" + info.getMessageId());
+    }
+
+    @Test
+    void eitherLayoutIsConsumedInOneCallOnASingleNode() {
+        RedisPaymentStore tagged = new RedisPaymentStore(template, RedisPaymentStore.KeyLayout.TAGGED);
+        RedisPaymentStore legacy = new RedisPaymentStore(template, RedisPaymentStore.KeyLayout.LEGACY);
+        legacy.loadScripts();
+
+        String run = Long.toString(System.nanoTime(), 36);
+        PaymentInfo newer = new PaymentInfo("pay_tag" + run, 250_00, Instant.now(), "tag" + run + "@example.edu",
+                null, "UPI", "Test", "layout", "<tag-" + run + ">");
+        PaymentInfo older = new PaymentInfo("pay_leg" + run, 250_00, Instant.now(), "leg" + run + "@example.edu",
+                null, "UPI", "Test", "layout", "<leg-" + run + ">");
+        assertTrue(tagged.savePaymentAtomic(newer, Duration.ofMinutes(5), 300));
+        assertTrue(legacy.savePaymentAtomic(older, Duration.ofMinutes(5), 300));
+
+        String received = "index:payments:status:received";
+        String taggedRecord = "attendance:payments:{" + newer.getPayerEmail() + ":25000}:" + newer.getPaymentId();
+        assertNotNull(template.opsForZSet().score(received, taggedRecord));
+        assertNotNull(template.opsForZSet().score(received, older.getPaymentId()));
+
+        // one CONSUME_LUA call finds either, and moves either index member
+        for (PaymentInfo info : List.of(newer, older)) {
+            assertEquals(info.getPaymentId(), legacy.consumeByEmailAndAmount(info.getPayerEmail(), info.getAmountMinor()).getPaymentId());
+            assertNotNull(template.opsForZSet().score("index:payments:status:consumed", info.getPaymentId()));
+            assertNull(tagged.consumeByEmailAndAmount(info.getPayerEmail(), info.getAmountMinor()));
+        }
+        assertNull(template.opsForZSet().score(received, taggedRecord));
+        assertNull(template.opsForZSet().score(received, older.getPaymentId()));
+
+        for (PaymentInfo info : List.of(newer, older)) template.delete("processed:message:" + info.getMessageId());
+    }
+}